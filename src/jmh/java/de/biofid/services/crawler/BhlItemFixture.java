@@ -0,0 +1,72 @@
+package de.biofid.services.crawler;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/***
+ * Builds GetItemMetadata responses shaped like those of the BHL API for benchmarks.
+ * 
+ * The structure and field names follow https://www.biodiversitylibrary.org/docs/api3.html. Large BHL items
+ * are dominated by their page list, so the size of the result is controlled by the number of pages.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class BhlItemFixture {
+	
+	private static final String BHL_BASE_URL = "https://www.biodiversitylibrary.org/";
+	
+	private BhlItemFixture() {}
+	
+	public static JSONObject createItemMetadata(long itemId, int numberOfPages) {
+		JSONObject item = new JSONObject();
+		item.put("ItemID", itemId);
+		item.put("TitleID", itemId / 10);
+		item.put("ItemUrl", BHL_BASE_URL + "item/" + itemId);
+		item.put("ItemPDFUrl", BHL_BASE_URL + "itempdf/" + itemId);
+		item.put("ItemTextUrl", BHL_BASE_URL + "itemtext/" + itemId);
+		item.put("Source", "Internet Archive");
+		item.put("SourceIdentifier", "mobot31753002" + itemId);
+		item.put("Volume", "Bd. " + (itemId % 100) + " (1884)");
+		item.put("Year", "1884");
+		item.put("Language", "German");
+		item.put("Rights", "Public domain. The BHL considers that this work is no longer under copyright protection.");
+		item.put("CopyrightStatus", "Not in copyright. The BHL knows of no copyright restrictions on this item.");
+		
+		JSONArray pages = new JSONArray();
+		for (int pageNumber = 1; pageNumber <= numberOfPages; ++pageNumber) {
+			long pageId = itemId * 10000 + pageNumber;
+			JSONObject page = new JSONObject();
+			page.put("PageID", pageId);
+			page.put("ItemID", itemId);
+			page.put("Year", "1884");
+			page.put("Volume", "Bd. " + (itemId % 100));
+			page.put("PageUrl", BHL_BASE_URL + "page/" + pageId);
+			page.put("ThumbnailUrl", BHL_BASE_URL + "pagethumb/" + pageId);
+			page.put("FullSizeImageUrl", BHL_BASE_URL + "pageimage/" + pageId);
+			page.put("OcrUrl", BHL_BASE_URL + "pageocr/" + pageId);
+			page.put("PageTypes", new JSONArray().put(new JSONObject().put("PageTypeName", 
+					pageNumber == 1 ? "Title Page" : "Text")));
+			page.put("PageNumbers", new JSONArray().put(new JSONObject()
+					.put("Prefix", "Page")
+					.put("Number", Integer.toString(pageNumber))));
+			pages.put(page);
+		}
+		item.put("Pages", pages);
+		
+		JSONArray parts = new JSONArray();
+		for (int partNumber = 1; partNumber <= numberOfPages / 50; ++partNumber) {
+			JSONObject part = new JSONObject();
+			part.put("PartID", itemId * 100 + partNumber);
+			part.put("PartUrl", BHL_BASE_URL + "part/" + (itemId * 100 + partNumber));
+			part.put("GenreName", "Article");
+			part.put("Title", "Beiträge zur Kenntniss der Flora & Fauna <Teil " + partNumber + ">");
+			part.put("StartPageID", itemId * 10000 + partNumber * 50);
+			parts.put(part);
+		}
+		item.put("Parts", parts);
+		
+		return item;
+	}
+}
@@ -0,0 +1,110 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.json.JSONObject;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+/***
+ * Measures the parsing of the harvested sites from the synthetic fixtures (see {@link SiteFixtures}): a
+ * Zobodat article list including the citation page of every article, a single BibDigital item page and the
+ * conversion of item metadata into JSON via {@link Harvester#toJsonObject(Object)}. Every page is parsed in
+ * both sizes of the fixtures.
+ * 
+ * The pages are replayed from a response store, so the results do not depend on the network. Reading the
+ * stored responses from the page cache is part of the measurement, like fetching is part of a harvest.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HarvesterParsingBenchmark {
+	
+	@Param({SiteFixtures.SMALL, SiteFixtures.REALISTIC})
+	public String pageSize;
+	
+	private Configuration configuration;
+	private Metadata metadata;
+	private Path outputDirectory;
+	private ResponseStore responseStore;
+	private ZobodatHarvester zobodatHarvester;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		// Every processed item is logged on level info, which would dominate the parsing
+		Configurator.setLevel(LiteratureHarvester.LOGGER_NAME, org.apache.logging.log4j.Level.WARN);
+		
+		outputDirectory = Files.createTempDirectory("parsing-benchmark");
+		Harvester.setOutputDirectory(outputDirectory.toString());
+		responseStore = SiteFixtures.createResponseStore(
+				outputDirectory.resolve(ResponseStore.RESPONSE_FOLDER_NAME), pageSize);
+		configuration = new Configuration("benchmark", Harvester.class.getName(), new JSONObject());
+		
+		zobodatHarvester = new ZobodatHarvester(configuration);
+		Citation citation = new Citation() {};
+		citation.setTitle("Icones et descriptiones plantarum, quae aut sponte in Hispania crescunt");
+		citation.addAuthor("Cavanilles, Antonio José");
+		citation.setPublicationYear("1791-1801");
+		metadata = new Metadata(SiteFixtures.BIBDIGITAL_ITEM_ID, null, citation);
+		metadata.setItemUrl(SiteFixtures.BIBDIGITAL_ITEM_URL);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(outputDirectory.toFile());
+	}
+	
+	@Benchmark
+	public Item bibDigitalItemPage() throws IOException {
+		BibDigitalHarvester harvester = new BibDigitalHarvester(configuration);
+		harvester.httpFetcher.setReplaySource(responseStore);
+		harvester.addItemsToCollect(Collections.singletonList(Long.toString(SiteFixtures.BIBDIGITAL_ITEM_ID)));
+		
+		Item item = new Item();
+		harvester.nextItem(item);
+		return item;
+	}
+	
+	@Benchmark
+	public JSONObject metadataToJsonObject() throws JsonProcessingException {
+		return zobodatHarvester.toJsonObject(metadata);
+	}
+	
+	@Benchmark
+	public int zobodatArticleList() throws IOException {
+		// A new harvester every time, because it accumulates the metadata of all articles
+		ZobodatHarvester harvester = new ZobodatHarvester(configuration);
+		harvester.httpFetcher.setReplaySource(responseStore);
+		
+		Document articleList = harvester.getDocumentFromUrl(SiteFixtures.ZOBODAT_ARTICLE_LIST_URL);
+		harvester.iterateItems(harvester.getItemListFromWebsite(articleList));
+		return harvester.getMetadataListSize();
+	}
+}
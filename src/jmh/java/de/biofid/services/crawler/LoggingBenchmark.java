@@ -0,0 +1,119 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.builder.api.AppenderComponentBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFactory;
+import org.apache.logging.log4j.core.config.builder.api.RootLoggerComponentBuilder;
+import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/***
+ * Measures what logging costs per BHL item, i.e. the messages BhlHarvester.nextItem logs for one item.
+ * 
+ * "eagerMessages" builds the messages as the harvesters did before: the metadata are pretty printed and
+ * strings are concatenated, even if debug messages are not logged. "lazyMessages" passes parameters and
+ * suppliers, which are only evaluated if the message is logged.
+ * 
+ * The level "info" and the asynchronous root logger correspond to log4j2-production.xml, the level "debug"
+ * with a synchronous root logger to the file logger of log4j2.xml. The log file is written into a temporary
+ * directory. For the asynchronous logger the benchmark measures the time to hand the event over to the ring
+ * buffer, as long as the writing thread keeps up.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+	
+	private static final long ITEM_ID = 22314;
+	private static final String LOG_PATTERN = "[%-5level] %d{yyyy-MM-dd HH:mm:ss.SSS} [%t] %c{1} - %msg%n";
+	private static final int NUMBER_OF_PAGES = 50;
+	
+	@Param({"info", "debug"})
+	public String level;
+	
+	@Param({"false", "true"})
+	public boolean isAsync;
+	
+	private JSONObject itemMetadata;
+	private Path logDirectory;
+	private Logger logger;
+	private LoggerContext loggerContext;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		logDirectory = Files.createTempDirectory("logging-benchmark");
+		itemMetadata = BhlItemFixture.createItemMetadata(ITEM_ID, NUMBER_OF_PAGES);
+		
+		loggerContext = new LoggerContext(LoggingBenchmark.class.getSimpleName());
+		loggerContext.start(createConfiguration());
+		logger = loggerContext.getLogger(LiteratureHarvester.LOGGER_NAME);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		loggerContext.stop();
+		FileUtils.deleteDirectory(logDirectory.toFile());
+	}
+	
+	@Benchmark
+	public void eagerMessages() {
+		logger.info("Processing item ID {}", ITEM_ID);
+		logger.debug("Received metadata!");
+		logger.debug("Metadata Set: {}", itemMetadata.toString(2));
+		logger.debug("Processing Item ID " + ITEM_ID);
+	}
+	
+	@Benchmark
+	public void lazyMessages() {
+		logger.info("Processing item ID {}", ITEM_ID);
+		logger.debug("Received metadata!");
+		logger.debug("Metadata Set: {}", () -> itemMetadata.toString(2));
+		logger.debug("Processing Item ID {}", ITEM_ID);
+	}
+	
+	private BuiltConfiguration createConfiguration() {
+		ConfigurationBuilder<BuiltConfiguration> builder = ConfigurationBuilderFactory.newConfigurationBuilder();
+		
+		AppenderComponentBuilder fileAppender = builder.newAppender("fileLogger", "RandomAccessFile")
+				.addAttribute("fileName", logDirectory.resolve("harvester.log").toString())
+				.addAttribute("immediateFlush", !isAsync)
+				.add(builder.newLayout("PatternLayout").addAttribute("pattern", LOG_PATTERN));
+		builder.add(fileAppender);
+		
+		org.apache.logging.log4j.Level rootLevel = org.apache.logging.log4j.Level.toLevel(level);
+		RootLoggerComponentBuilder rootLogger = isAsync ?
+				builder.newAsyncRootLogger(rootLevel).addAttribute("includeLocation", false) :
+				builder.newRootLogger(rootLevel);
+		builder.add(rootLogger.add(builder.newAppenderRef("fileLogger")));
+		
+		return builder.build(false);
+	}
+}
@@ -0,0 +1,92 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.biofid.services.crawler.Item.UnsupportedOutputFormatException;
+
+/***
+ * Measures {@link Item#writeMetadataFile(String, Item.FileType)} for XML and JSON with BHL items of varying
+ * size.
+ * 
+ * The item "fixture" is the synthetic GetItemMetadata response (see {@link SiteFixtures}). The numbers are
+ * items of the same structure with this number of pages, built by {@link BhlItemFixture}.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetadataSerializationBenchmark {
+	
+	private static final String FIXTURE_ITEM = "fixture";
+	
+	@Param({"XML", "JSON"})
+	public String format;
+	
+	@Param({FIXTURE_ITEM, "500", "5000"})
+	public String itemSize;
+	
+	private JSONObject bhlItemMetadata;
+	private Item.FileType fileType;
+	private Path outputDirectory;
+	private Path outputFile;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException, UnsupportedOutputFormatException {
+		outputDirectory = Files.createTempDirectory("serialization-benchmark");
+		fileType = Item.FileType.valueOf(format);
+		
+		if (FIXTURE_ITEM.equals(itemSize)) {
+			bhlItemMetadata = SiteFixtures.readBhlItemMetadata();
+		} else {
+			bhlItemMetadata = BhlItemFixture.createItemMetadata(22314, Integer.parseInt(itemSize));
+		}
+		
+		outputFile = createItem().writeMetadataFile(outputDirectory.toString(), fileType);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(outputDirectory.toFile());
+	}
+	
+	@Benchmark
+	public Path writeMetadataFile() throws IOException, UnsupportedOutputFormatException {
+		// Unchanged files are not written again, so remove the file of the previous invocation
+		Files.deleteIfExists(outputFile);
+		// A new item every time, because an item never overwrites a file it has written before
+		return createItem().writeMetadataFile(outputDirectory.toString(), fileType);
+	}
+	
+	private Item createItem() {
+		Item item = new Item();
+		item.setItemId(bhlItemMetadata.getLong("ItemID"));
+		item.setDataSource(BhlHarvester.BHL_STRING);
+		item.addMetdata(Harvester.ITEM_COMPLETE_METADATA, bhlItemMetadata);
+		return item;
+	}
+}
@@ -0,0 +1,98 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONObject;
+import org.json.XML;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.biofid.services.crawler.Item.UnsupportedOutputFormatException;
+
+/***
+ * Compares writing the XML metadata of a large BHL item via XML.toString with the streaming writer, and
+ * with re-writing an unchanged metadata file, which is only compared.
+ * 
+ * Run with "-prof gc" to see the allocation per written item.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetadataWriterBenchmark {
+	
+	@Param({"500", "5000"})
+	public int numberOfPages;
+	
+	private Item item;
+	private JSONObject bhlItemMetadata;
+	private Path outputDirectory;
+	private Path streamingOutputFile;
+	private Path stringOutputFile;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException, UnsupportedOutputFormatException {
+		outputDirectory = Files.createTempDirectory("metadata-benchmark");
+		stringOutputFile = outputDirectory.resolve("string.xml");
+		
+		bhlItemMetadata = BhlItemFixture.createItemMetadata(22314, numberOfPages);
+		item = createItem();
+		item.getCompleteMetadata();
+		
+		streamingOutputFile = createItem().writeMetadataFile(outputDirectory.toString(), Item.FileType.XML);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(outputDirectory.toFile());
+	}
+	
+	@Benchmark
+	public void xmlToString() throws IOException {
+		String content = XML.toString(item.getItemMetadata(), Item.METADATA_ROOT_NAME);
+		Files.write(stringOutputFile, content.getBytes());
+	}
+	
+	@Benchmark
+	public Path streamingXml() throws IOException, UnsupportedOutputFormatException {
+		// Unchanged files are not written again, so remove the file of the previous invocation
+		Files.deleteIfExists(streamingOutputFile);
+		// A new item every time, because an item never overwrites a file it has written before
+		return createItem().writeMetadataFile(outputDirectory.toString(), Item.FileType.XML);
+	}
+	
+	@Benchmark
+	public Path unchangedXml() throws UnsupportedOutputFormatException {
+		// The file of the previous invocation has the same content, so it is only compared
+		return createItem().writeMetadataFile(outputDirectory.toString(), Item.FileType.XML);
+	}
+	
+	private Item createItem() {
+		Item newItem = new Item();
+		newItem.setItemId(22314);
+		newItem.setDataSource(BhlHarvester.BHL_STRING);
+		newItem.addMetdata(Harvester.ITEM_COMPLETE_METADATA, bhlItemMetadata);
+		return newItem;
+	}
+}
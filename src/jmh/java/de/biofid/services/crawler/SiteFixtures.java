@@ -0,0 +1,185 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.json.JSONObject;
+
+/***
+ * Gives benchmarks offline access to responses shaped like those of the harvested sites.
+ * 
+ * The fixtures in the folder "fixtures" of the benchmark resources are synthetic: a Zobodat article list and
+ * citation page, a BibDigital item page and a BHL GetItemMetadata response, written by hand after the
+ * structure of the real responses. They hold the elements the harvesters read plus a little page chrome,
+ * but they were not recorded from the sites and are much smaller than real pages.
+ * 
+ * Therefore the fixtures come in two sizes. {@link #SMALL} serves them as they are. {@link #REALISTIC} lists
+ * {@value #REALISTIC_NUMBER_OF_ARTICLES} articles on the Zobodat list and pads every page with navigation
+ * links and an inline script to about {@value #REALISTIC_PAGE_SIZE_IN_BYTES} bytes, so the parsing of the
+ * page chrome is part of the measurement. These numbers are estimates of real volumes and pages, not
+ * measurements. Benchmarks of real responses need a harvest recorded with the command "record".
+ * 
+ * The responses are put into a {@link ResponseStore}, which a harvester replays instead of requesting the
+ * sites, so the benchmarks measure the real parsing code without network.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class SiteFixtures {
+	
+	public static final String BHL_ITEM_METADATA = "bhl-get-item-metadata.json";
+	public static final String BIBDIGITAL_ITEM = "bibdigital-item.html";
+	public static final long BIBDIGITAL_ITEM_ID = 15729;
+	public static final String BIBDIGITAL_ITEM_URL =
+			"https://bibdigital.rjb.csic.es/en/records/item/" + BIBDIGITAL_ITEM_ID + "-redirection";
+	public static final int REALISTIC_NUMBER_OF_ARTICLES = 80;
+	public static final int REALISTIC_PAGE_SIZE_IN_BYTES = 100 * 1024;
+	public static final String REALISTIC = "realistic";
+	public static final String SMALL = "small";
+	public static final String ZOBODAT_ARTICLE_LIST = "zobodat-article-list.html";
+	public static final String ZOBODAT_ARTICLE_LIST_URL = "https://www.zobodat.at/publikation_volumes.php?id=34040";
+	public static final String ZOBODAT_CITATION = "zobodat-citation.html";
+	
+	private static final String BODY_END_TAG = "</body>";
+	private static final String FIXTURE_FOLDER = "/fixtures/";
+	private static final Map<String, List<String>> HTML_HEADERS =
+			Collections.singletonMap("Content-Type", Collections.singletonList("text/html; charset=utf-8"));
+	private static final long ZOBODAT_FIRST_ARTICLE_ID = 1000001;
+	private static final Pattern ZOBODAT_ARTICLE_PATTERN = Pattern.compile("<li class=\"result\">.*?</li>\\s*",
+			Pattern.DOTALL);
+	private static final Pattern ZOBODAT_ARTICLE_URL_PATTERN = Pattern.compile("/publikation_articles\\.php\\?id=[0-9]+");
+	private static final String ZOBODAT_ARTICLE_URL_PREFIX = "/publikation_articles.php?id=";
+	private static final String ZOBODAT_URL = "https://www.zobodat.at";
+	
+	private SiteFixtures() {}
+	
+	/***
+	 * Creates a response store in the given directory holding the Zobodat article list, a citation page for
+	 * every article listed on it, and the BibDigital item page.
+	 * @param size Either {@link #SMALL} or {@link #REALISTIC}.
+	 */
+	public static ResponseStore createResponseStore(Path responseDirectory, String size) throws IOException {
+		boolean isRealistic;
+		if (REALISTIC.equals(size)) {
+			isRealistic = true;
+		} else if (SMALL.equals(size)) {
+			isRealistic = false;
+		} else {
+			throw new IllegalArgumentException("Unknown fixture size '" + size + "'!");
+		}
+		
+		String articleList = readHtml(ZOBODAT_ARTICLE_LIST);
+		String citationPage = readHtml(ZOBODAT_CITATION);
+		String itemPage = readHtml(BIBDIGITAL_ITEM);
+		if (isRealistic) {
+			articleList = padPage(listArticles(articleList, REALISTIC_NUMBER_OF_ARTICLES));
+			citationPage = padPage(citationPage);
+			itemPage = padPage(itemPage);
+		}
+		
+		ResponseStore responseStore = new ResponseStore(responseDirectory);
+		storeHtml(responseStore, ZOBODAT_ARTICLE_LIST_URL, articleList);
+		for (String articleUrl : getZobodatArticleUrls(articleList)) {
+			storeHtml(responseStore, articleUrl, citationPage);
+		}
+		storeHtml(responseStore, BIBDIGITAL_ITEM_URL, itemPage);
+		return responseStore;
+	}
+	
+	/***
+	 * The item of the synthetic BHL GetItemMetadata response.
+	 */
+	public static JSONObject readBhlItemMetadata() throws IOException {
+		JSONObject apiResponse = new JSONObject(new String(read(BHL_ITEM_METADATA), StandardCharsets.UTF_8));
+		return apiResponse.getJSONArray("Result").getJSONObject(0);
+	}
+	
+	public static byte[] read(String fixtureName) throws IOException {
+		try (InputStream fixtureStream = SiteFixtures.class.getResourceAsStream(FIXTURE_FOLDER + fixtureName)) {
+			if (fixtureStream == null) {
+				throw new IOException("The fixture " + fixtureName + " is not on the classpath!");
+			}
+			return IOUtils.toByteArray(fixtureStream);
+		}
+	}
+	
+	private static List<String> getZobodatArticleUrls(String articleList) {
+		List<String> articleUrls = new ArrayList<>();
+		Matcher articleUrlMatcher = ZOBODAT_ARTICLE_URL_PATTERN.matcher(articleList);
+		while (articleUrlMatcher.find()) {
+			String articleUrl = ZOBODAT_URL + articleUrlMatcher.group();
+			if (!articleUrls.contains(articleUrl)) {
+				articleUrls.add(articleUrl);
+			}
+		}
+		return articleUrls;
+	}
+	
+	/***
+	 * Repeats the articles of the given list until it holds the given number, each with an ID of its own.
+	 */
+	private static String listArticles(String articleList, int numberOfArticles) {
+		List<String> articles = new ArrayList<>();
+		Matcher articleMatcher = ZOBODAT_ARTICLE_PATTERN.matcher(articleList);
+		int listStart = -1;
+		int listEnd = -1;
+		while (articleMatcher.find()) {
+			if (listStart < 0) {
+				listStart = articleMatcher.start();
+			}
+			listEnd = articleMatcher.end();
+			articles.add(articleMatcher.group());
+		}
+		
+		StringBuilder articleEntries = new StringBuilder();
+		for (int i = 0; i < numberOfArticles; ++i) {
+			String articleUrl = ZOBODAT_ARTICLE_URL_PREFIX + (ZOBODAT_FIRST_ARTICLE_ID + i);
+			articleEntries.append(ZOBODAT_ARTICLE_URL_PATTERN.matcher(articles.get(i % articles.size()))
+					.replaceAll(Matcher.quoteReplacement(articleUrl)));
+		}
+		
+		return articleList.substring(0, listStart) + articleEntries + articleList.substring(listEnd);
+	}
+	
+	/***
+	 * Adds a site map and an inline script before the end of the body, until the page has about the realistic
+	 * size. Both use no element or class the harvesters select.
+	 */
+	private static String padPage(String page) {
+		StringBuilder padding = new StringBuilder("<div id=\"sitemap\">\n<ul>\n");
+		int halfOfMissingBytes = (REALISTIC_PAGE_SIZE_IN_BYTES - page.length()) / 2;
+		for (int linkNumber = 1; padding.length() < halfOfMissingBytes; ++linkNumber) {
+			padding.append("<li><a href=\"/sitemap.php?section=").append(linkNumber).append("\">Bereich ")
+				.append(linkNumber).append("</a></li>\n");
+		}
+		padding.append("</ul>\n</div>\n<script>\nvar pageConfiguration = [\n");
+		for (int entryNumber = 1; padding.length() < 2 * halfOfMissingBytes; ++entryNumber) {
+			padding.append("  {\"id\": ").append(entryNumber).append(", \"track\": true, \"label\": \"entry-")
+				.append(entryNumber).append("\"},\n");
+		}
+		padding.append("];\n</script>\n");
+		
+		int bodyEnd = page.lastIndexOf(BODY_END_TAG);
+		return page.substring(0, bodyEnd) + padding + page.substring(bodyEnd);
+	}
+	
+	private static String readHtml(String fixtureName) throws IOException {
+		return new String(read(fixtureName), StandardCharsets.UTF_8);
+	}
+	
+	private static void storeHtml(ResponseStore responseStore, String url, String page) throws IOException {
+		responseStore.write(url, new HttpResponse(new URL(url), 200, "HTTP/1.1 200 OK", HTML_HEADERS,
+				page.getBytes(StandardCharsets.UTF_8), 0));
+	}
+}
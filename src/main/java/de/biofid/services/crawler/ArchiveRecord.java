@@ -0,0 +1,137 @@
+package de.biofid.services.crawler;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/***
+ * A single entry of an archive shard: a downloaded text file, the metadata of an item or a captured response.
+ * 
+ * The content is either held in memory or read from a file when the record is written.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class ArchiveRecord {
+	
+	public enum Type {
+		/** A downloaded text file of an item */
+		FILE,
+		/** The metadata file of an item */
+		METADATA,
+		/** A web page or API response the harvester fetched */
+		RESPONSE
+	}
+	
+	private byte[] content = null;
+	private Path contentFilePath = null;
+	private long contentLength;
+	private String contentType;
+	private String entryName;
+	private HttpResponse response;
+	private String sha256;
+	private URL targetUrl;
+	private Type type;
+	
+	private ArchiveRecord(Type type, String entryName, URL targetUrl, String contentType, HttpResponse response) {
+		this.type = type;
+		this.entryName = entryName;
+		this.targetUrl = targetUrl;
+		this.contentType = contentType;
+		this.response = response;
+	}
+	
+	/***
+	 * Creates a record for a downloaded text file.
+	 * @param entryName The path of the file within the archive, e.g. "text/pdf/1234.pdf".
+	 * @param sourceUrl The URL the file was downloaded from.
+	 * @param downloadedFile The downloaded file.
+	 */
+	public static ArchiveRecord forFile(String entryName, URL sourceUrl, DownloadedFile downloadedFile)
+			throws IOException {
+		ArchiveRecord record = new ArchiveRecord(Type.FILE, entryName, sourceUrl, null, downloadedFile.getResponse());
+		record.contentFilePath = downloadedFile.getFilePath();
+		record.contentLength = Files.size(downloadedFile.getFilePath());
+		record.sha256 = downloadedFile.getSha256();
+		return record;
+	}
+	
+	/***
+	 * Creates a record for the metadata of an item.
+	 * @param entryName The path of the file within the archive, e.g. "metadata/xml/1234.xml".
+	 * @param itemUrl The URL of the item. May be null.
+	 * @param contentType The MIME type of the metadata.
+	 * @param metadata The serialized metadata.
+	 */
+	public static ArchiveRecord forMetadata(String entryName, URL itemUrl, String contentType, byte[] metadata) {
+		ArchiveRecord record = new ArchiveRecord(Type.METADATA, entryName, itemUrl, contentType, null);
+		record.content = metadata;
+		record.contentLength = metadata.length;
+		return record;
+	}
+	
+	/***
+	 * Creates a record for a fetched response, including its body.
+	 */
+	public static ArchiveRecord forResponse(HttpResponse response) {
+		ArchiveRecord record = new ArchiveRecord(Type.RESPONSE, response.getUrl().toString(), response.getUrl(),
+				null, response);
+		record.content = response.getBody();
+		record.contentLength = response.getBody().length;
+		return record;
+	}
+	
+	public long getContentLength() {
+		return contentLength;
+	}
+	
+	/***
+	 * The MIME type of the content. Null, if it is unknown.
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+	
+	public String getEntryName() {
+		return entryName;
+	}
+	
+	/***
+	 * The status and headers the content was received with. Null, if it was not received via HTTP.
+	 */
+	public HttpResponse getResponse() {
+		return response;
+	}
+	
+	/***
+	 * The SHA-256 digest of the content as lower case hex string. Null, if it is unknown.
+	 */
+	public String getSha256() {
+		return sha256;
+	}
+	
+	/***
+	 * The URL the content belongs to. May be null.
+	 */
+	public URL getTargetUrl() {
+		return targetUrl;
+	}
+	
+	public Type getType() {
+		return type;
+	}
+	
+	/***
+	 * Opens the content. The caller has to close the returned stream.
+	 */
+	public InputStream openContent() throws IOException {
+		if (content != null) {
+			return new ByteArrayInputStream(content);
+		}
+		return Files.newInputStream(contentFilePath);
+	}
+}
@@ -0,0 +1,310 @@
+package de.biofid.services.crawler;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.biofid.services.crawler.Item.UnsupportedOutputFormatException;
+
+/***
+ * Packs the text files and the metadata of every item into size-capped archive shards (e.g. archives/items-00000.tar).
+ * 
+ * The items are appended sequentially as they are completed, so a harvest ends up in a few large files instead
+ * of millions of small ones. The downloaded text files stay in the text directory, so a later run without
+ * overwriting skips them. All records of an item are written into the same shard. A new shard is started, if
+ * the next item would exceed the maximum shard size, so only an item larger than the maximum size exceeds it.
+ * 
+ * Next to every shard an index file (e.g. items-00000.idx) lists the records with the lines
+ * "item ID, entry name, offset, length", separated by tabs. The offset and length refer to the complete record
+ * in the shard, including its header.
+ * 
+ * In WARC format the sink also captures all responses the harvester fetched (web pages and API responses). A
+ * response belongs to the item the fetching thread worked on (see {@link HarvestEvents#getItemId()}) and is
+ * written with this item. Responses not bound to any item, like listings, are written before the next item and
+ * indexed with the item ID {@link HarvestEvents#UNKNOWN_ITEM_ID}. At most
+ * {@link #MAXIMUM_CAPTURED_RESPONSE_BYTES} of response bodies are held until their item is written. Beyond
+ * that the responses of the item captured first are dropped, which are usually the ones of an item that
+ * failed or was skipped and so is never written.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class ArchiveShardSink implements MetadataSink, HttpResponseListener {
+	
+	public enum Format {
+		TAR {
+			@Override
+			ShardWriter createWriter(Path shardFilePath) throws IOException {
+				return new TarShardWriter(shardFilePath);
+			}
+		},
+		ZIP {
+			@Override
+			ShardWriter createWriter(Path shardFilePath) throws IOException {
+				return new ZipShardWriter(shardFilePath);
+			}
+		},
+		WARC {
+			@Override
+			ShardWriter createWriter(Path shardFilePath) throws IOException {
+				return new WarcShardWriter(shardFilePath);
+			}
+		};
+		
+		public String getFileSuffix() {
+			return toString().toLowerCase();
+		}
+		
+		abstract ShardWriter createWriter(Path shardFilePath) throws IOException;
+	}
+	
+	public static final String ARCHIVE_FOLDER_NAME = "archives";
+	public static final long DEFAULT_MAXIMUM_SHARD_SIZE_IN_BYTES = 1L << 30;
+	public static final long MAXIMUM_CAPTURED_RESPONSE_BYTES = 64L << 20;
+	
+	private static final String INDEX_FILE_SUFFIX = "idx";
+	private static final String INDEX_SEPARATOR = "\t";
+	private static final String JSON_CONTENT_TYPE = "application/json";
+	private static final String SHARD_FILE_NAME_PREFIX = "items-";
+	private static final String SHARD_NUMBER_FORMAT = "%05d";
+	private static final String XML_CONTENT_TYPE = "application/xml";
+	
+	private static final Logger logger = LogManager.getLogger(LiteratureHarvester.LOGGER_NAME);
+	
+	private long capturedResponseBytes = 0;
+	private Map<Long, List<HttpResponse>> capturedResponses = new LinkedHashMap<>();
+	private Format format;
+	private BufferedWriter indexWriter = null;
+	private Path itemOutputDirectory;
+	private long maximumShardSizeInBytes;
+	private Item.FileType metadataFormat;
+	private Path shardDirectory;
+	private int numberOfRecordsInShard = 0;
+	private int shardNumber;
+	private ShardWriter shardWriter = null;
+	
+	/***
+	 * @param shardDirectory The directory to write the shards into.
+	 * @param format The format of the shards.
+	 * @param maximumShardSizeInBytes The size a shard should not exceed.
+	 * @param metadataFormat The format to write the item metadata in, either XML or JSON.
+	 * @param itemOutputDirectory The working directory of the harvester. The names of the entries are the
+	 * paths of the files relative to this directory.
+	 * @throws IOException
+	 */
+	public ArchiveShardSink(Path shardDirectory, Format format, long maximumShardSizeInBytes,
+			Item.FileType metadataFormat, Path itemOutputDirectory) throws IOException {
+		this.shardDirectory = shardDirectory;
+		this.format = format;
+		this.maximumShardSizeInBytes = maximumShardSizeInBytes;
+		this.metadataFormat = metadataFormat;
+		this.itemOutputDirectory = itemOutputDirectory;
+		
+		Files.createDirectories(shardDirectory);
+		shardNumber = findHighestShardNumber() + 1;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		closeCurrentShard();
+	}
+	
+	public Format getFormat() {
+		return format;
+	}
+	
+	@Override
+	public void onResponse(HttpResponse response) {
+		if (format != Format.WARC) {
+			return;
+		}
+		
+		long itemId = HarvestEvents.getItemId();
+		int bodySize = response.getBody().length;
+		synchronized (capturedResponses) {
+			Iterator<Long> capturedItemIds = capturedResponses.keySet().iterator();
+			while (capturedResponseBytes + bodySize > MAXIMUM_CAPTURED_RESPONSE_BYTES && capturedItemIds.hasNext()) {
+				long capturedItemId = capturedItemIds.next();
+				if (capturedItemId != itemId) {
+					logger.debug("Dropping the captured responses of item ID {}", capturedItemId);
+					capturedResponseBytes -= getBodySize(capturedResponses.get(capturedItemId));
+					capturedItemIds.remove();
+				}
+			}
+			
+			if (capturedResponseBytes + bodySize > MAXIMUM_CAPTURED_RESPONSE_BYTES) {
+				logger.warn("Not archiving the response of URL '{}', because the captured responses exceed {} bytes!",
+						response.getUrl(), MAXIMUM_CAPTURED_RESPONSE_BYTES);
+				return;
+			}
+			
+			capturedResponses.computeIfAbsent(itemId, id -> new ArrayList<>()).add(response);
+			capturedResponseBytes += bodySize;
+		}
+	}
+	
+	@Override
+	public void write(Item item) throws IOException {
+		List<ArchiveRecord> unboundRecords = new ArrayList<>();
+		List<ArchiveRecord> itemRecords = new ArrayList<>();
+		synchronized (capturedResponses) {
+			addResponseRecords(HarvestEvents.UNKNOWN_ITEM_ID, unboundRecords);
+			addResponseRecords(item.getItemId(), itemRecords);
+		}
+		itemRecords.addAll(createRecords(item));
+		
+		long itemSizeInBytes = 0;
+		if (shardWriter != null) {
+			for (ArchiveRecord record : unboundRecords) {
+				itemSizeInBytes += shardWriter.estimateSize(record);
+			}
+			for (ArchiveRecord record : itemRecords) {
+				itemSizeInBytes += shardWriter.estimateSize(record);
+			}
+		}
+		
+		if (shardWriter == null || (numberOfRecordsInShard > 0 &&
+				shardWriter.getPosition() + itemSizeInBytes > maximumShardSizeInBytes)) {
+			openNextShard();
+		}
+		
+		writeRecords(HarvestEvents.UNKNOWN_ITEM_ID, unboundRecords);
+		writeRecords(item.getItemId(), itemRecords);
+	}
+	
+	private void addResponseRecords(long itemId, List<ArchiveRecord> records) {
+		List<HttpResponse> responses = capturedResponses.remove(itemId);
+		if (responses == null) {
+			return;
+		}
+		
+		for (HttpResponse response : responses) {
+			records.add(ArchiveRecord.forResponse(response));
+		}
+		capturedResponseBytes -= getBodySize(responses);
+	}
+	
+	private void closeCurrentShard() throws IOException {
+		if (indexWriter != null) {
+			indexWriter.close();
+			indexWriter = null;
+		}
+		
+		if (shardWriter != null) {
+			shardWriter.close();
+			shardWriter = null;
+		}
+	}
+	
+	private List<ArchiveRecord> createRecords(Item item) throws IOException {
+		List<ArchiveRecord> records = new ArrayList<>();
+		
+		for (Map.Entry<URL, DownloadedFile> downloadedFile : item.getDownloadedTextFiles().entrySet()) {
+			String entryName = getEntryName(downloadedFile.getValue().getFilePath());
+			records.add(ArchiveRecord.forFile(entryName, downloadedFile.getKey(), downloadedFile.getValue()));
+		}
+		
+		byte[] metadata;
+		try {
+			metadata = item.serializeMetadata(metadataFormat);
+		} catch (UnsupportedOutputFormatException ex) {
+			throw new IOException(ex.getMessage(), ex);
+		}
+		String entryName = Item.METADATA_OUTPUT_FOLDER_NAME + "/" + metadataFormat.toString().toLowerCase() + "/" +
+				item.getMetadataFileName(metadataFormat);
+		String contentType = metadataFormat == Item.FileType.XML ? XML_CONTENT_TYPE : JSON_CONTENT_TYPE;
+		records.add(ArchiveRecord.forMetadata(entryName, item.getUrl(), contentType, metadata));
+		
+		return records;
+	}
+	
+	private int findHighestShardNumber() {
+		int highestShardNumber = -1;
+		
+		String[] fileNames = shardDirectory.toFile().list();
+		if (fileNames == null) {
+			return highestShardNumber;
+		}
+		
+		for (String fileName : fileNames) {
+			Integer number = getShardNumber(fileName);
+			if (number != null) {
+				highestShardNumber = Math.max(highestShardNumber, number);
+			}
+		}
+		
+		return highestShardNumber;
+	}
+	
+	private long getBodySize(List<HttpResponse> responses) {
+		long bodySize = 0;
+		for (HttpResponse response : responses) {
+			bodySize += response.getBody().length;
+		}
+		return bodySize;
+	}
+	
+	private String getEntryName(Path filePath) {
+		return itemOutputDirectory.relativize(filePath).toString().replace(File.separatorChar, '/');
+	}
+	
+	private Path getIndexFilePath(int number) {
+		return shardDirectory.resolve(getShardFileNameBase(number) + "." + INDEX_FILE_SUFFIX);
+	}
+	
+	private String getShardFileNameBase(int number) {
+		return SHARD_FILE_NAME_PREFIX + String.format(SHARD_NUMBER_FORMAT, number);
+	}
+	
+	private Integer getShardNumber(String fileName) {
+		String indexFileSuffix = "." + INDEX_FILE_SUFFIX;
+		if (!fileName.startsWith(SHARD_FILE_NAME_PREFIX) || !fileName.endsWith(indexFileSuffix)) {
+			return null;
+		}
+		
+		String number = fileName.substring(SHARD_FILE_NAME_PREFIX.length(),
+				fileName.length() - indexFileSuffix.length());
+		try {
+			return Integer.parseInt(number);
+		} catch (NumberFormatException ex) {
+			return null;
+		}
+	}
+	
+	private void openNextShard() throws IOException {
+		closeCurrentShard();
+		
+		Path shardFilePath = shardDirectory.resolve(getShardFileNameBase(shardNumber) + "." + format.getFileSuffix());
+		logger.info("Starting archive shard {}", shardFilePath);
+		
+		shardWriter = format.createWriter(shardFilePath);
+		indexWriter = Files.newBufferedWriter(getIndexFilePath(shardNumber), StandardCharsets.UTF_8);
+		numberOfRecordsInShard = 0;
+		++shardNumber;
+	}
+	
+	private void writeRecords(long itemId, List<ArchiveRecord> records) throws IOException {
+		for (ArchiveRecord record : records) {
+			long offset = shardWriter.getPosition();
+			if (shardWriter.write(record)) {
+				indexWriter.write(itemId + INDEX_SEPARATOR + record.getEntryName() + INDEX_SEPARATOR +
+						offset + INDEX_SEPARATOR + (shardWriter.getPosition() - offset));
+				indexWriter.newLine();
+				++numberOfRecordsInShard;
+			}
+		}
+	}
+}
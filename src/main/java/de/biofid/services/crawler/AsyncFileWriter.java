@@ -0,0 +1,229 @@
+package de.biofid.services.crawler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/***
+ * Writes small files (e.g. metadata) on a dedicated thread, so the harvester never waits for the disk.
+ * 
+ * Submitted files are queued and written in batches. If the queue is full, {@link #write(Path, byte[])} blocks
+ * until the writer caught up, which limits the memory held by pending files. Optionally, all files written
+ * since the last sync are flushed to disk together (group commit) after a given interval and when the writer
+ * is closed. Without syncing, the operating system decides when the files reach the disk.
+ * 
+ * Files that hold the submitted content already are not written again. Failed writes are logged and counted,
+ * but do not stop the writer.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class AsyncFileWriter implements Closeable {
+	
+	public static final int DEFAULT_QUEUE_SIZE = 1024;
+	public static final long FSYNC_DISABLED = 0;
+	
+	private static final int MAXIMUM_BATCH_SIZE = 256;
+	private static final long POLL_TIMEOUT_IN_MILLISECONDS = 100;
+	private static final String WRITER_THREAD_NAME = "async-file-writer";
+	
+	private static final Logger logger = LogManager.getLogger(LiteratureHarvester.LOGGER_NAME);
+	
+	private static final PendingFile END_OF_QUEUE = new PendingFile(null, null, null, HarvestEvents.UNKNOWN_ITEM_ID);
+	
+	private DirectoryCache directoryCache;
+	private long fsyncIntervalInMilliseconds;
+	private volatile boolean isClosed = false;
+	private long lastFsyncTimeInMilliseconds = System.currentTimeMillis();
+	private BlockingQueue<PendingFile> pendingFiles;
+	private Set<Path> unsyncedFiles = new LinkedHashSet<>();
+	private WriteStatistics writeStatistics;
+	private Thread writerThread;
+	
+	/***
+	 * Starts a writer.
+	 * @param queueSize The number of files that may be pending before submitting blocks.
+	 * @param fsyncIntervalInMilliseconds The interval to flush written files to disk. {@link #FSYNC_DISABLED}
+	 * to leave this to the operating system.
+	 * @param directoryCache The cache of existing directories to use.
+	 * @param writeStatistics The statistics to count the written, unchanged and failed files in.
+	 */
+	public AsyncFileWriter(int queueSize, long fsyncIntervalInMilliseconds, DirectoryCache directoryCache,
+			WriteStatistics writeStatistics) {
+		this.pendingFiles = new ArrayBlockingQueue<>(queueSize);
+		this.fsyncIntervalInMilliseconds = fsyncIntervalInMilliseconds;
+		this.directoryCache = directoryCache;
+		this.writeStatistics = writeStatistics;
+		
+		writerThread = new Thread(this::writePendingFiles, WRITER_THREAD_NAME);
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+	
+	/***
+	 * Writes all pending files, syncs them if configured and stops the writer thread.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (isClosed) {
+			return;
+		}
+		isClosed = true;
+		
+		try {
+			pendingFiles.put(END_OF_QUEUE);
+			writerThread.join();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for pending files to be written!", ex);
+		}
+		
+		if (writeStatistics.getNumberOfFailedFiles() > 0) {
+			logger.error("{} files could not be written!", writeStatistics.getNumberOfFailedFiles());
+		}
+	}
+	
+	public long getNumberOfFailedWrites() {
+		return writeStatistics.getNumberOfFailedFiles();
+	}
+	
+	public long getNumberOfWrittenFiles() {
+		return writeStatistics.getNumberOfWrittenFiles();
+	}
+	
+	/***
+	 * Queues the given content to be written to the given file. An existing file is replaced.
+	 * @param filePath The file to write.
+	 * @param content The complete file content. The array must not be modified after this call.
+	 * @throws IllegalStateException If the writer is closed already.
+	 * @throws IOException If the calling thread is interrupted while waiting for space in the queue.
+	 */
+	public void write(Path filePath, byte[] content) throws IOException {
+		if (isClosed) {
+			throw new IllegalStateException("The writer is closed already!");
+		}
+		
+		try {
+			pendingFiles.put(new PendingFile(filePath, content, HarvestEvents.getHarvester(), 
+					HarvestEvents.getItemId()));
+			HarvestMetrics.WRITE_QUEUE_DEPTH.labels().increment();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while queueing the file " + filePath + "!", ex);
+		}
+	}
+	
+	private void fsyncIfDue(boolean force) {
+		if (fsyncIntervalInMilliseconds == FSYNC_DISABLED || unsyncedFiles.isEmpty()) {
+			return;
+		}
+		
+		long now = System.currentTimeMillis();
+		if (!force && now - lastFsyncTimeInMilliseconds < fsyncIntervalInMilliseconds) {
+			return;
+		}
+		
+		for (Path filePath : unsyncedFiles) {
+			try (FileChannel fileChannel = FileChannel.open(filePath, StandardOpenOption.WRITE)) {
+				fileChannel.force(true);
+			} catch (IOException ex) {
+				logger.error("Could not sync the file {} to disk!", filePath);
+				logger.error(ex.getLocalizedMessage());
+			}
+		}
+		
+		logger.debug("Synced {} files to disk", unsyncedFiles.size());
+		unsyncedFiles.clear();
+		lastFsyncTimeInMilliseconds = now;
+	}
+	
+	private void writeFile(PendingFile pendingFile) {
+		HarvestMetrics.WRITE_QUEUE_DEPTH.labels().decrement();
+		
+		try {
+			directoryCache.createDirectories(pendingFile.filePath.getParent());
+			
+			HarvestEvents.DiskWrite diskWriteEvent = new HarvestEvents.DiskWrite();
+			diskWriteEvent.begin();
+			boolean isWritten = FileHandler.writeIfChanged(pendingFile.filePath, pendingFile.content);
+			diskWriteEvent.path = pendingFile.filePath.toString();
+			if (isWritten) {
+				diskWriteEvent.bytes = pendingFile.content.length;
+			}
+			diskWriteEvent.isWritten = isWritten;
+			diskWriteEvent.commitTagged(pendingFile.harvester, pendingFile.itemId);
+			
+			if (!isWritten) {
+				writeStatistics.recordSkippedFile();
+				return;
+			}
+			
+			writeStatistics.recordWrittenFile();
+			if (fsyncIntervalInMilliseconds != FSYNC_DISABLED) {
+				unsyncedFiles.add(pendingFile.filePath);
+			}
+		} catch (IOException ex) {
+			writeStatistics.recordFailedFile();
+			logger.error("Could not write the file {}!", pendingFile.filePath);
+			logger.error(ex.getLocalizedMessage());
+		}
+	}
+	
+	private void writePendingFiles() {
+		List<PendingFile> batch = new ArrayList<>(MAXIMUM_BATCH_SIZE);
+		
+		while (true) {
+			PendingFile firstFile;
+			try {
+				firstFile = pendingFiles.poll(POLL_TIMEOUT_IN_MILLISECONDS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException ex) {
+				// Only close() ends the writer, so no pending file gets lost
+				continue;
+			}
+			
+			if (firstFile != null) {
+				batch.add(firstFile);
+				pendingFiles.drainTo(batch, MAXIMUM_BATCH_SIZE - 1);
+			}
+			
+			for (PendingFile pendingFile : batch) {
+				if (pendingFile == END_OF_QUEUE) {
+					fsyncIfDue(true);
+					return;
+				}
+				writeFile(pendingFile);
+			}
+			batch.clear();
+			
+			fsyncIfDue(false);
+		}
+	}
+	
+	private static class PendingFile {
+		private final Path filePath;
+		private final byte[] content;
+		// The events of the writer thread are tagged with the harvester and item that queued the file
+		private final String harvester;
+		private final long itemId;
+		
+		PendingFile(Path filePath, byte[] content, String harvester, long itemId) {
+			this.filePath = filePath;
+			this.content = content;
+			this.harvester = harvester;
+			this.itemId = itemId;
+		}
+	}
+}
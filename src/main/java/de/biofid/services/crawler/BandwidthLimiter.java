@@ -0,0 +1,119 @@
+package de.biofid.services.crawler;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Caps the rate at which a harvester receives data, across all of its requests and downloads.
+ * 
+ * The limiter is a token bucket holding at most one second of data: a reader may take a burst of this size,
+ * after that it is slowed down to the configured rate. The limit may be changed at any time, e.g. via JMX,
+ * and takes effect with the next read.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class BandwidthLimiter {
+	
+	public static final long UNLIMITED = 0;
+	
+	private long availableBytes = 0;
+	private volatile long bytesPerSecond;
+	private long lastRefillTimeInNanoseconds = System.nanoTime();
+	
+	/***
+	 * @param bytesPerSecond The maximum rate. {@link #UNLIMITED}, if the rate should not be limited.
+	 */
+	public BandwidthLimiter(long bytesPerSecond) {
+		setBytesPerSecond(bytesPerSecond);
+	}
+	
+	/***
+	 * Takes the given number of bytes from the bucket and blocks, until the rate allows them.
+	 * @throws InterruptedIOException If the thread was interrupted while waiting.
+	 */
+	public void acquire(long numberOfBytes) throws InterruptedIOException {
+		long waitingTimeInNanoseconds;
+		synchronized (this) {
+			long rate = bytesPerSecond;
+			if (rate == UNLIMITED) {
+				return;
+			}
+			
+			refill(rate);
+			availableBytes -= numberOfBytes;
+			if (availableBytes >= 0) {
+				return;
+			}
+			
+			// The debt is paid off by waiting, so concurrent readers queue up behind each other
+			waitingTimeInNanoseconds = -availableBytes * TimeUnit.SECONDS.toNanos(1) / rate;
+		}
+		
+		try {
+			TimeUnit.NANOSECONDS.sleep(waitingTimeInNanoseconds);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for bandwidth!");
+		}
+	}
+	
+	public long getBytesPerSecond() {
+		return bytesPerSecond;
+	}
+	
+	/***
+	 * Returns a stream reading from the given stream at the rate of this limiter.
+	 */
+	public InputStream limit(InputStream inputStream) {
+		return new LimitedInputStream(inputStream);
+	}
+	
+	/***
+	 * @param bytesPerSecond The maximum rate. {@link #UNLIMITED}, if the rate should not be limited.
+	 * @throws IllegalArgumentException If the rate is negative.
+	 */
+	public void setBytesPerSecond(long bytesPerSecond) {
+		if (bytesPerSecond < 0) {
+			throw new IllegalArgumentException("The bandwidth limit must not be negative!");
+		}
+		this.bytesPerSecond = bytesPerSecond;
+	}
+	
+	private void refill(long rate) {
+		long now = System.nanoTime();
+		// Computed as double, because the product of a long idle time and a high rate overflows a long
+		double refilledBytes = (double) (now - lastRefillTimeInNanoseconds) * rate / TimeUnit.SECONDS.toNanos(1);
+		availableBytes = (long) Math.min(rate, availableBytes + refilledBytes);
+		lastRefillTimeInNanoseconds = now;
+	}
+	
+	private class LimitedInputStream extends FilterInputStream {
+		
+		LimitedInputStream(InputStream inputStream) {
+			super(inputStream);
+		}
+		
+		@Override
+		public int read() throws IOException {
+			int readByte = super.read();
+			if (readByte >= 0) {
+				acquire(1);
+			}
+			return readByte;
+		}
+		
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int readBytes = super.read(buffer, offset, length);
+			if (readBytes > 0) {
+				acquire(readBytes);
+			}
+			return readBytes;
+		}
+	}
+}
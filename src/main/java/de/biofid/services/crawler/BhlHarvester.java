@@ -1,21 +1,26 @@
 package de.biofid.services.crawler;
 
-import static org.texttechnologylab.utilities.helper.RESTUtils.METHODS.GET;
-
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalLong;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 import org.apache.http.auth.AuthenticationException;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.texttechnologylab.utilities.helper.RESTUtils;
 
 import com.goebl.david.WebbException;
 
@@ -30,6 +35,10 @@ import com.goebl.david.WebbException;
 public class BhlHarvester extends Harvester {
 	
 	public static final String BHL_STRING = "BHL";
+	public static final String PENDING_ITEMS_FILE_NAME = "pending-items.txt";
+	public static final String PENDING_TITLES_FILE_NAME = "pending-titles.txt";
+	public static final String SHARED_ITEMS_FILE_NAME = "items.log";
+	public static final String SHARED_TITLES_FILE_NAME = "titles.log";
 
     private static final String API_KEY = "apikey";
     private static final String ABBYY_OCR_FILE_NAME_SUFFIX = "_abbyy.gz";
@@ -42,8 +51,18 @@ public class BhlHarvester extends Harvester {
     private static final String COLLECTION_ID = "CollectionID";
     private static final String COLLECTION_NAME = "CollectionName";
     
+    private static final String CONFIGURATION_CHECKPOINT_INTERVAL = "checkpoint-interval";
     private static final String CONFIGURATION_ITEM_LIST = "items";
+    private static final String CONFIGURATION_ITEM_ORDER = "item-order";
+    private static final String CONFIGURATION_LEASE_DURATION = "lease-duration-s";
+    private static final String CONFIGURATION_NODE_ID = "node-id";
+    private static final String CONFIGURATION_SHUFFLE_SEED = "shuffle-seed";
     private static final String CONFIGURATION_TITLE_LIST = "titles";
+    private static final String CONFIGURATION_WORK_QUEUE = "work-queue";
+    
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+    private static final long DEFAULT_LEASE_DURATION_IN_SECONDS = 600;
+    private static final long MAXIMUM_WORK_QUEUE_POLLING_INTERVAL_IN_MILLISECONDS = 5000;
     
     // BHL OAI Parameters
     // Documentation at https://www.biodiversitylibrary.org/docs/api3.html
@@ -75,8 +94,15 @@ public class BhlHarvester extends Harvester {
     private static final String REQUEST_UNAUTHORIZED = "Unauthorized";
     
     private String apiKey;
-    private List<Object> listOfItemsToDownload = new ArrayList<>();
-    private Iterator<Object> itemListIterator = null;
+    private int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    private OptionalLong claimedItemId = OptionalLong.empty();
+    private LongWorkQueue itemQueue = null;
+    private LongWorkQueue.Ordering itemOrdering = LongWorkQueue.Ordering.LISTED;
+    private int itemsSinceLastCheckpoint = 0;
+    private Random random;
+    private SharedWorkQueue sharedItemQueue = null;
+    private SharedWorkQueue sharedTitleQueue = null;
+    private LongWorkQueue titleQueue = null;
     
 	public BhlHarvester(Configuration configuration)
     		throws UnsetHarvesterBaseDirectoryException {
@@ -84,34 +110,27 @@ public class BhlHarvester extends Harvester {
     	
     	logger.info("Instantiating BHL Harvester");
     	
-    	JSONObject jsonConfiguration = configuration.getHarvesterJsonConfiguration();
-    	
     	apiKey = configuration.getHarvesterApiKey();
     	logger.info("Got API key: {}", apiKey);
     	
-    	if (jsonConfiguration.has(CONFIGURATION_ITEM_LIST)) {
-    		logger.info("Loading items...");
-    		
-    		listOfItemsToDownload = getListFromJsonKey(CONFIGURATION_ITEM_LIST, jsonConfiguration);
+    	JSONObject jsonConfiguration = configuration.getHarvesterJsonConfiguration();
+    	
+    	if (jsonConfiguration.has(CONFIGURATION_ITEM_ORDER)) {
+    		itemOrdering = LongWorkQueue.Ordering.fromString(jsonConfiguration.getString(CONFIGURATION_ITEM_ORDER));
     	}
     	
-    	if (jsonConfiguration.has(CONFIGURATION_TITLE_LIST)) {
-    		logger.info("Loading titles...");
-    		
-    		List<Object> titles = getListFromJsonKey(CONFIGURATION_TITLE_LIST, jsonConfiguration);
-    		List<Object> itemsExtractedFromTitle = new ArrayList<>();
-    		for (Object titleObj : titles) {
-    			long titleID = Long.parseLong(titleObj.toString());
-    			try {
-					itemsExtractedFromTitle.addAll(getItemsFromTitle(titleID));
-				} catch (ItemDoesNotExistException ex) {
-					logger.error("The given Title ID {} could not be found!", titleID);
-				} catch (AuthenticationException ex) {
-					logger.fatal(ex.getLocalizedMessage());
-				}
-    		}
-    		listOfItemsToDownload.addAll(itemsExtractedFromTitle);
+    	// A shuffled harvest can be repeated with the seed from the log
+    	long shuffleSeed = jsonConfiguration.optLong(CONFIGURATION_SHUFFLE_SEED, System.nanoTime());
+    	random = new Random(shuffleSeed);
+    	if (itemOrdering == LongWorkQueue.Ordering.SHUFFLED) {
+    		logger.info("Shuffling the items with seed {}", shuffleSeed);
     	}
+    	
+    	if (jsonConfiguration.has(CONFIGURATION_CHECKPOINT_INTERVAL)) {
+    		checkpointInterval = jsonConfiguration.getInt(CONFIGURATION_CHECKPOINT_INTERVAL);
+    	}
+    	
+    	// The items and titles are read when harvesting starts and titles are resolved when they are reached
     }
 
     /***
@@ -129,7 +148,7 @@ public class BhlHarvester extends Harvester {
         params.put(FORMAT, JSON_FORMAT);
         params.put(OPERATION, GET_COLLECTIONS);
 
-        JSONObject rObject = RESTUtils.getObjectFromRest(BHL_API_URL, GET, params);
+        JSONObject rObject = requestApi(params);
 
         if(rObject.has(REQUEST_STATUS) && rObject.getString(REQUEST_STATUS).equalsIgnoreCase(REQUEST_OK)) {
             JSONArray collectionsJSON = rObject.getJSONArray(REQUEST_RESULT);
@@ -183,7 +202,7 @@ public class BhlHarvester extends Harvester {
     	
     	JSONObject itemJson;
     	try {
-    		JSONObject apiResponse = RESTUtils.getObjectFromRest(BHL_API_URL, GET, params);
+    		JSONObject apiResponse = requestApi(params);
     		itemJson = getApiResultObject(apiResponse);	
     	} catch (ItemDoesNotExistException ex) {
     		throw new ItemDoesNotExistException("The item with the ID " + itemID + "could not be found!");
@@ -221,7 +240,7 @@ public class BhlHarvester extends Harvester {
             params.put(PAGE, currentPage);
 
             try {
-                JSONObject rObject = RESTUtils.getObjectFromRest(BHL_API_URL, GET, params);
+                JSONObject rObject = requestApi(params);
 
                 if (rObject.has(REQUEST_STATUS) && 
                 		rObject.getString(REQUEST_STATUS).equalsIgnoreCase(REQUEST_OK)) {
@@ -270,7 +289,7 @@ public class BhlHarvester extends Harvester {
         List<Long> itemsOfTitleList = new ArrayList<>();
         
         try {
-            JSONObject apiResponse = RESTUtils.getObjectFromRest(BHL_API_URL, GET, params);
+            JSONObject apiResponse = requestApi(params);
 
             if (apiResponse.has(REQUEST_STATUS) && 
             		apiResponse.getString(REQUEST_STATUS).equalsIgnoreCase(REQUEST_OK)) {
@@ -294,15 +313,34 @@ public class BhlHarvester extends Harvester {
 
     }
     
-    @SuppressWarnings({ "unchecked", "rawtypes" })
-	public List<Object> getListOfItems() {
-    	return new ArrayList(listOfItemsToDownload);
+    /***
+     * Resolves all configured items and titles to the list of item IDs to harvest, without duplicates.
+     * 
+     * All ID files are read and the items of all titles are requested from the API. Hence, this is meant to inspect
+     * small configurations. The harvest itself resolves a title only when it reaches it.
+     * @return The item IDs in the order they are listed, before the configured item order is applied.
+     */
+    public List<Long> getListOfItems() {
+    	LongWorkQueue items = new LongWorkQueue();
+    	LongWorkQueue titles = new LongWorkQueue();
+    	addConfiguredIds(items, CONFIGURATION_ITEM_LIST, shard);
+    	addConfiguredIds(titles, CONFIGURATION_TITLE_LIST, Shard.ALL);
+    	
+    	while (!titles.isEmpty()) {
+    		items.addAll(getIdsOfTitle(titles.poll()));
+    	}
+    	return Arrays.stream(items.snapshot()).boxed().collect(Collectors.toList());
     }
     
     public void setBhlApiKey(String apiKey) {
     	this.apiKey = apiKey;
     }
     
+    @Override
+    protected void closeItemSources() {
+    	closeSharedWorkQueues();
+    }
+    
     @Override
     protected String getFolderName() {
     	return BHL_STRING;
@@ -310,21 +348,22 @@ public class BhlHarvester extends Harvester {
     
     @Override
     protected boolean nextItem(Item item) {
-    	if (itemListIterator == null) {
+    	if (itemQueue == null) {
     		logger.info("Starting BHL download...");
-    		itemListIterator = listOfItemsToDownload.iterator();
+    		loadWorkQueues();
     	}
     	
-    	while (itemListIterator.hasNext()) {
-    		Object itemObj = itemListIterator.next();
-    		long itemId = Long.parseLong(itemObj.toString());
+    	for (OptionalLong nextItemId = takeNextItemId(); nextItemId.isPresent(); nextItemId = takeNextItemId()) {
+    		long itemId = nextItemId.getAsLong();
     		
     		logger.info("Processing item ID {}", itemId);
+    		HarvestEvents.setItemId(itemId);
     		
     		try {
 				JSONObject itemMetadata = getItemMetadata(itemId);
 				logger.debug("Received metadata!");
-				logger.debug("Metadata Set: {}", itemMetadata.toString(2));
+				// Pretty printing the metadata is costly, so it is only done if debug messages are logged
+				logger.debug("Metadata Set: {}", () -> itemMetadata.toString(2));
 				
 				if (isReferencingExternalResource(itemMetadata)) {
 					String externalResourceNameString = getExternalResourceNameString(itemMetadata);
@@ -335,23 +374,85 @@ public class BhlHarvester extends Harvester {
 					// Item ID has to be the BHL ID, not an external!
 					item.setItemId(itemId);
 				} else {
+					HarvestEvents.CitationParse parseEvent = new HarvestEvents.CitationParse();
+					parseEvent.begin();
 					addMetadataToItem(item, itemMetadata);
+					parseEvent.commitTagged();
 				}
 				
 				return true;
 				
 			} catch (ItemDoesNotExistException ex) {
 				logger.error("The requested item (ID {}) does not exist!", itemId);
+				progressTracker.recordFailedItem();
 			} catch (AuthenticationException ex) {
 				logger.fatal("The given API key is invalid!");
 				return false;
 			}
     	}
     	
+    	if (sharedItemQueue != null) {
+    		closeSharedWorkQueues();
+    	} else if (checkpointInterval > 0) {
+    		writeCheckpoint();
+    	}
+    	
     	logger.info("Processing items complete!");
 		return false;
     }
     
+    /***
+     * Reads the configured item and title IDs into the work queues and puts them into the configured order,
+     * as done when the harvest starts.
+     */
+    void loadWorkQueues() {
+    	itemQueue = new LongWorkQueue();
+    	titleQueue = new LongWorkQueue();
+    	addConfiguredIds(itemQueue, CONFIGURATION_ITEM_LIST, shard);
+    	// Every shard resolves all titles, but only harvests its part of their items
+    	addConfiguredIds(titleQueue, CONFIGURATION_TITLE_LIST, Shard.ALL);
+    	itemQueue.order(itemOrdering, random);
+    	titleQueue.order(itemOrdering, random);
+    	
+    	logger.info("Loaded {} items and {} titles", itemQueue.size(), titleQueue.size());
+    	if (configuration.getHarvesterJsonConfiguration().has(CONFIGURATION_WORK_QUEUE)) {
+    		openSharedWorkQueues();
+    		return;
+    	}
+    	
+    	progressTracker.addDiscoveredItems(itemQueue.size());
+    	if (titleQueue.isEmpty()) {
+    		progressTracker.setTotalNumberOfItems(itemQueue.size());
+    	}
+    }
+    
+    /***
+     * Writes the pending item and title IDs into the working directory. If a harvest is aborted, it can be
+     * continued by configuring these files as items and titles.
+     */
+    void writeCheckpoint() {
+    	try {
+    		itemQueue.writeSnapshot(getWorkingDirectory().resolve(shard.appendToFileName(PENDING_ITEMS_FILE_NAME)));
+    		titleQueue.writeSnapshot(getWorkingDirectory().resolve(shard.appendToFileName(PENDING_TITLES_FILE_NAME)));
+    	} catch (IOException ex) {
+    		logger.warn("Could not write the checkpoint of the pending items! {}", ex.getMessage());
+    	}
+    }
+    
+    /***
+     * Appends the IDs configured for the given key, which belong to the given shard, to the given queue.
+     */
+    private void addConfiguredIds(LongWorkQueue queue, String jsonKey, Shard shardOfIds) {
+    	PrimitiveIterator.OfLong configuredIds = getIdsFromJsonKey(jsonKey);
+    	try {
+    		queue.addAll(shardOfIds.filter(configuredIds));
+    	} finally {
+    		if (configuredIds instanceof LongIdFileReader) {
+    			((LongIdFileReader) configuredIds).close();
+    		}
+    	}
+    }
+    
     private void addMetadataToItem(Item item, JSONObject itemMetadata) {
     	long itemID = itemMetadata.getLong(ITEM_ID);
     	logger.debug("Processing Item ID {}", itemID);
@@ -398,32 +499,112 @@ public class BhlHarvester extends Harvester {
     			internetArchiveId + ABBYY_OCR_FILE_NAME_SUFFIX;
     }
     
-	private List<Object> getListFromJsonKey(String jsonKey, JSONObject jsonConfiguration) {
-    	if (!jsonConfiguration.has(jsonKey)) {
-    		return new ArrayList<>(0);
+    /***
+     * Claims the next item from the shared work queue and completes the item claimed before, which was harvested
+     * meanwhile. If no item is available, the next title is resolved. If all remaining items and titles are
+     * leased by other instances, this waits until they are completed or their leases expire.
+     * @return The claimed item ID. None, if all items of the queue were completed.
+     */
+    private OptionalLong claimSharedItemId() {
+    	long pollingIntervalInMilliseconds = Math.min(MAXIMUM_WORK_QUEUE_POLLING_INTERVAL_IN_MILLISECONDS, 
+    			Math.max(1, sharedItemQueue.getLeaseDurationInMilliseconds() / 4));
+    	try {
+    		if (claimedItemId.isPresent()) {
+    			sharedItemQueue.complete(claimedItemId.getAsLong());
+    			claimedItemId = OptionalLong.empty();
+    		}
+    		
+    		while (true) {
+    			OptionalLong itemId = sharedItemQueue.claim();
+    			if (itemId.isPresent()) {
+    				claimedItemId = itemId;
+    				progressTracker.addDiscoveredItems(1);
+    				return itemId;
+    			}
+    			
+    			OptionalLong titleId = sharedTitleQueue.claim();
+    			if (titleId.isPresent()) {
+    				long numberOfNewItems = sharedItemQueue.publish(getIdsOfTitle(titleId.getAsLong()));
+    				logger.info("Published {} items of title {}", numberOfNewItems, titleId.getAsLong());
+    				sharedTitleQueue.complete(titleId.getAsLong());
+    			} else if (sharedItemQueue.isFinished() && sharedTitleQueue.isFinished()) {
+    				return OptionalLong.empty();
+    			} else {
+    				logger.debug("Waiting for the items leased by other instances");
+    				Thread.sleep(pollingIntervalInMilliseconds);
+    			}
+    		}
+    	} catch (IOException ex) {
+    		logger.fatal("Could not access the shared work queue! {}", ex.getMessage());
+    	} catch (InterruptedException ex) {
+    		Thread.currentThread().interrupt();
     	}
+    	return OptionalLong.empty();
+    }
+    
+    /***
+     * Gives the items not harvested yet back to the shared work queues.
+     */
+    private void closeSharedWorkQueues() {
+    	for (SharedWorkQueue sharedWorkQueue : Arrays.asList(sharedItemQueue, sharedTitleQueue)) {
+    		if (sharedWorkQueue == null) {
+    			continue;
+    		}
+    		
+    		try {
+    			sharedWorkQueue.close();
+    		} catch (IOException ex) {
+    			logger.warn("Could not release the leases of the shared work queue! {}", ex.getMessage());
+    		}
+    	}
+    }
+    
+    /***
+     * Returns the IDs configured for the given key, either listed in the configuration or in a file.
+     */
+	private PrimitiveIterator.OfLong getIdsFromJsonKey(String jsonKey) {
+		JSONObject jsonConfiguration = configuration.getHarvesterJsonConfiguration();
+    	Object idValue = jsonConfiguration.opt(jsonKey);
     	
-    	Object itemValue = jsonConfiguration.get(jsonKey);
-    	
-    	if (itemValue instanceof String) {
-    		return getListFromFile((String) itemValue);
-    	} else if (itemValue instanceof JSONArray) {
-    		JSONArray jsonArray = (JSONArray) itemValue;
+    	if (idValue instanceof String) {
+    		return getIdsFromFile((String) idValue);
+    	} else if (idValue instanceof JSONArray && ((JSONArray) idValue).length() > 0) {
+    		JSONArray jsonArray = (JSONArray) idValue;
     		
     		Object firstElement = jsonArray.get(0);
     		if (firstElement instanceof String && FileHandler.isStringPathOrFile((String) firstElement)) {
-    			return getListFromFile((String) firstElement);
+    			return getIdsFromFile((String) firstElement);
     		} else {
-    			return jsonArray.toList();
+    			return IntStream.range(0, jsonArray.length())
+    					.mapToLong(index -> Long.parseLong(jsonArray.get(index).toString())).iterator();
     		}
     	}
     	
-    	return new ArrayList<>(0);
+    	return LongStream.empty().iterator();
     }
     
-    @SuppressWarnings({ "unchecked", "rawtypes" })
-	private List<Object> getListFromFile(String filePath) {
-    	return (List) FileHandler.readListFromFile(filePath);
+    private PrimitiveIterator.OfLong getIdsFromFile(String filePath) {
+    	try {
+    		return new LongIdFileReader(Paths.get(filePath));
+    	} catch (IOException ex) {
+    		logger.error("Could not read the ID file {}! {}", filePath, ex.getMessage());
+    		return LongStream.empty().iterator();
+    	}
+    }
+    
+    /***
+     * Returns the items of the given title in the shard of this harvester, requested from the API.
+     * @return The item IDs of the title. None, if the title does not exist or could not be requested.
+     */
+    private PrimitiveIterator.OfLong getIdsOfTitle(long titleId) {
+    	try {
+    		return shard.filter(getItemsFromTitle(titleId).stream().mapToLong(Long::longValue).iterator());
+    	} catch (ItemDoesNotExistException ex) {
+    		logger.error("The given Title ID {} could not be found!", titleId);
+    	} catch (AuthenticationException ex) {
+    		logger.fatal(ex.getLocalizedMessage());
+    	}
+    	return LongStream.empty().iterator();
     }
     
     private void handleWebbException(WebbException ex) throws AuthenticationException {
@@ -434,6 +615,19 @@ public class BhlHarvester extends Harvester {
 		}
     }
     
+    /***
+     * Checks if an item is pending. If all items were taken, the next titles are resolved until one of them
+     * adds new items.
+     */
+    private boolean hasNextItemId() {
+    	while (itemQueue.isEmpty() && !titleQueue.isEmpty()) {
+    		int numberOfNewItems = itemQueue.addAll(getIdsOfTitle(titleQueue.poll()));
+    		itemQueue.order(itemOrdering, random);
+    		progressTracker.addDiscoveredItems(numberOfNewItems);
+    	}
+    	return !itemQueue.isEmpty();
+    }
+    
     private boolean isReferencingExternalResource(JSONObject itemMetadata) {
     	String itemSource = getExternalResourceNameString(itemMetadata);
     	if (itemSource.contains(BibDigitalHarvester.BIBDIGITAL_BOTANICAL_GARDEN_MADRID_STRING)) {
@@ -444,12 +638,44 @@ public class BhlHarvester extends Harvester {
     	return false;
     }
     
+    /***
+     * Publishes the loaded items and titles to the configured shared work queue, from which this instance and
+     * all others sharing it claim the items to harvest. The local queues are emptied.
+     */
+    private void openSharedWorkQueues() {
+    	JSONObject jsonConfiguration = configuration.getHarvesterJsonConfiguration();
+    	Path workQueueDirectory = Paths.get(jsonConfiguration.getString(CONFIGURATION_WORK_QUEUE));
+    	String nodeId = jsonConfiguration.optString(CONFIGURATION_NODE_ID, SharedWorkQueue.getDefaultNodeId());
+    	long leaseDurationInMilliseconds = 1000 * jsonConfiguration.optLong(CONFIGURATION_LEASE_DURATION, 
+    			DEFAULT_LEASE_DURATION_IN_SECONDS);
+    	
+    	try {
+    		sharedItemQueue = new SharedWorkQueue(workQueueDirectory.resolve(SHARED_ITEMS_FILE_NAME), nodeId, 
+    				leaseDurationInMilliseconds);
+    		sharedTitleQueue = new SharedWorkQueue(workQueueDirectory.resolve(SHARED_TITLES_FILE_NAME), nodeId, 
+    				leaseDurationInMilliseconds);
+    		long numberOfNewItems = sharedItemQueue.publish(Arrays.stream(itemQueue.snapshot()).iterator());
+    		long numberOfNewTitles = sharedTitleQueue.publish(Arrays.stream(titleQueue.snapshot()).iterator());
+    		logger.info("Published {} items and {} titles to the shared work queue {} as node {}", 
+    				numberOfNewItems, numberOfNewTitles, workQueueDirectory, nodeId);
+    	} catch (IOException ex) {
+    		logger.fatal("Could not open the shared work queue {}! {}", workQueueDirectory, ex.getMessage());
+    		closeSharedWorkQueues();
+    		sharedItemQueue = null;
+    		sharedTitleQueue = null;
+    	}
+    	
+    	itemQueue = new LongWorkQueue();
+    	titleQueue = new LongWorkQueue();
+    }
+    
     private Item processExternalResource(JSONObject itemMetadata, String externalResourceName) {  
     	Configuration configuration = getDefaultHarvesterConfiguration();
     	try {
 	    	if (externalResourceName.contains(BibDigitalHarvester.BIBDIGITAL_BOTANICAL_GARDEN_MADRID_STRING)) {
     			logger.debug("Creating harvester for BibDigital Madrid...");
 				BibDigitalHarvester harvester = new BibDigitalHarvester(configuration);
+				harvester.httpFetcher = httpFetcher;
 				URL itemUrl = new URL(itemMetadata.getString(EXTERNAL_URL));
 				
 				logger.debug("Adding URL {} to harvest...", itemUrl);
@@ -473,6 +699,39 @@ public class BhlHarvester extends Harvester {
     	return null;
     }
  
+    /***
+     * Calls the BHL API with the given parameters.
+     * Failed requests are reported as WebbException, so the callers handle them like all other API errors.
+     */
+    private JSONObject requestApi(Map<String, Object> params) {
+    	try {
+    		return httpFetcher.getJsonObject(BHL_API_URL, params);
+    	} catch (HttpStatusException ex) {
+    		throw new WebbException(ex.getStatusLine() != null ? ex.getStatusLine() : ex.getMessage(), ex);
+    	} catch (IOException ex) {
+    		throw new WebbException(ex);
+    	}
+    }
+    
+    /***
+     * Takes the next item to harvest, either from the local work queues or from the shared one.
+     * @return The item ID. None, if all items were taken.
+     */
+    private OptionalLong takeNextItemId() {
+    	if (sharedItemQueue != null) {
+    		return claimSharedItemId();
+    	}
+    	
+    	if (!hasNextItemId()) {
+    		return OptionalLong.empty();
+    	}
+    	
+    	if (checkpointInterval > 0 && itemsSinceLastCheckpoint++ % checkpointInterval == 0) {
+    		writeCheckpoint();
+    	}
+    	return OptionalLong.of(itemQueue.poll());
+    }
+    
     class ItemDoesNotExistException extends IOException {
     	
 		private static final long serialVersionUID = 5468828339593866141L;
@@ -481,4 +740,4 @@ public class BhlHarvester extends Harvester {
     		super(s);
     	}
     }
-}
+}
\ No newline at end of file
@@ -2,11 +2,25 @@ package de.biofid.services.crawler;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
-import org.jsoup.Jsoup;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
@@ -27,11 +41,22 @@ public class BibDigitalHarvester extends Harvester {
 	private static final String ATTRIBUTE_HREF = "href";
 	
 	private static final String BIB_DIGITAL_BASE_URL = "https://bibdigital.rjb.csic.es";
+	private static final String CATALOGUE_LISTING_URL_TEMPLATE = BIB_DIGITAL_BASE_URL + "/en/records/search/?page=";
 	
 	private static final String CLASS_DOWNLOADABLE_FILES_STRING = "attachedfiles";
 	private static final String CLASS_KEY_STRING = "key";
 	private static final String CLASS_VALUE_STRING = "value";
 	
+	private static final String CONFIGURATION_CATALOGUE = "catalogue";
+	private static final String CONFIGURATION_CATALOGUE_URL = "catalogue-url";
+	private static final String CONFIGURATION_ITEM_LIST = "items";
+	private static final String CONFIGURATION_PARALLEL_REQUESTS = "parallel-requests";
+	
+	private static final int DEFAULT_PARALLEL_REQUESTS = 4;
+	
+	private static final int MAXIMUM_CONSECUTIVE_FAILED_LISTING_PAGES = 3;
+	private static final int MAXIMUM_NUMBER_OF_PREFETCHED_ITEMS = 32;
+	
 	private static final String FULL_PDF_STRING = "Full PDF";
 	
 	private static final String ITEM_URL_SUFFIX_STRING = "-redirection";
@@ -41,6 +66,10 @@ public class BibDigitalHarvester extends Harvester {
 	private static final String METADATA_PUBLICATION_DATE = "Date";
 	private static final String METADATA_TITLE_CONTAINER_ID = "single";
 	
+	private static final Pattern REGEX_PATTERN_ITEM_ID_IN_URL = Pattern.compile("/records/item/([0-9]+)");
+	
+	private static final String SELECTOR_HYPERLINKS = "a[href]";
+	
 	private static final String TAG_NAME_CONTAINING_METADATA = "tr";
 	private static final String TAG_NAME_LIST_ELEMENT = "li";
 	private static final String TAG_NAME_H1 = "h1";
@@ -48,8 +77,40 @@ public class BibDigitalHarvester extends Harvester {
 	private List<Object> listOfItemsToDownload = new ArrayList<>();
 	private Iterator<Object> itemIterator = null;
 	
+	private boolean isCatalogueCrawlEnabled = false;
+	private boolean isCatalogueExhausted = false;
+	private String catalogueListingUrlTemplate = CATALOGUE_LISTING_URL_TEMPLATE;
+	private Queue<Long> catalogueItemQueue = new ArrayDeque<>();
+	private Set<Long> catalogueItemsSeen = new HashSet<>();
+	private int numberOfConsecutiveFailedListingPages = 0;
+	private int nextCataloguePage = 1;
+	private long numberOfCatalogueItemsInShard = 0;
+	private volatile int numberOfParallelRequests = DEFAULT_PARALLEL_REQUESTS;
+	private long nextRequestSlotInMilliseconds = 0;
+	private ThreadPoolExecutor listingExecutor = null;
+	private Queue<PrefetchedItem> prefetchedItems = new ArrayDeque<>();
+	
 	public BibDigitalHarvester(Configuration configuration) throws UnsetHarvesterBaseDirectoryException {
 		super(configuration);
+		
+		JSONObject jsonConfiguration = configuration.getHarvesterJsonConfiguration();
+		
+		if (jsonConfiguration.has(CONFIGURATION_ITEM_LIST)) {
+			JSONArray itemListFromConfiguration = jsonConfiguration.getJSONArray(CONFIGURATION_ITEM_LIST);
+			listOfItemsToDownload.addAll(itemListFromConfiguration.toList());
+		}
+		
+		if (jsonConfiguration.has(CONFIGURATION_CATALOGUE)) {
+			isCatalogueCrawlEnabled = jsonConfiguration.getBoolean(CONFIGURATION_CATALOGUE);
+		}
+		
+		if (jsonConfiguration.has(CONFIGURATION_CATALOGUE_URL)) {
+			catalogueListingUrlTemplate = jsonConfiguration.getString(CONFIGURATION_CATALOGUE_URL);
+		}
+		
+		if (jsonConfiguration.has(CONFIGURATION_PARALLEL_REQUESTS)) {
+			numberOfParallelRequests = Math.max(1, jsonConfiguration.getInt(CONFIGURATION_PARALLEL_REQUESTS));
+		}
 	}
 	
 	public void addItemsToCollect(List<String> itemList) {
@@ -63,48 +124,132 @@ public class BibDigitalHarvester extends Harvester {
 	}
 	
 	public Document getDocumentFromUrl(String url) throws IOException {
-		return Jsoup.connect(url).get();
+		return httpFetcher.getDocument(url);
 	}
-
+	
+	@Override
+	public int getMaximumParallelRequests() {
+		return numberOfParallelRequests;
+	}
+	
+	@Override
+	public boolean isConcurrencyAdjustable() {
+		return true;
+	}
+	
+	/***
+	 * Walk the record listings of the whole catalogue instead of the items given explicitly.
+	 * 
+	 * The listing pages are requested in batches of the configured number of parallel requests. All requests
+	 * are spaced by the request delay of this harvester, so the parallelism only hides the response latency.
+	 * @param isCatalogueCrawlEnabled True, if all items listed in the catalogue should be harvested.
+	 */
+	public void setCatalogueCrawlEnabled(boolean isCatalogueCrawlEnabled) {
+		this.isCatalogueCrawlEnabled = isCatalogueCrawlEnabled;
+	}
+	
+	/***
+	 * Changes the number of listing pages requested in parallel. A running catalogue crawl picks it up with
+	 * its next batch of listing pages.
+	 * @throws IllegalArgumentException If the number is smaller than 1.
+	 */
+	@Override
+	public void setMaximumParallelRequests(int numberOfParallelRequests) {
+		if (numberOfParallelRequests < 1) {
+			throw new IllegalArgumentException("At least one request has to be allowed!");
+		}
+		this.numberOfParallelRequests = numberOfParallelRequests;
+	}
+	
+	/***
+	 * Extracts all item IDs referenced on a single record listing page.
+	 * @param listingPage The HTML document of a listing page.
+	 * @return The item IDs in the order of their appearance. Every ID is contained only once.
+	 */
+	public Set<Long> extractItemIdsFromListingPage(Document listingPage) {
+		Set<Long> itemIds = new LinkedHashSet<>();
+		for (Element hyperlink : listingPage.select(SELECTOR_HYPERLINKS)) {
+			Matcher itemIdMatcher = REGEX_PATTERN_ITEM_ID_IN_URL.matcher(hyperlink.attr(ATTRIBUTE_HREF));
+			if (itemIdMatcher.find()) {
+				itemIds.add(Long.parseLong(itemIdMatcher.group(1)));
+			}
+		}
+		
+		return itemIds;
+	}
+	
 	@Override
 	protected String getFolderName() {
 		return BIB_DIGITAL_HARVESTER;
 	}
-
+	
 	@Override
 	protected boolean nextItem(Item item) {
 		if (itemIterator == null) {
+			listOfItemsToDownload.removeIf(itemObj -> !shard.contains(itemObj.toString()));
 			itemIterator = listOfItemsToDownload.iterator();
+			if (isCatalogueCrawlEnabled) {
+				// The catalogue items are only known, when the listing is exhausted
+				progressTracker.addDiscoveredItems(listOfItemsToDownload.size());
+			} else {
+				progressTracker.setTotalNumberOfItems(listOfItemsToDownload.size());
+			}
 		}
 		
-		while (itemIterator.hasNext()) {
-			Object itemObj = itemIterator.next();
-			long itemId = Long.parseLong(itemObj.toString());
+		// When reprocessing, the pages of the following items are parsed while this one is processed
+		int numberOfPrefetchedItems = isParsingItemsConcurrently() ? MAXIMUM_NUMBER_OF_PREFETCHED_ITEMS : 1;
+		while (true) {
+			while (prefetchedItems.size() < numberOfPrefetchedItems) {
+				Long itemId = nextItemId();
+				if (itemId == null) {
+					break;
+				}
+				prefetchedItems.add(new PrefetchedItem(itemId, 
+						submitItemParsing(itemId, () -> getItemMetadata(itemId))));
+			}
 			
-			logger.info("Processing item ID {}", itemId);
+			PrefetchedItem prefetchedItem = prefetchedItems.poll();
+			if (prefetchedItem == null) {
+				break;
+			}
 			
 			try {
-				Metadata metadata = getItemMetadata(itemId);
+				Metadata metadata = prefetchedItem.metadata.get();
 				logger.debug("Found metadata!\n{}", metadata);
 				
 				addMetadataToItem(item, metadata);
 				return true;
-			} catch (IOException ex) {
-				logger.warn("An error happend while processing item ID {}\n{} ", itemId, ex.getLocalizedMessage());
+			} catch (ExecutionException ex) {
+				logger.warn("An error happend while processing item ID {}\n{} ", prefetchedItem.itemId,
+						ex.getCause().getLocalizedMessage());
+				progressTracker.recordFailedItem();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				logger.warn("Interrupted while processing item ID {}", prefetchedItem.itemId);
+				break;
 			}
 		}
 		
+		cancelPrefetchedItems();
+		shutdownListingExecutor();
+		
 		return false;
 	}
 	
+	@Override
+	protected void closeItemSources() {
+		cancelPrefetchedItems();
+		shutdownListingExecutor();
+	}
+	
 	private void addMetadataToItem(Item item, Metadata itemMetadata) {
     	long itemID = itemMetadata.getItemID();
     	logger.debug("Processing Item ID {}", itemID);
-    	
+		
 		item.setDataSource(BIBDIGITAL_BOTANICAL_GARDEN_MADRID_STRING);
 		item.addTextFileUrl(itemMetadata.getPdfURL().toString(), Item.FileType.PDF);
 		item.setItemId(itemID);
-	
+		
 		try {
 			item.addMetdata(ITEM_COMPLETE_METADATA, toJsonObject(itemMetadata));
 		} catch (JsonProcessingException ex) {
@@ -112,6 +257,37 @@ public class BibDigitalHarvester extends Harvester {
 		}
     }
 	
+	/***
+	 * Blocks until the next request may be sent without violating the request delay.
+	 * 
+	 * This is shared by all listing threads, so the harvester never sends more than one request per delay.
+	 */
+	private synchronized void awaitRequestSlot() {
+		long now = System.currentTimeMillis();
+		long waitingTime = nextRequestSlotInMilliseconds - now;
+		
+		if (waitingTime > 0) {
+			try {
+				Thread.sleep(waitingTime);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		nextRequestSlotInMilliseconds = Math.max(now, nextRequestSlotInMilliseconds) + millisecondsDelayBetweenRequests;
+	}
+	
+	private void cancelPrefetchedItems() {
+		for (PrefetchedItem prefetchedItem : prefetchedItems) {
+			prefetchedItem.metadata.cancel(true);
+		}
+		prefetchedItems.clear();
+	}
+	
+	private String constructCatalogueListingUrlString(int pageNumber) {
+		return catalogueListingUrlTemplate + pageNumber;
+	}
+	
 	private String constructItemUrlString(long itemId) {
 		return ITEM_URL_TEMPLATE + itemId + ITEM_URL_SUFFIX_STRING;
 	}
@@ -172,10 +348,89 @@ public class BibDigitalHarvester extends Harvester {
 		throw new PdfNotAvailableException("The PDF file could not be found!");
 	}
 	
+	/***
+	 * Requests the next batch of listing pages in parallel and queues all item IDs not seen before.
+	 * 
+	 * The batch is evaluated in page order. The first page that does not yield any new item or does not exist
+	 * (404) marks the end of the catalogue. A page that could not be fetched otherwise is logged and skipped, but
+	 * the crawl ends after {@value #MAXIMUM_CONSECUTIVE_FAILED_LISTING_PAGES} failed pages in a row.
+	 */
+	private void fetchNextCatalogueListingPages() {
+		int batchSize = numberOfParallelRequests;
+		if (listingExecutor == null) {
+			logger.info("Starting BibDigital catalogue crawl with {} parallel requests...", batchSize);
+			listingExecutor = new ThreadPoolExecutor(batchSize, batchSize, 0, TimeUnit.MILLISECONDS, 
+					new LinkedBlockingQueue<>());
+		} else if (listingExecutor.getCorePoolSize() != batchSize) {
+			logger.info("Continuing BibDigital catalogue crawl with {} parallel requests...", batchSize);
+			resizeListingExecutor(batchSize);
+		}
+		
+		List<Future<Set<Long>>> listingPages = new ArrayList<>();
+		for (int i = 0; i < batchSize; ++i) {
+			listingPages.add(listingExecutor.submit(new ListingPageTask(nextCataloguePage++)));
+		}
+		
+		for (Future<Set<Long>> listingPage : listingPages) {
+			if (isCatalogueExhausted) {
+				listingPage.cancel(true);
+				continue;
+			}
+			
+			Set<Long> itemIds;
+			try {
+				itemIds = listingPage.get();
+			} catch (ExecutionException ex) {
+				if (ex.getCause() instanceof HttpStatusException 
+						&& ((HttpStatusException) ex.getCause()).getStatusCode() == 404) {
+					logger.info("The catalogue listing page {} does not exist!", 
+							((HttpStatusException) ex.getCause()).getUrl());
+					markCatalogueExhausted();
+					continue;
+				}
+				
+				logger.error("Could not fetch catalogue listing page!\n{}", ex.getCause().getLocalizedMessage());
+				if (++numberOfConsecutiveFailedListingPages >= MAXIMUM_CONSECUTIVE_FAILED_LISTING_PAGES) {
+					logger.error("Stopping the catalogue crawl after {} failed listing pages in a row!", 
+							numberOfConsecutiveFailedListingPages);
+					markCatalogueExhausted();
+				}
+				continue;
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				isCatalogueExhausted = true;
+				continue;
+			}
+			
+			numberOfConsecutiveFailedListingPages = 0;
+			int numberOfNewItems = 0;
+			for (long itemId : itemIds) {
+				if (catalogueItemsSeen.add(itemId)) {
+					++numberOfNewItems;
+					// Every shard walks the whole listing, but only harvests its part of the items
+					if (shard.contains(itemId)) {
+						catalogueItemQueue.add(itemId);
+						++numberOfCatalogueItemsInShard;
+						progressTracker.addDiscoveredItems(1);
+					}
+				}
+			}
+			
+			if (numberOfNewItems == 0) {
+				markCatalogueExhausted();
+			}
+		}
+	}
+	
 	private Metadata getItemMetadata(long itemId) throws IOException {
+		HarvestEvents.setItemId(itemId);
 		String itemUrlString = constructItemUrlString(itemId);
 		Document itemHtmlDocument = getDocumentFromUrl(itemUrlString);
+		
+		HarvestEvents.CitationParse parseEvent = new HarvestEvents.CitationParse();
+		parseEvent.begin();
 		Metadata metadata = extractItemMetadataFromHtmlDocument(itemId, itemHtmlDocument);
+		parseEvent.commitTagged();
 		
 		metadata.setItemUrl(itemUrlString);
 		
@@ -186,15 +441,95 @@ public class BibDigitalHarvester extends Harvester {
 		return document.getElementsByTag(TAG_NAME_CONTAINING_METADATA);
 	}
 	
+	private void markCatalogueExhausted() {
+		logger.info("Catalogue listing exhausted! Found {} items.", catalogueItemsSeen.size());
+		isCatalogueExhausted = true;
+		progressTracker.setTotalNumberOfItems(listOfItemsToDownload.size() + numberOfCatalogueItemsInShard);
+	}
+	
+	/***
+	 * Returns the ID of the next item to harvest, either given explicitly or found in the catalogue listing.
+	 * @return The item ID. Null, if there are no more items.
+	 */
+	private Long nextItemId() {
+		if (itemIterator.hasNext()) {
+			long itemId = Long.parseLong(itemIterator.next().toString());
+			logger.info("Processing item ID {}", itemId);
+			return itemId;
+		}
+		
+		while (isCatalogueCrawlEnabled) {
+			if (catalogueItemQueue.isEmpty()) {
+				if (isCatalogueExhausted) {
+					break;
+				}
+				fetchNextCatalogueListingPages();
+				continue;
+			}
+			
+			long itemId = catalogueItemQueue.poll();
+			logger.info("Processing catalogue item ID {}", itemId);
+			return itemId;
+		}
+		
+		return null;
+	}
+	
+	private void resizeListingExecutor(int poolSize) {
+		// The core size must never exceed the maximum size in between
+		if (poolSize > listingExecutor.getMaximumPoolSize()) {
+			listingExecutor.setMaximumPoolSize(poolSize);
+			listingExecutor.setCorePoolSize(poolSize);
+		} else {
+			listingExecutor.setCorePoolSize(poolSize);
+			listingExecutor.setMaximumPoolSize(poolSize);
+		}
+	}
+	
+	private void shutdownListingExecutor() {
+		if (listingExecutor != null) {
+			listingExecutor.shutdownNow();
+			listingExecutor = null;
+		}
+	}
+	
 	private class BibDigitalCitation extends Citation {
 		
 	}
 	
+	private class ListingPageTask implements Callable<Set<Long>> {
+		private final int pageNumber;
+		
+		ListingPageTask(int pageNumber) {
+			this.pageNumber = pageNumber;
+		}
+		
+		@Override
+		public Set<Long> call() throws IOException {
+			awaitRequestSlot();
+			
+			String listingUrl = constructCatalogueListingUrlString(pageNumber);
+			logger.debug("Fetching catalogue listing page {}", listingUrl);
+			
+			return extractItemIdsFromListingPage(getDocumentFromUrl(listingUrl));
+		}
+	}
+	
 	private class PdfNotAvailableException extends IOException {
 		private static final long serialVersionUID = 7269829332901886792L;
-
+		
 		public PdfNotAvailableException(String msg) {
 			super(msg);
 		}
 	}
+	
+	private static class PrefetchedItem {
+		private final long itemId;
+		private final Future<Metadata> metadata;
+		
+		PrefetchedItem(long itemId, Future<Metadata> metadata) {
+			this.itemId = itemId;
+			this.metadata = metadata;
+		}
+	}
 }
@@ -0,0 +1,149 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/***
+ * A content-addressed store for downloaded text files.
+ * 
+ * Every distinct content is stored exactly once under its SHA-256 digest (e.g. blobs/ab/cd/abcd...).
+ * The per-item file paths are hard links to these blobs. If the file system does not support hard links
+ * between the item directory and the store, a symbolic link is created instead. Only if this fails, too,
+ * the blob is copied.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class BlobStore {
+	
+	public static final String BLOB_STORE_FOLDER_NAME = "blobs";
+	
+	private static final String INCOMING_FOLDER_NAME = "incoming";
+	private static final int SHARD_PREFIX_LENGTH = 2;
+	
+	private static final Logger logger = LogManager.getLogger(LiteratureHarvester.LOGGER_NAME);
+	
+	private Path rootDirectory;
+	
+	public BlobStore(Path rootDirectory) {
+		this.rootDirectory = rootDirectory;
+	}
+	
+	/***
+	 * Downloads the given URL into the store and links the blob to the given item file path.
+	 * 
+	 * If the store holds the same content already, the download is discarded and only the link is created.
+	 * @param sourceUrl The URL to download.
+	 * @param itemFilePath The per-item path that should point to the content.
+	 * @return The item file with the digest and size of its content.
+	 * @throws IOException
+	 */
+	public DownloadedFile download(URL sourceUrl, Path itemFilePath) throws IOException {
+		return download(sourceUrl, itemFilePath, null);
+	}
+	
+	/***
+	 * Downloads the given URL into the store, compresses it and links the blob to the given item file path.
+	 * 
+	 * Compressed blobs carry the suffix of their compression, so they never collide with an uncompressed
+	 * blob of the same content.
+	 * @param sourceUrl The URL to download.
+	 * @param itemFilePath The per-item path that should point to the content.
+	 * @param compression How to compress the blob. Null, to store the content as received.
+	 * @return The item file with the digest and size of the received content.
+	 * @throws IOException
+	 */
+	public DownloadedFile download(URL sourceUrl, Path itemFilePath, CompressionSetting compression) 
+			throws IOException {
+		return download(sourceUrl, itemFilePath, compression, null);
+	}
+	
+	/***
+	 * Downloads the given URL into the store like {@link #download(URL, Path, CompressionSetting)}, receiving
+	 * it no faster than the given limiter allows.
+	 * @param bandwidthLimiter The limiter to read the response with. Null, to read it as fast as possible.
+	 */
+	public DownloadedFile download(URL sourceUrl, Path itemFilePath, CompressionSetting compression, 
+			BandwidthLimiter bandwidthLimiter) throws IOException {
+		Path incomingDirectory = rootDirectory.resolve(INCOMING_FOLDER_NAME);
+		Files.createDirectories(incomingDirectory);
+		
+		DownloadedFile temporaryFile = FileDownloader.downloadToTemporaryFile(sourceUrl, incomingDirectory, compression, 
+				bandwidthLimiter);
+		Path blobPath = store(temporaryFile.getFilePath(), getBlobPath(temporaryFile.getSha256(), compression));
+		link(blobPath, itemFilePath);
+		
+		return temporaryFile.withFilePath(itemFilePath);
+	}
+	
+	public Path getBlobPath(String sha256) {
+		return getBlobPath(sha256, null);
+	}
+	
+	public Path getBlobPath(String sha256, CompressionSetting compression) {
+		String blobFileName = sha256;
+		if (compression != null) {
+			blobFileName += "." + compression.getFileSuffix();
+		}
+		
+		return rootDirectory
+				.resolve(sha256.substring(0, SHARD_PREFIX_LENGTH))
+				.resolve(sha256.substring(SHARD_PREFIX_LENGTH, 2 * SHARD_PREFIX_LENGTH))
+				.resolve(blobFileName);
+	}
+	
+	public Path getRootDirectory() {
+		return rootDirectory;
+	}
+	
+	/***
+	 * Moves the given file into the store, unless a blob with the same digest exists already.
+	 * @param filePath A file that is consumed by this call.
+	 * @param sha256 The SHA-256 digest of the file content.
+	 * @return The path of the blob holding the content.
+	 * @throws IOException
+	 */
+	public Path store(Path filePath, String sha256) throws IOException {
+		return store(filePath, getBlobPath(sha256));
+	}
+	
+	private Path store(Path filePath, Path blobPath) throws IOException {
+		if (Files.exists(blobPath)) {
+			logger.info("Content {} is stored already! Discarding the duplicate.", blobPath.getFileName());
+			Files.delete(filePath);
+		} else {
+			Files.createDirectories(blobPath.getParent());
+			FileDownloader.moveAtomically(filePath, blobPath);
+		}
+		
+		return blobPath;
+	}
+	
+	/***
+	 * Makes the given item file path point to the given blob. An existing item file is replaced.
+	 */
+	public void link(Path blobPath, Path itemFilePath) throws IOException {
+		Files.deleteIfExists(itemFilePath);
+		
+		try {
+			Files.createLink(itemFilePath, blobPath);
+			return;
+		} catch (UnsupportedOperationException | IOException ex) {
+			logger.warn("Could not create hard link {}! Trying a symbolic link.", itemFilePath);
+		}
+		
+		try {
+			Files.createSymbolicLink(itemFilePath, blobPath.toAbsolutePath());
+		} catch (UnsupportedOperationException | IOException ex) {
+			logger.warn("Could not create symbolic link {}! Copying the blob.", itemFilePath);
+			Files.copy(blobPath, itemFilePath, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+/***
+ * A compression algorithm and its level, used to compress output files while they are written.
+ * 
+ * In the configuration a setting is given as "algorithm" or "algorithm:level", e.g. "gzip" or "zstd:19".
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class CompressionSetting {
+	
+	public enum Compression {
+		GZIP {
+			@Override
+			public int getDefaultLevel() {
+				return 6;
+			}
+			
+			@Override
+			public String getFileSuffix() {
+				return "gz";
+			}
+			
+			@Override
+			public boolean isValidLevel(int level) {
+				return level >= 1 && level <= 9;
+			}
+			
+			@Override
+			public OutputStream compress(OutputStream outputStream, final int level) throws IOException {
+				return new GZIPOutputStream(outputStream, BUFFER_SIZE) {
+					{
+						def.setLevel(level);
+					}
+				};
+			}
+			
+			@Override
+			public InputStream decompress(InputStream inputStream) throws IOException {
+				return new GZIPInputStream(inputStream, BUFFER_SIZE);
+			}
+		},
+		ZSTD {
+			@Override
+			public int getDefaultLevel() {
+				return 3;
+			}
+			
+			@Override
+			public String getFileSuffix() {
+				return "zst";
+			}
+			
+			@Override
+			public boolean isValidLevel(int level) {
+				return level >= 1 && level <= 22;
+			}
+			
+			@Override
+			public OutputStream compress(OutputStream outputStream, int level) throws IOException {
+				return new ZstdOutputStream(outputStream, level);
+			}
+			
+			@Override
+			public InputStream decompress(InputStream inputStream) throws IOException {
+				return new ZstdInputStream(inputStream);
+			}
+		};
+		
+		public abstract OutputStream compress(OutputStream outputStream, int level) throws IOException;
+		public abstract InputStream decompress(InputStream inputStream) throws IOException;
+		public abstract int getDefaultLevel();
+		public abstract String getFileSuffix();
+		public abstract boolean isValidLevel(int level);
+	}
+	
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final String LEVEL_SEPARATOR = ":";
+	
+	private Compression compression;
+	private int level;
+	
+	public CompressionSetting(Compression compression, int level) {
+		if (!compression.isValidLevel(level)) {
+			throw new IllegalArgumentException("The level " + level + " is not valid for " + compression + "!");
+		}
+		
+		this.compression = compression;
+		this.level = level;
+	}
+	
+	/***
+	 * Parses a setting like "gzip" or "zstd:19".
+	 * @throws IllegalArgumentException If the algorithm is unknown or the level is invalid.
+	 */
+	public static CompressionSetting parse(String setting) {
+		String[] parts = setting.trim().split(LEVEL_SEPARATOR);
+		Compression compression = Compression.valueOf(parts[0].trim().toUpperCase());
+		
+		int level = compression.getDefaultLevel();
+		if (parts.length > 1) {
+			level = Integer.parseInt(parts[1].trim());
+		}
+		
+		return new CompressionSetting(compression, level);
+	}
+	
+	/***
+	 * Wraps the given stream, so everything written to the returned stream is compressed.
+	 * Closing the returned stream closes the given one.
+	 */
+	public OutputStream compress(OutputStream outputStream) throws IOException {
+		return compression.compress(outputStream, level);
+	}
+	
+	/***
+	 * Wraps the given stream, so everything read from the returned stream is decompressed.
+	 * Closing the returned stream closes the given one.
+	 */
+	public InputStream decompress(InputStream inputStream) throws IOException {
+		return compression.decompress(inputStream);
+	}
+	
+	public Compression getCompression() {
+		return compression;
+	}
+	
+	public String getFileSuffix() {
+		return compression.getFileSuffix();
+	}
+	
+	public int getLevel() {
+		return level;
+	}
+	
+	@Override
+	public String toString() {
+		return compression.toString().toLowerCase() + LEVEL_SEPARATOR + level;
+	}
+}
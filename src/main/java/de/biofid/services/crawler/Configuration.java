@@ -1,7 +1,12 @@
 package de.biofid.services.crawler;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 import org.json.JSONObject;
 
+import de.biofid.services.crawler.Item.FileType;
+
 /***
  * A single configuration holding all necessary settings for a single {@link de.biofid.services.crawler.Harvester}.
  * 
@@ -11,20 +16,51 @@ import org.json.JSONObject;
  */
 public class Configuration {
 	
+	public static final String DEFAULT_METADATA_FORMAT = "xml";
+	
 	private String apiKey = null;
+	private String archiveFormat = null;
+	private long archiveShardSizeInBytes = ArchiveShardSink.DEFAULT_MAXIMUM_SHARD_SIZE_IN_BYTES;
+	private long bandwidthLimitInBytesPerSecond = BandwidthLimiter.UNLIMITED;
+	private boolean isAsyncWritingEnabled = false;
+	private Map<FileType, CompressionSetting> compressionSettings = new EnumMap<>(FileType.class);
 	private long delayBetweenRequestsInMilliseconds = 0;
+	private long fsyncIntervalInMilliseconds = AsyncFileWriter.FSYNC_DISABLED;
 	private String harvesterClassName;
 	private String harvesterName;
+	private boolean isFileDeduplicationEnabled = false;
 	private boolean isOverwrittingEnabled = true;
 	private JSONObject jsonConfiguration;
+	private String metadataFormat = DEFAULT_METADATA_FORMAT;
+	private long metadataSegmentSizeInBytes = SegmentedMetadataSink.DEFAULT_MAXIMUM_SEGMENT_SIZE_IN_BYTES;
+	private OutputLayout outputLayout = OutputLayout.DEFAULT_LAYOUT;
+	private long progressReportIntervalInSeconds = ProgressTracker.DEFAULT_REPORT_INTERVAL_IN_SECONDS;
+	private boolean isResponseStoringEnabled = false;
+	private Shard shard = Shard.ALL;
+	private int writeQueueSize = AsyncFileWriter.DEFAULT_QUEUE_SIZE;
 	
 	public Configuration(Configuration conf) {
 		this.harvesterName = conf.harvesterName;
 		this.harvesterClassName = conf.harvesterClassName;
 		this.jsonConfiguration = new JSONObject(conf.jsonConfiguration.toString());
 		this.apiKey = conf.apiKey;
+		this.archiveFormat = conf.getArchiveFormat();
+		this.archiveShardSizeInBytes = conf.getArchiveShardSize();
+		this.bandwidthLimitInBytesPerSecond = conf.getBandwidthLimit();
+		this.compressionSettings = new EnumMap<>(FileType.class);
+		this.compressionSettings.putAll(conf.getCompressionSettings());
 		this.isOverwrittingEnabled = conf.isOverwrittingEnabled();
+		this.isFileDeduplicationEnabled = conf.isFileDeduplicationEnabled();
+		this.metadataFormat = conf.getMetadataFormat();
+		this.metadataSegmentSizeInBytes = conf.getMetadataSegmentSize();
+		this.outputLayout = conf.getOutputLayout();
+		this.isAsyncWritingEnabled = conf.isAsyncWritingEnabled();
+		this.writeQueueSize = conf.getWriteQueueSize();
+		this.fsyncIntervalInMilliseconds = conf.getFsyncInterval();
+		this.isResponseStoringEnabled = conf.isResponseStoringEnabled();
+		this.progressReportIntervalInSeconds = conf.getProgressReportInterval();
 		this.delayBetweenRequestsInMilliseconds = conf.getRequestDelay();
+		this.shard = conf.getShard();
 	}
 	
 	public Configuration(String harvesterName, String harvesterClassName, JSONObject jsonConfiguration) {
@@ -33,6 +69,41 @@ public class Configuration {
 		this.jsonConfiguration = jsonConfiguration;
 	}
 	
+	/***
+	 * The format of the archive shards to pack the items into, i.e. "tar", "zip" or "warc". Null, if the
+	 * items are written as single files.
+	 */
+	public String getArchiveFormat() {
+		return archiveFormat;
+	}
+	
+	public long getArchiveShardSize() {
+		return archiveShardSizeInBytes;
+	}
+	
+	/***
+	 * The maximum rate in bytes per second to receive responses and text files with.
+	 * {@link BandwidthLimiter#UNLIMITED}, if the rate is not limited.
+	 */
+	public long getBandwidthLimit() {
+		return bandwidthLimitInBytesPerSecond;
+	}
+	
+	/***
+	 * The compression per file type. File types without an entry are written as received.
+	 */
+	public Map<FileType, CompressionSetting> getCompressionSettings() {
+		return compressionSettings;
+	}
+	
+	/***
+	 * The interval to flush asynchronously written files to disk. {@link AsyncFileWriter#FSYNC_DISABLED}, 
+	 * if this is left to the operating system.
+	 */
+	public long getFsyncInterval() {
+		return fsyncIntervalInMilliseconds;
+	}
+	
 	public String getHarvesterApiKey() {
 		return apiKey;
 	}
@@ -49,23 +120,138 @@ public class Configuration {
 		return harvesterName;
 	}
 	
+	/***
+	 * The format to write the item metadata in. One of "xml" or "json" for one file per item, or
+	 * "jsonl", "smile" or "cbor" for segment files.
+	 */
+	public String getMetadataFormat() {
+		return metadataFormat;
+	}
+	
+	public long getMetadataSegmentSize() {
+		return metadataSegmentSizeInBytes;
+	}
+	
+	public OutputLayout getOutputLayout() {
+		return outputLayout;
+	}
+	
+	/***
+	 * The interval in seconds to report the progress of the harvester. {@link ProgressTracker#REPORTING_DISABLED},
+	 * if the progress should not be reported.
+	 */
+	public long getProgressReportInterval() {
+		return progressReportIntervalInSeconds;
+	}
+	
 	public long getRequestDelay() {
 		return delayBetweenRequestsInMilliseconds;
 	}
 	
+	/***
+	 * The part of the items this harvester should harvest, if several crawler instances share the configuration.
+	 */
+	public Shard getShard() {
+		return shard;
+	}
+	
+	public int getWriteQueueSize() {
+		return writeQueueSize;
+	}
+	
+	public boolean isAsyncWritingEnabled() {
+		return isAsyncWritingEnabled;
+	}
+	
+	public boolean isFileDeduplicationEnabled() {
+		return isFileDeduplicationEnabled;
+	}
+	
 	public boolean isOverwrittingEnabled() {
 		return isOverwrittingEnabled;
 	}
 	
+	/***
+	 * Whether the raw responses of all web pages and API calls are kept in the folder "responses", so the
+	 * metadata can be regenerated from them later.
+	 */
+	public boolean isResponseStoringEnabled() {
+		return isResponseStoringEnabled;
+	}
+	
+	public void setArchiveFormat(String archiveFormat) {
+		this.archiveFormat = archiveFormat;
+	}
+	
+	public void setArchiveShardSize(long shardSizeInBytes) {
+		this.archiveShardSizeInBytes = shardSizeInBytes;
+	}
+	
+	public void setAsyncWriting(boolean isAsyncWritingEnabled) {
+		this.isAsyncWritingEnabled = isAsyncWritingEnabled;
+	}
+	
+	public void setBandwidthLimit(long bytesPerSecond) {
+		this.bandwidthLimitInBytesPerSecond = bytesPerSecond;
+	}
+	
+	/***
+	 * Compresses all files of the given type with the given setting.
+	 * @throws IllegalArgumentException If files of the given type are compressed already, like PDF or ABBYY.
+	 */
+	public void setCompression(FileType fileType, CompressionSetting compression) {
+		if (!fileType.isCompressible()) {
+			throw new IllegalArgumentException("Files of type " + fileType + " are compressed already!");
+		}
+		
+		compressionSettings.put(fileType, compression);
+	}
+	
+	public void setFileDeduplication(boolean isFileDeduplicationEnabled) {
+		this.isFileDeduplicationEnabled = isFileDeduplicationEnabled;
+	}
+	
+	public void setFsyncInterval(long fsyncIntervalInMilliseconds) {
+		this.fsyncIntervalInMilliseconds = fsyncIntervalInMilliseconds;
+	}
+	
 	public void setHarvesterApiKey(String apiKey) {
 		this.apiKey = apiKey;
 	}
 	
+	public void setMetadataFormat(String metadataFormat) {
+		this.metadataFormat = metadataFormat;
+	}
+	
+	public void setMetadataSegmentSize(long segmentSizeInBytes) {
+		this.metadataSegmentSizeInBytes = segmentSizeInBytes;
+	}
+	
+	public void setOutputLayout(OutputLayout outputLayout) {
+		this.outputLayout = outputLayout;
+	}
+	
 	public void setOverwritting(boolean isOverwrittingEnabled) {
 		this.isOverwrittingEnabled = isOverwrittingEnabled;
 	}
 	
+	public void setProgressReportInterval(long intervalInSeconds) {
+		this.progressReportIntervalInSeconds = intervalInSeconds;
+	}
+	
 	public void setRequestDelay(long delayInMilliseconds) {
 		this.delayBetweenRequestsInMilliseconds = delayInMilliseconds;
 	}
+	
+	public void setResponseStoring(boolean isResponseStoringEnabled) {
+		this.isResponseStoringEnabled = isResponseStoringEnabled;
+	}
+	
+	public void setShard(Shard shard) {
+		this.shard = shard;
+	}
+	
+	public void setWriteQueueSize(int writeQueueSize) {
+		this.writeQueueSize = writeQueueSize;
+	}
 }
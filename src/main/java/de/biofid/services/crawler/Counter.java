@@ -0,0 +1,51 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * A metric that only increases, e.g. the number of downloaded files.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class Counter extends MetricFamily<Counter.Child> {
+	
+	public static class Child {
+		private LongAdder value = new LongAdder();
+		
+		public void add(long amount) {
+			value.add(amount);
+		}
+		
+		public long get() {
+			return value.sum();
+		}
+		
+		public void increment() {
+			value.increment();
+		}
+	}
+	
+	Counter(String name, String help, String[] labelNames) {
+		super(name, help, labelNames);
+	}
+	
+	@Override
+	protected Child createChild() {
+		return new Child();
+	}
+	
+	@Override
+	protected String getType() {
+		return "counter";
+	}
+	
+	@Override
+	protected void writeSamples(Writer writer, List<String> labelValues, Child child) throws IOException {
+		writeSample(writer, "", labelValues, null, Long.toString(child.get()));
+	}
+}
@@ -0,0 +1,36 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/***
+ * Remembers the directories that are known to exist, so they are checked on disk only once.
+ * 
+ * The cache assumes that no directory is removed while it is in use. Hence, every harvester run uses its own
+ * instance.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class DirectoryCache {
+	
+	private Set<Path> knownDirectories = ConcurrentHashMap.newKeySet();
+	
+	/***
+	 * Creates the given directory and all its parents, unless it is known to exist already.
+	 * @param directoryPath The directory to create.
+	 * @throws IOException If the directory could not be created.
+	 */
+	public void createDirectories(Path directoryPath) throws IOException {
+		if (knownDirectories.contains(directoryPath)) {
+			return;
+		}
+		
+		Files.createDirectories(directoryPath);
+		knownDirectories.add(directoryPath);
+	}
+}
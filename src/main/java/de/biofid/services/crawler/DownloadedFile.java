@@ -0,0 +1,58 @@
+package de.biofid.services.crawler;
+
+import java.nio.file.Path;
+
+/***
+ * The result of a completed download: where the file was published and what was received.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class DownloadedFile {
+	
+	private Path filePath;
+	private HttpResponse response = null;
+	private String sha256;
+	private long sizeInBytes;
+	
+	public DownloadedFile(Path filePath, String sha256, long sizeInBytes) {
+		this.filePath = filePath;
+		this.sha256 = sha256;
+		this.sizeInBytes = sizeInBytes;
+	}
+	
+	public DownloadedFile(Path filePath, String sha256, long sizeInBytes, HttpResponse response) {
+		this(filePath, sha256, sizeInBytes);
+		this.response = response;
+	}
+	
+	public Path getFilePath() {
+		return filePath;
+	}
+	
+	/***
+	 * The status and headers the file was received with. Null, if it was not received via HTTP.
+	 */
+	public HttpResponse getResponse() {
+		return response;
+	}
+	
+	/***
+	 * The SHA-256 digest of the received content as lower case hex string.
+	 */
+	public String getSha256() {
+		return sha256;
+	}
+	
+	public long getSizeInBytes() {
+		return sizeInBytes;
+	}
+	
+	/***
+	 * Returns the same download, published at the given path.
+	 */
+	public DownloadedFile withFilePath(Path newFilePath) {
+		return new DownloadedFile(newFilePath, sha256, sizeInBytes, response);
+	}
+}
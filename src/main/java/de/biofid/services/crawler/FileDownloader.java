@@ -0,0 +1,278 @@
+package de.biofid.services.crawler;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.io.input.TeeInputStream;
+
+/***
+ * Streams remote files to disk.
+ * 
+ * The response body is transferred into a temporary file next to the target, while its SHA-256 digest and
+ * size are computed on the fly. Only a complete download is moved to the target path, so an interrupted
+ * download never leaves a truncated file behind that would be taken as existing on the next run.
+ * 
+ * While the responses are recorded (see {@link HttpFetcher#startRecording(ResponseStore)}), the received body
+ * is also streamed into a second temporary file, from which it is copied into the recording. So even large
+ * files are never held in memory.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class FileDownloader {
+	
+	public static final String DIGEST_ALGORITHM = "SHA-256";
+	
+	private static final int COPY_BUFFER_SIZE_IN_BYTES = 64 * 1024;
+	private static final String RECORDING_FILE_PREFIX = "recording-";
+	private static final String TEMPORARY_FILE_PREFIX = "download-";
+	private static final String TEMPORARY_FILE_SUFFIX = ".part";
+	private static final long TRANSFER_CHUNK_SIZE_IN_BYTES = 1L << 20;
+	
+	private FileDownloader() {}
+	
+	/***
+	 * Downloads the given URL to the given path.
+	 * @param sourceUrl The URL to download.
+	 * @param sinkFilePath The path to publish the file to. An existing file is replaced.
+	 * @return The published file with its digest and size.
+	 * @throws IOException If the download failed. Nothing is written to the sink path in this case.
+	 */
+	public static DownloadedFile download(URL sourceUrl, Path sinkFilePath) throws IOException {
+		return download(sourceUrl, sinkFilePath, null);
+	}
+	
+	/***
+	 * Downloads the given URL to the given path and compresses it on the fly.
+	 * 
+	 * The digest and size of the returned file refer to the received, uncompressed content.
+	 * @param sourceUrl The URL to download.
+	 * @param sinkFilePath The path to publish the file to. An existing file is replaced.
+	 * @param compression How to compress the file. Null, to write the content as received.
+	 * @return The published file with its digest and size.
+	 * @throws IOException If the download failed. Nothing is written to the sink path in this case.
+	 */
+	public static DownloadedFile download(URL sourceUrl, Path sinkFilePath, CompressionSetting compression) 
+			throws IOException {
+		return download(sourceUrl, sinkFilePath, compression, null);
+	}
+	
+	/***
+	 * Downloads the given URL to the given path, compresses it on the fly and receives it no faster than the
+	 * given limiter allows.
+	 * @param sourceUrl The URL to download.
+	 * @param sinkFilePath The path to publish the file to. An existing file is replaced.
+	 * @param compression How to compress the file. Null, to write the content as received.
+	 * @param bandwidthLimiter The limiter to read the response with. Null, to read it as fast as possible.
+	 * @return The published file with its digest and size.
+	 * @throws IOException If the download failed. Nothing is written to the sink path in this case.
+	 */
+	public static DownloadedFile download(URL sourceUrl, Path sinkFilePath, CompressionSetting compression, 
+			BandwidthLimiter bandwidthLimiter) throws IOException {
+		DownloadedFile temporaryFile = downloadToTemporaryFile(sourceUrl, sinkFilePath.getParent(), compression, 
+				bandwidthLimiter);
+		
+		try {
+			moveAtomically(temporaryFile.getFilePath(), sinkFilePath);
+		} finally {
+			Files.deleteIfExists(temporaryFile.getFilePath());
+		}
+		
+		return temporaryFile.withFilePath(sinkFilePath);
+	}
+	
+	/***
+	 * Downloads the given URL into a new temporary file in the given directory.
+	 * 
+	 * The caller is responsible to move or delete the returned file.
+	 * @param sourceUrl The URL to download.
+	 * @param directory The directory to create the temporary file in.
+	 * @return The temporary file with the digest and size of its content.
+	 * @throws IOException If the download failed. The temporary file is removed in this case.
+	 */
+	public static DownloadedFile downloadToTemporaryFile(URL sourceUrl, Path directory) throws IOException {
+		return downloadToTemporaryFile(sourceUrl, directory, null);
+	}
+	
+	/***
+	 * Downloads the given URL into a new temporary file in the given directory.
+	 * 
+	 * The caller is responsible to move or delete the returned file.
+	 * @param sourceUrl The URL to download.
+	 * @param directory The directory to create the temporary file in.
+	 * @param compression How to compress the file. Null, to write the content as received.
+	 * @return The temporary file with the digest and size of the received content.
+	 * @throws IOException If the download failed. The temporary file is removed in this case.
+	 */
+	public static DownloadedFile downloadToTemporaryFile(URL sourceUrl, Path directory, 
+			CompressionSetting compression) throws IOException {
+		return downloadToTemporaryFile(sourceUrl, directory, compression, null);
+	}
+	
+	/***
+	 * Downloads the given URL into a new temporary file in the given directory, receiving it no faster than the
+	 * given limiter allows.
+	 * 
+	 * The caller is responsible to move or delete the returned file.
+	 * @param sourceUrl The URL to download.
+	 * @param directory The directory to create the temporary file in.
+	 * @param compression How to compress the file. Null, to write the content as received.
+	 * @param bandwidthLimiter The limiter to read the response with. Null, to read it as fast as possible.
+	 * @return The temporary file with the digest and size of the received content.
+	 * @throws IOException If the download failed. The temporary file is removed in this case.
+	 */
+	public static DownloadedFile downloadToTemporaryFile(URL sourceUrl, Path directory, 
+			CompressionSetting compression, BandwidthLimiter bandwidthLimiter) throws IOException {
+		Path temporaryFilePath = Files.createTempFile(directory, TEMPORARY_FILE_PREFIX, TEMPORARY_FILE_SUFFIX);
+		long startTimeInNanoseconds = System.nanoTime();
+		HarvestMetrics.HTTP_REQUESTS_IN_FLIGHT.labels().increment();
+		HarvestEvents.FileDownload downloadEvent = new HarvestEvents.FileDownload();
+		downloadEvent.begin();
+		downloadEvent.url = sourceUrl.toString();
+		downloadEvent.host = sourceUrl.getHost();
+		Path recordedBodyFilePath = null;
+		
+		try {
+			long startTime = System.currentTimeMillis();
+			MessageDigest digest = createDigest();
+			URLConnection connection = HttpFetcher.openConnection(sourceUrl);
+			InputStream connectionStream = connection.getInputStream();
+			if (HttpFetcher.isRecordingResponses()) {
+				recordedBodyFilePath = Files.createTempFile(directory, RECORDING_FILE_PREFIX, TEMPORARY_FILE_SUFFIX);
+				// The recorded body is closed with the response stream
+				connectionStream = new TeeInputStream(connectionStream, new BufferedOutputStream(
+						Files.newOutputStream(recordedBodyFilePath), COPY_BUFFER_SIZE_IN_BYTES), true);
+			}
+			if (bandwidthLimiter != null) {
+				connectionStream = bandwidthLimiter.limit(connectionStream);
+			}
+			long sizeInBytes;
+			
+			if (compression == null) {
+				try (InputStream responseStream = new DigestInputStream(connectionStream, digest);
+						ReadableByteChannel sourceChannel = Channels.newChannel(responseStream);
+						FileChannel sinkChannel = FileChannel.open(temporaryFilePath, StandardOpenOption.WRITE)) {
+					sizeInBytes = transfer(sourceChannel, sinkChannel);
+				}
+			} else {
+				try (InputStream responseStream = new DigestInputStream(connectionStream, digest);
+						OutputStream sinkStream = compression.compress(Files.newOutputStream(temporaryFilePath))) {
+					sizeInBytes = copy(responseStream, sinkStream);
+				}
+			}
+			
+			HttpResponse responseHead = HttpFetcher.getResponseHead(connection, System.currentTimeMillis() - startTime);
+			if (responseHead != null) {
+				HarvestMetrics.recordHttpResponse(sourceUrl, responseHead.getStatusCode(), startTimeInNanoseconds);
+				if (recordedBodyFilePath != null) {
+					HttpFetcher.recordResponse(sourceUrl.toString(), responseHead, recordedBodyFilePath);
+				}
+			}
+			downloadEvent.bytes = sizeInBytes;
+			return new DownloadedFile(temporaryFilePath, toHexString(digest.digest()), sizeInBytes, responseHead);
+		} catch (HttpStatusException ex) {
+			HarvestMetrics.recordHttpResponse(sourceUrl, ex.getStatusCode(), startTimeInNanoseconds);
+			Files.deleteIfExists(temporaryFilePath);
+			throw ex;
+		} catch (IOException | RuntimeException ex) {
+			HarvestMetrics.recordHttpError(sourceUrl, ex);
+			Files.deleteIfExists(temporaryFilePath);
+			throw ex;
+		} finally {
+			HarvestMetrics.HTTP_REQUESTS_IN_FLIGHT.labels().decrement();
+			downloadEvent.commitTagged();
+			if (recordedBodyFilePath != null) {
+				Files.deleteIfExists(recordedBodyFilePath);
+			}
+		}
+	}
+	
+	/***
+	 * Moves a file to its target, replacing an existing file. The move is atomic, if the file system supports it.
+	 */
+	public static void moveAtomically(Path sourcePath, Path targetPath) throws IOException {
+		try {
+			Files.move(sourcePath, targetPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException ex) {
+			Files.move(sourcePath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	/***
+	 * Computes the digest and size of a file published by an earlier download, e.g. one that is not downloaded
+	 * again, because it exists already. A compressed file is decompressed, so the values are the ones of the
+	 * received content.
+	 * @param filePath The published file.
+	 * @param compression How the file was compressed. Null, if it holds the content as received.
+	 * @return The file with the digest and size of its content.
+	 */
+	public static DownloadedFile digestExistingFile(Path filePath, CompressionSetting compression) 
+			throws IOException {
+		MessageDigest digest = createDigest();
+		long sizeInBytes = 0;
+		try (InputStream fileStream = Files.newInputStream(filePath);
+				InputStream contentStream = new DigestInputStream(
+						compression != null ? compression.decompress(fileStream) : fileStream, digest)) {
+			byte[] buffer = new byte[COPY_BUFFER_SIZE_IN_BYTES];
+			int readBytes;
+			while ((readBytes = contentStream.read(buffer)) != -1) {
+				sizeInBytes += readBytes;
+			}
+		}
+		return new DownloadedFile(filePath, toHexString(digest.digest()), sizeInBytes);
+	}
+	
+	public static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException ex) {
+			// Every Java platform has to support SHA-256
+			throw new IllegalStateException(ex);
+		}
+	}
+	
+	public static String toHexString(byte[] bytes) {
+		StringBuilder hexString = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hexString.append(Character.forDigit((b >> 4) & 0xF, 16));
+			hexString.append(Character.forDigit(b & 0xF, 16));
+		}
+		return hexString.toString();
+	}
+	
+	private static long copy(InputStream sourceStream, OutputStream sinkStream) throws IOException {
+		byte[] buffer = new byte[COPY_BUFFER_SIZE_IN_BYTES];
+		long sizeInBytes = 0;
+		int readBytes;
+		while ((readBytes = sourceStream.read(buffer)) != -1) {
+			sinkStream.write(buffer, 0, readBytes);
+			sizeInBytes += readBytes;
+		}
+		return sizeInBytes;
+	}
+	
+	private static long transfer(ReadableByteChannel sourceChannel, FileChannel sinkChannel) throws IOException {
+		long position = 0;
+		long transferredBytes;
+		while ((transferredBytes = sinkChannel.transferFrom(sourceChannel, position, TRANSFER_CHUNK_SIZE_IN_BYTES)) > 0) {
+			position += transferredBytes;
+		}
+		return position;
+	}
+}
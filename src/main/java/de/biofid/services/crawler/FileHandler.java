@@ -1,16 +1,40 @@
 package de.biofid.services.crawler;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
 
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+
 public class FileHandler {
 	
+	/***
+	 * Writes the content of a file into the given stream.
+	 */
+	public interface ContentWriter {
+		void writeTo(OutputStream outputStream) throws IOException;
+	}
+	
+	private static final int READ_BUFFER_SIZE_IN_BYTES = 64 * 1024;
+	
 	private FileHandler() {}
 	
 	/***
@@ -30,7 +54,7 @@ public class FileHandler {
 			while (scanner.hasNext()) {
 				stringBuilder.append(scanner.nextLine() + "\n");
 			}
-		
+			
 			content = stringBuilder.toString();
 			
 		} catch (FileNotFoundException e) {
@@ -44,6 +68,23 @@ public class FileHandler {
 		return content;
 	}
 	
+	/***
+	 * Checks if the given file holds exactly the given content.
+	 * The sizes are compared first, so the file is only read if it may be identical. Then the SHA-256 digests
+	 * of the file and the content are compared.
+	 * @param filePath The file to compare. It does not need to exist.
+	 * @param content The content to compare the file with.
+	 * @return True, if the file exists and holds the given content. False, otherwise.
+	 * @throws IOException If the file exists, but could not be read.
+	 */
+	public static boolean hasContent(Path filePath, byte[] content) throws IOException {
+		if (!Files.isRegularFile(filePath) || Files.size(filePath) != content.length) {
+			return false;
+		}
+		
+		return MessageDigest.isEqual(digestFile(filePath), FileDownloader.createDigest().digest(content));
+	}
+	
 	/***
 	 * Evaluates if a given String resolves to a file or a path.
 	 * This method does NOT check, if the given file or path exists!
@@ -62,7 +103,8 @@ public class FileHandler {
 	/***
 	 * Reads a list from the given file.
 	 * The given file is read and its content is converted to a list. This method assumes
-	 * one list element per line.
+	 * one list element per line. The whole file is held in memory, so lists of numeric IDs
+	 * should be read with a {@link LongIdFileReader} instead.
 	 * @param filePath A file to read the list from.
 	 * @return A list of String elements.
 	 */
@@ -84,4 +126,80 @@ public class FileHandler {
 		String fileContent = getFileContent(filePath);
 		return new ArrayList<>(Arrays.asList(fileContent.split("\\s*" + separator + "\\s*"))); 
 	}
+	
+	/***
+	 * Writes the given content to the given file, unless the file holds this content already.
+	 * @param filePath The file to write. An existing file with a different content is replaced.
+	 * @param content The complete file content.
+	 * @return True, if the file was written. False, if it was unchanged.
+	 * @throws IOException
+	 */
+	public static boolean writeIfChanged(Path filePath, byte[] content) throws IOException {
+		if (hasContent(filePath, content)) {
+			return false;
+		}
+		
+		try (FileChannel fileChannel = FileChannel.open(filePath, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer contentBuffer = ByteBuffer.wrap(content);
+			while (contentBuffer.hasRemaining()) {
+				fileChannel.write(contentBuffer);
+			}
+		}
+		
+		return true;
+	}
+	
+	/***
+	 * Writes the content given by the writer to the given file, unless the file holds this content already.
+	 * 
+	 * If the file exists, the content is first only digested, without holding it in memory or writing it
+	 * anywhere. The file is read only if it has the size of the content, and left untouched if its digest is
+	 * the same. Otherwise, the writer is called again to stream the content into a temporary file next to the
+	 * target, which is then moved to the target.
+	 * @param filePath The file to write. An existing file with a different content is replaced atomically.
+	 * @param contentWriter Writes the complete file content. It may be called twice and has to write the same
+	 * content each time. The stream may be closed by the writer.
+	 * @return True, if the file was written. False, if it was unchanged.
+	 * @throws IOException
+	 */
+	public static boolean writeIfChanged(Path filePath, ContentWriter contentWriter) throws IOException {
+		if (Files.isRegularFile(filePath)) {
+			MessageDigest contentDigest = FileDownloader.createDigest();
+			CountingOutputStream contentCounter = new CountingOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+			try (OutputStream outputStream = new DigestOutputStream(contentCounter, contentDigest)) {
+				contentWriter.writeTo(outputStream);
+			}
+			
+			if (contentCounter.getByteCount() == Files.size(filePath) 
+					&& MessageDigest.isEqual(digestFile(filePath), contentDigest.digest())) {
+				return false;
+			}
+		}
+		
+		Path temporaryFilePath = Files.createTempFile(filePath.toAbsolutePath().getParent(), 
+				filePath.getFileName().toString(), null);
+		try {
+			try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(temporaryFilePath), 
+					READ_BUFFER_SIZE_IN_BYTES)) {
+				contentWriter.writeTo(outputStream);
+			}
+			
+			FileDownloader.moveAtomically(temporaryFilePath, filePath);
+			return true;
+		} finally {
+			Files.deleteIfExists(temporaryFilePath);
+		}
+	}
+	
+	private static byte[] digestFile(Path filePath) throws IOException {
+		MessageDigest fileDigest = FileDownloader.createDigest();
+		try (InputStream fileStream = new DigestInputStream(Files.newInputStream(filePath), fileDigest)) {
+			byte[] buffer = new byte[READ_BUFFER_SIZE_IN_BYTES];
+			while (fileStream.read(buffer) != -1) {
+				// The digest is updated while reading
+			}
+		}
+		return fileDigest.digest();
+	}
 }
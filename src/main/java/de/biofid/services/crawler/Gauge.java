@@ -0,0 +1,55 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * A metric that goes up and down, e.g. the number of requests in flight or the length of a queue.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class Gauge extends MetricFamily<Gauge.Child> {
+	
+	public static class Child {
+		private LongAdder value = new LongAdder();
+		
+		public void add(long amount) {
+			value.add(amount);
+		}
+		
+		public void decrement() {
+			value.decrement();
+		}
+		
+		public long get() {
+			return value.sum();
+		}
+		
+		public void increment() {
+			value.increment();
+		}
+	}
+	
+	Gauge(String name, String help, String[] labelNames) {
+		super(name, help, labelNames);
+	}
+	
+	@Override
+	protected Child createChild() {
+		return new Child();
+	}
+	
+	@Override
+	protected String getType() {
+		return "gauge";
+	}
+	
+	@Override
+	protected void writeSamples(Writer writer, List<String> labelValues, Child child) throws IOException {
+		writeSample(writer, "", labelValues, null, Long.toString(child.get()));
+	}
+}
@@ -0,0 +1,172 @@
+package de.biofid.services.crawler;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/***
+ * JDK Flight Recorder events for every stage of a harvest.
+ * 
+ * The events are written only while a recording is running, e.g. a continuous one started with
+ * "java -XX:StartFlightRecording=disk=true,maxage=1d,filename=harvest.jfr -jar LiteratureCrawler.jar".
+ * They show up in JDK Mission Control in the category "LiteratureCrawler", next to the GC and I/O events
+ * of the JVM. Without a recording an event costs hardly more than its allocation.
+ * 
+ * Every event is tagged with the harvester and the item the current thread works on, as set by
+ * {@link #setHarvester(String)} and {@link #setItemId(long)}. The item ID is {@link #UNKNOWN_ITEM_ID} while
+ * a harvester requests pages that are not bound to a single item, like listings.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public final class HarvestEvents {
+	
+	public static final long UNKNOWN_ITEM_ID = -1;
+	
+	private static final String CATEGORY = "LiteratureCrawler";
+	
+	private static final ThreadLocal<String> currentHarvester = new ThreadLocal<>();
+	private static final ThreadLocal<Long> currentItemId = ThreadLocal.withInitial(() -> UNKNOWN_ITEM_ID);
+	
+	@Category(CATEGORY)
+	@StackTrace(false)
+	abstract static class HarvestEvent extends Event {
+		@Label("Harvester")
+		String harvester;
+		
+		@Label("Item ID")
+		long itemId;
+		
+		/***
+		 * Tags the event with the harvester and item of the current thread and commits it, if the recording
+		 * wants it.
+		 */
+		void commitTagged() {
+			commitTagged(currentHarvester.get(), currentItemId.get());
+		}
+		
+		void commitTagged(String harvester, long itemId) {
+			if (shouldCommit()) {
+				this.harvester = harvester;
+				this.itemId = itemId;
+				commit();
+			}
+		}
+	}
+	
+	@Name("de.biofid.crawler.CitationParse")
+	@Label("Citation Parse")
+	@Description("Extracting the metadata of an item from a parsed page")
+	static class CitationParse extends HarvestEvent {}
+	
+	@Name("de.biofid.crawler.DiskWrite")
+	@Label("Disk Write")
+	@Description("Writing a metadata file")
+	static class DiskWrite extends HarvestEvent {
+		@Label("Path")
+		String path;
+		
+		@Label("Size")
+		@Description("The number of bytes written. 0, if the file was not written")
+		@DataAmount
+		long bytes;
+		
+		@Label("Written")
+		@Description("False, if the file held the same content already")
+		boolean isWritten;
+	}
+	
+	@Name("de.biofid.crawler.FileDownload")
+	@Label("File Download")
+	@Description("Downloading a text file")
+	static class FileDownload extends HarvestEvent {
+		@Label("URL")
+		String url;
+		
+		@Label("Host")
+		String host;
+		
+		@Label("Size")
+		@DataAmount
+		long bytes;
+	}
+	
+	@Name("de.biofid.crawler.HtmlParse")
+	@Label("HTML Parse")
+	@Description("Parsing a fetched HTML page")
+	static class HtmlParse extends HarvestEvent {
+		@Label("URL")
+		String url;
+		
+		@Label("Size")
+		@DataAmount
+		long bytes;
+	}
+	
+	@Name("de.biofid.crawler.MetadataFetch")
+	@Label("Metadata Fetch")
+	@Description("Requesting a web page or an API response")
+	static class MetadataFetch extends HarvestEvent {
+		@Label("URL")
+		String url;
+		
+		@Label("Host")
+		String host;
+		
+		@Label("Status Code")
+		int statusCode;
+		
+		@Label("Size")
+		@DataAmount
+		long bytes;
+	}
+	
+	@Name("de.biofid.crawler.MetadataSerialization")
+	@Label("Metadata Serialization")
+	@Description("Serializing the metadata of an item")
+	static class MetadataSerialization extends HarvestEvent {
+		@Label("Format")
+		String format;
+		
+		@Label("Size")
+		@DataAmount
+		long bytes;
+	}
+	
+	private HarvestEvents() {}
+	
+	/***
+	 * Removes the harvester and item of the current thread.
+	 */
+	public static void clear() {
+		currentHarvester.remove();
+		currentItemId.remove();
+	}
+	
+	public static String getHarvester() {
+		return currentHarvester.get();
+	}
+	
+	public static long getItemId() {
+		return currentItemId.get();
+	}
+	
+	/***
+	 * Tags all following events of the current thread with the given harvester.
+	 */
+	public static void setHarvester(String harvester) {
+		currentHarvester.set(harvester);
+	}
+	
+	/***
+	 * Tags all following events of the current thread with the given item ID.
+	 */
+	public static void setItemId(long itemId) {
+		currentItemId.set(itemId);
+	}
+}
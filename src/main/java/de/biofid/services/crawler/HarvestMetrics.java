@@ -0,0 +1,59 @@
+package de.biofid.services.crawler;
+
+import java.net.URL;
+
+/***
+ * The metrics recorded while harvesting.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public final class HarvestMetrics {
+	
+	public static final String METRIC_NAME_PREFIX = "literature_crawler_";
+	
+	public static final Counter DOWNLOADED_BYTES = MetricsRegistry.getDefault().counter(
+			METRIC_NAME_PREFIX + "downloaded_bytes_total", "Bytes of all downloaded text files.", "type");
+	public static final Counter DOWNLOADED_FILES = MetricsRegistry.getDefault().counter(
+			METRIC_NAME_PREFIX + "downloaded_files_total", "Number of downloaded text files.", "type");
+	public static final Counter HTTP_ERRORS = MetricsRegistry.getDefault().counter(
+			METRIC_NAME_PREFIX + "http_errors_total", "Number of failed requests by error type.", "host", "error");
+	public static final Histogram HTTP_REQUEST_DURATION = MetricsRegistry.getDefault().histogram(
+			METRIC_NAME_PREFIX + "http_request_duration_seconds", 
+			"Time until a response, including a downloaded file, was received completely.", 
+			Histogram.DEFAULT_LATENCY_BUCKETS_IN_SECONDS, "host");
+	public static final Gauge HTTP_REQUESTS_IN_FLIGHT = MetricsRegistry.getDefault().gauge(
+			METRIC_NAME_PREFIX + "http_requests_in_flight", "Number of requests waiting for their response.");
+	public static final Counter HTTP_RESPONSES = MetricsRegistry.getDefault().counter(
+			METRIC_NAME_PREFIX + "http_responses_total", "Number of received responses by status code.", 
+			"host", "status");
+	public static final Counter ITEM_ERRORS = MetricsRegistry.getDefault().counter(
+			METRIC_NAME_PREFIX + "item_errors_total", "Number of items that could not be written by stage.", 
+			"harvester", "stage");
+	public static final Counter ITEMS = MetricsRegistry.getDefault().counter(
+			METRIC_NAME_PREFIX + "items_total", "Number of completely written items.", "harvester");
+	public static final Gauge WRITE_QUEUE_DEPTH = MetricsRegistry.getDefault().gauge(
+			METRIC_NAME_PREFIX + "write_queue_depth", "Number of files waiting for the asynchronous writer.");
+	
+	public static final String STAGE_DOWNLOAD = "download";
+	public static final String STAGE_METADATA = "metadata";
+	
+	private HarvestMetrics() {}
+	
+	public static void recordHttpError(URL url, Exception ex) {
+		HTTP_ERRORS.labels(url.getHost(), ex.getClass().getSimpleName()).increment();
+	}
+	
+	/***
+	 * Records a received response.
+	 * @param url The requested URL. Only its host is recorded.
+	 * @param statusCode The HTTP status code.
+	 * @param startTimeInNanoseconds The time the request was sent, as given by {@link System#nanoTime()}.
+	 */
+	public static void recordHttpResponse(URL url, int statusCode, long startTimeInNanoseconds) {
+		String host = url.getHost();
+		HTTP_REQUEST_DURATION.labels(host).observeNanoseconds(System.nanoTime() - startTimeInNanoseconds);
+		HTTP_RESPONSES.labels(host, Integer.toString(statusCode)).increment();
+	}
+}
@@ -5,6 +5,18 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -14,7 +26,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import de.biofid.services.crawler.Item.DownloadFailedException;
-import de.biofid.services.crawler.Item.UnsupportedOutputFormatException;
+import de.biofid.services.crawler.Item.FileType;
 
 /***
  * A Harvester crawls the data of some website and draws the literature items from it.
@@ -26,17 +38,33 @@ import de.biofid.services.crawler.Item.UnsupportedOutputFormatException;
  * @version 1.0
  */
 public abstract class Harvester {
-
+	
 	protected static final String ITEM_COMPLETE_METADATA = "Item";
 	
+	private static final int MAXIMUM_NUMBER_OF_PENDING_ITEMS = 1024;
+	private static final long PROGRESS_REPORTER_TERMINATION_TIMEOUT_IN_SECONDS = 10;
+	
 	private static String baseOutputDirectory = null;
 	
+	protected BandwidthLimiter bandwidthLimiter = new BandwidthLimiter(BandwidthLimiter.UNLIMITED);
 	protected Configuration configuration;
-	protected long millisecondsDelayBetweenRequests = 0;
-
+	protected HttpFetcher httpFetcher = new HttpFetcher();
+	protected volatile long millisecondsDelayBetweenRequests = 0;
+	protected OutputSettings outputSettings = new OutputSettings();
+	protected ProgressTracker progressTracker = new ProgressTracker(getClass().getSimpleName());
+	protected Shard shard = Shard.ALL;
+	
+	private HarvesterControl harvesterControl = null;
+	private volatile boolean isPaused = false;
+	private volatile ExecutorService itemExecutor = null;
+	private MetadataSink metadataSink = null;
+	private final Object pauseLock = new Object();
+	private ScheduledExecutorService progressReporter = null;
+	private RunReport runReport = null;
+	
 	// Logging for all sub-classes
 	protected Logger logger = LogManager.getLogger(LiteratureHarvester.LOGGER_NAME);
-		
+	
 	/***
 	 * Subclasses HAVE TO have a constructor that takes a Configuration object as the only parameter!
 	 * @param configuration The configuration of this harvester.
@@ -49,8 +77,38 @@ public abstract class Harvester {
 		}
 		
 		this.configuration = configuration;
+		this.millisecondsDelayBetweenRequests = configuration.getRequestDelay();
+		
+		// Every instance of a sharded harvest reports in its own files, so their outputs can be merged
+		shard = configuration.getShard();
+		progressTracker.setStatusFileName(shard.appendToFileName(ProgressTracker.STATUS_FILE_NAME));
+		if (shard.isPartial()) {
+			logger.info("Harvesting shard {} of the items", shard);
+		}
+		
+		// The limiter is always in place, so a limit can be set while the harvester runs
+		bandwidthLimiter.setBytesPerSecond(configuration.getBandwidthLimit());
+		httpFetcher.setBandwidthLimiter(bandwidthLimiter);
+		outputSettings.setBandwidthLimiter(bandwidthLimiter);
+		
+		if (configuration.isFileDeduplicationEnabled()) {
+			outputSettings.setBlobStore(new BlobStore(Paths.get(baseOutputDirectory, BlobStore.BLOB_STORE_FOLDER_NAME)));
+		}
+		
+		outputSettings.setOutputLayout(configuration.getOutputLayout());
+		
+		if (ArchiveShardSink.Format.WARC.getFileSuffix().equals(configuration.getArchiveFormat()) && 
+				!configuration.getCompressionSettings().isEmpty()) {
+			// WARC records hold the content as received
+			logger.warn("The compression settings are ignored for WARC archives!");
+		} else {
+			for (Map.Entry<FileType, CompressionSetting> compressionSetting : 
+					configuration.getCompressionSettings().entrySet()) {
+				outputSettings.setCompression(compressionSetting.getKey(), compressionSetting.getValue());
+			}
+		}
 	}
-
+	
 	/***
 	 * Set the directory where to write all downloaded data.
 	 */
@@ -58,47 +116,187 @@ public abstract class Harvester {
 		Harvester.baseOutputDirectory = outputDirectory;
 	}
 	
+	public final BandwidthLimiter getBandwidthLimiter() {
+		return bandwidthLimiter;
+	}
+	
+	/***
+	 * The number of requests this harvester may send at the same time. Harvesters that send their requests
+	 * one after another return 1.
+	 */
+	public int getMaximumParallelRequests() {
+		return 1;
+	}
+	
+	public final ProgressTracker getProgressTracker() {
+		return progressTracker;
+	}
+	
+	public long getRequestDelayInMilliseconds() {
+		return millisecondsDelayBetweenRequests;
+	}
+	
+	/***
+	 * The directory holding the raw responses, if the configuration enables storing them.
+	 */
+	public final Path getResponseDirectory() {
+		return getWorkingDirectory().resolve(ResponseStore.RESPONSE_FOLDER_NAME);
+	}
+	
 	public final Path getWorkingDirectory() {
 		return Paths.get(baseOutputDirectory, getFolderName().toLowerCase());
 	}
-
+	
+	/***
+	 * True, if {@link #setMaximumParallelRequests(int)} can change the number of parallel requests of this
+	 * harvester. False, if it sends its requests one after another.
+	 */
+	public boolean isConcurrencyAdjustable() {
+		return false;
+	}
+	
+	public final boolean isHarvestingPaused() {
+		return isPaused;
+	}
+	
+	/***
+	 * Stops the harvester before its next request, until {@link #resumeHarvesting()} is called.
+	 * 
+	 * Running requests and downloads are completed. May be called from any thread.
+	 */
+	public final void pauseHarvesting() {
+		isPaused = true;
+		logger.info("Harvester {} paused!", this.getClass().getName());
+	}
+	
+	/***
+	 * Continues a harvester stopped by {@link #pauseHarvesting()}. May be called from any thread.
+	 */
+	public final void resumeHarvesting() {
+		synchronized (pauseLock) {
+			isPaused = false;
+			pauseLock.notifyAll();
+		}
+		logger.info("Harvester {} resumed!", this.getClass().getName());
+	}
+	
 	/***
 	 * This function can be called to start the harvesting of a specific internet source.
 	 * @throws CouldNotCreateDirectoryException
 	 */
 	public final void run() {
+		if (!openOutputs()) {
+			return;
+		}
+		
+		if (configuration.isResponseStoringEnabled()) {
+			httpFetcher.setResponseStore(new ResponseStore(getResponseDirectory()));
+		}
+		
+		HarvestEvents.setHarvester(getClass().getSimpleName());
+		startRunReport(RunReport.MODE_HARVEST);
+		startProgressReporting();
+		registerControl();
 		try {
-			createWorkingDirectory();
-			createOutputDirectory();
-		} catch (IOException e) {
-			logger.fatal("Could not create working directories for '{}'!", this.getClass().getName());
+			harvestItems();
+		} finally {
+			closeItemSources();
+			unregisterControl();
+			closeOutputs();
+			stopProgressReporting();
+			finishRunReport();
+			HarvestEvents.clear();
+		}
+		
+		logger.info("Metadata files of Harvester {}: {}", this.getClass().getName(), 
+				outputSettings.getMetadataWriteStatistics());
+	}
+	
+	/***
+	 * Parses the responses stored by an earlier harvest again and rewrites the metadata of all items.
+	 * 
+	 * Nothing is requested from the web, so there is no delay between requests, and no text files are
+	 * downloaded. The pages of the items are parsed by the given executor, as far as the harvester submits them
+	 * with {@link #submitItemParsing(long, Callable)}. Their metadata are serialized and written by the executor
+	 * as well, if the metadata output allows concurrent writes.
+	 * @param itemExecutor The executor to parse the items and write their metadata.
+	 */
+	public final void reprocess(ExecutorService itemExecutor) {
+		ResponseStore responseStore = new ResponseStore(getResponseDirectory());
+		if (!responseStore.getResponseDirectory().toFile().isDirectory()) {
+			logger.error("There are no stored responses for Harvester {} in {}!", this.getClass().getName(), 
+					responseStore.getResponseDirectory());
 			return;
 		}
 		
-		while (true) {
-			Item item = new Item();
-			
-			pause();
-			boolean next = nextItem(item);
-			if (next) {
-				processItem(item);
-			} else {
-				logger.info("All items of Harvester {} processed!", this.getClass().getName());
-				break;
-			}
+		if (!openOutputs()) {
+			return;
+		}
+		
+		httpFetcher.setReplaySource(responseStore);
+		millisecondsDelayBetweenRequests = 0;
+		this.itemExecutor = itemExecutor;
+		
+		HarvestEvents.setHarvester(getClass().getSimpleName());
+		startRunReport(RunReport.MODE_REPROCESS);
+		startProgressReporting();
+		registerControl();
+		try {
+			reprocessItems(itemExecutor);
+		} finally {
+			closeItemSources();
+			this.itemExecutor = null;
+			unregisterControl();
+			closeOutputs();
+			stopProgressReporting();
+			finishRunReport();
+			HarvestEvents.clear();
 		}
+		
+		logger.info("Metadata files of Harvester {}: {}", this.getClass().getName(), 
+				outputSettings.getMetadataWriteStatistics());
+	}
+	
+	/***
+	 * Changes the number of requests this harvester may send at the same time. The change may take effect
+	 * with a delay, e.g. with the next batch of requests.
+	 * @throws UnsupportedOperationException If this harvester sends its requests one after another, see
+	 * {@link #isConcurrencyAdjustable()}.
+	 */
+	public void setMaximumParallelRequests(int numberOfParallelRequests) {
+		throw new UnsupportedOperationException("Harvester " + this.getClass().getName() + 
+				" sends its requests one after another!");
 	}
 	
+	/***
+	 * Changes the delay between two requests. May be called from any thread, also while the harvester runs.
+	 */
 	public void setRequestDelayInMilliseconds(long millisecondsDelay) {
 		millisecondsDelayBetweenRequests = millisecondsDelay;
 	}
 	
+	/***
+	 * Closes the sources the items are taken from, e.g. a shared work queue. Called when a harvest ends, also
+	 * if it failed, so a harvester can give back the items it took but did not harvest. Does nothing by default.
+	 */
+	protected void closeItemSources() {
+	}
+	
 	/***
 	 * A function that simply returns the name of the folder where the Items should be stored.
 	 * @return A folder name
 	 */
 	protected abstract String getFolderName();
 	
+	/***
+	 * True while the items are reprocessed from stored responses, so the pages of several items may be parsed
+	 * at once with {@link #submitItemParsing(long, Callable)}. While harvesting, the items are parsed one after
+	 * another, so a site does not get more requests than before.
+	 */
+	protected final boolean isParsingItemsConcurrently() {
+		return itemExecutor != null;
+	}
+	
 	/***
 	 * This function produces a single item per call.
 	 * 
@@ -121,6 +319,8 @@ public abstract class Harvester {
 	protected abstract boolean nextItem(Item item);
 	
 	protected void pause() {
+		waitWhilePaused();
+		
 		try {
 			Thread.sleep(millisecondsDelayBetweenRequests);
 		} catch (InterruptedException ex) {
@@ -128,12 +328,120 @@ public abstract class Harvester {
 		}
 	}
 	
+	/***
+	 * Parses the pages of a single item, e.g. its citation, on the executor given to
+	 * {@link #reprocess(ExecutorService)}, tagged with this harvester and the item. While harvesting, the
+	 * parsing runs right away in the calling thread.
+	 * @param itemId The ID of the parsed item.
+	 * @param parsing Fetches and parses the pages of the item.
+	 * @return The result of the parsing.
+	 */
+	protected final <T> Future<T> submitItemParsing(long itemId, Callable<T> parsing) {
+		ExecutorService parsingExecutor = itemExecutor;
+		if (parsingExecutor == null) {
+			HarvestEvents.setItemId(itemId);
+			FutureTask<T> parsingTask = new FutureTask<>(parsing);
+			parsingTask.run();
+			return parsingTask;
+		}
+		
+		String harvesterName = HarvestEvents.getHarvester();
+		return parsingExecutor.submit(() -> {
+			HarvestEvents.setHarvester(harvesterName);
+			HarvestEvents.setItemId(itemId);
+			try {
+				return parsing.call();
+			} finally {
+				HarvestEvents.clear();
+			}
+		});
+	}
+	
+	/***
+	 * Blocks as long as the harvester is paused via {@link #pauseHarvesting()}.
+	 */
+	protected void waitWhilePaused() {
+		synchronized (pauseLock) {
+			while (isPaused) {
+				try {
+					pauseLock.wait();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+	
 	protected JSONObject toJsonObject(Object obj) throws JsonProcessingException {
 		ObjectMapper mapper = new ObjectMapper();
 		String metdataJSONString = mapper.writeValueAsString(obj);
 		return new JSONObject(metdataJSONString);
 	}
 	
+	/***
+	 * Creates the metadata output as given by the metadata format of the configuration.
+	 * @throws IllegalArgumentException If the configured format is unknown.
+	 */
+	protected MetadataSink createMetadataSink() throws IOException {
+		String metadataFormat = configuration.getMetadataFormat().toUpperCase();
+		Path outputPath = getWorkingDirectory();
+		
+		if (configuration.getArchiveFormat() != null) {
+			ArchiveShardSink.Format archiveFormat = 
+					ArchiveShardSink.Format.valueOf(configuration.getArchiveFormat().toUpperCase());
+			ArchiveShardSink archiveSink = new ArchiveShardSink(
+					resolveShardDirectory(outputPath.resolve(ArchiveShardSink.ARCHIVE_FOLDER_NAME)), archiveFormat, 
+					configuration.getArchiveShardSize(), getItemFileMetadataFormat(metadataFormat), outputPath);
+			httpFetcher.addListener(archiveSink);
+			return archiveSink;
+		}
+		
+		for (SegmentedMetadataSink.Format format : SegmentedMetadataSink.Format.values()) {
+			if (format.toString().equals(metadataFormat)) {
+				Path segmentDirectory = resolveShardDirectory(outputPath.resolve(Item.METADATA_OUTPUT_FOLDER_NAME)
+						.resolve(SegmentedMetadataSink.SEGMENT_FOLDER_NAME));
+				return new SegmentedMetadataSink(segmentDirectory, format, configuration.getMetadataSegmentSize());
+			}
+		}
+		
+		return new ItemFileMetadataSink(outputPath.toString(), getItemFileMetadataFormat(metadataFormat));
+	}
+	
+	private void closeAsyncFileWriter() {
+		AsyncFileWriter asyncFileWriter = outputSettings.getAsyncFileWriter();
+		if (asyncFileWriter == null) {
+			return;
+		}
+		
+		try {
+			asyncFileWriter.close();
+		} catch (IOException ex) {
+			logger.error("Could not write all pending files of '{}'!", this.getClass().getName());
+			logger.error(ex.getLocalizedMessage());
+		}
+		outputSettings.setAsyncFileWriter(null);
+	}
+	
+	private void closeMetadataSink() {
+		if (metadataSink instanceof HttpResponseListener) {
+			httpFetcher.removeListener((HttpResponseListener) metadataSink);
+		}
+		
+		try {
+			metadataSink.close();
+		} catch (IOException ex) {
+			logger.error("Could not close the metadata output of '{}'!", this.getClass().getName());
+			logger.error(ex.getLocalizedMessage());
+		}
+		metadataSink = null;
+	}
+	
+	private void closeOutputs() {
+		closeMetadataSink();
+		closeAsyncFileWriter();
+	}
+	
 	private boolean createDirectoryIfNotExisting(Path pathToCreate) {
 		File pathFile = pathToCreate.toFile();
 		if (!pathFile.exists()) {
@@ -150,7 +458,7 @@ public abstract class Harvester {
 			throw new CouldNotCreateDirectoryException("The base directory " + baseDirectory.toString() + 
 					" does not exists and so the working folders could not be created!");
 		}
-	
+		
 		return true;
 	}
 	
@@ -165,33 +473,269 @@ public abstract class Harvester {
 		return true;
 	}
 	
+	private void finishRunReport() {
+		httpFetcher.removeListener(runReport);
+		runReport.finish();
+		
+		try {
+			Path reportFilePath = runReport.write(getWorkingDirectory(), progressTracker, 
+					outputSettings.getMetadataWriteStatistics());
+			logger.info("Wrote the run report of Harvester {} to {}", this.getClass().getName(), reportFilePath);
+		} catch (IOException ex) {
+			logger.error("Could not write the run report of '{}'!", this.getClass().getName());
+			logger.error(ex.getLocalizedMessage());
+		}
+	}
+	
+	private static long getDownloadedBytes(Item item) {
+		long downloadedBytes = 0;
+		for (DownloadedFile downloadedFile : item.getDownloadedTextFiles().values()) {
+			downloadedBytes += downloadedFile.getSizeInBytes();
+		}
+		return downloadedBytes;
+	}
+	
+	private Item.FileType getItemFileMetadataFormat(String metadataFormat) {
+		Item.FileType fileType = Item.FileType.valueOf(metadataFormat);
+		if (fileType != Item.FileType.XML && fileType != Item.FileType.JSON) {
+			throw new IllegalArgumentException("The metadata format '" + metadataFormat + "' is not supported! "
+					+ "Please choose: XML, JSON, JSONL, SMILE or CBOR .");
+		}
+		return fileType;
+	}
+	
+	private void harvestItems() {
+		while (true) {
+			Item item = new Item();
+			item.setOutputSettings(outputSettings);
+			
+			long stageStartTime = System.nanoTime();
+			pause();
+			runReport.addStageTime(RunReport.STAGE_DELAY, System.nanoTime() - stageStartTime);
+			
+			HarvestEvents.setItemId(HarvestEvents.UNKNOWN_ITEM_ID);
+			stageStartTime = System.nanoTime();
+			boolean next = nextItem(item);
+			runReport.addStageTime(RunReport.STAGE_ITEM_METADATA, System.nanoTime() - stageStartTime);
+			if (next) {
+				HarvestEvents.setItemId(item.getItemId());
+				processItem(item);
+			} else {
+				logger.info("All items of Harvester {} processed!", this.getClass().getName());
+				break;
+			}
+		}
+	}
+	
+	private boolean openOutputs() {
+		try {
+			createWorkingDirectory();
+			createOutputDirectory();
+		} catch (IOException e) {
+			logger.fatal("Could not create working directories for '{}'!", this.getClass().getName());
+			return false;
+		}
+		
+		try {
+			metadataSink = createMetadataSink();
+		} catch (IOException | IllegalArgumentException ex) {
+			logger.fatal("Could not create the metadata output for '{}'!", this.getClass().getName());
+			logger.fatal(ex.getLocalizedMessage());
+			return false;
+		}
+		
+		if (configuration.isAsyncWritingEnabled()) {
+			outputSettings.setAsyncFileWriter(new AsyncFileWriter(configuration.getWriteQueueSize(), 
+					configuration.getFsyncInterval(), outputSettings.getDirectoryCache(), 
+					outputSettings.getMetadataWriteStatistics()));
+		}
+		
+		return true;
+	}
+	
 	private boolean processItem(Item item) {
 		Path outputPath = getWorkingDirectory();
 		boolean overwriteExistingFiles = configuration.isOverwrittingEnabled();
 		
 		String outputPathString = outputPath.toString();
+		long downloadStartTime = System.nanoTime();
 		try {
-			item.writeTextFiles(outputPathString, overwriteExistingFiles);
+			List<Path> downloadedFilePaths = item.writeTextFiles(outputPathString, overwriteExistingFiles);
+			runReport.recordSkippedTextFiles(item.getTextFileUrls().size() - downloadedFilePaths.size());
 		} catch (DownloadFailedException ex) {
+			HarvestMetrics.ITEM_ERRORS.labels(getClass().getSimpleName(), HarvestMetrics.STAGE_DOWNLOAD).increment();
+			progressTracker.recordFailedItem();
 			logger.error("The download of a text file from item ID {} failed!", item.getItemId());
 			logger.error(ex.getLocalizedMessage());
 			return false;
+		} finally {
+			runReport.addStageTime(RunReport.STAGE_DOWNLOAD, System.nanoTime() - downloadStartTime);
+			for (DownloadedFile downloadedFile : item.getDownloadedTextFiles().values()) {
+				runReport.recordDownloadedFile(downloadedFile);
+			}
 		}
 		
+		return writeMetadata(item);
+	}
+	
+	/***
+	 * Makes this harvester controllable via JMX while it runs. A harvester that cannot be registered, e.g.
+	 * because another one with the same name runs already, works without.
+	 */
+	private void registerControl() {
+		String harvesterName = configuration.getHarvesterName() != null ? 
+				configuration.getHarvesterName() : getClass().getSimpleName();
+		harvesterControl = new HarvesterControl(this);
+		
+		try {
+			harvesterControl.register(harvesterName);
+		} catch (JMException ex) {
+			logger.warn("Could not register the JMX control of Harvester {}!", this.getClass().getName());
+			logger.warn(ex.getLocalizedMessage());
+			harvesterControl = null;
+		}
+	}
+	
+	private void reportProgress(boolean isFinished) {
+		logger.info("Progress of Harvester {}: {}", this.getClass().getName(), progressTracker);
+		
+		try {
+			progressTracker.writeStatusFile(getWorkingDirectory(), isFinished);
+		} catch (IOException ex) {
+			logger.warn("Could not write the status file of '{}'!", this.getClass().getName());
+			logger.warn(ex.getLocalizedMessage());
+		}
+	}
+	
+	private void reprocessItems(ExecutorService itemExecutor) {
+		boolean isWritingConcurrently = metadataSink.supportsConcurrentWrites();
+		Semaphore pendingItems = new Semaphore(MAXIMUM_NUMBER_OF_PENDING_ITEMS);
+		
+		while (true) {
+			Item item = new Item();
+			item.setOutputSettings(outputSettings);
+			
+			waitWhilePaused();
+			HarvestEvents.setItemId(HarvestEvents.UNKNOWN_ITEM_ID);
+			if (!nextItem(item)) {
+				break;
+			}
+			
+			if (isWritingConcurrently) {
+				String harvesterName = HarvestEvents.getHarvester();
+				pendingItems.acquireUninterruptibly();
+				itemExecutor.execute(() -> {
+					HarvestEvents.setHarvester(harvesterName);
+					HarvestEvents.setItemId(item.getItemId());
+					try {
+						writeMetadata(item);
+					} finally {
+						HarvestEvents.clear();
+						pendingItems.release();
+					}
+				});
+			} else {
+				HarvestEvents.setItemId(item.getItemId());
+				writeMetadata(item);
+			}
+		}
+		
+		// Wait for all items still being written
+		pendingItems.acquireUninterruptibly(MAXIMUM_NUMBER_OF_PENDING_ITEMS);
+		logger.info("All items of Harvester {} reprocessed!", this.getClass().getName());
+	}
+	
+	/***
+	 * Returns the folder of this shard within the given directory, so the files numbered per instance, e.g.
+	 * archive shards, do not collide. The directory itself, if the harvest is not sharded.
+	 */
+	private Path resolveShardDirectory(Path directory) {
+		return shard.isPartial() ? directory.resolve(shard.getName()) : directory;
+	}
+	
+	/***
+	 * Reports the progress periodically to the log and the status file, as long as the harvester runs.
+	 */
+	private void startProgressReporting() {
+		progressTracker.start();
+		
+		long reportIntervalInSeconds = configuration.getProgressReportInterval();
+		if (reportIntervalInSeconds == ProgressTracker.REPORTING_DISABLED) {
+			return;
+		}
+		
+		String threadName = "progress-" + getClass().getSimpleName();
+		progressReporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread reporterThread = new Thread(runnable, threadName);
+			reporterThread.setDaemon(true);
+			return reporterThread;
+		});
+		progressReporter.scheduleAtFixedRate(() -> reportProgress(false), reportIntervalInSeconds, 
+				reportIntervalInSeconds, TimeUnit.SECONDS);
+	}
+	
+	private void startRunReport(String mode) {
+		runReport = new RunReport(getClass().getSimpleName(), mode);
+		runReport.setShard(shard);
+		httpFetcher.addListener(runReport);
+	}
+	
+	private void stopProgressReporting() {
+		if (progressReporter == null) {
+			return;
+		}
+		
+		// Shutting down cancels the periodic report, but lets a running one finish
+		progressReporter.shutdown();
 		try {
-			item.writeMetadataFile(outputPathString, Item.FileType.XML);
-		} catch (UnsupportedOutputFormatException ex) {
+			progressReporter.awaitTermination(PROGRESS_REPORTER_TERMINATION_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		progressReporter = null;
+		
+		reportProgress(true);
+	}
+	
+	private void unregisterControl() {
+		if (harvesterControl == null) {
+			return;
+		}
+		
+		try {
+			harvesterControl.unregister();
+		} catch (JMException ex) {
+			logger.warn("Could not unregister the JMX control of Harvester {}!", this.getClass().getName());
+			logger.warn(ex.getLocalizedMessage());
+		}
+		harvesterControl = null;
+		
+		// A harvester paused at its end must not block the next run
+		isPaused = false;
+	}
+	
+	private boolean writeMetadata(Item item) {
+		long writeStartTime = System.nanoTime();
+		try {
+			metadataSink.write(item);
+		} catch (IOException ex) {
+			HarvestMetrics.ITEM_ERRORS.labels(getClass().getSimpleName(), HarvestMetrics.STAGE_METADATA).increment();
+			progressTracker.recordFailedItem();
 			logger.error("Writing of the metadata of item ID {} failed!", item.getItemId());
 			logger.error(Arrays.toString(ex.getStackTrace()));
 			return false;
+		} finally {
+			runReport.addStageTime(RunReport.STAGE_METADATA_WRITE, System.nanoTime() - writeStartTime);
 		}
 		
+		HarvestMetrics.ITEMS.labels(getClass().getSimpleName()).increment();
+		progressTracker.recordProcessedItem(getDownloadedBytes(item));
 		return true;
 	}
 	
 	class CouldNotCreateDirectoryException extends IOException {
 		private static final long serialVersionUID = -8144628595804556669L;
-
+		
 		CouldNotCreateDirectoryException(String s) {
 			super(s);
 		}
@@ -199,7 +743,7 @@ public abstract class Harvester {
 	
 	class UnsetHarvesterBaseDirectoryException extends IOException {
 		private static final long serialVersionUID = -235562017414278915L;
-
+		
 		UnsetHarvesterBaseDirectoryException(String s) {
 			super(s);
 		}
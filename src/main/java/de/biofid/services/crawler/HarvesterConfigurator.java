@@ -16,6 +16,8 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 
+import de.biofid.services.crawler.Item.FileType;
+
 /***
  * A class holding all configurations given in a YAML file.
  * 
@@ -25,15 +27,36 @@ import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
  */
 public class HarvesterConfigurator {
 	
+	public static final int METRICS_DISABLED = -1;
+	
+	private static final String GENERAL_DEDUPLICATE_FILES_STRING = "deduplicate-files";
 	private static final String GENERAL_HARVESTING_DELAY = "request-delay";
 	private static final String GENERAL_LOGGER_LEVEL = "logging-level";
+	private static final String GENERAL_METRICS_PORT = "metrics-port";
+	private static final String GENERAL_OUTPUT_LAYOUT = "output-layout";
 	private static final String GENERAL_OUTPUT_PATH = "output-path";
 	private static final String GENERAL_OVERWRITE_STRING = "overwrite";
+	private static final String GENERAL_PROGRESS_INTERVAL = "progress-interval-s";
 	private static final String GENERAL_SETTINGS = "General";
+	private static final String GENERAL_SHARD = "shard";
+	private static final String GENERAL_USER_AGENT = "user-agent";
 	
 	private static final String HARVESTER_API_KEY = "api-key";
+	private static final String HARVESTER_ARCHIVE_FORMAT = "archive-format";
+	private static final String HARVESTER_ARCHIVE_SHARD_SIZE = "archive-shard-size-mb";
+	private static final String HARVESTER_ASYNC_WRITES = "async-writes";
+	private static final String HARVESTER_BANDWIDTH_LIMIT = "bandwidth-limit-kb-s";
 	private static final String HARVESTER_CLASS_NAME = "class";
+	private static final String HARVESTER_COMPRESSION = "compression";
 	private static final String HARVESTER_CONFIGURATIONS_PARENT = "Harvesters";
+	private static final String HARVESTER_FSYNC_INTERVAL = "fsync-interval-ms";
+	private static final String HARVESTER_METADATA_FORMAT = "metadata-format";
+	private static final String HARVESTER_METADATA_SEGMENT_SIZE = "metadata-segment-size-mb";
+	private static final String HARVESTER_STORE_RESPONSES = "store-responses";
+	private static final String HARVESTER_WRITE_QUEUE_SIZE = "write-queue-size";
+	
+	private static final long BYTES_PER_KILOBYTE = 1L << 10;
+	private static final long BYTES_PER_MEGABYTE = 1L << 20;
 	
 	private static final boolean OVERWRITTING_DEFAULT = true;
 	
@@ -41,14 +64,24 @@ public class HarvesterConfigurator {
 	protected String baseOutputPathString = null;
 	protected List<Configuration> configurations = new ArrayList<>();
 	protected long delayBetweenRequestsInMilliseconds = 0;
+	protected boolean isFileDeduplicationEnabled = false;
+	protected OutputLayout outputLayout = OutputLayout.DEFAULT_LAYOUT;
 	protected boolean isOverwrittingEnabled = true;
 	protected String loggerLevel = "INFO";
+	protected int metricsPort = METRICS_DISABLED;
+	protected long progressReportIntervalInSeconds = ProgressTracker.DEFAULT_REPORT_INTERVAL_IN_SECONDS;
+	protected Shard shard = Shard.ALL;
+	protected String userAgent = HttpFetcher.DEFAULT_USER_AGENT;
+	
 	
-
 	public String getBaseOutputPath() {
 		return baseOutputPathString;
 	}
 	
+	public OutputLayout getOutputLayout() {
+		return outputLayout;
+	}
+	
 	/***
 	 * Returns the configuration set as defined in the configuration file for the given harvester.
 	 * @param harvesterName The harvester name to look up.
@@ -82,6 +115,31 @@ public class HarvesterConfigurator {
 		return loggerLevel;
 	}
 	
+	/***
+	 * The port to serve the metrics on. {@link #METRICS_DISABLED}, if no metrics should be served.
+	 */
+	public int getMetricsPort() {
+		return metricsPort;
+	}
+	
+	/***
+	 * The user agent to send all requests with.
+	 */
+	public String getUserAgent() {
+		return userAgent;
+	}
+	
+	/***
+	 * Lets all harvesters harvest only the given part of their items, regardless of the configuration file.
+	 * This is e.g. given on the command line, so all crawler instances can share one configuration file.
+	 */
+	public void setShard(Shard shard) {
+		this.shard = shard;
+		for (Configuration config : configurations) {
+			config.setShard(shard);
+		}
+	}
+	
 	/***
 	 * Reads a YAML file to configure the Harvesters.
 	 * 
@@ -107,6 +165,30 @@ public class HarvesterConfigurator {
 			isOverwrittingEnabled = generalSettingsTree.get(GENERAL_OVERWRITE_STRING).asBoolean();
 		}
 		
+		if (generalSettingsTree.has(GENERAL_DEDUPLICATE_FILES_STRING)) {
+			isFileDeduplicationEnabled = generalSettingsTree.get(GENERAL_DEDUPLICATE_FILES_STRING).asBoolean();
+		}
+		
+		if (generalSettingsTree.has(GENERAL_OUTPUT_LAYOUT)) {
+			outputLayout = OutputLayout.parse(generalSettingsTree.get(GENERAL_OUTPUT_LAYOUT).asText());
+		}
+		
+		if (generalSettingsTree.has(GENERAL_METRICS_PORT)) {
+			metricsPort = generalSettingsTree.get(GENERAL_METRICS_PORT).asInt();
+		}
+		
+		if (generalSettingsTree.has(GENERAL_PROGRESS_INTERVAL)) {
+			progressReportIntervalInSeconds = generalSettingsTree.get(GENERAL_PROGRESS_INTERVAL).asLong();
+		}
+		
+		if (generalSettingsTree.has(GENERAL_SHARD)) {
+			shard = Shard.parse(generalSettingsTree.get(GENERAL_SHARD).asText());
+		}
+		
+		if (generalSettingsTree.has(GENERAL_USER_AGENT)) {
+			userAgent = generalSettingsTree.get(GENERAL_USER_AGENT).asText();
+		}
+		
 		JsonNode harvesterConfigurationTree = configurationJson.get(HARVESTER_CONFIGURATIONS_PARENT);
 		
 		@SuppressWarnings("unchecked")
@@ -126,7 +208,55 @@ public class HarvesterConfigurator {
 			Configuration config = new Configuration(harvesterName, harvesterClassName, jsonConfiguration);
 			config.setHarvesterApiKey(getApiKey(jsonConfiguration));
 			config.setOverwritting(getOverwrittingPolicyForHarvester(jsonConfiguration));
+			config.setFileDeduplication(getFileDeduplicationPolicyForHarvester(jsonConfiguration));
+			config.setOutputLayout(outputLayout);
+			
+			if (jsonConfiguration.has(HARVESTER_COMPRESSION)) {
+				setCompressionSettings(config, jsonConfiguration.getJSONObject(HARVESTER_COMPRESSION));
+			}
+			
+			if (jsonConfiguration.has(HARVESTER_METADATA_FORMAT)) {
+				config.setMetadataFormat(jsonConfiguration.getString(HARVESTER_METADATA_FORMAT).toLowerCase());
+			}
+			
+			if (jsonConfiguration.has(HARVESTER_METADATA_SEGMENT_SIZE)) {
+				config.setMetadataSegmentSize(
+						jsonConfiguration.getLong(HARVESTER_METADATA_SEGMENT_SIZE) * BYTES_PER_MEGABYTE);
+			}
+			
+			if (jsonConfiguration.has(HARVESTER_ARCHIVE_FORMAT)) {
+				config.setArchiveFormat(jsonConfiguration.getString(HARVESTER_ARCHIVE_FORMAT).toLowerCase());
+			}
+			
+			if (jsonConfiguration.has(HARVESTER_ARCHIVE_SHARD_SIZE)) {
+				config.setArchiveShardSize(
+						jsonConfiguration.getLong(HARVESTER_ARCHIVE_SHARD_SIZE) * BYTES_PER_MEGABYTE);
+			}
+			
+			if (jsonConfiguration.has(HARVESTER_ASYNC_WRITES)) {
+				config.setAsyncWriting(jsonConfiguration.getBoolean(HARVESTER_ASYNC_WRITES));
+			}
+			
+			if (jsonConfiguration.has(HARVESTER_WRITE_QUEUE_SIZE)) {
+				config.setWriteQueueSize(jsonConfiguration.getInt(HARVESTER_WRITE_QUEUE_SIZE));
+			}
+			
+			if (jsonConfiguration.has(HARVESTER_FSYNC_INTERVAL)) {
+				config.setFsyncInterval(jsonConfiguration.getLong(HARVESTER_FSYNC_INTERVAL));
+			}
+			
+			if (jsonConfiguration.has(HARVESTER_STORE_RESPONSES)) {
+				config.setResponseStoring(jsonConfiguration.getBoolean(HARVESTER_STORE_RESPONSES));
+			}
+			
+			if (jsonConfiguration.has(HARVESTER_BANDWIDTH_LIMIT)) {
+				config.setBandwidthLimit(jsonConfiguration.getLong(HARVESTER_BANDWIDTH_LIMIT) * BYTES_PER_KILOBYTE);
+			}
+			
+			config.setProgressReportInterval(progressReportIntervalInSeconds);
 			config.setRequestDelay(delayBetweenRequestsInMilliseconds);
+			config.setShard(jsonConfiguration.has(GENERAL_SHARD) ? 
+					Shard.parse(jsonConfiguration.get(GENERAL_SHARD).toString()) : shard);
 			
 			configurations.add(config);
 		}
@@ -146,6 +276,14 @@ public class HarvesterConfigurator {
     	return apiKey;
 	}
 	
+	private boolean getFileDeduplicationPolicyForHarvester(JSONObject jsonConfiguration) {
+		if (jsonConfiguration.has(GENERAL_DEDUPLICATE_FILES_STRING)) {
+			return jsonConfiguration.getBoolean(GENERAL_DEDUPLICATE_FILES_STRING);
+		}
+		
+		return isFileDeduplicationEnabled;
+	}
+	
 	private boolean getOverwrittingPolicyForHarvester(JSONObject jsonConfiguration) {
 		boolean isOverWrittingEnabled = OVERWRITTING_DEFAULT;
 		
@@ -155,7 +293,18 @@ public class HarvesterConfigurator {
 		
 		return isOverWrittingEnabled;
 	}
-    
+	
+	/***
+	 * Reads a map of file types to compression settings, e.g. "txt: zstd:3".
+	 */
+	private void setCompressionSettings(Configuration config, JSONObject compressionConfiguration) {
+		for (String fileTypeString : compressionConfiguration.keySet()) {
+			FileType fileType = FileType.valueOf(fileTypeString.toUpperCase());
+			config.setCompression(fileType, 
+					CompressionSetting.parse(compressionConfiguration.get(fileTypeString).toString()));
+		}
+	}
+	
 	private String readApiKey(String apiSourceFile) {
 		return FileHandler.getFileContent(apiSourceFile);
     }
@@ -0,0 +1,155 @@
+package de.biofid.services.crawler;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/***
+ * Exposes a running {@link de.biofid.services.crawler.Harvester} via JMX, so it can be paused, resumed and
+ * retuned without restarting it, e.g. with jconsole or VisualVM.
+ * 
+ * Every harvester registers its control on the platform MBean server while it runs, named
+ * "de.biofid.services.crawler:type=Harvester,name=" followed by the quoted name of its configuration.
+ * Changes apply to the running harvester only and are not written back to the configuration.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class HarvesterControl implements HarvesterControlMBean {
+	
+	public static final String OBJECT_NAME_DOMAIN = "de.biofid.services.crawler";
+	
+	private final Harvester harvester;
+	private ObjectName objectName = null;
+	
+	public HarvesterControl(Harvester harvester) {
+		this.harvester = harvester;
+	}
+	
+	public static ObjectName createObjectName(String harvesterName) throws JMException {
+		return new ObjectName(OBJECT_NAME_DOMAIN + ":type=Harvester,name=" + ObjectName.quote(harvesterName));
+	}
+	
+	@Override
+	public long getBandwidthLimitBytesPerSecond() {
+		return harvester.getBandwidthLimiter().getBytesPerSecond();
+	}
+	
+	@Override
+	public long getDiscoveredItems() {
+		return harvester.getProgressTracker().getDiscoveredItems();
+	}
+	
+	@Override
+	public long getDownloadedBytes() {
+		return harvester.getProgressTracker().getDownloadedBytes();
+	}
+	
+	@Override
+	public long getFailedItems() {
+		return harvester.getProgressTracker().getFailedItems();
+	}
+	
+	@Override
+	public int getMaximumParallelRequests() {
+		return harvester.getMaximumParallelRequests();
+	}
+	
+	/***
+	 * The name the control is registered with. Null, if it is not registered.
+	 */
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+	
+	@Override
+	public long getProcessedItems() {
+		return harvester.getProgressTracker().getProcessedItems();
+	}
+	
+	@Override
+	public String getProgress() {
+		return harvester.getProgressTracker().toString();
+	}
+	
+	@Override
+	public long getRequestDelayMilliseconds() {
+		return harvester.getRequestDelayInMilliseconds();
+	}
+	
+	@Override
+	public long getTotalItems() {
+		return harvester.getProgressTracker().getTotalNumberOfItems();
+	}
+	
+	@Override
+	public boolean isConcurrencyAdjustable() {
+		return harvester.isConcurrencyAdjustable();
+	}
+	
+	@Override
+	public boolean isPaused() {
+		return harvester.isHarvestingPaused();
+	}
+	
+	@Override
+	public void pause() {
+		harvester.pauseHarvesting();
+	}
+	
+	/***
+	 * Registers this control on the platform MBean server.
+	 * @param harvesterName The name of the harvester's configuration.
+	 * @throws JMException If the name is invalid or a control with this name is registered already.
+	 */
+	public void register(String harvesterName) throws JMException {
+		ObjectName name = createObjectName(harvesterName);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+		objectName = name;
+	}
+	
+	@Override
+	public void resume() {
+		harvester.resumeHarvesting();
+	}
+	
+	@Override
+	public void setBandwidthLimitBytesPerSecond(long bytesPerSecond) {
+		harvester.getBandwidthLimiter().setBytesPerSecond(bytesPerSecond);
+	}
+	
+	@Override
+	public void setMaximumParallelRequests(int numberOfParallelRequests) {
+		if (!harvester.isConcurrencyAdjustable()) {
+			throw new IllegalArgumentException("Harvester " + harvester.getClass().getSimpleName() + 
+					" sends its requests one after another, so the number of parallel requests cannot be changed!");
+		}
+		harvester.setMaximumParallelRequests(numberOfParallelRequests);
+	}
+	
+	@Override
+	public void setRequestDelayMilliseconds(long delayInMilliseconds) {
+		if (delayInMilliseconds < 0) {
+			throw new IllegalArgumentException("The request delay must not be negative!");
+		}
+		harvester.setRequestDelayInMilliseconds(delayInMilliseconds);
+	}
+	
+	/***
+	 * Removes this control from the platform MBean server, if it is registered.
+	 */
+	public void unregister() throws JMException {
+		if (objectName == null) {
+			return;
+		}
+		
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		if (mBeanServer.isRegistered(objectName)) {
+			mBeanServer.unregisterMBean(objectName);
+		}
+		objectName = null;
+	}
+}
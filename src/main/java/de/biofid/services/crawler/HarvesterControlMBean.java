@@ -0,0 +1,68 @@
+package de.biofid.services.crawler;
+
+/***
+ * The JMX interface of a running {@link de.biofid.services.crawler.Harvester}, see {@link HarvesterControl}.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public interface HarvesterControlMBean {
+	
+	/***
+	 * The maximum rate in bytes per second to receive responses and text files with. 0, if it is not limited.
+	 */
+	long getBandwidthLimitBytesPerSecond();
+	
+	long getDiscoveredItems();
+	
+	long getDownloadedBytes();
+	
+	long getFailedItems();
+	
+	/***
+	 * The number of requests the harvester may send at the same time.
+	 */
+	int getMaximumParallelRequests();
+	
+	long getProcessedItems();
+	
+	/***
+	 * The progress of the harvester as it is written to the log.
+	 */
+	String getProgress();
+	
+	long getRequestDelayMilliseconds();
+	
+	/***
+	 * The total number of items. -1, if the harvester does not know it (yet).
+	 */
+	long getTotalItems();
+	
+	/***
+	 * True, if the number of parallel requests of the harvester can be changed.
+	 */
+	boolean isConcurrencyAdjustable();
+	
+	boolean isPaused();
+	
+	/***
+	 * Stops the harvester before its next request, until it is resumed. Running downloads are completed.
+	 */
+	void pause();
+	
+	void resume();
+	
+	/***
+	 * @param bytesPerSecond The maximum rate. 0, if the rate should not be limited.
+	 */
+	void setBandwidthLimitBytesPerSecond(long bytesPerSecond);
+	
+	/***
+	 * @throws IllegalArgumentException If the harvester sends its requests one after another or the number is
+	 * smaller than 1.
+	 */
+	void setMaximumParallelRequests(int numberOfParallelRequests);
+	
+	void setRequestDelayMilliseconds(long delayInMilliseconds);
+}
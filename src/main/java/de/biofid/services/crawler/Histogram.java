@@ -0,0 +1,93 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * A metric counting observed durations in fixed buckets, e.g. the latency of requests.
+ * 
+ * Every observation increments only the counter of its own bucket. The cumulative counts the text format
+ * expects are summed up when the metric is written.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class Histogram extends MetricFamily<Histogram.Child> {
+	
+	/***
+	 * Upper bounds in seconds, fitting anything from a fast API call to a large download.
+	 */
+	public static final double[] DEFAULT_LATENCY_BUCKETS_IN_SECONDS = 
+		{0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120};
+	
+	private static final double NANOSECONDS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+	
+	public class Child {
+		// The last counter holds all observations above the highest bucket
+		private LongAdder[] bucketCounts = new LongAdder[upperBounds.length + 1];
+		private DoubleAdder sumInSeconds = new DoubleAdder();
+		
+		private Child() {
+			for (int i = 0; i < bucketCounts.length; ++i) {
+				bucketCounts[i] = new LongAdder();
+			}
+		}
+		
+		public long getCount() {
+			long count = 0;
+			for (LongAdder bucketCount : bucketCounts) {
+				count += bucketCount.sum();
+			}
+			return count;
+		}
+		
+		public void observe(double seconds) {
+			int bucket = 0;
+			while (bucket < upperBounds.length && seconds > upperBounds[bucket]) {
+				++bucket;
+			}
+			bucketCounts[bucket].increment();
+			sumInSeconds.add(seconds);
+		}
+		
+		public void observeNanoseconds(long nanoseconds) {
+			observe(nanoseconds / NANOSECONDS_PER_SECOND);
+		}
+	}
+	
+	private double[] upperBounds;
+	
+	Histogram(String name, String help, double[] upperBounds, String[] labelNames) {
+		super(name, help, labelNames);
+		this.upperBounds = upperBounds;
+	}
+	
+	@Override
+	protected Child createChild() {
+		return new Child();
+	}
+	
+	@Override
+	protected String getType() {
+		return "histogram";
+	}
+	
+	@Override
+	protected void writeSamples(Writer writer, List<String> labelValues, Child child) throws IOException {
+		long cumulativeCount = 0;
+		for (int i = 0; i < upperBounds.length; ++i) {
+			cumulativeCount += child.bucketCounts[i].sum();
+			writeSample(writer, "_bucket", labelValues, "le=\"" + upperBounds[i] + "\"", 
+					Long.toString(cumulativeCount));
+		}
+		cumulativeCount += child.bucketCounts[upperBounds.length].sum();
+		writeSample(writer, "_bucket", labelValues, "le=\"+Inf\"", Long.toString(cumulativeCount));
+		writeSample(writer, "_sum", labelValues, null, Double.toString(child.sumInSeconds.sum()));
+		writeSample(writer, "_count", labelValues, null, Long.toString(cumulativeCount));
+	}
+}
@@ -0,0 +1,554 @@
+package de.biofid.services.crawler;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.json.JSONObject;
+import org.jsoup.Jsoup;
+import org.jsoup.helper.HttpConnection;
+import org.jsoup.nodes.Document;
+
+/***
+ * The single place where the harvesters fetch web pages and API responses.
+ * 
+ * The requests are sent with HttpURLConnection and carry the user agent set with
+ * {@link #setUserAgent(String)}. Redirects are followed manually, because HttpURLConnection does not follow
+ * redirects that change the protocol (e.g. from http to https). Every completely received response,
+ * including error responses, is handed to the registered listeners, e.g. to archive it. The URL of a
+ * response holds no credentials, like the BHL API key (see {@link ResponseStore#removeCredentials(String)}).
+ * 
+ * A fetcher keeps all responses with a body in its {@link ResponseStore}, if one is set. When replaying, it
+ * answers the requests from the store only and requests nothing. The static settings apply to all fetchers
+ * and file downloads: {@link #redirectSite(URL, URL)} sends the requests to a site to another server, e.g. to
+ * a local stand-in of the site in tests. {@link #startRecording(ResponseStore)} keeps every response of a
+ * harvest and {@link #startReplaying(ResponseStore, double)} answers all requests from such a recording, so a
+ * harvest can be repeated on real data without network access.
+ * 
+ * An instance may be used by several threads at the same time.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class HttpFetcher {
+	
+	public static final int CONNECTION_TIMEOUT_IN_MILLISECONDS = 30000;
+	// The user agent of Jsoup, which fetched the pages before. Some sites throttle or block the one of Java.
+	public static final String DEFAULT_USER_AGENT = HttpConnection.DEFAULT_UA;
+	public static final int READ_TIMEOUT_IN_MILLISECONDS = 120000;
+	
+	private static final String CHARSET_PARAMETER = "charset=";
+	private static final String CONTENT_TYPE_HEADER = "Content-Type";
+	private static final String LOCATION_HEADER = "Location";
+	private static final int MAXIMUM_NUMBER_OF_REDIRECTS = 5;
+	private static final String USER_AGENT_HEADER = "User-Agent";
+	
+	private static volatile ResponseStore recordingStore = null;
+	private static volatile ResponseStore replayStore = null;
+	private static volatile double replayTimeScale = 1;
+	private static Map<String, URL> siteRedirects = new ConcurrentHashMap<>();
+	private static volatile String userAgent = DEFAULT_USER_AGENT;
+	
+	private BandwidthLimiter bandwidthLimiter = null;
+	private boolean isReplaying = false;
+	private List<HttpResponseListener> listeners = new CopyOnWriteArrayList<>();
+	private ResponseStore responseStore = null;
+	
+	public void addListener(HttpResponseListener listener) {
+		listeners.add(listener);
+	}
+	
+	public BandwidthLimiter getBandwidthLimiter() {
+		return bandwidthLimiter;
+	}
+	
+	public ResponseStore getResponseStore() {
+		return responseStore;
+	}
+	
+	public boolean isReplaying() {
+		return isReplaying;
+	}
+	
+	public void removeListener(HttpResponseListener listener) {
+		listeners.remove(listener);
+	}
+	
+	/***
+	 * Receives all following responses no faster than the given limiter allows.
+	 * @param bandwidthLimiter The limiter. Null, if responses should be read as fast as possible.
+	 */
+	public void setBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+		this.bandwidthLimiter = bandwidthLimiter;
+	}
+	
+	/***
+	 * Stores all following responses in the given store.
+	 * @param responseStore The store. Null, if no responses should be stored.
+	 */
+	public void setResponseStore(ResponseStore responseStore) {
+		this.responseStore = responseStore;
+		this.isReplaying = false;
+	}
+	
+	/***
+	 * Answers all following requests from the given store instead of requesting them.
+	 * @param responseStore The store holding the responses of an earlier harvest.
+	 */
+	public void setReplaySource(ResponseStore responseStore) {
+		this.responseStore = responseStore;
+		this.isReplaying = true;
+	}
+	
+	/***
+	 * Fetches the given URL and reads the complete response into memory.
+	 * @param url The URL to fetch.
+	 * @return The response including its body.
+	 * @throws HttpStatusException If the server answered with an error status.
+	 * @throws IOException If the request failed or, when replaying, no response is stored for the URL.
+	 */
+	public HttpResponse get(String url) throws IOException {
+		if (isReplaying) {
+			return replay(url, responseStore, 0);
+		}
+		
+		ResponseStore recordedResponses = replayStore;
+		if (recordedResponses != null) {
+			return replay(url, recordedResponses, replayTimeScale);
+		}
+		
+		URL requestUrl = new URL(url);
+		HarvestMetrics.HTTP_REQUESTS_IN_FLIGHT.labels().increment();
+		try {
+			return request(requestUrl);
+		} catch (HttpStatusException ex) {
+			// Recorded as response already
+			throw ex;
+		} catch (IOException ex) {
+			HarvestMetrics.recordHttpError(requestUrl, ex);
+			throw ex;
+		} finally {
+			HarvestMetrics.HTTP_REQUESTS_IN_FLIGHT.labels().decrement();
+		}
+	}
+	
+	/***
+	 * Fetches and parses the HTML page at the given URL.
+	 * The charset is taken from the Content-Type header or, if it is missing, from the page itself.
+	 */
+	public Document getDocument(String url) throws IOException {
+		HttpResponse response = get(url);
+		
+		HarvestEvents.HtmlParse parseEvent = new HarvestEvents.HtmlParse();
+		parseEvent.begin();
+		Document document = Jsoup.parse(new ByteArrayInputStream(response.getBody()), getCharset(response),
+				response.getUrl().toString());
+		parseEvent.url = url;
+		parseEvent.bytes = response.getBody().length;
+		parseEvent.commitTagged();
+		
+		return document;
+	}
+	
+	/***
+	 * Fetches the JSON object returned by the given URL for the given query parameters.
+	 * @param url The URL without a query.
+	 * @param parameters The query parameters. Their values are converted with toString().
+	 */
+	public JSONObject getJsonObject(String url, Map<String, Object> parameters) throws IOException {
+		HttpResponse response = get(buildUrl(url, parameters));
+		return new JSONObject(new String(response.getBody(), StandardCharsets.UTF_8));
+	}
+	
+	/***
+	 * Appends the given query parameters to the given URL.
+	 */
+	public static String buildUrl(String url, Map<String, Object> parameters) {
+		if (parameters.isEmpty()) {
+			return url;
+		}
+		
+		StringBuilder urlBuilder = new StringBuilder(url);
+		char separator = url.contains("?") ? '&' : '?';
+		for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+			urlBuilder.append(separator)
+				.append(encode(parameter.getKey()))
+				.append('=')
+				.append(encode(String.valueOf(parameter.getValue())));
+			separator = '&';
+		}
+		
+		return urlBuilder.toString();
+	}
+	
+	/***
+	 * Removes all redirects set with {@link #redirectSite(URL, URL)}.
+	 */
+	public static void clearSiteRedirects() {
+		siteRedirects.clear();
+	}
+	
+	/***
+	 * Stores the responses of all following requests of all fetchers and file downloads in the given store,
+	 * including the time they took. Failed requests without a response are not recorded.
+	 * 
+	 * Downloaded files are stored completely, so a recording may need as much space as the harvest itself.
+	 * Their bodies are streamed to disk while downloading, so a recording needs no more memory than a harvest.
+	 */
+	public static void startRecording(ResponseStore responseStore) {
+		replayStore = null;
+		recordingStore = responseStore;
+	}
+	
+	/***
+	 * Answers all following requests of all fetchers and file downloads from the given store, as recorded
+	 * with {@link #startRecording(ResponseStore)}. Requests without a recorded response fail.
+	 * @param responseStore The recorded responses.
+	 * @param timeScale The share of the recorded time every response takes, e.g. 1 to take as long as the
+	 * original request, 0.5 for half of it or 0 to answer at once.
+	 */
+	public static void startReplaying(ResponseStore responseStore, double timeScale) {
+		if (timeScale < 0) {
+			throw new IllegalArgumentException("The time scale must not be negative!");
+		}
+		
+		recordingStore = null;
+		replayTimeScale = timeScale;
+		replayStore = responseStore;
+	}
+	
+	/***
+	 * Sends all following requests to the network again and stops recording them.
+	 */
+	public static void stopRecordingAndReplaying() {
+		recordingStore = null;
+		replayStore = null;
+	}
+	
+	/***
+	 * Sends all following requests to the given site to the given server instead.
+	 * 
+	 * Only the protocol, host and port of a request are replaced, its path and query are kept. Responses keep
+	 * the URL of the site, so stored responses, reports and metadata look as if the site was requested.
+	 * @param siteUrl The site, e.g. "https://www.zobodat.at". Only its protocol, host and port are used.
+	 * @param targetUrl The server to send the requests to, e.g. "http://127.0.0.1:8080".
+	 */
+	public static void redirectSite(URL siteUrl, URL targetUrl) {
+		siteRedirects.put(getOrigin(siteUrl), targetUrl);
+	}
+	
+	/***
+	 * Sends all following requests of all fetchers and file downloads with the given user agent.
+	 * @param userAgent The value of the header "User-Agent", e.g. {@link #DEFAULT_USER_AGENT}.
+	 */
+	public static void setUserAgent(String userAgent) {
+		HttpFetcher.userAgent = userAgent;
+	}
+	
+	/***
+	 * Opens a connection to the given URL, following redirects.
+	 * 
+	 * For HTTP URLs the returned connection has received its status already and is neither a redirect nor
+	 * an error. Non-HTTP connections (e.g. to files) are returned unconnected.
+	 * @throws HttpStatusException If the server answered with an error status.
+	 * @throws IOException If the request failed or too many redirects happened.
+	 */
+	public static URLConnection openConnection(URL url) throws IOException {
+		long startTime = System.currentTimeMillis();
+		ResponseStore recordedResponses = replayStore;
+		URLConnection connection = recordedResponses != null ? openRecordedConnection(url, recordedResponses) :
+			openConnectionFollowingRedirects(url);
+		
+		if (connection instanceof HttpURLConnection) {
+			HttpURLConnection httpConnection = (HttpURLConnection) connection;
+			int statusCode = httpConnection.getResponseCode();
+			if (statusCode >= 400) {
+				if (isRecordingResponses()) {
+					HttpResponse responseHead = getResponseHead(httpConnection, System.currentTimeMillis() - startTime);
+					recordResponse(url.toString(), responseHead.withBody(new byte[0]));
+				}
+				
+				String statusLine = httpConnection.getHeaderField(0);
+				httpConnection.disconnect();
+				throw new HttpStatusException(toResponseUrl(httpConnection.getURL()), statusCode, statusLine);
+			}
+		}
+		return connection;
+	}
+	
+	/***
+	 * Returns the status and headers of the given connection, without the body.
+	 * @return The response head. Null, if the connection is not an HTTP connection.
+	 */
+	public static HttpResponse getResponseHead(URLConnection connection, long durationInMilliseconds)
+			throws IOException {
+		if (!(connection instanceof HttpURLConnection)) {
+			return null;
+		}
+		
+		HttpURLConnection httpConnection = (HttpURLConnection) connection;
+		return new HttpResponse(toResponseUrl(httpConnection.getURL()), httpConnection.getResponseCode(),
+				httpConnection.getHeaderField(0), getHeaders(httpConnection), null, durationInMilliseconds);
+	}
+	
+	/***
+	 * Returns true, if the responses of all requests are recorded (see {@link #startRecording(ResponseStore)}).
+	 */
+	static boolean isRecordingResponses() {
+		return recordingStore != null;
+	}
+	
+	/***
+	 * Stores the given response in the recording, if the responses are recorded.
+	 * @param requestUrl The URL as it was requested.
+	 * @param response The response including its complete body.
+	 */
+	static void recordResponse(String requestUrl, HttpResponse response) throws IOException {
+		ResponseStore responseStore = recordingStore;
+		if (responseStore != null) {
+			responseStore.write(requestUrl, response);
+		}
+	}
+	
+	/***
+	 * Stores the given response in the recording with the body in the given file, if the responses are
+	 * recorded.
+	 * @param requestUrl The URL as it was requested.
+	 * @param responseHead The status and headers of the response.
+	 * @param bodyFilePath The file holding the complete body of the response.
+	 */
+	static void recordResponse(String requestUrl, HttpResponse responseHead, Path bodyFilePath) throws IOException {
+		ResponseStore responseStore = recordingStore;
+		if (responseStore != null) {
+			responseStore.write(requestUrl, responseHead, bodyFilePath);
+		}
+	}
+	
+	private static String encode(String value) {
+		try {
+			return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+		} catch (UnsupportedEncodingException ex) {
+			// Every Java platform has to support UTF-8
+			throw new IllegalStateException(ex);
+		}
+	}
+	
+	private static String getCharset(HttpResponse response) {
+		String contentType = response.getHeader(CONTENT_TYPE_HEADER);
+		if (contentType == null) {
+			return null;
+		}
+		
+		int charsetIndex = contentType.toLowerCase().indexOf(CHARSET_PARAMETER);
+		if (charsetIndex < 0) {
+			return null;
+		}
+		
+		String charset = contentType.substring(charsetIndex + CHARSET_PARAMETER.length()).split(";")[0];
+		return charset.replace("\"", "").trim();
+	}
+	
+	private static Map<String, List<String>> getHeaders(HttpURLConnection connection) {
+		Map<String, List<String>> headers = new LinkedHashMap<>();
+		for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+			// The status line is stored with the key null
+			if (header.getKey() != null) {
+				headers.put(header.getKey(), header.getValue());
+			}
+		}
+		return headers;
+	}
+	
+	private static String getOrigin(URL url) {
+		return url.getProtocol() + "://" + url.getAuthority();
+	}
+	
+	private static HttpURLConnection openHttpConnection(URL url) throws IOException {
+		URLConnection connection = openConnectionFollowingRedirects(url);
+		if (!(connection instanceof HttpURLConnection)) {
+			throw new IOException("The URL '" + url + "' is not an HTTP URL!");
+		}
+		return (HttpURLConnection) connection;
+	}
+	
+	private static URLConnection openConnectionFollowingRedirects(URL url) throws IOException {
+		for (int i = 0; i <= MAXIMUM_NUMBER_OF_REDIRECTS; ++i) {
+			URLConnection connection = toTargetUrl(url).openConnection();
+			connection.setConnectTimeout(CONNECTION_TIMEOUT_IN_MILLISECONDS);
+			connection.setReadTimeout(READ_TIMEOUT_IN_MILLISECONDS);
+			
+			if (!(connection instanceof HttpURLConnection)) {
+				return connection;
+			}
+			
+			HttpURLConnection httpConnection = (HttpURLConnection) connection;
+			httpConnection.setInstanceFollowRedirects(false);
+			httpConnection.setRequestProperty(USER_AGENT_HEADER, userAgent);
+			
+			int responseCode = httpConnection.getResponseCode();
+			if (responseCode >= 300 && responseCode < 400) {
+				String location = httpConnection.getHeaderField(LOCATION_HEADER);
+				httpConnection.disconnect();
+				if (location == null) {
+					throw new IOException("Redirect without location from URL '" + url + "'!");
+				}
+				url = new URL(url, location);
+				continue;
+			}
+			
+			return httpConnection;
+		}
+		
+		throw new IOException("Too many redirects for URL '" + url + "'!");
+	}
+	
+	private void notifyListeners(HttpResponse response) {
+		for (HttpResponseListener listener : listeners) {
+			listener.onResponse(response);
+		}
+	}
+	
+	private static HttpURLConnection openRecordedConnection(URL url, ResponseStore recordedResponses)
+			throws IOException {
+		HttpResponse response = readStoredResponse(url.toString(), recordedResponses);
+		return new RecordedHttpConnection(response, (long) (response.getDurationInMilliseconds() * replayTimeScale));
+	}
+	
+	private static HttpResponse readStoredResponse(String url, ResponseStore sourceStore) throws IOException {
+		HttpResponse response = sourceStore.read(new URL(url).toString());
+		if (response == null) {
+			throw new FileNotFoundException("No response stored for URL '" + url + "'!");
+		}
+		return response;
+	}
+	
+	/***
+	 * Answers a request from the given store.
+	 * @param timeScale The share of the recorded time to wait before answering.
+	 */
+	private HttpResponse replay(String url, ResponseStore sourceStore, double timeScale) throws IOException {
+		HttpResponse response = readStoredResponse(url, sourceStore);
+		try {
+			TimeUnit.MILLISECONDS.sleep((long) (response.getDurationInMilliseconds() * timeScale));
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while replaying the response of '" + url + "'!");
+		}
+		
+		if (responseStore != null && responseStore != sourceStore) {
+			responseStore.write(new URL(url).toString(), response);
+		}
+		notifyListeners(response);
+		
+		if (response.getStatusCode() >= 400) {
+			throw new HttpStatusException(response.getUrl(), response.getStatusCode(), response.getStatusLine());
+		}
+		
+		return response;
+	}
+	
+	private HttpResponse request(URL requestUrl) throws IOException {
+		HarvestEvents.MetadataFetch fetchEvent = new HarvestEvents.MetadataFetch();
+		fetchEvent.begin();
+		fetchEvent.url = requestUrl.toString();
+		fetchEvent.host = requestUrl.getHost();
+		
+		try {
+			return request(requestUrl, fetchEvent);
+		} finally {
+			// Failed requests are committed with status code 0, so stalls show up as well
+			fetchEvent.commitTagged();
+		}
+	}
+	
+	private HttpResponse request(URL requestUrl, HarvestEvents.MetadataFetch fetchEvent) throws IOException {
+		long startTime = System.currentTimeMillis();
+		long startTimeInNanoseconds = System.nanoTime();
+		HttpURLConnection connection = openHttpConnection(requestUrl);
+		
+		try {
+			int statusCode = connection.getResponseCode();
+			InputStream bodyStream = statusCode >= 400 ? connection.getErrorStream() : connection.getInputStream();
+			byte[] body = new byte[0];
+			if (bodyStream != null) {
+				if (bandwidthLimiter != null) {
+					bodyStream = bandwidthLimiter.limit(bodyStream);
+				}
+				try (InputStream inputStream = bodyStream) {
+					body = IOUtils.toByteArray(inputStream);
+				}
+			}
+			
+			HarvestMetrics.recordHttpResponse(requestUrl, statusCode, startTimeInNanoseconds);
+			fetchEvent.statusCode = statusCode;
+			fetchEvent.bytes = body.length;
+			
+			URL responseUrl = toResponseUrl(connection.getURL());
+			HttpResponse response = new HttpResponse(responseUrl, statusCode, connection.getHeaderField(0),
+					getHeaders(connection), body, System.currentTimeMillis() - startTime);
+			if (responseStore != null) {
+				responseStore.write(requestUrl.toString(), response);
+			}
+			recordResponse(requestUrl.toString(), response);
+			notifyListeners(response);
+			
+			if (statusCode >= 400) {
+				throw new HttpStatusException(responseUrl, statusCode, response.getStatusLine());
+			}
+			
+			return response;
+		} finally {
+			connection.disconnect();
+		}
+	}
+	
+	/***
+	 * Returns the URL a response is reported and kept under: the URL of the site without credentials.
+	 */
+	private static URL toResponseUrl(URL url) throws MalformedURLException {
+		return new URL(ResponseStore.removeCredentials(toSiteUrl(url).toString()));
+	}
+	
+	/***
+	 * Returns the URL of the site, whose requests were redirected to the server of the given URL.
+	 */
+	private static URL toSiteUrl(URL url) throws MalformedURLException {
+		if (siteRedirects.isEmpty()) {
+			return url;
+		}
+		
+		String origin = getOrigin(url);
+		for (Map.Entry<String, URL> siteRedirect : siteRedirects.entrySet()) {
+			if (getOrigin(siteRedirect.getValue()).equals(origin)) {
+				return new URL(siteRedirect.getKey() + url.getFile());
+			}
+		}
+		return url;
+	}
+	
+	private static URL toTargetUrl(URL url) throws MalformedURLException {
+		URL targetUrl = siteRedirects.get(getOrigin(url));
+		if (targetUrl == null) {
+			return url;
+		}
+		return new URL(targetUrl.getProtocol(), targetUrl.getHost(), targetUrl.getPort(), url.getFile());
+	}
+}
@@ -0,0 +1,88 @@
+package de.biofid.services.crawler;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/***
+ * A response received via HTTP, i.e. the status, the headers and, if it was read into memory, the body.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class HttpResponse {
+	
+	private byte[] body;
+	private long durationInMilliseconds;
+	private Map<String, List<String>> headers;
+	private String statusLine;
+	private int statusCode;
+	private URL url;
+	
+	/***
+	 * @param url The URL that answered, i.e. the requested URL after following all redirects.
+	 * @param statusCode The HTTP status code.
+	 * @param statusLine The complete status line, e.g. "HTTP/1.1 200 OK".
+	 * @param headers All headers except the status line.
+	 * @param body The response body. Null, if the body was not read into memory.
+	 * @param durationInMilliseconds The time from sending the request until the body was received.
+	 */
+	public HttpResponse(URL url, int statusCode, String statusLine, Map<String, List<String>> headers, 
+			byte[] body, long durationInMilliseconds) {
+		this.url = url;
+		this.statusCode = statusCode;
+		this.statusLine = statusLine;
+		this.headers = headers;
+		this.body = body;
+		this.durationInMilliseconds = durationInMilliseconds;
+	}
+	
+	/***
+	 * The response body. Null, if the body was streamed elsewhere, e.g. into a downloaded file.
+	 */
+	public byte[] getBody() {
+		return body;
+	}
+	
+	public long getDurationInMilliseconds() {
+		return durationInMilliseconds;
+	}
+	
+	/***
+	 * Returns the first value of the given header. The header name is case-insensitive.
+	 * @return The header value. Null, if the header was not sent.
+	 */
+	public String getHeader(String name) {
+		for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+			if (header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty()) {
+				return header.getValue().get(0);
+			}
+		}
+		return null;
+	}
+	
+	public Map<String, List<String>> getHeaders() {
+		return Collections.unmodifiableMap(headers);
+	}
+	
+	public int getStatusCode() {
+		return statusCode;
+	}
+	
+	public String getStatusLine() {
+		return statusLine;
+	}
+	
+	public URL getUrl() {
+		return url;
+	}
+	
+	/***
+	 * Returns a copy of this response with the given body, e.g. to keep the body of a streamed response.
+	 */
+	public HttpResponse withBody(byte[] body) {
+		return new HttpResponse(url, statusCode, statusLine, headers, body, durationInMilliseconds);
+	}
+}
@@ -0,0 +1,18 @@
+package de.biofid.services.crawler;
+
+/***
+ * Is notified about every response an {@link de.biofid.services.crawler.HttpFetcher} received completely.
+ * 
+ * Listeners may be called from several threads at the same time.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public interface HttpResponseListener {
+	
+	/***
+	 * @param response The received response, including its body.
+	 */
+	void onResponse(HttpResponse response);
+}
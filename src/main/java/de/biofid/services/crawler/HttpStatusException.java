@@ -0,0 +1,41 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+import java.net.URL;
+
+/***
+ * Thrown, if a server answers a request with an error status (4xx or 5xx).
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class HttpStatusException extends IOException {
+	private static final long serialVersionUID = -3519843471826517642L;
+	
+	private final int statusCode;
+	private final String statusLine;
+	private final URL url;
+	
+	public HttpStatusException(URL url, int statusCode, String statusLine) {
+		super("Server returned HTTP response code " + statusCode + " for URL '" + url + "'!");
+		this.url = url;
+		this.statusCode = statusCode;
+		this.statusLine = statusLine;
+	}
+	
+	public int getStatusCode() {
+		return statusCode;
+	}
+	
+	/***
+	 * The complete status line, e.g. "HTTP/1.1 401 Unauthorized". Null, if the server did not send one.
+	 */
+	public String getStatusLine() {
+		return statusLine;
+	}
+	
+	public URL getUrl() {
+		return url;
+	}
+}
@@ -1,27 +1,31 @@
 package de.biofid.services.crawler;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.channels.Channels;
-import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
-import java.nio.file.Files;
+import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.json.JSONArray;
 import org.json.JSONObject;
-import org.json.XML;
-import org.texttechnologylab.utilities.helper.FileUtils;
 
 /***
  * An item holds all metadata of a single book or monography.
@@ -43,6 +47,11 @@ public class Item {
 			public String getFileSuffix() {
 				return PDF.toString();
 			}
+			
+			@Override
+			public boolean isCompressible() {
+				return false;
+			}
 		}, 
 		TXT {
 			@Override
@@ -67,9 +76,33 @@ public class Item {
 			public String getFileSuffix() {
 				return "gz";
 			}
+			
+			@Override
+			public boolean isCompressible() {
+				return false;
+			}
 		};
 		
 		public abstract String getFileSuffix();
+		
+		/***
+		 * Returns the file suffix including the suffix of the given compression, e.g. "txt.gz".
+		 * @param compression The compression applied to the file. Null, if the file is not compressed.
+		 */
+		public String getFileSuffix(CompressionSetting compression) {
+			String fileSuffix = getFileSuffix().toLowerCase();
+			if (compression != null) {
+				fileSuffix += "." + compression.getFileSuffix();
+			}
+			return fileSuffix;
+		}
+		
+		/***
+		 * False, if files of this type are compressed already and compressing them again is pointless.
+		 */
+		public boolean isCompressible() {
+			return true;
+		}
 	}
 	
 	public static String TEXT_OUTPUT_FOLDER_NAME = "text";
@@ -81,12 +114,16 @@ public class Item {
 	public static String METADATA_ITEM_TEXT_URLS_PARENT_STRING = "TextUrls";
 	public static String METADATA_ITEM_TEXT_URL_STRING = "TextUrl";
 	public static String METADATA_ITEM_TEXT_FILE_TYPE_STRING = "Filetype";
+	public static String METADATA_ITEM_TEXT_FILE_CHECKSUM_STRING = "Sha256";
+	public static String METADATA_ITEM_TEXT_FILE_SIZE_STRING = "Size";
 	public static String METADATA_ITEM_SOURCE_STRING = "Source";
 	
 	public static final int JSON_N_SPACES_FOR_INDENTATION = 2;
 	
+	private static final int METADATA_WRITE_BUFFER_SIZE = 64 * 1024;
+	
 	private static final Logger logger = LogManager.getLogger(LiteratureHarvester.LOGGER_NAME);
-		
+	
 	private long itemID = -1;
 	private String dataSource = "";
 	private URL itemUrl;
@@ -94,7 +131,10 @@ public class Item {
 	private ArrayList<FileType> textFileTypes = new ArrayList<>();
 	private JSONObject itemMetadata = new JSONObject();
 	private HashSet<String> createdTextFiles = new HashSet<>();
-
+	private HashMap<URL, DownloadedFile> downloadedTextFiles = new HashMap<>();
+	private HashMap<URL, DownloadedFile> existingTextFiles = new HashMap<>();
+	private OutputSettings outputSettings = new OutputSettings();
+	
 	/***
 	 * Add a new key with an object to the metadata.
 	 */
@@ -138,11 +178,19 @@ public class Item {
 		if (textFileUrls.contains(url)) {
 			return;
 		}
-	
+		
 		this.textFileUrls.add(url);
 		this.textFileTypes.add(type);
 	}
 	
+	/***
+	 * The files downloaded by {@link #writeTextFiles(String, boolean)}, by their URL. Files that existed
+	 * already and were skipped are not contained, but their digest and size are still written to the metadata.
+	 */
+	public Map<URL, DownloadedFile> getDownloadedTextFiles() {
+		return Collections.unmodifiableMap(downloadedTextFiles);
+	}
+	
 	public long getItemId() {
 		return this.itemID;
 	}
@@ -156,6 +204,19 @@ public class Item {
 		this.itemMetadata = other.getItemMetadata();
 	}
 	
+	/***
+	 * Serializes the complete metadata in the given format, compressed if configured.
+	 * @param outputFormat Either XML or JSON.
+	 * @return The content of the metadata file.
+	 * @throws UnsupportedOutputFormatException If the given format is neither XML nor JSON.
+	 */
+	public byte[] serializeMetadata(FileType outputFormat) throws UnsupportedOutputFormatException, IOException {
+		checkMetadataFileType(outputFormat);
+		addObjectVariableDataToMetadata();
+		
+		return serialize(outputFormat);
+	}
+	
 	public void setDataSource(String dataSource) {
 		this.dataSource = dataSource;
 	}
@@ -176,10 +237,25 @@ public class Item {
 		return textFileTypes;
 	}
 	
+	/***
+	 * Returns the name of the metadata file of this item for the given format, e.g. "1234.xml.gz".
+	 */
+	public String getMetadataFileName(FileType outputFormat) {
+		return itemID + "." + outputFormat.getFileSuffix(outputSettings.getCompression(outputFormat));
+	}
+	
 	public JSONObject getItemMetadata() {
 		return itemMetadata;
 	}
 	
+	/***
+	 * Returns the metadata as it is written to the output, including the item ID, URLs and the text files.
+	 */
+	public JSONObject getCompleteMetadata() {
+		addObjectVariableDataToMetadata();
+		return itemMetadata;
+	}
+	
 	/***
 	 * The item id HAS to be set! From the ID all file names are derived!
 	 */
@@ -202,21 +278,22 @@ public class Item {
 		this.itemUrl = url;
 	}
 	
+	public void setOutputSettings(OutputSettings outputSettings) {
+		this.outputSettings = outputSettings;
+	}
+	
 	public Path writeMetadataFile(String outputDirectory, FileType outputFormat) 
 			throws UnsupportedOutputFormatException {
+		checkMetadataFileType(outputFormat);
 		addObjectVariableDataToMetadata();
 		
 		Path outputPath = Paths.get(outputDirectory, METADATA_OUTPUT_FOLDER_NAME);
 		Path filePath = getLocaleItemFilePath(outputPath, outputFormat);
 		createDirectoryIfNotExisting(filePath.getParent());
 		
-		logger.info("Preparing to write metadata into {}", filePath.toAbsolutePath());
+		logger.info("Writing metadata into {}", filePath::toAbsolutePath);
 		
-		String metadataOutputString = getMetadataStringForFileType(outputFormat);
-		
-		logger.info("Writing metadata");
-		
-		writeStringToFile(filePath, metadataOutputString);
+		writeMetadataToFile(filePath, outputFormat);
 		
 		return filePath;
 	}
@@ -224,7 +301,7 @@ public class Item {
 	public List<Path> writeTextFiles(String outputDirectory, boolean overwriteExistingFiles) 
 			throws DownloadFailedException {
 		Path outputPath = Paths.get(outputDirectory, TEXT_OUTPUT_FOLDER_NAME);
-
+		
 		ArrayList<Path> downloadedFiles = new ArrayList<>();
 		for (int i = 0; i < textFileUrls.toArray().length; ++i) {
 			URL fileUrl = textFileUrls.get(i);
@@ -233,12 +310,13 @@ public class Item {
 			
 			if (textFilePath.toFile().exists() && !overwriteExistingFiles) {
 				logger.info("File {} exists already! Skipping!", textFilePath);
+				digestExistingFile(fileUrl, textFilePath, fileType);
 				continue;
 			}
 			
 			createDirectoryIfNotExisting(textFilePath.getParent());
 			
-			if (downloadFile(fileUrl, textFilePath)) {
+			if (downloadFile(fileUrl, textFilePath, fileType)) {
 				downloadedFiles.add(textFilePath);
 			}
 		}
@@ -256,6 +334,14 @@ public class Item {
 			JSONObject instanceJson = new JSONObject();
 			instanceJson.put(METADATA_URL_STRING, this.textFileUrls.get(i));
 			instanceJson.put(METADATA_ITEM_TEXT_FILE_TYPE_STRING, this.textFileTypes.get(i));
+			
+			DownloadedFile downloadedFile = downloadedTextFiles.getOrDefault(this.textFileUrls.get(i), 
+					existingTextFiles.get(this.textFileUrls.get(i)));
+			if (downloadedFile != null) {
+				instanceJson.put(METADATA_ITEM_TEXT_FILE_CHECKSUM_STRING, downloadedFile.getSha256());
+				instanceJson.put(METADATA_ITEM_TEXT_FILE_SIZE_STRING, downloadedFile.getSizeInBytes());
+			}
+			
 			textUrls.put(instanceJson);
 		}
 		JSONObject textUrlList = new JSONObject();
@@ -263,11 +349,13 @@ public class Item {
 		itemMetadata.put(METADATA_ITEM_TEXT_URLS_PARENT_STRING, textUrlList);
 	}
 	
-	private boolean createDirectoryIfNotExisting(Path directoryPath) {
-		if (!directoryPath.toFile().exists()) {
-			return directoryPath.toFile().mkdirs();
+	private void createDirectoryIfNotExisting(Path directoryPath) {
+		try {
+			outputSettings.getDirectoryCache().createDirectories(directoryPath);
+		} catch (IOException ex) {
+			logger.error("Could not create the directory {}!", directoryPath);
+			logger.error(ex.getLocalizedMessage());
 		}
-		return false;
 	}
 	
 	private Path getLocaleItemFilePath(Path outputPath, FileType fileType) {
@@ -275,30 +363,23 @@ public class Item {
 		outputPath = outputPath.resolve(fileType.toString().toLowerCase());
 		String textFileName = getItemFileNameForFiletype(fileType, allowDuplication);
 		createdTextFiles.add(textFileName);
-		return outputPath.resolve(textFileName);
+		return outputSettings.getOutputLayout().resolve(outputPath, itemID, textFileName);
 	}
 	
 	private String getItemFileNameForFiletype(FileType type, boolean allowDuplication) {
-		String fileName = itemID + "." + type.getFileSuffix().toLowerCase();
+		String fileName = itemID + "." + type.getFileSuffix(outputSettings.getCompression(type));
 		
 		if (!allowDuplication && checkFileNameForDuplication(fileName)) {
 			fileName = deduplicateFileName(fileName);
 		}
-
+		
 		return fileName;
 	}
 	
-	private String getMetadataStringForFileType(FileType outputFormat) 
-			throws UnsupportedOutputFormatException {
-		switch (outputFormat) {
-			case XML:
-				return XML.toString(itemMetadata, METADATA_ROOT_NAME);
-			case JSON: 
-				return itemMetadata.toString(JSON_N_SPACES_FOR_INDENTATION);
-			default: 
-				throw new UnsupportedOutputFormatException("The given FileType '" + outputFormat.toString() +
-						"' is not supported! Please choose: XML or JSON .");
-			
+	private void checkMetadataFileType(FileType outputFormat) throws UnsupportedOutputFormatException {
+		if (outputFormat != FileType.XML && outputFormat != FileType.JSON) {
+			throw new UnsupportedOutputFormatException("The given FileType '" + outputFormat.toString() +
+					"' is not supported! Please choose: XML or JSON .");
 		}
 	}
 	
@@ -307,8 +388,10 @@ public class Item {
 	}
 	
 	private String deduplicateFileName(String fileName) {
-		String fileNameSuffix = FilenameUtils.getExtension(fileName);
-		String fileNameBase = FilenameUtils.getBaseName(fileName);
+		// Split at the first dot, so compressed files keep their complete suffix (e.g. "txt.gz")
+		int suffixSeparatorIndex = fileName.indexOf('.');
+		String fileNameSuffix = fileName.substring(suffixSeparatorIndex + 1);
+		String fileNameBase = fileName.substring(0, suffixSeparatorIndex);
 		
 		int counter = 1;
 		while (true) {
@@ -324,11 +407,38 @@ public class Item {
 		return fileName;
 	}
 	
-	private boolean downloadFile(URL sourceUrl, Path sinkFilePath) throws DownloadFailedException {
+	/***
+	 * Computes the digest and size of a text file that is not downloaded again, so the rewritten metadata keep
+	 * them.
+	 */
+	private void digestExistingFile(URL sourceUrl, Path filePath, FileType fileType) {
+		try {
+			existingTextFiles.put(sourceUrl, 
+					FileDownloader.digestExistingFile(filePath, outputSettings.getCompression(fileType)));
+		} catch (IOException ex) {
+			logger.warn("Could not compute the checksum of the existing file {}! {}", filePath, ex.getMessage());
+		}
+	}
+	
+	private boolean downloadFile(URL sourceUrl, Path sinkFilePath, FileType fileType) 
+			throws DownloadFailedException {
 		try {
 			logger.info("Downloading file '{}' from URL: {}", sinkFilePath, sourceUrl);
-			FileUtils.downloadFile(sinkFilePath.toFile(), sourceUrl.toString());
-			logger.info("Download done!");
+			CompressionSetting compression = outputSettings.getCompression(fileType);
+			DownloadedFile downloadedFile;
+			if (outputSettings.isFileDeduplicationEnabled()) {
+				downloadedFile = outputSettings.getBlobStore().download(sourceUrl, sinkFilePath, compression, 
+						outputSettings.getBandwidthLimiter());
+			} else {
+				downloadedFile = FileDownloader.download(sourceUrl, sinkFilePath, compression, 
+						outputSettings.getBandwidthLimiter());
+			}
+			downloadedTextFiles.put(sourceUrl, downloadedFile);
+			String fileTypeLabel = fileType.toString().toLowerCase();
+			HarvestMetrics.DOWNLOADED_FILES.labels(fileTypeLabel).increment();
+			HarvestMetrics.DOWNLOADED_BYTES.labels(fileTypeLabel).add(downloadedFile.getSizeInBytes());
+			logger.info("Download done! Received {} bytes with SHA-256 {}", 
+					downloadedFile.getSizeInBytes(), downloadedFile.getSha256());
 		} catch (IOException ex) {
 			throw new DownloadFailedException("An error happened while downloading from URL '" + 
 					sourceUrl + "'.\n" + "Error Message: " + ex.getMessage());
@@ -337,17 +447,108 @@ public class Item {
 		return true;
 	}
 	
-	private void writeStringToFile(Path filePath, String content) {
+	private byte[] serialize(FileType outputFormat) throws IOException {
+		HarvestEvents.MetadataSerialization serializationEvent = new HarvestEvents.MetadataSerialization();
+		serializationEvent.begin();
+		
+		ByteArrayOutputStream serializedMetadata = new ByteArrayOutputStream();
+		writeMetadata(outputFormat, serializedMetadata);
+		byte[] serializedMetadataBytes = serializedMetadata.toByteArray();
+		
+		serializationEvent.format = outputFormat.toString();
+		serializationEvent.bytes = serializedMetadataBytes.length;
+		serializationEvent.commitTagged();
+		
+		return serializedMetadataBytes;
+	}
+	
+	private void writeMetadata(FileType outputFormat, Writer writer) throws IOException {
+		if (outputFormat == FileType.XML) {
+			MetadataWriter.writeXml(itemMetadata, METADATA_ROOT_NAME, writer);
+		} else {
+			MetadataWriter.writeJson(itemMetadata, JSON_N_SPACES_FOR_INDENTATION, writer);
+		}
+	}
+	
+	/***
+	 * Serializes the metadata and writes it into the given file, unless the file holds the same metadata already.
+	 * The platform charset is used, as for String.getBytes(). If a compression is configured for the format,
+	 * the metadata is compressed while it is serialized. The metadata is streamed into the file, so it is never
+	 * held in memory as a whole. Only if an asynchronous writer is configured, it is serialized into memory and
+	 * the file is written by the writer.
+	 */
+	private void writeMetadataToFile(Path filePath, FileType outputFormat) {
+		WriteStatistics writeStatistics = outputSettings.getMetadataWriteStatistics();
 		try {
-			Files.write(filePath, content.getBytes());
+			AsyncFileWriter asyncFileWriter = outputSettings.getAsyncFileWriter();
+			if (asyncFileWriter != null) {
+				asyncFileWriter.write(filePath, serialize(outputFormat));
+				return;
+			}
+			
+			HarvestEvents.DiskWrite diskWriteEvent = new HarvestEvents.DiskWrite();
+			diskWriteEvent.begin();
+			// The last serialization is the one written into the file
+			AtomicLong serializedBytes = new AtomicLong();
+			boolean isWritten = FileHandler.writeIfChanged(filePath, 
+					outputStream -> serializedBytes.set(writeSerializedMetadata(outputFormat, outputStream)));
+			diskWriteEvent.path = filePath.toString();
+			if (isWritten) {
+				diskWriteEvent.bytes = serializedBytes.get();
+			}
+			diskWriteEvent.isWritten = isWritten;
+			diskWriteEvent.commitTagged();
+			
+			if (isWritten) {
+				writeStatistics.recordWrittenFile();
+			} else {
+				logger.info("The metadata file {} is unchanged! Skipping!", filePath);
+				writeStatistics.recordSkippedFile();
+			}
 		} catch (IOException ex) {
+			writeStatistics.recordFailedFile();
 			logger.error(Arrays.toString(ex.getStackTrace()));
 		}
 	}
 	
+	/***
+	 * Streams the metadata into the given stream and reports it as serialization, like {@link #serialize(FileType)}.
+	 * @return The number of bytes written into the stream, after the compression.
+	 */
+	private long writeSerializedMetadata(FileType outputFormat, OutputStream outputStream) throws IOException {
+		HarvestEvents.MetadataSerialization serializationEvent = new HarvestEvents.MetadataSerialization();
+		serializationEvent.begin();
+		
+		CountingOutputStream countingStream = new CountingOutputStream(outputStream);
+		writeMetadata(outputFormat, countingStream);
+		
+		serializationEvent.format = outputFormat.toString();
+		serializationEvent.bytes = countingStream.getByteCount();
+		serializationEvent.commitTagged();
+		
+		return countingStream.getByteCount();
+	}
+	
+	private void writeMetadata(FileType outputFormat, OutputStream outputStream) throws IOException {
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+				compressMetadataStream(outputStream, outputFormat), Charset.defaultCharset()), 
+				METADATA_WRITE_BUFFER_SIZE)) {
+			writeMetadata(outputFormat, writer);
+		}
+	}
+	
+	private OutputStream compressMetadataStream(OutputStream outputStream, FileType outputFormat) 
+			throws IOException {
+		CompressionSetting compression = outputSettings.getCompression(outputFormat);
+		if (compression != null) {
+			outputStream = compression.compress(outputStream);
+		}
+		return outputStream;
+	}
+	
 	class DownloadFailedException extends Exception {
 		private static final long serialVersionUID = 558535317153362842L;
-
+		
 		DownloadFailedException(String s) {
 			super(s);
 		}
@@ -355,7 +556,7 @@ public class Item {
 	
 	class UnsupportedOutputFormatException extends Exception {
 		private static final long serialVersionUID = 7620152992815263665L;
-
+		
 		UnsupportedOutputFormatException(String s) {
 			super(s);
 		}
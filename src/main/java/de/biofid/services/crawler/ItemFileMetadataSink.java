@@ -0,0 +1,45 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+
+import de.biofid.services.crawler.Item.UnsupportedOutputFormatException;
+
+/***
+ * Writes the metadata of every item into its own file (e.g. metadata/xml/1234.xml).
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class ItemFileMetadataSink implements MetadataSink {
+	
+	private String outputDirectory;
+	private Item.FileType outputFormat;
+	
+	public ItemFileMetadataSink(String outputDirectory, Item.FileType outputFormat) {
+		this.outputDirectory = outputDirectory;
+		this.outputFormat = outputFormat;
+	}
+
+	/***
+	 * Every item is written into its own file, so items can be written concurrently.
+	 */
+	@Override
+	public boolean supportsConcurrentWrites() {
+		return true;
+	}
+	
+	@Override
+	public void write(Item item) throws IOException {
+		try {
+			item.writeMetadataFile(outputDirectory, outputFormat);
+		} catch (UnsupportedOutputFormatException ex) {
+			throw new IOException(ex.getMessage(), ex);
+		}
+	}
+	
+	@Override
+	public void close() {
+		// Every file is closed after writing
+	}
+}
@@ -0,0 +1,83 @@
+package de.biofid.services.crawler;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/***
+ * Counts latencies in milliseconds to estimate their percentiles, without keeping every single value.
+ * 
+ * Latencies up to a second are counted per millisecond. Longer latencies are counted in buckets growing by
+ * 5% each, so a percentile above a second is off by at most 5%. Latencies above about 26 days fall into the
+ * last bucket.
+ * 
+ * The histogram may be updated from several threads.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+class LatencyHistogram {
+	
+	private static final double BUCKET_GROWTH_FACTOR = 1.05;
+	private static final int LINEAR_LIMIT_IN_MILLISECONDS = 1000;
+	private static final int NUMBER_OF_EXPONENTIAL_BUCKETS = 300;
+	
+	private AtomicLongArray bucketCounts = new AtomicLongArray(
+			LINEAR_LIMIT_IN_MILLISECONDS + 1 + NUMBER_OF_EXPONENTIAL_BUCKETS);
+	
+	/***
+	 * Returns the number of recorded latencies.
+	 */
+	long getCount() {
+		long count = 0;
+		for (int i = 0; i < bucketCounts.length(); ++i) {
+			count += bucketCounts.get(i);
+		}
+		return count;
+	}
+	
+	/***
+	 * Returns the latency, which the given share of all recorded latencies does not exceed.
+	 * @param percentile The share, e.g. 0.95 for the 95th percentile.
+	 * @return The latency in milliseconds. 0, if nothing was recorded.
+	 */
+	long getPercentile(double percentile) {
+		long count = getCount();
+		if (count == 0) {
+			return 0;
+		}
+		
+		long rank = Math.max((long) Math.ceil(percentile * count), 1);
+		long cumulativeCount = 0;
+		for (int i = 0; i < bucketCounts.length(); ++i) {
+			cumulativeCount += bucketCounts.get(i);
+			if (cumulativeCount >= rank) {
+				return getUpperBound(i);
+			}
+		}
+		
+		return getUpperBound(bucketCounts.length() - 1);
+	}
+	
+	void record(long latencyInMilliseconds) {
+		bucketCounts.incrementAndGet(getBucketIndex(Math.max(latencyInMilliseconds, 0)));
+	}
+	
+	private static int getBucketIndex(long latencyInMilliseconds) {
+		if (latencyInMilliseconds <= LINEAR_LIMIT_IN_MILLISECONDS) {
+			return (int) latencyInMilliseconds;
+		}
+		
+		double growth = Math.log((double) latencyInMilliseconds / LINEAR_LIMIT_IN_MILLISECONDS) /
+				Math.log(BUCKET_GROWTH_FACTOR);
+		return LINEAR_LIMIT_IN_MILLISECONDS + (int) Math.min(Math.ceil(growth), NUMBER_OF_EXPONENTIAL_BUCKETS);
+	}
+	
+	private static long getUpperBound(int bucketIndex) {
+		if (bucketIndex <= LINEAR_LIMIT_IN_MILLISECONDS) {
+			return bucketIndex;
+		}
+		
+		return (long) Math.floor(LINEAR_LIMIT_IN_MILLISECONDS *
+				Math.pow(BUCKET_GROWTH_FACTOR, bucketIndex - LINEAR_LIMIT_IN_MILLISECONDS));
+	}
+}
@@ -0,0 +1,123 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.biofid.services.crawler.Item.FileType;
+
+/***
+ * Moves the item files of an existing output tree into another {@link de.biofid.services.crawler.OutputLayout}.
+ * 
+ * Only the directories of the item file types are touched (e.g. bhl/text/pdf or bhl/metadata/xml). Files
+ * that are already at their place are skipped, so an interrupted migration can simply be started again.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class LayoutMigrator {
+	
+	private static final Logger logger = LogManager.getLogger(LiteratureHarvester.LOGGER_NAME);
+	
+	private OutputLayout targetLayout;
+	private long numberOfMovedFiles = 0;
+	
+	public LayoutMigrator(OutputLayout targetLayout) {
+		this.targetLayout = targetLayout;
+	}
+	
+	public long getNumberOfMovedFiles() {
+		return numberOfMovedFiles;
+	}
+	
+	/***
+	 * Migrates the output of all harvesters in the given base output directory.
+	 * @param baseOutputDirectory The directory holding one folder per harvester.
+	 * @throws IOException
+	 */
+	public void migrateOutputDirectory(Path baseOutputDirectory) throws IOException {
+		if (!Files.isDirectory(baseOutputDirectory)) {
+			logger.warn("The output directory {} does not exist! Nothing to migrate.", baseOutputDirectory);
+			return;
+		}
+		
+		try (DirectoryStream<Path> harvesterDirectories = Files.newDirectoryStream(baseOutputDirectory,
+				Files::isDirectory)) {
+			for (Path harvesterDirectory : harvesterDirectories) {
+				migrateHarvesterDirectory(harvesterDirectory.resolve(Item.TEXT_OUTPUT_FOLDER_NAME));
+				migrateHarvesterDirectory(harvesterDirectory.resolve(Item.METADATA_OUTPUT_FOLDER_NAME));
+			}
+		}
+	}
+	
+	/***
+	 * Moves all item files below the given directory of a single file type into the target layout.
+	 * @param typeDirectory The directory holding all files of a type, e.g. "bhl/text/pdf".
+	 * @throws IOException
+	 */
+	public void migrateTypeDirectory(Path typeDirectory) throws IOException {
+		logger.info("Migrating {} to layout {}", typeDirectory, targetLayout);
+		
+		Set<Path> sourceDirectories = new HashSet<>();
+		Files.walkFileTree(typeDirectory, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path filePath, BasicFileAttributes attributes) throws IOException {
+				String fileName = filePath.getFileName().toString();
+				
+				long itemId;
+				try {
+					itemId = OutputLayout.getItemIdFromFileName(fileName);
+				} catch (NumberFormatException ex) {
+					logger.warn("The file {} is not an item file! Skipping!", filePath);
+					return FileVisitResult.CONTINUE;
+				}
+				
+				Path targetPath = targetLayout.resolve(typeDirectory, itemId, fileName);
+				if (!targetPath.equals(filePath)) {
+					Files.createDirectories(targetPath.getParent());
+					Files.move(filePath, targetPath);
+					sourceDirectories.add(filePath.getParent());
+					++numberOfMovedFiles;
+				}
+				
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		
+		for (Path sourceDirectory : sourceDirectories) {
+			deleteEmptyDirectories(sourceDirectory, typeDirectory);
+		}
+	}
+	
+	private void deleteEmptyDirectories(Path directory, Path stopDirectory) throws IOException {
+		while (!directory.equals(stopDirectory) && Files.isDirectory(directory) && isEmpty(directory)) {
+			Files.delete(directory);
+			directory = directory.getParent();
+		}
+	}
+	
+	private boolean isEmpty(Path directory) throws IOException {
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+			return !entries.iterator().hasNext();
+		}
+	}
+	
+	private void migrateHarvesterDirectory(Path outputDirectory) throws IOException {
+		for (FileType fileType : FileType.values()) {
+			Path typeDirectory = outputDirectory.resolve(fileType.toString().toLowerCase());
+			if (Files.isDirectory(typeDirectory)) {
+				migrateTypeDirectory(typeDirectory);
+			}
+		}
+	}
+}
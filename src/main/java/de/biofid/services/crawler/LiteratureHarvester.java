@@ -3,10 +3,18 @@ package de.biofid.services.crawler;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.json.JSONException;
 
 
 /***
@@ -18,28 +26,153 @@ import org.apache.logging.log4j.Logger;
  */
 public class LiteratureHarvester {
 	
+	public static final String COMPARE_REPORTS_COMMAND = "compare-reports";
 	public static final String CONFIGURATION_FILE_PATH_STRING = "config/harvesting.yml";
 	public static final String LOGGER_NAME = "global";
+	public static final String MIGRATE_LAYOUT_COMMAND = "migrate-layout";
+	public static final String RECORD_COMMAND = "record";
+	public static final String REPLAY_COMMAND = "replay";
+	public static final String REPROCESS_COMMAND = "reprocess";
+	public static final String SHARD_OPTION = "--shard";
 	
 	private static final Logger logger = LogManager.getLogger(LOGGER_NAME);
 	
 	private HarvesterConfigurator configurator;
 	
 	public LiteratureHarvester() {
+		this(CONFIGURATION_FILE_PATH_STRING);
+	}
+	
+	/***
+	 * @param configurationFilePath The path of the YAML file configuring the harvesters.
+	 */
+	public LiteratureHarvester(String configurationFilePath) {
 		this.configurator = new HarvesterConfigurator();
 		
 		try {
-			configurator.readConfigurationYamlFile(CONFIGURATION_FILE_PATH_STRING);
+			configurator.readConfigurationYamlFile(configurationFilePath);
 		} catch (IOException ex) {
 			logSevereError("Configuration file error!", ex);
 		}
 		
 		Harvester.setOutputDirectory(configurator.getBaseOutputPath());
+		HttpFetcher.setUserAgent(configurator.getUserAgent());
 	}
 	
 	public static void main(String[] args) {
+		List<String> arguments = new ArrayList<>(Arrays.asList(args));
+		Shard shard;
+		try {
+			shard = removeShardOption(arguments);
+		} catch (IllegalArgumentException ex) {
+			logger.error(ex.getMessage());
+			return;
+		}
+		args = arguments.toArray(new String[0]);
+		
+		if (args.length > 0 && args[0].equals(COMPARE_REPORTS_COMMAND)) {
+			compareRunReports(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		
+		if (args.length > 0 && (args[0].equals(RECORD_COMMAND) || args[0].equals(REPLAY_COMMAND)) &&
+				!startRecordingOrReplaying(args)) {
+			return;
+		}
+		
 		LiteratureHarvester harvester = new LiteratureHarvester();
-		harvester.start();
+		if (shard != null) {
+			harvester.setShard(shard);
+		}
+		MetricsServer metricsServer = harvester.startMetricsServer();
+		
+		try {
+			if (args.length > 0 && args[0].equals(MIGRATE_LAYOUT_COMMAND)) {
+				harvester.migrateOutputLayout();
+			} else if (args.length > 0 && args[0].equals(REPROCESS_COMMAND)) {
+				harvester.reprocess();
+			} else {
+				harvester.start();
+			}
+		} finally {
+			HttpFetcher.stopRecordingAndReplaying();
+			if (metricsServer != null) {
+				metricsServer.close();
+			}
+		}
+	}
+	
+	/***
+	 * Prints the comparison of two run reports of a harvester.
+	 * @param reportPaths The paths of the earlier and the later report.
+	 */
+	public static void compareRunReports(String[] reportPaths) {
+		if (reportPaths.length != 2) {
+			logger.error("Usage: {} <earlier report> <later report>", COMPARE_REPORTS_COMMAND);
+			return;
+		}
+		
+		try {
+			RunReportComparison comparison = RunReportComparison.read(Paths.get(reportPaths[0]), 
+					Paths.get(reportPaths[1]));
+			for (String line : comparison.toLines()) {
+				System.out.println(line);
+			}
+		} catch (IOException | JSONException ex) {
+			logSevereError("Could not compare the run reports!", ex);
+		}
+	}
+	
+	/***
+	 * Removes the option "--shard i/N" from the given command line arguments.
+	 * @param arguments The arguments, which are changed.
+	 * @return The given shard. Null, if the option is not given.
+	 * @throws IllegalArgumentException If the shard is missing or malformed.
+	 */
+	public static Shard removeShardOption(List<String> arguments) {
+		int optionIndex = arguments.indexOf(SHARD_OPTION);
+		if (optionIndex < 0) {
+			return null;
+		}
+		
+		if (optionIndex + 1 >= arguments.size()) {
+			throw new IllegalArgumentException("Usage: " + SHARD_OPTION + " <index>/<number of shards>, e.g. 2/4");
+		}
+		
+		Shard shard = Shard.parse(arguments.get(optionIndex + 1));
+		arguments.subList(optionIndex, optionIndex + 2).clear();
+		return shard;
+	}
+	
+	/***
+	 * Records all responses of the following harvest into the given directory or answers all requests from
+	 * such a recording.
+	 * @param args The command, the directory and, when replaying, optionally the share of the recorded time
+	 * every response should take (default: 1).
+	 * @return True, if the harvest should be started.
+	 */
+	public static boolean startRecordingOrReplaying(String[] args) {
+		if (args.length < 2) {
+			logger.error("Usage: {} <directory> | {} <directory> [time scale]", RECORD_COMMAND, REPLAY_COMMAND);
+			return false;
+		}
+		
+		ResponseStore responseStore = new ResponseStore(Paths.get(args[1]));
+		if (args[0].equals(RECORD_COMMAND)) {
+			logger.info("Recording all responses into {}", args[1]);
+			HttpFetcher.startRecording(responseStore);
+			return true;
+		}
+		
+		try {
+			double timeScale = args.length > 2 ? Double.parseDouble(args[2]) : 1;
+			HttpFetcher.startReplaying(responseStore, timeScale);
+			logger.info("Replaying all responses from {} in {} of the recorded time", args[1], timeScale);
+			return true;
+		} catch (IllegalArgumentException ex) {
+			logger.error("Invalid time scale '{}'! Please give a number not below 0.", args[2]);
+			return false;
+		}
 	}
 	
 	/***
@@ -70,6 +203,62 @@ public class LiteratureHarvester {
 		return harvester;
 	}
 	
+	/***
+	 * Moves all existing item files into the output layout given in the configuration.
+	 */
+	public void migrateOutputLayout() {
+		LayoutMigrator migrator = new LayoutMigrator(configurator.getOutputLayout());
+		try {
+			migrator.migrateOutputDirectory(Paths.get(configurator.getBaseOutputPath()));
+		} catch (IOException ex) {
+			logSevereError("Migrating the output layout failed!", ex);
+		}
+		logger.info("Moved {} files into layout {}", migrator.getNumberOfMovedFiles(), configurator.getOutputLayout());
+	}
+	
+	/***
+	 * Regenerates the metadata of all configured harvesters from their stored responses.
+	 * 
+	 * The harvesters run concurrently and share one pool to write the items, both as large as the number of
+	 * available processors.
+	 */
+	public void reprocess() {
+		int numberOfThreads = Runtime.getRuntime().availableProcessors();
+		ExecutorService harvesterExecutor = Executors.newFixedThreadPool(numberOfThreads);
+		ExecutorService itemExecutor = Executors.newFixedThreadPool(numberOfThreads);
+		
+		List<Future<?>> reprocessingHarvesters = new ArrayList<>();
+		for (Configuration harvesterConfiguration : configurator.getConfigurations()) {
+			Harvester harvester = instantiateHarvester(harvesterConfiguration);
+			if (harvester != null) {
+				reprocessingHarvesters.add(harvesterExecutor.submit(() -> harvester.reprocess(itemExecutor)));
+			}
+		}
+		
+		try {
+			for (Future<?> reprocessingHarvester : reprocessingHarvesters) {
+				try {
+					reprocessingHarvester.get();
+				} catch (ExecutionException ex) {
+					logSevereError("Reprocessing a harvester failed!", ex);
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		} finally {
+			harvesterExecutor.shutdownNow();
+			itemExecutor.shutdown();
+		}
+	}
+	
+	/***
+	 * Lets all harvesters harvest only the given part of their items, overriding the configuration file.
+	 */
+	public void setShard(Shard shard) {
+		logger.info("Harvesting shard {}", shard);
+		configurator.setShard(shard);
+	}
+	
 	public void start() {
 		for (Configuration harvesterConfiguration : configurator.getConfigurations()) {
 			Harvester harvester = instantiateHarvester(harvesterConfiguration);
@@ -79,14 +268,35 @@ public class LiteratureHarvester {
 		}
 	}
 	
+	/***
+	 * Starts serving the metrics on the configured port.
+	 * @return The running server. Null, if the metrics are disabled or the server could not be started.
+	 */
+	public MetricsServer startMetricsServer() {
+		int metricsPort = configurator.getMetricsPort();
+		if (metricsPort == HarvesterConfigurator.METRICS_DISABLED) {
+			return null;
+		}
+		
+		try {
+			MetricsServer metricsServer = new MetricsServer(metricsPort, MetricsRegistry.getDefault());
+			logger.info("Serving metrics at http://localhost:{}{}", metricsServer.getPort(), MetricsServer.METRICS_PATH);
+			return metricsServer;
+		} catch (IOException ex) {
+			logger.error("Could not start the metrics server on port {}!", metricsPort);
+			logger.error(ex.getLocalizedMessage());
+			return null;
+		}
+	}
+	
 	@SuppressWarnings("unchecked")
 	private Constructor<Harvester> getHarvesterConstructorForName(String qualifiedHarvesterClassName) 
 			throws ClassNotFoundException, NoSuchMethodException{
 		Class<?> clazz = Class.forName(qualifiedHarvesterClassName);
 		return (Constructor<Harvester>) clazz.getConstructor(Configuration.class);
 	}
-
-	private void logSevereError(String msg, Exception ex) {
+	
+	private static void logSevereError(String msg, Exception ex) {
 		logger.fatal(msg);
 		logger.fatal("Received error message: {} ", ex.getLocalizedMessage());
 		logger.fatal(Arrays.toString(ex.getStackTrace()));
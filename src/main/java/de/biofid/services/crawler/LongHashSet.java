@@ -0,0 +1,126 @@
+package de.biofid.services.crawler;
+
+/***
+ * A set of primitive long values, e.g. item IDs.
+ * 
+ * The values are stored in an open addressing table of longs, so a value takes 8 to 16 bytes instead of the
+ * about 60 bytes of a boxed Long in a HashSet. Values can not be removed.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class LongHashSet {
+	
+	private static final int DEFAULT_EXPECTED_SIZE = 16;
+	private static final long FREE_SLOT = 0;
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+	private static final double MAXIMUM_LOAD_FACTOR = 0.7;
+	
+	// The value marking a free slot can not be stored in the table
+	private boolean containsFreeSlotValue = false;
+	private int resizeThreshold;
+	private int size = 0;
+	private long[] slots;
+	
+	public LongHashSet() {
+		this(DEFAULT_EXPECTED_SIZE);
+	}
+	
+	/***
+	 * @param expectedSize The number of values the set is expected to hold without growing.
+	 */
+	public LongHashSet(int expectedSize) {
+		int minimumCapacity = (int) Math.min(MAXIMUM_CAPACITY, (long) Math.ceil(expectedSize / MAXIMUM_LOAD_FACTOR));
+		// The next power of two, so the slot of a hash is found by masking
+		allocateSlots(Integer.highestOneBit(Math.max(2, minimumCapacity) - 1) << 1);
+	}
+	
+	/***
+	 * Adds the given value to the set.
+	 * @param value The value to add.
+	 * @return True, if the value was added. False, if the set contained it already.
+	 */
+	public boolean add(long value) {
+		if (value == FREE_SLOT) {
+			if (containsFreeSlotValue) {
+				return false;
+			}
+			containsFreeSlotValue = true;
+			++size;
+			return true;
+		}
+		
+		int index = findSlot(slots, value);
+		if (slots[index] == value) {
+			return false;
+		}
+		
+		slots[index] = value;
+		++size;
+		if (size > resizeThreshold) {
+			grow();
+		}
+		return true;
+	}
+	
+	public boolean contains(long value) {
+		if (value == FREE_SLOT) {
+			return containsFreeSlotValue;
+		}
+		return slots[findSlot(slots, value)] == value;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	/***
+	 * Returns the slot holding the given value or the free slot it would be stored in.
+	 */
+	private static int findSlot(long[] table, long value) {
+		int mask = table.length - 1;
+		int index = hash(value) & mask;
+		while (table[index] != FREE_SLOT && table[index] != value) {
+			index = (index + 1) & mask;
+		}
+		return index;
+	}
+	
+	/***
+	 * Spreads the bits of the value (the finalizer of MurmurHash3), so consecutive IDs do not form long runs of
+	 * occupied slots.
+	 */
+	private static int hash(long value) {
+		long hash = value;
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return (int) hash;
+	}
+	
+	private void allocateSlots(int capacity) {
+		slots = new long[capacity];
+		resizeThreshold = (int) (capacity * MAXIMUM_LOAD_FACTOR);
+	}
+	
+	private void grow() {
+		if (slots.length == MAXIMUM_CAPACITY) {
+			throw new IllegalStateException("The set can not hold more than " + size + " values!");
+		}
+		
+		long[] oldSlots = slots;
+		allocateSlots(oldSlots.length * 2);
+		for (long value : oldSlots) {
+			if (value != FREE_SLOT) {
+				slots[findSlot(slots, value)] = value;
+			}
+		}
+	}
+}
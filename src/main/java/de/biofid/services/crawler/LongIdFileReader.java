@@ -0,0 +1,148 @@
+package de.biofid.services.crawler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/***
+ * Reads a file of numeric IDs, one per line, e.g. the item and title lists of a harvester.
+ * 
+ * The file is memory mapped window by window and the IDs are parsed from the bytes directly, so neither the file
+ * content nor a line is held as a String. Reading a file of millions of IDs hence only needs the few bytes of
+ * the reader itself. Blank lines and whitespace around an ID are skipped. The file is closed as soon as its
+ * last ID was read.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class LongIdFileReader implements PrimitiveIterator.OfLong, Closeable {
+	
+	private static final long DEFAULT_MAPPING_WINDOW_SIZE_IN_BYTES = 64L * 1024 * 1024;
+	private static final int END_OF_FILE = -1;
+	
+	private FileChannel fileChannel;
+	private Path filePath;
+	private long fileSize;
+	private boolean hasNextId = false;
+	private long lineNumber = 1;
+	private long mappingWindowSizeInBytes;
+	private long nextId;
+	private long position = 0;
+	private MappedByteBuffer window = null;
+	private long windowStart = 0;
+	
+	/***
+	 * Opens the given file and reads its first ID.
+	 * @param filePath The file to read.
+	 * @throws IOException If the file could not be opened.
+	 * @throws NumberFormatException If the first line holding anything is not an ID.
+	 */
+	public LongIdFileReader(Path filePath) throws IOException {
+		this(filePath, DEFAULT_MAPPING_WINDOW_SIZE_IN_BYTES);
+	}
+	
+	LongIdFileReader(Path filePath, long mappingWindowSizeInBytes) throws IOException {
+		this.filePath = filePath;
+		this.mappingWindowSizeInBytes = mappingWindowSizeInBytes;
+		fileChannel = FileChannel.open(filePath, StandardOpenOption.READ);
+		fileSize = fileChannel.size();
+		readNextId();
+	}
+	
+	@Override
+	public void close() {
+		window = null;
+		hasNextId = false;
+		try {
+			fileChannel.close();
+		} catch (IOException ex) {
+			// Nothing was written, so nothing can be lost
+		}
+	}
+	
+	@Override
+	public boolean hasNext() {
+		return hasNextId;
+	}
+	
+	/***
+	 * @throws NumberFormatException If the line after the returned ID holds anything but an ID.
+	 */
+	@Override
+	public long nextLong() {
+		if (!hasNextId) {
+			throw new NoSuchElementException();
+		}
+		
+		long id = nextId;
+		readNextId();
+		return id;
+	}
+	
+	private NumberFormatException createNumberFormatException(String reason) {
+		return new NumberFormatException("Line " + lineNumber + " of the file " + filePath + " " + reason + "!");
+	}
+	
+	private int readByte() {
+		if (position >= fileSize) {
+			return END_OF_FILE;
+		}
+		
+		if (window == null || position >= windowStart + window.limit()) {
+			try {
+				windowStart = position;
+				window = fileChannel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+						Math.min(mappingWindowSizeInBytes, fileSize - windowStart));
+			} catch (IOException ex) {
+				throw new UncheckedIOException("Could not read the file " + filePath + "!", ex);
+			}
+		}
+		
+		return window.get((int) (position++ - windowStart));
+	}
+	
+	private void readNextId() {
+		hasNextId = false;
+		if (!fileChannel.isOpen()) {
+			return;
+		}
+		
+		long id = 0;
+		boolean isReadingId = false;
+		boolean wasIdRead = false;
+		while (true) {
+			int nextByte = readByte();
+			
+			if (nextByte == END_OF_FILE || nextByte == '\n') {
+				if (wasIdRead || isReadingId) {
+					nextId = id;
+					hasNextId = true;
+					++lineNumber;
+					return;
+				} else if (nextByte == END_OF_FILE) {
+					close();
+					return;
+				}
+				++lineNumber;
+			} else if (nextByte >= '0' && nextByte <= '9' && !wasIdRead) {
+				int digit = nextByte - '0';
+				if (id > (Long.MAX_VALUE - digit) / 10) {
+					throw createNumberFormatException("holds an ID that is too large");
+				}
+				id = id * 10 + digit;
+				isReadingId = true;
+			} else if (Character.isWhitespace(nextByte)) {
+				wasIdRead = isReadingId;
+			} else {
+				throw createNumberFormatException("is not an ID");
+			}
+		}
+	}
+}
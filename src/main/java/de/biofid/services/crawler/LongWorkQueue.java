@@ -0,0 +1,209 @@
+package de.biofid.services.crawler;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+/***
+ * A queue of item IDs waiting to be harvested, held in a growable array of primitive longs.
+ * 
+ * Every ID is queued only once, even after it was taken from the queue, so an item listed several times is
+ * harvested once. A million IDs take about 8 MB in the array and 8 to 16 MB in the set of queued IDs, compared to
+ * more than 80 MB as a list of boxed values. The pending IDs can be put into another order and copied cheaply,
+ * e.g. to write a checkpoint.
+ * 
+ * The queue is not thread-safe.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class LongWorkQueue {
+	
+	public enum Ordering {
+		/***
+		 * The smallest ID first.
+		 */
+		ASCENDING,
+		/***
+		 * The largest ID first.
+		 */
+		DESCENDING,
+		/***
+		 * The order the IDs were added in.
+		 */
+		LISTED,
+		/***
+		 * A random order, which spreads the requests of consecutive IDs over the whole harvest.
+		 */
+		SHUFFLED;
+		
+		/***
+		 * @param ordering The name of an ordering, in any case, e.g. "shuffled".
+		 * @throws IllegalArgumentException If there is no ordering with this name.
+		 */
+		public static Ordering fromString(String ordering) {
+			try {
+				return valueOf(ordering.toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException ex) {
+				throw new IllegalArgumentException("The ordering '" + ordering + "' is not supported! "
+						+ "Please choose: " + Arrays.toString(values()).toLowerCase(Locale.ROOT));
+			}
+		}
+	}
+	
+	private static final int DEFAULT_CAPACITY = 16;
+	
+	private int head = 0;
+	private long[] ids = new long[DEFAULT_CAPACITY];
+	private LongHashSet queuedIds = new LongHashSet();
+	private int tail = 0;
+	
+	/***
+	 * Appends the given ID, unless it was queued before.
+	 * @return True, if the ID was appended. False, if it was queued before.
+	 */
+	public boolean add(long id) {
+		if (!queuedIds.add(id)) {
+			return false;
+		}
+		
+		if (tail == ids.length) {
+			makeRoom();
+		}
+		ids[tail++] = id;
+		return true;
+	}
+	
+	/***
+	 * Appends all given IDs, except the ones queued before.
+	 * @return The number of appended IDs.
+	 */
+	public int addAll(PrimitiveIterator.OfLong idIterator) {
+		int numberOfAddedIds = 0;
+		while (idIterator.hasNext()) {
+			if (add(idIterator.nextLong())) {
+				++numberOfAddedIds;
+			}
+		}
+		return numberOfAddedIds;
+	}
+	
+	public boolean isEmpty() {
+		return head == tail;
+	}
+	
+	/***
+	 * Puts the pending IDs into the given order.
+	 * @param ordering The order to harvest the pending IDs in.
+	 * @param random The source of the order, if the IDs are shuffled.
+	 */
+	public void order(Ordering ordering, Random random) {
+		switch (ordering) {
+		case ASCENDING:
+			Arrays.sort(ids, head, tail);
+			break;
+		case DESCENDING:
+			Arrays.sort(ids, head, tail);
+			reverse();
+			break;
+		case SHUFFLED:
+			// Fisher-Yates shuffle
+			for (int i = tail - 1; i > head; --i) {
+				swap(i, head + random.nextInt(i - head + 1));
+			}
+			break;
+		case LISTED:
+		default:
+			break;
+		}
+	}
+	
+	/***
+	 * Returns the next ID without taking it from the queue.
+	 * @throws NoSuchElementException If the queue is empty.
+	 */
+	public long peek() {
+		if (isEmpty()) {
+			throw new NoSuchElementException("The queue is empty!");
+		}
+		return ids[head];
+	}
+	
+	/***
+	 * Takes the next ID from the queue.
+	 * @throws NoSuchElementException If the queue is empty.
+	 */
+	public long poll() {
+		if (isEmpty()) {
+			throw new NoSuchElementException("The queue is empty!");
+		}
+		return ids[head++];
+	}
+	
+	public int size() {
+		return tail - head;
+	}
+	
+	/***
+	 * @return A copy of the pending IDs, in the order they will be taken from the queue.
+	 */
+	public long[] snapshot() {
+		return Arrays.copyOfRange(ids, head, tail);
+	}
+	
+	/***
+	 * Writes the pending IDs to the given file, one per line, so it can be read like any ID list (see
+	 * {@link LongIdFileReader}). The file is replaced atomically, so it always holds a complete snapshot.
+	 */
+	public void writeSnapshot(Path filePath) throws IOException {
+		Path temporaryFilePath = Files.createTempFile(filePath.toAbsolutePath().getParent(),
+				filePath.getFileName().toString(), null);
+		try {
+			try (BufferedWriter writer = Files.newBufferedWriter(temporaryFilePath, StandardCharsets.UTF_8)) {
+				for (int i = head; i < tail; ++i) {
+					writer.write(Long.toString(ids[i]));
+					writer.write('\n');
+				}
+			}
+			FileDownloader.moveAtomically(temporaryFilePath, filePath);
+		} finally {
+			Files.deleteIfExists(temporaryFilePath);
+		}
+	}
+	
+	/***
+	 * Moves the pending IDs to the front of the array, which is grown only if they fill more than half of it.
+	 */
+	private void makeRoom() {
+		int size = size();
+		if (size > ids.length / 2) {
+			long[] grownIds = new long[ids.length * 2];
+			System.arraycopy(ids, head, grownIds, 0, size);
+			ids = grownIds;
+		} else {
+			System.arraycopy(ids, head, ids, 0, size);
+		}
+		head = 0;
+		tail = size;
+	}
+	
+	private void reverse() {
+		for (int i = head, j = tail - 1; i < j; ++i, --j) {
+			swap(i, j);
+		}
+	}
+	
+	private void swap(int i, int j) {
+		long id = ids[i];
+		ids[i] = ids[j];
+		ids[j] = id;
+	}
+}
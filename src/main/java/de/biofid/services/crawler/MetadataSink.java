@@ -0,0 +1,31 @@
+package de.biofid.services.crawler;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/***
+ * A destination for the metadata of harvested items.
+ * 
+ * A {@link de.biofid.services.crawler.Harvester} opens one sink per run, writes the metadata of every
+ * processed item to it and closes it, when all items are processed.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public interface MetadataSink extends Closeable {
+	
+	/***
+	 * Whether {@link #write(Item)} may be called from several threads at the same time.
+	 */
+	default boolean supportsConcurrentWrites() {
+		return false;
+	}
+	
+	/***
+	 * Writes the complete metadata of the given item.
+	 * @param item A fully processed item.
+	 * @throws IOException
+	 */
+	void write(Item item) throws IOException;
+}
@@ -0,0 +1,184 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/***
+ * Serializes item metadata directly to a Writer, without building the whole document in memory.
+ * 
+ * The XML output is identical to org.json's XML.toString(Object, String), including its escaping rules
+ * and its handling of arrays and the "content" key. The JSON output is identical to 
+ * JSONObject.toString(int).
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class MetadataWriter {
+	
+	private static final String ARRAY_TAG_NAME = "array";
+	private static final String CONTENT_KEY = "content";
+	
+	private MetadataWriter() {}
+	
+	public static void writeJson(JSONObject metadata, int indentationFactor, Writer writer) {
+		metadata.write(writer, indentationFactor, 0);
+	}
+	
+	public static void writeXml(JSONObject metadata, String rootName, Writer writer) throws IOException {
+		writeXmlValue(metadata, rootName, writer);
+	}
+	
+	private static void writeXmlValue(Object object, String tagName, Writer writer) throws IOException {
+		if (object instanceof JSONObject) {
+			writeXmlObject((JSONObject) object, tagName, writer);
+			return;
+		}
+		
+		if (object != null && (object instanceof JSONArray || object.getClass().isArray())) {
+			JSONArray array = object instanceof JSONArray ? (JSONArray) object : new JSONArray(object);
+			for (int i = 0; i < array.length(); ++i) {
+				writeXmlValue(array.opt(i), tagName == null ? ARRAY_TAG_NAME : tagName, writer);
+			}
+			return;
+		}
+		
+		String text = object == null ? "null" : object.toString();
+		
+		if (tagName == null) {
+			writer.write('"');
+			writeEscaped(text, writer);
+			writer.write('"');
+		} else if (text.isEmpty()) {
+			writeEmptyTag(tagName, writer);
+		} else {
+			writeOpeningTag(tagName, writer);
+			writeEscaped(text, writer);
+			writeClosingTag(tagName, writer);
+		}
+	}
+	
+	private static void writeXmlObject(JSONObject object, String tagName, Writer writer) throws IOException {
+		if (tagName != null) {
+			writeOpeningTag(tagName, writer);
+		}
+		
+		for (String key : object.keySet()) {
+			Object value = object.opt(key);
+			if (value == null) {
+				value = "";
+			} else if (value.getClass().isArray()) {
+				value = new JSONArray(value);
+			}
+			
+			if (CONTENT_KEY.equals(key)) {
+				if (value instanceof JSONArray) {
+					JSONArray array = (JSONArray) value;
+					for (int i = 0; i < array.length(); ++i) {
+						if (i > 0) {
+							writer.write('\n');
+						}
+						writeEscaped(array.opt(i).toString(), writer);
+					}
+				} else {
+					writeEscaped(value.toString(), writer);
+				}
+			} else if (value instanceof JSONArray) {
+				JSONArray array = (JSONArray) value;
+				for (int i = 0; i < array.length(); ++i) {
+					Object element = array.opt(i);
+					if (element instanceof JSONArray) {
+						writeOpeningTag(key, writer);
+						writeXmlValue(element, null, writer);
+						writeClosingTag(key, writer);
+					} else {
+						writeXmlValue(element, key, writer);
+					}
+				}
+			} else if ("".equals(value)) {
+				writeEmptyTag(key, writer);
+			} else {
+				writeXmlValue(value, key, writer);
+			}
+		}
+		
+		if (tagName != null) {
+			writeClosingTag(tagName, writer);
+		}
+	}
+	
+	private static void writeClosingTag(String tagName, Writer writer) throws IOException {
+		writer.write("</");
+		writer.write(tagName);
+		writer.write('>');
+	}
+	
+	private static void writeEmptyTag(String tagName, Writer writer) throws IOException {
+		writer.write('<');
+		writer.write(tagName);
+		writer.write("/>");
+	}
+	
+	/***
+	 * Writes the text with XML escaping. Runs of characters that need no escaping are written at once.
+	 */
+	private static void writeEscaped(String text, Writer writer) throws IOException {
+		int runStart = 0;
+		int index = 0;
+		
+		while (index < text.length()) {
+			int codePoint = text.codePointAt(index);
+			int codePointLength = Character.charCount(codePoint);
+			String replacement = getReplacement(codePoint);
+			
+			if (replacement != null) {
+				writer.write(text, runStart, index - runStart);
+				writer.write(replacement);
+				runStart = index + codePointLength;
+			}
+			
+			index += codePointLength;
+		}
+		
+		writer.write(text, runStart, text.length() - runStart);
+	}
+	
+	private static String getReplacement(int codePoint) {
+		switch (codePoint) {
+			case '&':
+				return "&amp;";
+			case '<':
+				return "&lt;";
+			case '>':
+				return "&gt;";
+			case '"':
+				return "&quot;";
+			case '\'':
+				return "&apos;";
+			default:
+				if (mustEscape(codePoint)) {
+					return "&#x" + Integer.toHexString(codePoint) + ";";
+				}
+				return null;
+		}
+	}
+	
+	private static void writeOpeningTag(String tagName, Writer writer) throws IOException {
+		writer.write('<');
+		writer.write(tagName);
+		writer.write('>');
+	}
+	
+	/***
+	 * True, if the code point is not a valid XML character (see https://www.w3.org/TR/REC-xml/#charsets).
+	 */
+	private static boolean mustEscape(int codePoint) {
+		return (Character.isISOControl(codePoint) && codePoint != 0x9 && codePoint != 0xA && codePoint != 0xD) 
+				|| !((codePoint >= 0x20 && codePoint <= 0xD7FF) 
+						|| (codePoint >= 0xE000 && codePoint <= 0xFFFD) 
+						|| (codePoint >= 0x10000 && codePoint <= 0x10FFFF));
+	}
+}
@@ -0,0 +1,108 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/***
+ * A metric with a name and a fixed set of label names, holding one child (time series) per combination of
+ * label values.
+ * 
+ * Looking up an existing child does not lock, so children may be looked up on every call. Where the label
+ * values are fixed, the child should be looked up once and kept.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public abstract class MetricFamily<C> {
+	
+	private ConcurrentMap<List<String>, C> children = new ConcurrentHashMap<>();
+	private String help;
+	private String[] labelNames;
+	private String name;
+	
+	protected MetricFamily(String name, String help, String[] labelNames) {
+		this.name = name;
+		this.help = help;
+		this.labelNames = labelNames;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	/***
+	 * Returns the child for the given label values, creating it on the first call.
+	 * @param labelValues One value per label name, in the order of the label names.
+	 * @throws IllegalArgumentException If the number of values does not match the number of label names.
+	 */
+	public C labels(String... labelValues) {
+		if (labelValues.length != labelNames.length) {
+			throw new IllegalArgumentException("The metric " + name + " expects " + labelNames.length + 
+					" label values, but got " + labelValues.length + "!");
+		}
+		
+		List<String> key = Arrays.asList(labelValues);
+		C child = children.get(key);
+		if (child == null) {
+			child = children.computeIfAbsent(key, labels -> createChild());
+		}
+		return child;
+	}
+	
+	/***
+	 * Writes this metric in the Prometheus text exposition format.
+	 */
+	public void write(Writer writer) throws IOException {
+		writer.write("# HELP " + name + " " + help + "\n");
+		writer.write("# TYPE " + name + " " + getType() + "\n");
+		for (Map.Entry<List<String>, C> child : children.entrySet()) {
+			writeSamples(writer, child.getKey(), child.getValue());
+		}
+	}
+	
+	protected abstract C createChild();
+	
+	protected abstract String getType();
+	
+	protected abstract void writeSamples(Writer writer, List<String> labelValues, C child) throws IOException;
+	
+	/***
+	 * Writes a single sample line, e.g. 'items_total{harvester="BHL"} 42'.
+	 * @param suffix Appended to the metric name, e.g. "_bucket". May be empty.
+	 * @param extraLabel An additional label, e.g. 'le="0.5"'. Null, if there is none.
+	 */
+	protected void writeSample(Writer writer, String suffix, List<String> labelValues, String extraLabel,
+			String value) throws IOException {
+		StringBuilder sample = new StringBuilder(name).append(suffix);
+		
+		if (!labelValues.isEmpty() || extraLabel != null) {
+			sample.append('{');
+			for (int i = 0; i < labelValues.size(); ++i) {
+				if (i > 0) {
+					sample.append(',');
+				}
+				sample.append(labelNames[i]).append("=\"").append(escape(labelValues.get(i))).append('"');
+			}
+			if (extraLabel != null) {
+				if (!labelValues.isEmpty()) {
+					sample.append(',');
+				}
+				sample.append(extraLabel);
+			}
+			sample.append('}');
+		}
+		
+		sample.append(' ').append(value).append('\n');
+		writer.write(sample.toString());
+	}
+	
+	private static String escape(String labelValue) {
+		return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
@@ -0,0 +1,60 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/***
+ * Holds all metrics of the crawler and writes them in the Prometheus text exposition format (version 0.0.4).
+ * 
+ * All metrics count with {@link java.util.concurrent.atomic.LongAdder}s, so recording never locks and
+ * threads hardly contend. Only writing the metrics sums the adders up.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class MetricsRegistry {
+	
+	public static final String TEXT_FORMAT_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	
+	private static final MetricsRegistry defaultRegistry = new MetricsRegistry();
+	
+	private Map<String, MetricFamily<?>> metrics = new ConcurrentSkipListMap<>();
+	
+	/***
+	 * The registry all harvesters record into.
+	 */
+	public static MetricsRegistry getDefault() {
+		return defaultRegistry;
+	}
+	
+	public Counter counter(String name, String help, String... labelNames) {
+		return register(new Counter(name, help, labelNames));
+	}
+	
+	public Gauge gauge(String name, String help, String... labelNames) {
+		return register(new Gauge(name, help, labelNames));
+	}
+	
+	public Histogram histogram(String name, String help, double[] upperBounds, String... labelNames) {
+		return register(new Histogram(name, help, upperBounds, labelNames));
+	}
+	
+	/***
+	 * Writes all metrics, sorted by name.
+	 */
+	public void write(Writer writer) throws IOException {
+		for (MetricFamily<?> metric : metrics.values()) {
+			metric.write(writer);
+		}
+	}
+	
+	private <T extends MetricFamily<?>> T register(T metric) {
+		if (metrics.putIfAbsent(metric.getName(), metric) != null) {
+			throw new IllegalArgumentException("The metric " + metric.getName() + " exists already!");
+		}
+		return metric;
+	}
+}
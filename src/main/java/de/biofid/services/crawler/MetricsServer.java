@@ -0,0 +1,80 @@
+package de.biofid.services.crawler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/***
+ * Serves the metrics of a registry at http://host:port/metrics, so Prometheus can scrape them.
+ * 
+ * The server answers on a single daemon thread, so it never keeps the crawler alive.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class MetricsServer implements Closeable {
+	
+	public static final String METRICS_PATH = "/metrics";
+	
+	private static final String CONTENT_TYPE_HEADER = "Content-Type";
+	private static final int HTTP_OK = 200;
+	private static final String THREAD_NAME = "metrics-server";
+	
+	private ExecutorService executor;
+	private MetricsRegistry registry;
+	private HttpServer server;
+	
+	/***
+	 * Starts the server.
+	 * @param port The port to listen on. With 0, any free port is chosen.
+	 * @throws IOException If the port cannot be bound.
+	 */
+	public MetricsServer(int port, MetricsRegistry registry) throws IOException {
+		this.registry = registry;
+		
+		executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, THREAD_NAME);
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		server = HttpServer.create(new InetSocketAddress(port), 0);
+		server.createContext(METRICS_PATH, this::handleMetricsRequest);
+		server.setExecutor(executor);
+		server.start();
+	}
+	
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+	
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+	
+	private void handleMetricsRequest(HttpExchange exchange) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		try (Writer writer = new OutputStreamWriter(body, StandardCharsets.UTF_8)) {
+			registry.write(writer);
+		}
+		
+		exchange.getResponseHeaders().set(CONTENT_TYPE_HEADER, MetricsRegistry.TEXT_FORMAT_CONTENT_TYPE);
+		exchange.sendResponseHeaders(HTTP_OK, body.size());
+		try (OutputStream responseStream = exchange.getResponseBody()) {
+			body.writeTo(responseStream);
+		}
+	}
+}
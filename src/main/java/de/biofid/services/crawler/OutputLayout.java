@@ -0,0 +1,94 @@
+package de.biofid.services.crawler;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/***
+ * Decides in which directory the file of an item is stored.
+ * 
+ * With {@link #FLAT} all files of a type share one directory (text/pdf/1234567.pdf). Since most file systems
+ * slow down with hundreds of thousands of entries per directory, the files can instead be spread over two
+ * levels of sub-directories, either by the leading digits of the item ID (text/pdf/12/34/1234567.pdf) or by
+ * the leading characters of the SHA-256 digest of the item ID (text/pdf/8b/d6/1234567.pdf). The ID prefix
+ * keeps the tree browsable, the hash prefix spreads sequential IDs evenly.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public enum OutputLayout {
+	FLAT {
+		@Override
+		protected String[] getShardNames(long itemId) {
+			return new String[0];
+		}
+	},
+	ID_PREFIX {
+		@Override
+		protected String[] getShardNames(long itemId) {
+			String paddedItemId = String.format("%0" + 2 * SHARD_NAME_LENGTH + "d", Math.abs(itemId));
+			return splitPrefix(paddedItemId);
+		}
+	},
+	HASH_PREFIX {
+		@Override
+		protected String[] getShardNames(long itemId) {
+			byte[] itemIdBytes = Long.toString(itemId).getBytes(StandardCharsets.US_ASCII);
+			String itemIdDigest = FileDownloader.toHexString(FileDownloader.createDigest().digest(itemIdBytes));
+			return splitPrefix(itemIdDigest);
+		}
+	};
+	
+	public static final OutputLayout DEFAULT_LAYOUT = FLAT;
+	
+	private static final int SHARD_NAME_LENGTH = 2;
+	
+	/***
+	 * Returns the path of the given file of the given item.
+	 * @param typeDirectory The directory holding all files of a type, e.g. "text/pdf".
+	 * @param itemId The ID of the item the file belongs to.
+	 * @param fileName The name of the file.
+	 */
+	public Path resolve(Path typeDirectory, long itemId, String fileName) {
+		Path itemDirectory = typeDirectory;
+		for (String shardName : getShardNames(itemId)) {
+			itemDirectory = itemDirectory.resolve(shardName);
+		}
+		return itemDirectory.resolve(fileName);
+	}
+	
+	/***
+	 * Parses a layout name like "hash-prefix".
+	 * @throws IllegalArgumentException If the layout is unknown.
+	 */
+	public static OutputLayout parse(String layoutName) {
+		return valueOf(layoutName.trim().toUpperCase().replace('-', '_'));
+	}
+	
+	/***
+	 * Extracts the item ID from a file name written by an {@link de.biofid.services.crawler.Item}, e.g.
+	 * "1234567.txt" or "1234567-1.txt.gz".
+	 * @throws NumberFormatException If the file name does not start with an item ID.
+	 */
+	public static long getItemIdFromFileName(String fileName) {
+		int itemIdEndIndex = 0;
+		if (fileName.startsWith("-")) {
+			++itemIdEndIndex;
+		}
+		
+		while (itemIdEndIndex < fileName.length() && Character.isDigit(fileName.charAt(itemIdEndIndex))) {
+			++itemIdEndIndex;
+		}
+		
+		return Long.parseLong(fileName.substring(0, itemIdEndIndex));
+	}
+	
+	protected abstract String[] getShardNames(long itemId);
+	
+	private static String[] splitPrefix(String value) {
+		return new String[] {
+				value.substring(0, SHARD_NAME_LENGTH),
+				value.substring(SHARD_NAME_LENGTH, 2 * SHARD_NAME_LENGTH)
+		};
+	}
+}
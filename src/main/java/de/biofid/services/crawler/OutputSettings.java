@@ -0,0 +1,109 @@
+package de.biofid.services.crawler;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import de.biofid.services.crawler.Item.FileType;
+
+/***
+ * Settings that decide how an {@link de.biofid.services.crawler.Item} writes its files.
+ * 
+ * Every {@link de.biofid.services.crawler.Harvester} creates one instance from its configuration and hands it
+ * to all items it produces.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class OutputSettings {
+	
+	private AsyncFileWriter asyncFileWriter = null;
+	private BandwidthLimiter bandwidthLimiter = null;
+	private BlobStore blobStore = null;
+	private Map<FileType, CompressionSetting> compressionSettings = new EnumMap<>(FileType.class);
+	private DirectoryCache directoryCache = new DirectoryCache();
+	private WriteStatistics metadataWriteStatistics = new WriteStatistics();
+	private OutputLayout outputLayout = OutputLayout.DEFAULT_LAYOUT;
+	
+	/***
+	 * The writer for metadata files. Null, if the files are written on the harvester thread.
+	 */
+	public AsyncFileWriter getAsyncFileWriter() {
+		return asyncFileWriter;
+	}
+	
+	/***
+	 * The limiter to download text files with. Null, if downloads are not limited.
+	 */
+	public BandwidthLimiter getBandwidthLimiter() {
+		return bandwidthLimiter;
+	}
+	
+	/***
+	 * The content-addressed store for text files. Null, if text files are written per item.
+	 */
+	public BlobStore getBlobStore() {
+		return blobStore;
+	}
+	
+	public DirectoryCache getDirectoryCache() {
+		return directoryCache;
+	}
+	
+	/***
+	 * Counts the metadata files that were written or skipped, because they were unchanged.
+	 */
+	public WriteStatistics getMetadataWriteStatistics() {
+		return metadataWriteStatistics;
+	}
+	
+	public OutputLayout getOutputLayout() {
+		return outputLayout;
+	}
+	
+	public boolean isFileDeduplicationEnabled() {
+		return blobStore != null;
+	}
+	
+	public void setAsyncFileWriter(AsyncFileWriter asyncFileWriter) {
+		this.asyncFileWriter = asyncFileWriter;
+	}
+	
+	public void setBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+		this.bandwidthLimiter = bandwidthLimiter;
+	}
+	
+	public void setBlobStore(BlobStore blobStore) {
+		this.blobStore = blobStore;
+	}
+	
+	public void setOutputLayout(OutputLayout outputLayout) {
+		this.outputLayout = outputLayout;
+	}
+	
+	/***
+	 * The compression to apply to files of the given type. Null, if the files are written as received.
+	 */
+	public CompressionSetting getCompression(FileType fileType) {
+		return compressionSettings.get(fileType);
+	}
+	
+	/***
+	 * Compresses all files of the given type with the given setting.
+	 * @param fileType The type of the files to compress.
+	 * @param compression The compression to apply. Null, to disable compression for this type.
+	 * @throws IllegalArgumentException If files of the given type are compressed already.
+	 */
+	public void setCompression(FileType fileType, CompressionSetting compression) {
+		if (compression == null) {
+			compressionSettings.remove(fileType);
+			return;
+		}
+		
+		if (!fileType.isCompressible()) {
+			throw new IllegalArgumentException("Files of type " + fileType + " are compressed already!");
+		}
+		
+		compressionSettings.put(fileType, compression);
+	}
+}
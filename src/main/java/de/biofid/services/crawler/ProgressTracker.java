@@ -0,0 +1,212 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONObject;
+
+/***
+ * Tracks how far a harvester got, i.e. the processed and failed items, the downloaded bytes and, if the
+ * harvester knows it, the total number of items.
+ * 
+ * Harvesters that discover their items while crawling (e.g. Zobodat) report the discovered items, until they
+ * know the total. The rates are averaged over the whole run, which keeps the estimated time of arrival steady.
+ * 
+ * All counters may be updated from several threads.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class ProgressTracker {
+	
+	public static final long DEFAULT_REPORT_INTERVAL_IN_SECONDS = 60;
+	public static final long REPORTING_DISABLED = 0;
+	public static final String STATUS_FILE_NAME = "status.json";
+	public static final long UNKNOWN_TOTAL = -1;
+	
+	private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+	private static final String TEMPORARY_FILE_PREFIX = "status-";
+	
+	private LongAdder downloadedBytes = new LongAdder();
+	private LongAdder discoveredItems = new LongAdder();
+	private LongAdder failedItems = new LongAdder();
+	private String harvesterName;
+	private LongAdder processedItems = new LongAdder();
+	private long startTimeInNanoseconds = System.nanoTime();
+	private String statusFileName = STATUS_FILE_NAME;
+	private AtomicLong totalNumberOfItems = new AtomicLong(UNKNOWN_TOTAL);
+	
+	public ProgressTracker(String harvesterName) {
+		this.harvesterName = harvesterName;
+	}
+	
+	public void addDiscoveredItems(long numberOfItems) {
+		discoveredItems.add(numberOfItems);
+	}
+	
+	public long getDiscoveredItems() {
+		return discoveredItems.sum();
+	}
+	
+	public long getDownloadedBytes() {
+		return downloadedBytes.sum();
+	}
+	
+	public long getFailedItems() {
+		return failedItems.sum();
+	}
+	
+	public long getProcessedItems() {
+		return processedItems.sum();
+	}
+	
+	/***
+	 * The total number of items. {@link #UNKNOWN_TOTAL}, if the harvester does not know it (yet).
+	 */
+	public long getTotalNumberOfItems() {
+		return totalNumberOfItems.get();
+	}
+	
+	public void recordFailedItem() {
+		failedItems.increment();
+	}
+	
+	public void recordProcessedItem(long downloadedBytesOfItem) {
+		processedItems.increment();
+		downloadedBytes.add(downloadedBytesOfItem);
+	}
+	
+	/***
+	 * Starts measuring the rates from now on.
+	 */
+	public void start() {
+		startTimeInNanoseconds = System.nanoTime();
+	}
+	
+	/***
+	 * Changes the name of the status file, e.g. to tell the status files of several shards apart.
+	 */
+	public void setStatusFileName(String statusFileName) {
+		this.statusFileName = statusFileName;
+	}
+	
+	public void setTotalNumberOfItems(long totalNumberOfItems) {
+		this.totalNumberOfItems.set(totalNumberOfItems);
+	}
+	
+	/***
+	 * Returns the current progress as JSON object, as it is written into the status file.
+	 * @param isFinished Whether the harvester completed its run.
+	 */
+	public JSONObject toJson(boolean isFinished) {
+		long processed = getProcessedItems();
+		long failed = getFailedItems();
+		double elapsedSeconds = getElapsedSeconds();
+		
+		JSONObject status = new JSONObject();
+		status.put("harvester", harvesterName);
+		status.put("finished", isFinished);
+		status.put("updated", Instant.now().toString());
+		status.put("elapsedSeconds", Math.round(elapsedSeconds));
+		status.put("processedItems", processed);
+		status.put("failedItems", failed);
+		status.put("totalItems", getTotalNumberOfItems());
+		status.put("discoveredItems", getDiscoveredItems());
+		status.put("downloadedBytes", downloadedBytes.sum());
+		status.put("itemsPerSecond", round(getItemsPerSecond(processed + failed, elapsedSeconds)));
+		status.put("megabytesPerSecond", round(downloadedBytes.sum() / BYTES_PER_MEGABYTE / elapsedSeconds));
+		status.put("errorRate", round(getErrorRate(processed, failed)));
+		status.put("etaSeconds", getEtaSeconds(processed + failed, elapsedSeconds));
+		return status;
+	}
+	
+	/***
+	 * Summarizes the progress in one line for the log, e.g.
+	 * "1200/200000 items (0.6%), 3.20 items/s, 1.50 MB/s, 0.40% errors, ETA 17h 16m".
+	 */
+	@Override
+	public String toString() {
+		long processed = getProcessedItems();
+		long failed = getFailedItems();
+		long done = processed + failed;
+		long total = getTotalNumberOfItems();
+		double elapsedSeconds = getElapsedSeconds();
+		
+		StringBuilder summary = new StringBuilder();
+		if (total == UNKNOWN_TOTAL) {
+			summary.append(done).append(" items (").append(getDiscoveredItems()).append(" discovered)");
+		} else {
+			summary.append(done).append('/').append(total).append(" items (")
+				.append(String.format(Locale.ROOT, "%.1f%%", total > 0 ? 100.0 * done / total : 100.0)).append(')');
+		}
+		
+		summary.append(String.format(Locale.ROOT, ", %.2f items/s, %.2f MB/s, %.2f%% errors",
+				getItemsPerSecond(done, elapsedSeconds), downloadedBytes.sum() / BYTES_PER_MEGABYTE / elapsedSeconds,
+				100 * getErrorRate(processed, failed)));
+		
+		long etaSeconds = getEtaSeconds(done, elapsedSeconds);
+		if (etaSeconds != UNKNOWN_TOTAL) {
+			summary.append(", ETA ").append(formatDuration(etaSeconds));
+		}
+		
+		return summary.toString();
+	}
+	
+	/***
+	 * Writes the progress into the status file of the given directory. The file is replaced atomically, so
+	 * readers never see a partial file.
+	 */
+	public void writeStatusFile(Path directory, boolean isFinished) throws IOException {
+		Path temporaryFilePath = Files.createTempFile(directory, TEMPORARY_FILE_PREFIX, null);
+		try {
+			Files.write(temporaryFilePath, toJson(isFinished).toString(2).getBytes(StandardCharsets.UTF_8));
+			FileDownloader.moveAtomically(temporaryFilePath, directory.resolve(statusFileName));
+		} finally {
+			Files.deleteIfExists(temporaryFilePath);
+		}
+	}
+	
+	private static String formatDuration(long seconds) {
+		long hours = TimeUnit.SECONDS.toHours(seconds);
+		long minutes = TimeUnit.SECONDS.toMinutes(seconds) % 60;
+		if (hours > 0) {
+			return hours + "h " + minutes + "m";
+		}
+		return minutes + "m " + seconds % 60 + "s";
+	}
+	
+	private static double getErrorRate(long processed, long failed) {
+		long done = processed + failed;
+		return done > 0 ? (double) failed / done : 0;
+	}
+	
+	private static double getItemsPerSecond(long done, double elapsedSeconds) {
+		return done / elapsedSeconds;
+	}
+	
+	private static double round(double value) {
+		return Math.round(value * 1000) / 1000.0;
+	}
+	
+	private double getElapsedSeconds() {
+		// Avoids dividing by zero right after the start
+		return Math.max(System.nanoTime() - startTimeInNanoseconds, 1) / (double) TimeUnit.SECONDS.toNanos(1);
+	}
+	
+	private long getEtaSeconds(long done, double elapsedSeconds) {
+		long total = getTotalNumberOfItems();
+		if (total == UNKNOWN_TOTAL || done == 0) {
+			return UNKNOWN_TOTAL;
+		}
+		
+		return Math.round(Math.max(total - done, 0) / getItemsPerSecond(done, elapsedSeconds));
+	}
+}
@@ -0,0 +1,117 @@
+package de.biofid.services.crawler;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * A connection answering from a recorded response instead of the network, so file downloads can be
+ * replayed like web pages (see {@link HttpFetcher#startReplaying(ResponseStore, double)}).
+ * 
+ * Connecting takes the given delay, e.g. the time the original request took.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+class RecordedHttpConnection extends HttpURLConnection {
+	
+	private long delayInMilliseconds;
+	private List<String> headerNames = new ArrayList<>();
+	private List<String> headerValues = new ArrayList<>();
+	private HttpResponse response;
+	
+	RecordedHttpConnection(HttpResponse response, long delayInMilliseconds) {
+		super(response.getUrl());
+		this.response = response;
+		this.delayInMilliseconds = delayInMilliseconds;
+		this.responseCode = response.getStatusCode();
+		
+		// Like a real connection, the status line is the header without a name at index 0
+		headerNames.add(null);
+		headerValues.add(response.getStatusLine());
+		for (Map.Entry<String, List<String>> header : response.getHeaders().entrySet()) {
+			for (String value : header.getValue()) {
+				headerNames.add(header.getKey());
+				headerValues.add(value);
+			}
+		}
+	}
+	
+	@Override
+	public void connect() throws IOException {
+		if (connected) {
+			return;
+		}
+		
+		try {
+			TimeUnit.MILLISECONDS.sleep(delayInMilliseconds);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while replaying the response of " + url + "!");
+		}
+		connected = true;
+	}
+	
+	@Override
+	public void disconnect() {
+		connected = false;
+	}
+	
+	@Override
+	public InputStream getErrorStream() {
+		return responseCode >= 400 ? new ByteArrayInputStream(response.getBody()) : null;
+	}
+	
+	@Override
+	public String getHeaderField(int n) {
+		return n < headerValues.size() ? headerValues.get(n) : null;
+	}
+	
+	@Override
+	public String getHeaderField(String name) {
+		return response.getHeader(name);
+	}
+	
+	@Override
+	public String getHeaderFieldKey(int n) {
+		return n < headerNames.size() ? headerNames.get(n) : null;
+	}
+	
+	@Override
+	public Map<String, List<String>> getHeaderFields() {
+		Map<String, List<String>> headers = new LinkedHashMap<>();
+		headers.put(null, Collections.singletonList(response.getStatusLine()));
+		headers.putAll(response.getHeaders());
+		return Collections.unmodifiableMap(headers);
+	}
+	
+	@Override
+	public InputStream getInputStream() throws IOException {
+		connect();
+		if (responseCode >= 400) {
+			throw new HttpStatusException(url, responseCode, response.getStatusLine());
+		}
+		return new ByteArrayInputStream(response.getBody());
+	}
+	
+	@Override
+	public int getResponseCode() throws IOException {
+		connect();
+		return responseCode;
+	}
+	
+	@Override
+	public boolean usingProxy() {
+		return false;
+	}
+}
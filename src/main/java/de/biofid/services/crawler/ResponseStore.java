@@ -0,0 +1,234 @@
+package de.biofid.services.crawler;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/***
+ * Keeps the raw responses of web pages and API calls on disk, so a harvester can parse them again later
+ * without requesting them anew (see
+ * {@link de.biofid.services.crawler.Harvester#reprocess(java.util.concurrent.ExecutorService)}).
+ * 
+ * Every response is stored in its own file, named by the SHA-256 digest of the requested URL and placed in
+ * a sub-directory named by the first two characters of the digest (e.g. responses/3f/3fa4...e1.http). A file
+ * holds the URL that answered, the status line, the headers and the body, i.e. it looks much like the
+ * HTTP message itself. The time the response took is kept as the additional header
+ * {@value #DURATION_HEADER}, so a replay can take as long as the original request.
+ * 
+ * Credentials in the query of a URL, like the BHL API key, are neither stored nor part of the digest (see
+ * {@link #removeCredentials(String)}). So no key is kept on disk and the responses are still found after the
+ * key was changed.
+ * 
+ * Files are written to a temporary file first and moved into place, so concurrent requests of the same URL
+ * never leave a partial file.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class ResponseStore {
+	
+	public static final String DURATION_HEADER = "X-Recorded-Duration-Ms";
+	public static final String RESPONSE_FOLDER_NAME = "responses";
+	
+	private static final List<String> CREDENTIAL_PARAMETERS = Arrays.asList("apikey", "api_key");
+	private static final String CRLF = "\r\n";
+	private static final String HEADER_SEPARATOR = ": ";
+	private static final String RESPONSE_FILE_SUFFIX = ".http";
+	private static final int SUBDIRECTORY_NAME_LENGTH = 2;
+	private static final String TEMPORARY_FILE_PREFIX = "response-";
+	
+	private Path responseDirectory;
+	
+	public ResponseStore(Path responseDirectory) {
+		this.responseDirectory = responseDirectory;
+	}
+	
+	public Path getResponseDirectory() {
+		return responseDirectory;
+	}
+	
+	public Path getResponseFilePath(String requestUrl) {
+		return getFilePathOfKey(removeCredentials(requestUrl));
+	}
+	
+	/***
+	 * Reads the stored response of the given URL.
+	 * @param requestUrl The URL as it was requested.
+	 * @return The stored response. Null, if no response is stored for this URL.
+	 * @throws IOException If the file could not be read or is no stored response.
+	 */
+	public HttpResponse read(String requestUrl) throws IOException {
+		Path responseFilePath = getResponseFilePath(requestUrl);
+		if (!responseFilePath.toFile().exists()) {
+			// Stores written before the credentials were removed are keyed by the complete URL
+			responseFilePath = getFilePathOfKey(requestUrl);
+			if (!responseFilePath.toFile().exists()) {
+				return null;
+			}
+		}
+		
+		byte[] content = Files.readAllBytes(responseFilePath);
+		int bodyOffset = findBodyOffset(content);
+		if (bodyOffset < 0) {
+			throw new IOException("The file " + responseFilePath + " is no stored response!");
+		}
+		
+		String[] headLines = new String(content, 0, bodyOffset - 2 * CRLF.length(), StandardCharsets.ISO_8859_1)
+				.split(CRLF);
+		if (headLines.length < 2) {
+			throw new IOException("The file " + responseFilePath + " is no stored response!");
+		}
+		
+		Map<String, List<String>> headers = new LinkedHashMap<>();
+		long durationInMilliseconds = 0;
+		for (int i = 2; i < headLines.length; ++i) {
+			int separatorIndex = headLines[i].indexOf(HEADER_SEPARATOR);
+			if (separatorIndex <= 0) {
+				continue;
+			}
+			
+			String name = headLines[i].substring(0, separatorIndex);
+			String value = headLines[i].substring(separatorIndex + HEADER_SEPARATOR.length());
+			if (name.equals(DURATION_HEADER)) {
+				durationInMilliseconds = parseDuration(value, responseFilePath);
+			} else {
+				headers.computeIfAbsent(name, headerName -> new ArrayList<>()).add(value);
+			}
+		}
+		
+		String statusLine = headLines[1];
+		return new HttpResponse(new URL(headLines[0]), getStatusCode(statusLine), statusLine, headers,
+				Arrays.copyOfRange(content, bodyOffset, content.length), durationInMilliseconds);
+	}
+	
+	/***
+	 * Stores the given response for the given URL. An existing response of this URL is replaced.
+	 * @param requestUrl The URL as it was requested. The URL of the response may differ after redirects.
+	 * @param response A response, whose body was read into memory.
+	 */
+	public void write(String requestUrl, HttpResponse response) throws IOException {
+		writeResponseFile(requestUrl, response, outputStream -> outputStream.write(response.getBody()));
+	}
+	
+	/***
+	 * Stores the given response for the given URL with the body in the given file. The body is copied
+	 * from the file, so it is never held in memory. An existing response of this URL is replaced.
+	 * @param requestUrl The URL as it was requested. The URL of the response may differ after redirects.
+	 * @param responseHead The status and headers of the response. Its body is ignored.
+	 * @param bodyFilePath The file holding the complete body of the response.
+	 */
+	public void write(String requestUrl, HttpResponse responseHead, Path bodyFilePath) throws IOException {
+		writeResponseFile(requestUrl, responseHead, outputStream -> Files.copy(bodyFilePath, outputStream));
+	}
+	
+	/***
+	 * Removes the query parameters holding credentials, e.g. "apikey", from the given URL.
+	 * @param url A URL, possibly with a query.
+	 * @return The URL without these parameters. The URL itself, if it has none.
+	 */
+	public static String removeCredentials(String url) {
+		int queryStart = url.indexOf('?');
+		if (queryStart < 0) {
+			return url;
+		}
+		
+		int fragmentStart = url.indexOf('#', queryStart);
+		int queryEnd = fragmentStart < 0 ? url.length() : fragmentStart;
+		StringJoiner keptParameters = new StringJoiner("&");
+		boolean hasCredentials = false;
+		for (String parameter : url.substring(queryStart + 1, queryEnd).split("&")) {
+			String name = parameter.split("=", 2)[0];
+			if (CREDENTIAL_PARAMETERS.contains(name.toLowerCase())) {
+				hasCredentials = true;
+			} else {
+				keptParameters.add(parameter);
+			}
+		}
+		
+		if (!hasCredentials) {
+			return url;
+		}
+		
+		StringBuilder urlWithoutCredentials = new StringBuilder(url.substring(0, queryStart));
+		if (keptParameters.length() > 0) {
+			urlWithoutCredentials.append('?').append(keptParameters);
+		}
+		urlWithoutCredentials.append(url.substring(queryEnd));
+		return urlWithoutCredentials.toString();
+	}
+	
+	private static int findBodyOffset(byte[] content) {
+		for (int i = 3; i < content.length; ++i) {
+			if (content[i - 3] == '\r' && content[i - 2] == '\n' && content[i - 1] == '\r' && content[i] == '\n') {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+	
+	private Path getFilePathOfKey(String key) {
+		String digest = FileDownloader.toHexString(
+				FileDownloader.createDigest().digest(key.getBytes(StandardCharsets.UTF_8)));
+		return responseDirectory.resolve(digest.substring(0, SUBDIRECTORY_NAME_LENGTH))
+				.resolve(digest + RESPONSE_FILE_SUFFIX);
+	}
+	
+	private static int getStatusCode(String statusLine) throws IOException {
+		// e.g. "HTTP/1.1 404 Not Found"
+		String[] statusLineParts = statusLine.split(" ");
+		try {
+			return Integer.parseInt(statusLineParts[1]);
+		} catch (ArrayIndexOutOfBoundsException | NumberFormatException ex) {
+			throw new IOException("Invalid status line '" + statusLine + "'!", ex);
+		}
+	}
+	
+	private static long parseDuration(String duration, Path responseFilePath) throws IOException {
+		try {
+			return Long.parseLong(duration);
+		} catch (NumberFormatException ex) {
+			throw new IOException("Invalid duration '" + duration + "' in the file " + responseFilePath + "!", ex);
+		}
+	}
+	
+	private void writeResponseFile(String requestUrl, HttpResponse response, FileHandler.ContentWriter bodyWriter)
+			throws IOException {
+		StringBuilder head = new StringBuilder();
+		head.append(removeCredentials(response.getUrl().toString())).append(CRLF);
+		head.append(response.getStatusLine()).append(CRLF);
+		for (Map.Entry<String, List<String>> header : response.getHeaders().entrySet()) {
+			for (String value : header.getValue()) {
+				head.append(header.getKey()).append(HEADER_SEPARATOR).append(value).append(CRLF);
+			}
+		}
+		head.append(DURATION_HEADER).append(HEADER_SEPARATOR).append(response.getDurationInMilliseconds())
+			.append(CRLF);
+		head.append(CRLF);
+		
+		Path responseFilePath = getResponseFilePath(requestUrl);
+		Files.createDirectories(responseFilePath.getParent());
+		Path temporaryFilePath = Files.createTempFile(responseFilePath.getParent(), TEMPORARY_FILE_PREFIX, null);
+		try {
+			try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(temporaryFilePath))) {
+				outputStream.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+				bodyWriter.writeTo(outputStream);
+			}
+			Files.move(temporaryFilePath, responseFilePath, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporaryFilePath);
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONObject;
+
+/***
+ * Summarizes a single run of a harvester, i.e. its wall time, the time spent in every stage, the requests and
+ * latencies per host and the written and skipped files.
+ * 
+ * The report is written as JSON file into the "reports" folder of the working directory of the harvester, one
+ * file per run. Two reports can be compared with {@link RunReportComparison}.
+ * 
+ * The report listens to the responses of the harvester's {@link HttpFetcher}. Downloaded text files are
+ * recorded by the harvester. All methods may be called from several threads.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class RunReport implements HttpResponseListener {
+	
+	public static final String MODE_HARVEST = "harvest";
+	public static final String MODE_REPROCESS = "reprocess";
+	public static final String REPORT_FOLDER_NAME = "reports";
+	
+	/*** Waiting between two items. */
+	public static final String STAGE_DELAY = "delay";
+	/*** Downloading the text files of the items. */
+	public static final String STAGE_DOWNLOAD = "download";
+	/*** Fetching and parsing the metadata of the items, i.e. everything the harvester itself does. */
+	public static final String STAGE_ITEM_METADATA = "itemMetadata";
+	/*** Serializing and writing the metadata of the items. */
+	public static final String STAGE_METADATA_WRITE = "metadataWrite";
+	
+	private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+	private static final String[] PERCENTILE_NAMES = {"p50", "p95", "p99"};
+	private static final DateTimeFormatter REPORT_FILE_NAME_FORMATTER =
+			DateTimeFormatter.ofPattern("'run-'yyyyMMdd-HHmmss'.json'").withZone(ZoneOffset.UTC);
+	
+	private LongAdder downloadedBytes = new LongAdder();
+	private LongAdder downloadedFiles = new LongAdder();
+	private Instant finishTime = null;
+	private String harvesterName;
+	private Map<String, RequestStatistics> hostStatistics = new ConcurrentSkipListMap<>();
+	private String mode;
+	private Shard shard = Shard.ALL;
+	private LongAdder skippedTextFiles = new LongAdder();
+	private Map<String, LongAdder> stageTimesInNanoseconds = new ConcurrentSkipListMap<>();
+	private Instant startTime = Instant.now();
+	private RequestStatistics totalStatistics = new RequestStatistics();
+	
+	/***
+	 * Starts the report of a run.
+	 * @param harvesterName The name of the harvester.
+	 * @param mode What the harvester does, i.e. {@link #MODE_HARVEST} or {@link #MODE_REPROCESS}.
+	 */
+	public RunReport(String harvesterName, String mode) {
+		this.harvesterName = harvesterName;
+		this.mode = mode;
+	}
+	
+	public void addStageTime(String stage, long durationInNanoseconds) {
+		stageTimesInNanoseconds.computeIfAbsent(stage, key -> new LongAdder()).add(durationInNanoseconds);
+	}
+	
+	/***
+	 * Ends the run. The wall time is measured until now.
+	 */
+	public void finish() {
+		finishTime = Instant.now();
+	}
+	
+	public Path getReportFilePath(Path workingDirectory) {
+		return workingDirectory.resolve(REPORT_FOLDER_NAME)
+				.resolve(shard.appendToFileName(REPORT_FILE_NAME_FORMATTER.format(startTime)));
+	}
+	
+	@Override
+	public void onResponse(HttpResponse response) {
+		int bodySize = response.getBody() != null ? response.getBody().length : 0;
+		recordRequest(response.getUrl().getHost(), response.getStatusCode(), bodySize,
+				response.getDurationInMilliseconds());
+	}
+	
+	public void recordDownloadedFile(DownloadedFile downloadedFile) {
+		downloadedFiles.increment();
+		downloadedBytes.add(downloadedFile.getSizeInBytes());
+		
+		// Files from the blob store or from non-HTTP URLs were not requested
+		HttpResponse response = downloadedFile.getResponse();
+		if (response != null) {
+			recordRequest(response.getUrl().getHost(), response.getStatusCode(), downloadedFile.getSizeInBytes(),
+					response.getDurationInMilliseconds());
+		}
+	}
+	
+	/***
+	 * Records text files that were not downloaded, because they existed already.
+	 */
+	public void recordSkippedTextFiles(long numberOfFiles) {
+		skippedTextFiles.add(numberOfFiles);
+	}
+	
+	/***
+	 * Sets the shard the harvester ran on, which is added to the report and its file name.
+	 */
+	public void setShard(Shard shard) {
+		this.shard = shard;
+	}
+	
+	/***
+	 * Returns the report as JSON object.
+	 * @param progressTracker The progress of the harvester, holding the processed and failed items.
+	 * @param metadataWriteStatistics The statistics of the written metadata files.
+	 */
+	public JSONObject toJson(ProgressTracker progressTracker, WriteStatistics metadataWriteStatistics) {
+		Instant endTime = finishTime != null ? finishTime : Instant.now();
+		double wallTimeInSeconds = Duration.between(startTime, endTime).toMillis() / 1000.0;
+		
+		JSONObject report = new JSONObject();
+		report.put("harvester", harvesterName);
+		report.put("mode", mode);
+		if (shard.isPartial()) {
+			report.put("shard", shard.toString());
+		}
+		report.put("started", startTime.toString());
+		report.put("finished", endTime.toString());
+		report.put("wallTimeSeconds", wallTimeInSeconds);
+		
+		JSONObject items = new JSONObject();
+		items.put("processed", progressTracker.getProcessedItems());
+		items.put("failed", progressTracker.getFailedItems());
+		items.put("perSecond", wallTimeInSeconds > 0 ?
+				round(progressTracker.getProcessedItems() / wallTimeInSeconds) : 0);
+		report.put("items", items);
+		
+		JSONObject stageSeconds = new JSONObject();
+		for (Map.Entry<String, LongAdder> stageTime : stageTimesInNanoseconds.entrySet()) {
+			double secondsInStage = stageTime.getValue().sum() / (double) TimeUnit.SECONDS.toNanos(1);
+			stageSeconds.put(stageTime.getKey(), round(secondsInStage));
+		}
+		report.put("stageSeconds", stageSeconds);
+		
+		report.put("requests", totalStatistics.toJson());
+		JSONObject hosts = new JSONObject();
+		for (Map.Entry<String, RequestStatistics> host : hostStatistics.entrySet()) {
+			hosts.put(host.getKey(), host.getValue().toJson());
+		}
+		report.put("hosts", hosts);
+		
+		JSONObject files = new JSONObject();
+		files.put("downloaded", downloadedFiles.sum());
+		files.put("downloadedBytes", downloadedBytes.sum());
+		files.put("skippedExisting", skippedTextFiles.sum());
+		files.put("metadataWritten", metadataWriteStatistics.getNumberOfWrittenFiles());
+		files.put("metadataUnchanged", metadataWriteStatistics.getNumberOfSkippedFiles());
+		files.put("metadataFailed", metadataWriteStatistics.getNumberOfFailedFiles());
+		report.put("files", files);
+		
+		return report;
+	}
+	
+	/***
+	 * Writes the report into the reports folder of the given working directory.
+	 * @return The path of the written report.
+	 */
+	public Path write(Path workingDirectory, ProgressTracker progressTracker,
+			WriteStatistics metadataWriteStatistics) throws IOException {
+		Path reportFilePath = getReportFilePath(workingDirectory);
+		Files.createDirectories(reportFilePath.getParent());
+		Files.write(reportFilePath,
+				toJson(progressTracker, metadataWriteStatistics).toString(2).getBytes(StandardCharsets.UTF_8));
+		return reportFilePath;
+	}
+	
+	private static double round(double value) {
+		return Math.round(value * 1000) / 1000.0;
+	}
+	
+	private void recordRequest(String host, int statusCode, long receivedBytes, long durationInMilliseconds) {
+		totalStatistics.record(statusCode, receivedBytes, durationInMilliseconds);
+		hostStatistics.computeIfAbsent(host, key -> new RequestStatistics())
+			.record(statusCode, receivedBytes, durationInMilliseconds);
+	}
+	
+	private static class RequestStatistics {
+		private LongAdder errors = new LongAdder();
+		private LatencyHistogram latencies = new LatencyHistogram();
+		private LongAdder receivedBytes = new LongAdder();
+		private LongAdder requests = new LongAdder();
+		
+		void record(int statusCode, long bytes, long durationInMilliseconds) {
+			requests.increment();
+			if (statusCode >= 400) {
+				errors.increment();
+			}
+			receivedBytes.add(bytes);
+			latencies.record(durationInMilliseconds);
+		}
+		
+		JSONObject toJson() {
+			JSONObject statistics = new JSONObject();
+			statistics.put("requests", requests.sum());
+			statistics.put("errors", errors.sum());
+			statistics.put("receivedBytes", receivedBytes.sum());
+			
+			JSONObject latencyPercentiles = new JSONObject();
+			for (int i = 0; i < PERCENTILES.length; ++i) {
+				latencyPercentiles.put(PERCENTILE_NAMES[i], latencies.getPercentile(PERCENTILES[i]));
+			}
+			statistics.put("latencyMilliseconds", latencyPercentiles);
+			
+			return statistics;
+		}
+	}
+}
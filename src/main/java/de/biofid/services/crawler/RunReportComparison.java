@@ -0,0 +1,129 @@
+package de.biofid.services.crawler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.json.JSONObject;
+
+/***
+ * Compares two run reports of a harvester (see {@link RunReport}), e.g. from before and after an upgrade or
+ * a configuration change.
+ * 
+ * Every number of the reports is listed with its value before and after and the relative change. Changes of
+ * at least 10% are marked with "!", so regressions stand out.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class RunReportComparison {
+	
+	public static final double SIGNIFICANT_RELATIVE_CHANGE = 0.1;
+	
+	private static final String LINE_FORMAT = "%s %-60s %16s %16s %10s";
+	private static final String MISSING_VALUE = "-";
+	private static final String PATH_SEPARATOR = ".";
+	private static final String SIGNIFICANT_CHANGE_MARKER = "!";
+	private static final String THROUGHPUT_PATH = "items.perSecond";
+	
+	private Map<String, Double> after;
+	private Map<String, Double> before;
+	
+	public RunReportComparison(JSONObject beforeReport, JSONObject afterReport) {
+		this.before = flatten(beforeReport);
+		this.after = flatten(afterReport);
+	}
+	
+	/***
+	 * Reads the two given report files.
+	 */
+	public static RunReportComparison read(Path beforeReportPath, Path afterReportPath) throws IOException {
+		return new RunReportComparison(readReport(beforeReportPath), readReport(afterReportPath));
+	}
+	
+	/***
+	 * Returns the relative change of the value at the given path, e.g. "items.perSecond".
+	 * @return The change, e.g. -0.25 if the value dropped by a quarter. Null, if the value is missing in one
+	 * of the reports or was 0 before.
+	 */
+	public Double getRelativeChange(String path) {
+		Double beforeValue = before.get(path);
+		Double afterValue = after.get(path);
+		if (beforeValue == null || afterValue == null || beforeValue == 0) {
+			return null;
+		}
+		return (afterValue - beforeValue) / beforeValue;
+	}
+	
+	/***
+	 * Returns the comparison as lines of text. The first line summarizes the change of the throughput,
+	 * followed by a table of all numbers.
+	 */
+	public List<String> toLines() {
+		List<String> lines = new ArrayList<>();
+		lines.add(String.format(Locale.ROOT, "Throughput: %s -> %s items/s (%s)",
+				formatValue(before.get(THROUGHPUT_PATH)), formatValue(after.get(THROUGHPUT_PATH)),
+				formatChange(getRelativeChange(THROUGHPUT_PATH))));
+		lines.add(String.format(Locale.ROOT, LINE_FORMAT, " ", "Metric", "Before", "After", "Change"));
+		
+		Set<String> paths = new TreeSet<>(before.keySet());
+		paths.addAll(after.keySet());
+		for (String path : paths) {
+			Double relativeChange = getRelativeChange(path);
+			boolean isSignificant = relativeChange != null &&
+					Math.abs(relativeChange) >= SIGNIFICANT_RELATIVE_CHANGE;
+			lines.add(String.format(Locale.ROOT, LINE_FORMAT, isSignificant ? SIGNIFICANT_CHANGE_MARKER : " ", path,
+					formatValue(before.get(path)), formatValue(after.get(path)), formatChange(relativeChange)));
+		}
+		
+		return lines;
+	}
+	
+	private static void flatten(String prefix, JSONObject object, Map<String, Double> values) {
+		for (String key : object.keySet()) {
+			Object value = object.get(key);
+			String path = prefix.isEmpty() ? key : prefix + PATH_SEPARATOR + key;
+			if (value instanceof JSONObject) {
+				flatten(path, (JSONObject) value, values);
+			} else if (value instanceof Number) {
+				values.put(path, ((Number) value).doubleValue());
+			}
+		}
+	}
+	
+	private static Map<String, Double> flatten(JSONObject report) {
+		Map<String, Double> values = new TreeMap<>();
+		flatten("", report, values);
+		return values;
+	}
+	
+	private static String formatChange(Double relativeChange) {
+		if (relativeChange == null) {
+			return MISSING_VALUE;
+		}
+		return String.format(Locale.ROOT, "%+.1f%%", 100 * relativeChange);
+	}
+	
+	private static String formatValue(Double value) {
+		if (value == null) {
+			return MISSING_VALUE;
+		}
+		if (value == Math.rint(value)) {
+			return Long.toString(value.longValue());
+		}
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+	
+	private static JSONObject readReport(Path reportPath) throws IOException {
+		return new JSONObject(new String(Files.readAllBytes(reportPath), StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,290 @@
+package de.biofid.services.crawler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/***
+ * Appends the metadata of all items to a few large segment files instead of writing one file per item.
+ * 
+ * A segment is closed and a new one is started, when it would grow beyond the configured size. Next to
+ * every segment, an index file holds one line per record: the item ID, the offset of the record in the
+ * segment and its length in bytes. With this index a single record can be read back without parsing the
+ * whole segment. Segments of a previous run are never modified; a new run starts a new segment.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class SegmentedMetadataSink implements MetadataSink {
+	
+	public enum Format {
+		JSONL {
+			@Override
+			public String getFileSuffix() {
+				return "jsonl";
+			}
+		},
+		SMILE {
+			@Override
+			public String getFileSuffix() {
+				return "smile";
+			}
+		},
+		CBOR {
+			@Override
+			public String getFileSuffix() {
+				return "cbor";
+			}
+		};
+		
+		public abstract String getFileSuffix();
+	}
+	
+	public static final String SEGMENT_FOLDER_NAME = "segments";
+	public static final long DEFAULT_MAXIMUM_SEGMENT_SIZE_IN_BYTES = 256L << 20;
+	
+	private static final String INDEX_FILE_SUFFIX = "idx";
+	private static final String INDEX_SEPARATOR = "\t";
+	private static final String SEGMENT_FILE_NAME_PREFIX = "metadata-";
+	private static final String SEGMENT_NUMBER_FORMAT = "%05d";
+	
+	private static final Logger logger = LogManager.getLogger(LiteratureHarvester.LOGGER_NAME);
+	
+	private Path segmentDirectory;
+	private Format format;
+	private long maximumSegmentSizeInBytes;
+	private ObjectMapper binaryMapper = null;
+	
+	private int segmentNumber;
+	private FileChannel segmentChannel = null;
+	private BufferedWriter indexWriter = null;
+	private long segmentSizeInBytes = 0;
+	
+	private Map<Long, RecordLocation> recordLocations = null;
+	
+	public SegmentedMetadataSink(Path segmentDirectory, Format format, long maximumSegmentSizeInBytes) 
+			throws IOException {
+		this.segmentDirectory = segmentDirectory;
+		this.format = format;
+		this.maximumSegmentSizeInBytes = maximumSegmentSizeInBytes;
+		
+		if (format == Format.SMILE) {
+			binaryMapper = new ObjectMapper(new SmileFactory());
+		} else if (format == Format.CBOR) {
+			binaryMapper = new ObjectMapper(new CBORFactory());
+		}
+		
+		Files.createDirectories(segmentDirectory);
+		segmentNumber = findHighestSegmentNumber() + 1;
+	}
+
+	@Override
+	public void write(Item item) throws IOException {
+		byte[] record = serialize(item.getCompleteMetadata());
+		
+		if (segmentChannel == null || 
+				(segmentSizeInBytes > 0 && segmentSizeInBytes + record.length > maximumSegmentSizeInBytes)) {
+			openNextSegment();
+		}
+		
+		long offset = segmentSizeInBytes;
+		ByteBuffer buffer = ByteBuffer.wrap(record);
+		while (buffer.hasRemaining()) {
+			segmentChannel.write(buffer);
+		}
+		segmentSizeInBytes += record.length;
+		
+		indexWriter.write(item.getItemId() + INDEX_SEPARATOR + offset + INDEX_SEPARATOR + record.length);
+		indexWriter.newLine();
+		
+		if (recordLocations != null) {
+			recordLocations.put(item.getItemId(), 
+					new RecordLocation(getSegmentFilePath(segmentNumber - 1).toFile(), offset, record.length));
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		closeCurrentSegment();
+	}
+	
+	/***
+	 * Reads the metadata record of the given item from the segments in the segment directory.
+	 * 
+	 * On the first call the index files of all segments are loaded. If an item was written several times,
+	 * the latest record is returned.
+	 * @param itemId The ID of the item to look up.
+	 * @return The metadata of the item. Null, if the item is not contained in any segment.
+	 * @throws IOException
+	 */
+	public JSONObject read(long itemId) throws IOException {
+		if (recordLocations == null) {
+			if (indexWriter != null) {
+				indexWriter.flush();
+			}
+			loadIndex();
+		}
+		
+		RecordLocation location = recordLocations.get(itemId);
+		if (location == null) {
+			return null;
+		}
+		
+		byte[] record = new byte[location.length];
+		try (RandomAccessFile segmentFile = new RandomAccessFile(location.segmentFile, "r")) {
+			segmentFile.seek(location.offset);
+			segmentFile.readFully(record);
+		}
+		
+		return deserialize(record);
+	}
+	
+	private void closeCurrentSegment() throws IOException {
+		if (indexWriter != null) {
+			indexWriter.close();
+			indexWriter = null;
+		}
+		
+		if (segmentChannel != null) {
+			segmentChannel.close();
+			segmentChannel = null;
+		}
+	}
+	
+	private JSONObject deserialize(byte[] record) throws IOException {
+		if (binaryMapper == null) {
+			return new JSONObject(new String(record, StandardCharsets.UTF_8));
+		}
+		
+		Map<?, ?> metadataMap = binaryMapper.readValue(record, Map.class);
+		return new JSONObject(metadataMap);
+	}
+	
+	private int findHighestSegmentNumber() {
+		int highestSegmentNumber = -1;
+		
+		String[] fileNames = segmentDirectory.toFile().list();
+		if (fileNames == null) {
+			return highestSegmentNumber;
+		}
+		
+		for (String fileName : fileNames) {
+			Integer number = getSegmentNumber(fileName);
+			if (number != null) {
+				highestSegmentNumber = Math.max(highestSegmentNumber, number);
+			}
+		}
+		
+		return highestSegmentNumber;
+	}
+	
+	private Path getIndexFilePath(int number) {
+		return segmentDirectory.resolve(getSegmentFileNameBase(number) + "." + INDEX_FILE_SUFFIX);
+	}
+	
+	private String getSegmentFileNameBase(int number) {
+		return SEGMENT_FILE_NAME_PREFIX + String.format(SEGMENT_NUMBER_FORMAT, number);
+	}
+	
+	private Path getSegmentFilePath(int number) {
+		return segmentDirectory.resolve(getSegmentFileNameBase(number) + "." + format.getFileSuffix());
+	}
+	
+	private Integer getSegmentNumber(String fileName) {
+		String indexFileSuffix = "." + INDEX_FILE_SUFFIX;
+		if (!fileName.startsWith(SEGMENT_FILE_NAME_PREFIX) || !fileName.endsWith(indexFileSuffix)) {
+			return null;
+		}
+		
+		String number = fileName.substring(SEGMENT_FILE_NAME_PREFIX.length(), 
+				fileName.length() - indexFileSuffix.length());
+		try {
+			return Integer.parseInt(number);
+		} catch (NumberFormatException ex) {
+			return null;
+		}
+	}
+	
+	private void loadIndex() throws IOException {
+		recordLocations = new HashMap<>();
+		
+		String[] fileNames = segmentDirectory.toFile().list();
+		if (fileNames == null) {
+			return;
+		}
+		Arrays.sort(fileNames);
+		
+		for (String fileName : fileNames) {
+			Integer number = getSegmentNumber(fileName);
+			if (number == null) {
+				continue;
+			}
+			
+			File segmentFile = getSegmentFilePath(number).toFile();
+			try (BufferedReader indexReader = Files.newBufferedReader(getIndexFilePath(number), StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = indexReader.readLine()) != null) {
+					String[] fields = line.split(INDEX_SEPARATOR);
+					if (fields.length != 3) {
+						logger.warn("Skipping malformed index line '{}' in {}", line, fileName);
+						continue;
+					}
+					recordLocations.put(Long.parseLong(fields[0]), 
+							new RecordLocation(segmentFile, Long.parseLong(fields[1]), Integer.parseInt(fields[2])));
+				}
+			}
+		}
+	}
+	
+	private void openNextSegment() throws IOException {
+		closeCurrentSegment();
+		
+		Path segmentFilePath = getSegmentFilePath(segmentNumber);
+		logger.info("Starting metadata segment {}", segmentFilePath);
+		
+		segmentChannel = FileChannel.open(segmentFilePath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		indexWriter = Files.newBufferedWriter(getIndexFilePath(segmentNumber), StandardCharsets.UTF_8);
+		segmentSizeInBytes = 0;
+		++segmentNumber;
+	}
+	
+	private byte[] serialize(JSONObject metadata) throws IOException {
+		if (binaryMapper == null) {
+			return (metadata.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+		}
+		
+		return binaryMapper.writeValueAsBytes(metadata.toMap());
+	}
+	
+	private static class RecordLocation {
+		private final File segmentFile;
+		private final long offset;
+		private final int length;
+		
+		RecordLocation(File segmentFile, long offset, int length) {
+			this.segmentFile = segmentFile;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+}
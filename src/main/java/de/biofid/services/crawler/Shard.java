@@ -0,0 +1,191 @@
+package de.biofid.services.crawler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/***
+ * One of several disjoint parts of the items of a configuration, so several crawler instances can share it.
+ * 
+ * An item belongs to a shard by the hash of its ID, so every instance decides the same without knowing the
+ * others, e.g. "--shard 2/4" on the second of four machines. The hash does not depend on the JVM or the order
+ * of the items. The files every instance writes about its run carry the shard in their names, so the output
+ * directories of all instances can be merged into one tree.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class Shard {
+	
+	/***
+	 * The only shard of an unpartitioned harvest, holding all items.
+	 */
+	public static final Shard ALL = new Shard(1, 1);
+	
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	
+	private int count;
+	private int index;
+	
+	/***
+	 * @param index The number of this shard, from 1 to the number of shards.
+	 * @param count The number of shards.
+	 * @throws IllegalArgumentException If the index is not within the number of shards.
+	 */
+	public Shard(int index, int count) {
+		if (count < 1 || index < 1 || index > count) {
+			throw new IllegalArgumentException("The shard " + index + "/" + count + " does not exist! "
+					+ "Please give a shard from 1/N to N/N.");
+		}
+		this.index = index;
+		this.count = count;
+	}
+	
+	/***
+	 * @param shard A shard as "index/count", e.g. "2/4".
+	 * @throws IllegalArgumentException If the shard is malformed or does not exist.
+	 */
+	public static Shard parse(String shard) {
+		String[] indexAndCount = shard.trim().split("/");
+		try {
+			if (indexAndCount.length == 2) {
+				return new Shard(Integer.parseInt(indexAndCount[0].trim()), Integer.parseInt(indexAndCount[1].trim()));
+			}
+		} catch (NumberFormatException ex) {
+			// Reported below
+		}
+		throw new IllegalArgumentException("The shard '" + shard + "' is malformed! Please give e.g. 2/4.");
+	}
+	
+	/***
+	 * Inserts the name of this shard before the suffix of the given file name, e.g. "status-shard-2-of-4.json".
+	 * @return The unchanged file name, if this shard holds all items.
+	 */
+	public String appendToFileName(String fileName) {
+		if (!isPartial()) {
+			return fileName;
+		}
+		
+		int suffixIndex = fileName.lastIndexOf('.');
+		if (suffixIndex <= 0) {
+			return fileName + "-" + getName();
+		}
+		return fileName.substring(0, suffixIndex) + "-" + getName() + fileName.substring(suffixIndex);
+	}
+	
+	public boolean contains(long itemId) {
+		return count == 1 || Math.floorMod(mix(itemId), count) == index - 1;
+	}
+	
+	/***
+	 * Checks if the item with the given ID or URL belongs to this shard. Numeric IDs are hashed as numbers, so an
+	 * item given as "22314" belongs to the same shard as 22314.
+	 */
+	public boolean contains(String itemKey) {
+		if (count == 1) {
+			return true;
+		}
+		
+		String trimmedItemKey = itemKey.trim();
+		if (isNumeric(trimmedItemKey)) {
+			try {
+				return contains(Long.parseLong(trimmedItemKey));
+			} catch (NumberFormatException ex) {
+				// Too large for a long, so it is hashed like any text
+			}
+		}
+		
+		long hash = FNV_OFFSET_BASIS;
+		for (byte character : trimmedItemKey.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= character & 0xff;
+			hash *= FNV_PRIME;
+		}
+		return contains(hash);
+	}
+	
+	/***
+	 * Returns the given IDs that belong to this shard, read lazily.
+	 */
+	public PrimitiveIterator.OfLong filter(PrimitiveIterator.OfLong itemIds) {
+		if (!isPartial()) {
+			return itemIds;
+		}
+		
+		return new PrimitiveIterator.OfLong() {
+			private boolean hasNextItemId = false;
+			private long nextItemId;
+			
+			@Override
+			public boolean hasNext() {
+				while (!hasNextItemId && itemIds.hasNext()) {
+					nextItemId = itemIds.nextLong();
+					hasNextItemId = contains(nextItemId);
+				}
+				return hasNextItemId;
+			}
+			
+			@Override
+			public long nextLong() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				hasNextItemId = false;
+				return nextItemId;
+			}
+		};
+	}
+	
+	public int getCount() {
+		return count;
+	}
+	
+	public int getIndex() {
+		return index;
+	}
+	
+	/***
+	 * A name of this shard usable in paths, e.g. "shard-2-of-4".
+	 */
+	public String getName() {
+		return "shard-" + index + "-of-" + count;
+	}
+	
+	/***
+	 * @return True, if there are other shards, i.e. this one does not hold all items.
+	 */
+	public boolean isPartial() {
+		return count > 1;
+	}
+	
+	@Override
+	public String toString() {
+		return index + "/" + count;
+	}
+	
+	private static boolean isNumeric(String itemKey) {
+		if (itemKey.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < itemKey.length(); ++i) {
+			if (!Character.isDigit(itemKey.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/***
+	 * Spreads the bits of the ID (the finalizer of MurmurHash3), so consecutive IDs are spread over all shards.
+	 */
+	private static long mix(long itemId) {
+		long hash = itemId;
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,30 @@
+package de.biofid.services.crawler;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/***
+ * Writes the records of a single archive shard sequentially into one file.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+interface ShardWriter extends Closeable {
+	
+	/***
+	 * Estimates the number of bytes the given record will take in the shard, including all headers.
+	 */
+	long estimateSize(ArchiveRecord record);
+	
+	/***
+	 * The number of bytes written into the shard so far. This is the offset of the next record.
+	 */
+	long getPosition();
+	
+	/***
+	 * Appends the given record to the shard.
+	 * @return False, if the format cannot hold records of this type and the record was skipped.
+	 */
+	boolean write(ArchiveRecord record) throws IOException;
+}
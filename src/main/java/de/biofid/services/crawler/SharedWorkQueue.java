@@ -0,0 +1,467 @@
+package de.biofid.services.crawler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/***
+ * A queue of item IDs shared by crawler instances on several machines, which take the items from it while they
+ * harvest.
+ * 
+ * The queue is a log file on a storage all machines can access, e.g. a network share, so no broker is needed.
+ * Every change is appended to the log as a line while the file is locked, and every instance replays the lines
+ * of the others before it changes anything. An instance claims an item for a limited time, its lease, which is
+ * renewed in the background as long as the instance works on the item. If an instance crashes, its leases
+ * expire and the items are claimed by another instance. Hence, an item may be harvested twice, but none is lost.
+ * 
+ * The clocks of all machines have to agree much closer than the lease duration. Every published ID is queued
+ * only once, so a harvest can only be repeated with a new log file.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class SharedWorkQueue implements Closeable {
+	
+	private static final String CLAIM = "claim";
+	private static final String COMPLETE = "complete";
+	private static final String PUBLISH = "publish";
+	private static final String RELEASE = "release";
+	private static final String RENEW = "renew";
+	
+	// File locks are held per JVM, so queues of one JVM on the same log have to take turns before locking it
+	private static final ConcurrentMap<Path, Object> LOG_FILE_MONITORS = new ConcurrentHashMap<>();
+	private static final int MAXIMUM_WRITE_SIZE_IN_BYTES = 1024 * 1024;
+	private static final int READ_BUFFER_SIZE_IN_BYTES = 1024 * 1024;
+	
+	private static final Logger logger = LogManager.getLogger(LiteratureHarvester.LOGGER_NAME);
+	
+	private LongSupplier clock;
+	private Set<Long> heldItemIds = new HashSet<>();
+	private long leaseDurationInMilliseconds;
+	private Map<Long, Lease> leases = new HashMap<>();
+	private Path logFilePath;
+	private Object logFileMonitor;
+	private String nodeId;
+	private long numberOfCompletedItems = 0;
+	private long readPosition = 0;
+	private ArrayDeque<Long> releasedItemIds = new ArrayDeque<>();
+	private ScheduledExecutorService renewer = null;
+	private LongWorkQueue unclaimedItemIds = new LongWorkQueue();
+	
+	/***
+	 * Opens the queue in the given log file, which is created if it does not exist, and reads its current state.
+	 * @param logFilePath The log file of the queue, which all instances sharing it use.
+	 * @param nodeId The name of this instance, unique among all instances sharing the queue, without whitespace.
+	 * @param leaseDurationInMilliseconds How long an item stays claimed without being renewed.
+	 * @throws IOException If the log file could not be read.
+	 */
+	public SharedWorkQueue(Path logFilePath, String nodeId, long leaseDurationInMilliseconds) throws IOException {
+		this(logFilePath, nodeId, leaseDurationInMilliseconds, leaseDurationInMilliseconds / 3,
+				System::currentTimeMillis);
+	}
+	
+	/***
+	 * @param renewalIntervalInMilliseconds How often the held leases are renewed in the background. 0, if they
+	 * are only renewed by {@link #renew(long)} and {@link #renewHeldLeases()}.
+	 * @param clock The current time in milliseconds since the epoch, by which the leases expire.
+	 */
+	SharedWorkQueue(Path logFilePath, String nodeId, long leaseDurationInMilliseconds,
+			long renewalIntervalInMilliseconds, LongSupplier clock) throws IOException {
+		if (nodeId.isEmpty() || !nodeId.chars().allMatch(character -> character > ' ' && character < 127)) {
+			throw new IllegalArgumentException("The node ID '" + nodeId + "' is not valid! "
+					+ "Please give a name of printable ASCII characters without whitespace.");
+		}
+		if (leaseDurationInMilliseconds <= 0) {
+			throw new IllegalArgumentException("The lease duration has to be positive!");
+		}
+		
+		this.logFilePath = logFilePath.toAbsolutePath().normalize();
+		this.nodeId = nodeId;
+		this.leaseDurationInMilliseconds = leaseDurationInMilliseconds;
+		this.clock = clock;
+		logFileMonitor = LOG_FILE_MONITORS.computeIfAbsent(this.logFilePath, path -> new Object());
+		
+		Files.createDirectories(this.logFilePath.getParent());
+		withLockedLog(channel -> null);
+		
+		if (renewalIntervalInMilliseconds > 0) {
+			renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread renewerThread = new Thread(runnable, "lease-renewer-" + this.logFilePath.getFileName());
+				renewerThread.setDaemon(true);
+				return renewerThread;
+			});
+			renewer.scheduleAtFixedRate(this::renewHeldLeases, renewalIntervalInMilliseconds,
+					renewalIntervalInMilliseconds, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	/***
+	 * A name of this machine and process, e.g. "12345@crawler-1", to tell the instances sharing a queue apart.
+	 */
+	public static String getDefaultNodeId() {
+		return ManagementFactory.getRuntimeMXBean().getName().replaceAll("\\s", "_");
+	}
+	
+	/***
+	 * Claims the next item, which is then leased to this instance until it is completed or released. Items
+	 * released by others and items of expired leases are claimed before the ones never claimed.
+	 * @return The ID of the claimed item. None, if no item is available right now. Leased items may become
+	 * available again, as long as the queue is not finished.
+	 */
+	public synchronized OptionalLong claim() throws IOException {
+		return withLockedLog(channel -> {
+			long now = clock.getAsLong();
+			
+			long itemId;
+			if (!releasedItemIds.isEmpty()) {
+				itemId = releasedItemIds.peekFirst();
+			} else {
+				OptionalLong expiredItemId = findExpiredLease(now);
+				if (expiredItemId.isPresent()) {
+					itemId = expiredItemId.getAsLong();
+					logger.warn("The lease of item {} held by {} expired! Claiming it again.", itemId,
+							leases.get(itemId).ownerId);
+				} else if (!unclaimedItemIds.isEmpty()) {
+					itemId = unclaimedItemIds.peek();
+				} else {
+					return OptionalLong.empty();
+				}
+			}
+			
+			appendAndApply(channel, createLeaseRecord(CLAIM, itemId, now));
+			heldItemIds.add(itemId);
+			return OptionalLong.of(itemId);
+		});
+	}
+	
+	/***
+	 * Releases all leases of this instance, so other instances can claim the items right away, and stops renewing.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (renewer != null) {
+			renewer.shutdownNow();
+		}
+		
+		if (!heldItemIds.isEmpty()) {
+			withLockedLog(channel -> {
+				for (long itemId : new ArrayList<>(heldItemIds)) {
+					if (isLeasedToThisNode(itemId)) {
+						appendAndApply(channel, createRecord(RELEASE, itemId));
+					}
+				}
+				heldItemIds.clear();
+				return null;
+			});
+		}
+	}
+	
+	/***
+	 * Marks the given item as done, so it is never claimed again. An item is also completed, if its lease
+	 * expired and another instance claimed it meanwhile.
+	 */
+	public synchronized void complete(long itemId) throws IOException {
+		heldItemIds.remove(itemId);
+		withLockedLog(channel -> {
+			if (leases.containsKey(itemId)) {
+				appendAndApply(channel, createRecord(COMPLETE, itemId));
+			}
+			return null;
+		});
+	}
+	
+	public long getLeaseDurationInMilliseconds() {
+		return leaseDurationInMilliseconds;
+	}
+	
+	public synchronized long getNumberOfCompletedItems() {
+		return numberOfCompletedItems;
+	}
+	
+	/***
+	 * @return The number of items not completed yet, whether claimed or not, as read by the last access.
+	 */
+	public synchronized long getNumberOfPendingItems() {
+		return unclaimedItemIds.size() + releasedItemIds.size() + leases.size();
+	}
+	
+	/***
+	 * @return True, if all items were completed, i.e. none is waiting or leased.
+	 */
+	public synchronized boolean isFinished() throws IOException {
+		return withLockedLog(channel ->
+				unclaimedItemIds.isEmpty() && releasedItemIds.isEmpty() && leases.isEmpty());
+	}
+	
+	/***
+	 * Appends the given IDs to the queue, except the ones published before by any instance.
+	 * @return The number of newly published IDs.
+	 */
+	public synchronized long publish(PrimitiveIterator.OfLong itemIds) throws IOException {
+		return withLockedLog(channel -> {
+			long numberOfPublishedIds = 0;
+			StringBuilder records = new StringBuilder();
+			while (itemIds.hasNext()) {
+				long itemId = itemIds.nextLong();
+				if (unclaimedItemIds.add(itemId)) {
+					records.append(PUBLISH).append(' ').append(itemId).append('\n');
+					++numberOfPublishedIds;
+				}
+				
+				if (records.length() >= MAXIMUM_WRITE_SIZE_IN_BYTES) {
+					append(channel, records);
+					records.setLength(0);
+				}
+			}
+			append(channel, records);
+			return numberOfPublishedIds;
+		});
+	}
+	
+	/***
+	 * Gives the given item back to the queue without completing it, so another instance can claim it.
+	 */
+	public synchronized void release(long itemId) throws IOException {
+		withLockedLog(channel -> {
+			if (isLeasedToThisNode(itemId)) {
+				appendAndApply(channel, createRecord(RELEASE, itemId));
+			}
+			heldItemIds.remove(itemId);
+			return null;
+		});
+	}
+	
+	/***
+	 * Extends the lease of the given item, which is done in the background for all claimed items anyway.
+	 * @return False, if the lease was lost, because it expired and another instance claimed the item.
+	 */
+	public synchronized boolean renew(long itemId) throws IOException {
+		return withLockedLog(channel -> renewLease(channel, itemId, clock.getAsLong()));
+	}
+	
+	/***
+	 * Writes the given records at the end of the log and forces them to the storage.
+	 */
+	private void append(FileChannel channel, CharSequence records) throws IOException {
+		if (records.length() == 0) {
+			return;
+		}
+		
+		// A record cut off by a crashed instance is dropped, so it does not corrupt the next one
+		if (channel.size() > readPosition) {
+			channel.truncate(readPosition);
+		}
+		
+		ByteBuffer buffer = ByteBuffer.wrap(records.toString().getBytes(StandardCharsets.US_ASCII));
+		while (buffer.hasRemaining()) {
+			readPosition += channel.write(buffer, readPosition);
+		}
+		channel.force(false);
+	}
+	
+	private void appendAndApply(FileChannel channel, String record) throws IOException {
+		append(channel, record + "\n");
+		apply(record);
+	}
+	
+	/***
+	 * Changes the state of the queue as given by the record.
+	 */
+	private void apply(String record) throws IOException {
+		String[] fields = record.split(" ");
+		try {
+			long itemId = Long.parseLong(fields[1]);
+			switch (fields[0]) {
+			case PUBLISH:
+				unclaimedItemIds.add(itemId);
+				break;
+			case CLAIM:
+				if (leases.remove(itemId) == null && !releasedItemIds.remove(itemId)) {
+					// Items never claimed are claimed in the order they were published
+					unclaimedItemIds.poll();
+				}
+				// Falls through
+			case RENEW:
+				Lease lease = new Lease(fields[2], Long.parseLong(fields[3]));
+				leases.put(itemId, lease);
+				if (!lease.ownerId.equals(nodeId)) {
+					heldItemIds.remove(itemId);
+				}
+				break;
+			case RELEASE:
+				leases.remove(itemId);
+				heldItemIds.remove(itemId);
+				releasedItemIds.add(itemId);
+				break;
+			case COMPLETE:
+				leases.remove(itemId);
+				heldItemIds.remove(itemId);
+				++numberOfCompletedItems;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown operation");
+			}
+		} catch (RuntimeException ex) {
+			throw new IOException("The shared work queue " + logFilePath + " holds the malformed record '"
+					+ record + "'!", ex);
+		}
+	}
+	
+	private String createLeaseRecord(String operation, long itemId, long now) {
+		return createRecord(operation, itemId) + " " + (now + leaseDurationInMilliseconds);
+	}
+	
+	private String createRecord(String operation, long itemId) {
+		return operation + " " + itemId + " " + nodeId;
+	}
+	
+	private OptionalLong findExpiredLease(long now) {
+		for (Map.Entry<Long, Lease> lease : leases.entrySet()) {
+			if (lease.getValue().expirationTime < now) {
+				return OptionalLong.of(lease.getKey());
+			}
+		}
+		return OptionalLong.empty();
+	}
+	
+	private boolean isLeasedToThisNode(long itemId) {
+		Lease lease = leases.get(itemId);
+		return heldItemIds.contains(itemId) && lease != null && lease.ownerId.equals(nodeId);
+	}
+	
+	/***
+	 * Reads and applies the records appended since the last access. A record not ending with a line break is
+	 * still being written or was cut off, so it is left for later.
+	 */
+	private void readNewRecords(FileChannel channel) throws IOException {
+		long fileSize = channel.size();
+		if (fileSize < readPosition) {
+			throw new IOException("The shared work queue " + logFilePath + " was truncated by someone else!");
+		}
+		
+		ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_BUFFER_SIZE_IN_BYTES, fileSize - readPosition));
+		StringBuilder record = new StringBuilder();
+		long position = readPosition;
+		while (position < fileSize) {
+			buffer.clear();
+			int numberOfReadBytes = channel.read(buffer, position);
+			if (numberOfReadBytes <= 0) {
+				break;
+			}
+			
+			for (int i = 0; i < numberOfReadBytes; ++i) {
+				byte character = buffer.get(i);
+				if (character == '\n') {
+					apply(record.toString());
+					record.setLength(0);
+					readPosition = position + i + 1;
+				} else {
+					record.append((char) character);
+				}
+			}
+			position += numberOfReadBytes;
+		}
+	}
+	
+	/***
+	 * Renews the leases of all items this instance holds, as the background renewal does.
+	 */
+	void renewHeldLeases() {
+		try {
+			synchronized (this) {
+				if (heldItemIds.isEmpty()) {
+					return;
+				}
+				
+				withLockedLog(channel -> {
+					long now = clock.getAsLong();
+					for (long itemId : new ArrayList<>(heldItemIds)) {
+						renewLease(channel, itemId, now);
+					}
+					return null;
+				});
+			}
+		} catch (IOException ex) {
+			logger.warn("Could not renew the leases in the shared work queue {}! {}", logFilePath, ex.getMessage());
+		}
+	}
+	
+	private boolean renewLease(FileChannel channel, long itemId, long now) throws IOException {
+		if (!isLeasedToThisNode(itemId)) {
+			heldItemIds.remove(itemId);
+			logger.warn("The lease of item {} was lost!", itemId);
+			return false;
+		}
+		
+		appendAndApply(channel, createLeaseRecord(RENEW, itemId, now));
+		return true;
+	}
+	
+	/***
+	 * Forgets the state read from the log, so it is read completely by the next access.
+	 */
+	private void resetState() {
+		leases = new HashMap<>();
+		numberOfCompletedItems = 0;
+		readPosition = 0;
+		releasedItemIds = new ArrayDeque<>();
+		unclaimedItemIds = new LongWorkQueue();
+	}
+	
+	/***
+	 * Locks the log, reads the records of other instances and runs the given operation. If anything fails, the
+	 * state is read anew by the next access, so it never differs from the log.
+	 */
+	private <T> T withLockedLog(LogOperation<T> operation) throws IOException {
+		synchronized (logFileMonitor) {
+			try (FileChannel channel = FileChannel.open(logFilePath, StandardOpenOption.CREATE,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+					FileLock lock = channel.lock()) {
+				readNewRecords(channel);
+				return operation.apply(channel);
+			} catch (IOException | RuntimeException ex) {
+				resetState();
+				throw ex;
+			}
+		}
+	}
+	
+	private static class Lease {
+		private long expirationTime;
+		private String ownerId;
+		
+		private Lease(String ownerId, long expirationTime) {
+			this.ownerId = ownerId;
+			this.expirationTime = expirationTime;
+		}
+	}
+	
+	private interface LogOperation<T> {
+		T apply(FileChannel channel) throws IOException;
+	}
+}
@@ -0,0 +1,137 @@
+package de.biofid.services.crawler;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+
+/***
+ * Writes files and metadata into an uncompressed POSIX (ustar) tar file.
+ * 
+ * Captured responses are not written, since a tar file has no place for their URL and headers.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+class TarShardWriter implements ShardWriter {
+	
+	private static final int BLOCK_SIZE = 512;
+	private static final int BUFFER_SIZE = 256 * 1024;
+	private static final String FILE_MODE = "0000644";
+	private static final long MAXIMUM_ENTRY_SIZE = 077777777777L;
+	private static final int MAXIMUM_NAME_LENGTH = 100;
+	private static final int MAXIMUM_PREFIX_LENGTH = 155;
+	
+	private CountingOutputStream shardStream;
+	
+	TarShardWriter(Path shardFilePath) throws IOException {
+		OutputStream fileStream = Files.newOutputStream(shardFilePath, StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.WRITE);
+		shardStream = new CountingOutputStream(new BufferedOutputStream(fileStream, BUFFER_SIZE));
+	}
+	
+	@Override
+	public void close() throws IOException {
+		// A tar file ends with two empty blocks
+		shardStream.write(new byte[2 * BLOCK_SIZE]);
+		shardStream.close();
+	}
+	
+	@Override
+	public long estimateSize(ArchiveRecord record) {
+		return BLOCK_SIZE + getPaddedSize(record.getContentLength());
+	}
+	
+	@Override
+	public long getPosition() {
+		return shardStream.getByteCount();
+	}
+	
+	@Override
+	public boolean write(ArchiveRecord record) throws IOException {
+		if (record.getType() == ArchiveRecord.Type.RESPONSE) {
+			return false;
+		}
+		
+		if (record.getContentLength() > MAXIMUM_ENTRY_SIZE) {
+			throw new IOException("The file " + record.getEntryName() + " is too large for a tar file!");
+		}
+		
+		shardStream.write(createHeader(record.getEntryName(), record.getContentLength()));
+		try (InputStream contentStream = record.openContent()) {
+			long copiedBytes = IOUtils.copyLarge(contentStream, shardStream);
+			if (copiedBytes != record.getContentLength()) {
+				throw new IOException("The file " + record.getEntryName() + " changed while it was archived!");
+			}
+		}
+		shardStream.write(new byte[(int) (getPaddedSize(record.getContentLength()) - record.getContentLength())]);
+		
+		return true;
+	}
+	
+	private static byte[] createHeader(String entryName, long size) throws IOException {
+		byte[] header = new byte[BLOCK_SIZE];
+		
+		String name = entryName;
+		String prefix = "";
+		if (name.length() > MAXIMUM_NAME_LENGTH) {
+			int separatorIndex = name.lastIndexOf('/', MAXIMUM_PREFIX_LENGTH);
+			if (separatorIndex < 0 || name.length() - separatorIndex - 1 > MAXIMUM_NAME_LENGTH) {
+				throw new IOException("The name " + entryName + " is too long for a tar file!");
+			}
+			prefix = name.substring(0, separatorIndex);
+			name = name.substring(separatorIndex + 1);
+		}
+		
+		putString(header, 0, name);
+		putString(header, 100, FILE_MODE);
+		putOctal(header, 108, 8, 0);
+		putOctal(header, 116, 8, 0);
+		putOctal(header, 124, 12, size);
+		putOctal(header, 136, 12, System.currentTimeMillis() / 1000);
+		header[156] = '0';
+		putString(header, 257, "ustar");
+		putString(header, 263, "00");
+		putString(header, 345, prefix);
+		
+		// The checksum is computed with the checksum field filled with spaces
+		for (int i = 148; i < 156; ++i) {
+			header[i] = ' ';
+		}
+		long checksum = 0;
+		for (byte b : header) {
+			checksum += b & 0xFF;
+		}
+		putOctal(header, 148, 7, checksum);
+		
+		return header;
+	}
+	
+	private static long getPaddedSize(long size) {
+		return (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+	}
+	
+	/***
+	 * Writes the given number as zero-padded octal number, terminated by NUL.
+	 */
+	private static void putOctal(byte[] header, int offset, int length, long value) {
+		String octal = Long.toOctalString(value);
+		while (octal.length() < length - 1) {
+			octal = "0" + octal;
+		}
+		putString(header, offset, octal);
+	}
+	
+	private static void putString(byte[] header, int offset, String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		System.arraycopy(bytes, 0, header, offset, bytes.length);
+	}
+}
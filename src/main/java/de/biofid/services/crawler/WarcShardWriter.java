@@ -0,0 +1,153 @@
+package de.biofid.services.crawler;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+
+/***
+ * Writes an uncompressed WARC 1.1 file.
+ * 
+ * Every shard starts with a "warcinfo" record. Downloaded files and captured responses are written as
+ * "response" records holding the HTTP status line, the headers and the body. The metadata of an item is
+ * written as "metadata" record for the item URL.
+ * 
+ * The HTTP message is rebuilt from what HttpURLConnection received: the body is stored as received, but
+ * without any transfer encoding. Hence, a "Transfer-Encoding" header is not stored.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+class WarcShardWriter implements ShardWriter {
+	
+	private static final int BUFFER_SIZE = 256 * 1024;
+	private static final String CRLF = "\r\n";
+	private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+	private static final String HTTP_RESPONSE_CONTENT_TYPE = "application/http;msgtype=response";
+	private static final int RECORD_HEADER_SIZE_ESTIMATE = 1024;
+	private static final String SOFTWARE_NAME = "BIOfid LiteratureCrawler";
+	private static final String TRANSFER_ENCODING_HEADER = "Transfer-Encoding";
+	private static final String WARC_VERSION = "WARC/1.1";
+	
+	private CountingOutputStream shardStream;
+	
+	WarcShardWriter(Path shardFilePath) throws IOException {
+		OutputStream fileStream = Files.newOutputStream(shardFilePath, StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.WRITE);
+		shardStream = new CountingOutputStream(new BufferedOutputStream(fileStream, BUFFER_SIZE));
+		
+		writeWarcInfo(shardFilePath.getFileName().toString());
+	}
+	
+	@Override
+	public void close() throws IOException {
+		shardStream.close();
+	}
+	
+	@Override
+	public long estimateSize(ArchiveRecord record) {
+		return RECORD_HEADER_SIZE_ESTIMATE + record.getContentLength();
+	}
+	
+	@Override
+	public long getPosition() {
+		return shardStream.getByteCount();
+	}
+	
+	@Override
+	public boolean write(ArchiveRecord record) throws IOException {
+		if (record.getType() == ArchiveRecord.Type.METADATA) {
+			String contentType = record.getContentType() != null ? record.getContentType() : DEFAULT_CONTENT_TYPE;
+			writeRecord("metadata", record, contentType, new byte[0]);
+		} else if (record.getResponse() != null) {
+			writeRecord("response", record, HTTP_RESPONSE_CONTENT_TYPE, createHttpHead(record.getResponse()));
+		} else {
+			writeRecord("resource", record, DEFAULT_CONTENT_TYPE, new byte[0]);
+		}
+		
+		return true;
+	}
+	
+	private static byte[] createHttpHead(HttpResponse response) {
+		StringBuilder head = new StringBuilder();
+		head.append(response.getStatusLine()).append(CRLF);
+		for (Map.Entry<String, List<String>> header : response.getHeaders().entrySet()) {
+			if (header.getKey().equalsIgnoreCase(TRANSFER_ENCODING_HEADER)) {
+				continue;
+			}
+			for (String value : header.getValue()) {
+				head.append(header.getKey()).append(": ").append(value).append(CRLF);
+			}
+		}
+		head.append(CRLF);
+		return head.toString().getBytes(StandardCharsets.ISO_8859_1);
+	}
+	
+	private static String createRecordId() {
+		return "<urn:uuid:" + UUID.randomUUID() + ">";
+	}
+	
+	private static String getCurrentDate() {
+		return DateTimeFormatter.ISO_INSTANT.format(Instant.now().truncatedTo(ChronoUnit.SECONDS));
+	}
+	
+	private void appendHeaderLine(StringBuilder headerBuilder, String name, Object value) {
+		headerBuilder.append(name).append(": ").append(value).append(CRLF);
+	}
+	
+	private void writeRecord(String warcType, ArchiveRecord record, String contentType, byte[] blockPrefix)
+			throws IOException {
+		StringBuilder headerBuilder = new StringBuilder(WARC_VERSION).append(CRLF);
+		appendHeaderLine(headerBuilder, "WARC-Type", warcType);
+		appendHeaderLine(headerBuilder, "WARC-Record-ID", createRecordId());
+		appendHeaderLine(headerBuilder, "WARC-Date", getCurrentDate());
+		if (record.getTargetUrl() != null) {
+			appendHeaderLine(headerBuilder, "WARC-Target-URI", record.getTargetUrl());
+		}
+		if (record.getSha256() != null) {
+			appendHeaderLine(headerBuilder, "WARC-Payload-Digest", "sha256:" + record.getSha256());
+		}
+		appendHeaderLine(headerBuilder, "Content-Type", contentType);
+		appendHeaderLine(headerBuilder, "Content-Length", blockPrefix.length + record.getContentLength());
+		headerBuilder.append(CRLF);
+		
+		shardStream.write(headerBuilder.toString().getBytes(StandardCharsets.UTF_8));
+		shardStream.write(blockPrefix);
+		try (InputStream contentStream = record.openContent()) {
+			IOUtils.copyLarge(contentStream, shardStream);
+		}
+		shardStream.write((CRLF + CRLF).getBytes(StandardCharsets.US_ASCII));
+	}
+	
+	private void writeWarcInfo(String fileName) throws IOException {
+		byte[] fields = ("software: " + SOFTWARE_NAME + CRLF + "format: WARC File Format 1.1" + CRLF)
+				.getBytes(StandardCharsets.UTF_8);
+		
+		StringBuilder headerBuilder = new StringBuilder(WARC_VERSION).append(CRLF);
+		appendHeaderLine(headerBuilder, "WARC-Type", "warcinfo");
+		appendHeaderLine(headerBuilder, "WARC-Record-ID", createRecordId());
+		appendHeaderLine(headerBuilder, "WARC-Date", getCurrentDate());
+		appendHeaderLine(headerBuilder, "WARC-Filename", fileName);
+		appendHeaderLine(headerBuilder, "Content-Type", "application/warc-fields");
+		appendHeaderLine(headerBuilder, "Content-Length", fields.length);
+		headerBuilder.append(CRLF);
+		
+		shardStream.write(headerBuilder.toString().getBytes(StandardCharsets.UTF_8));
+		shardStream.write(fields);
+		shardStream.write((CRLF + CRLF).getBytes(StandardCharsets.US_ASCII));
+	}
+}
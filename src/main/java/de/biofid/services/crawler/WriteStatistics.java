@@ -0,0 +1,49 @@
+package de.biofid.services.crawler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/***
+ * Counts the files that were written, skipped because they were unchanged, or could not be written.
+ * 
+ * The counters may be updated from several threads.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class WriteStatistics {
+	
+	private AtomicLong numberOfFailedFiles = new AtomicLong();
+	private AtomicLong numberOfSkippedFiles = new AtomicLong();
+	private AtomicLong numberOfWrittenFiles = new AtomicLong();
+	
+	public long getNumberOfFailedFiles() {
+		return numberOfFailedFiles.get();
+	}
+	
+	public long getNumberOfSkippedFiles() {
+		return numberOfSkippedFiles.get();
+	}
+	
+	public long getNumberOfWrittenFiles() {
+		return numberOfWrittenFiles.get();
+	}
+	
+	public void recordFailedFile() {
+		numberOfFailedFiles.incrementAndGet();
+	}
+	
+	public void recordSkippedFile() {
+		numberOfSkippedFiles.incrementAndGet();
+	}
+	
+	public void recordWrittenFile() {
+		numberOfWrittenFiles.incrementAndGet();
+	}
+	
+	@Override
+	public String toString() {
+		return getNumberOfWrittenFiles() + " written, " + getNumberOfSkippedFiles() + " unchanged, " +
+				getNumberOfFailedFiles() + " failed";
+	}
+}
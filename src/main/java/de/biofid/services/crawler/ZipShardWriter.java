@@ -0,0 +1,71 @@
+package de.biofid.services.crawler;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+
+/***
+ * Writes files and metadata into a zip file.
+ * 
+ * All entries are deflated. Captured responses are not written, since a zip file has no place for their URL
+ * and headers.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+class ZipShardWriter implements ShardWriter {
+	
+	private static final int BUFFER_SIZE = 256 * 1024;
+	private static final int ENTRY_OVERHEAD_IN_BYTES = 128;
+	
+	private CountingOutputStream countingStream;
+	private ZipOutputStream zipStream;
+	
+	ZipShardWriter(Path shardFilePath) throws IOException {
+		OutputStream fileStream = Files.newOutputStream(shardFilePath, StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.WRITE);
+		countingStream = new CountingOutputStream(new BufferedOutputStream(fileStream, BUFFER_SIZE));
+		zipStream = new ZipOutputStream(countingStream);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		zipStream.close();
+	}
+	
+	@Override
+	public long estimateSize(ArchiveRecord record) {
+		// Deflating never grows the content considerably, so this is an upper bound
+		return record.getContentLength() + 2 * record.getEntryName().length() + ENTRY_OVERHEAD_IN_BYTES;
+	}
+	
+	@Override
+	public long getPosition() {
+		return countingStream.getByteCount();
+	}
+	
+	@Override
+	public boolean write(ArchiveRecord record) throws IOException {
+		if (record.getType() == ArchiveRecord.Type.RESPONSE) {
+			return false;
+		}
+		
+		zipStream.putNextEntry(new ZipEntry(record.getEntryName()));
+		try (InputStream contentStream = record.openContent()) {
+			IOUtils.copyLarge(contentStream, zipStream);
+		}
+		zipStream.closeEntry();
+		
+		return true;
+	}
+}
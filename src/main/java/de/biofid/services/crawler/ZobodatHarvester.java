@@ -6,12 +6,13 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
@@ -61,7 +62,7 @@ public class ZobodatHarvester extends Harvester {
 	private List<Metadata> itemMetadataList = new ArrayList<>();
 	
 	private List<Object> listOfItemsToDownload = new ArrayList<>();
-
+	
 	public ZobodatHarvester(Configuration configuration) throws UnsetHarvesterBaseDirectoryException {
 		super(configuration);
 		
@@ -74,7 +75,7 @@ public class ZobodatHarvester extends Harvester {
 	}
 	
 	public Document getDocumentFromUrl(String url) throws IOException {
-		return Jsoup.connect(url).get();
+		return httpFetcher.getDocument(url);
 	}
 	
 	public String getFolderName() {
@@ -115,7 +116,9 @@ public class ZobodatHarvester extends Harvester {
 		
 		if (sumOfAllItemsReferencedFromThisSite == 0) {
 			logger.debug("Is article list!");
-			itemMetadataList.addAll(extractItemMetadataFromArticleList(itemList));
+			List<Metadata> articleMetadataList = extractItemMetadataFromArticleList(itemList);
+			itemMetadataList.addAll(articleMetadataList);
+			progressTracker.addDiscoveredItems(articleMetadataList.size());
 		}
 	}
 	
@@ -132,6 +135,7 @@ public class ZobodatHarvester extends Harvester {
 			}
 			isMetadataCollected = true;
 			itemMetadataIterator = itemMetadataList.iterator();
+			progressTracker.setTotalNumberOfItems(itemMetadataList.size());
 			logger.info("Crawling of metadata complete!");
 		}
 		
@@ -145,20 +149,28 @@ public class ZobodatHarvester extends Harvester {
 		return true;
 	}
 	
+	/***
+	 * Adds the metadata of an article to the collected metadata, as if it was found on an article list.
+	 * @param citationContainer The element holding the citation on the page of the article.
+	 */
+	void addItemMetadata(long itemId, URL pdfUrl, Element citationContainer) {
+		itemMetadataList.add(new Metadata(itemId, pdfUrl, new Citation(citationContainer)));
+	}
+	
 	private void addMetadataToItem(Item item, Metadata itemMetadata) {
 		ObjectMapper mapper = new ObjectMapper();
 		String metdataJSONString;
 		try {
 			metdataJSONString = mapper.writeValueAsString(itemMetadata);
 		} catch (JsonProcessingException e) {
-			logger.error("Could not create metadata JSON from item " + item.getItemId());
+			logger.error("Could not create metadata JSON from item {}", item.getItemId());
 			return;
 		}
 		
 		JSONObject itemMetadataJSON = new JSONObject(metdataJSONString);
 		
 		long itemID = Long.parseLong(itemMetadataJSON.remove("id").toString());
-    	logger.debug("Processing Item ID " + itemID);
+    	logger.debug("Processing Item ID {}", itemID);
 		item.setDataSource(ZOBODAT_STRING);
 		item.setItemId(itemID);
 		item.addTextFileUrl((String) itemMetadataJSON.remove("pdfUrl"), Item.FileType.PDF);
@@ -172,13 +184,13 @@ public class ZobodatHarvester extends Harvester {
 		
 		pause();
 		
-		logger.info("Processing URL " + url + "");
+		logger.info("Processing URL {}", url);
 		
 		Document website;
 		try {
 			website = getDocumentFromUrl(url);
 		} catch (IOException ex) {
-			logger.error("Could not fetch URL " + url);
+			logger.error("Could not fetch URL {}", url);
 			return 0;
 		}
 		
@@ -189,21 +201,40 @@ public class ZobodatHarvester extends Harvester {
 	}
 	
 	private List<Metadata> extractItemMetadataFromArticleList(Elements itemList) {
-		List<Metadata> metadataList = new ArrayList<>();
+		List<Future<Metadata>> pendingMetadataList = new ArrayList<>();
 		
-		logger.info("Found " + itemList.size() + " items on this site!");
+		logger.info("Found {} items on this site!", itemList.size());
 		
+		// Every shard crawls all lists, but only fetches the citation pages of its part of the articles.
+		// When reprocessing, the citation pages of all articles on the list are parsed at once.
 		for (Element item : itemList) {
 			URL itemPdfUrl = getItemPdfUrl(item);
 			
 			if (itemPdfUrl != null) {
 				URL citationUrl = getCitationUrl(item);
 				long itemID = getItemIDFromUrl(citationUrl);
-				Citation citation = getCitationFromUrl(citationUrl);
-				metadataList.add(new Metadata(itemID, itemPdfUrl, citation));
+				if (!shard.contains(itemID)) {
+					continue;
+				}
+				
+				pendingMetadataList.add(submitItemParsing(itemID, 
+						() -> new Metadata(itemID, itemPdfUrl, getCitationFromUrl(citationUrl))));
 			}
 		}
+		HarvestEvents.setItemId(HarvestEvents.UNKNOWN_ITEM_ID);
 		
+		List<Metadata> metadataList = new ArrayList<>();
+		for (Future<Metadata> pendingMetadata : pendingMetadataList) {
+			try {
+				metadataList.add(pendingMetadata.get());
+			} catch (ExecutionException ex) {
+				logger.error("Could not parse a citation: {}", ex.getCause().getLocalizedMessage());
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				logger.warn("Interrupted while parsing the citations!");
+				break;
+			}
+		}
 		
 		return metadataList;
 	}
@@ -226,11 +257,14 @@ public class ZobodatHarvester extends Harvester {
 		Citation citation;
 		try {
 			Document citationSite = getDocumentFromUrl(url.toString());
+			HarvestEvents.CitationParse parseEvent = new HarvestEvents.CitationParse();
+			parseEvent.begin();
 			Element citationContainer = citationSite.selectFirst(SELECTOR_CITATION_CONTAINER);
 			citation = new Citation(citationContainer);
-			logger.debug("Generated citation: " + citation.toString());
+			parseEvent.commitTagged();
+			logger.debug("Generated citation: {}", citation);
 		} catch (IOException e) {
-			logger.error("Could not collect citation site: " + url.toString());
+			logger.error("Could not collect citation site: {}", url);
 			citation = null;
 		}
 		
@@ -245,9 +279,9 @@ public class ZobodatHarvester extends Harvester {
 		URL citationUrl;
 		try {
 			citationUrl = new URL(citationUrlString);
-			logger.debug("Found citation URL: " + citationUrlString);
+			logger.debug("Found citation URL: {}", citationUrlString);
 		} catch (MalformedURLException e) {
-			logger.error("Malformed Citation URL: " + citationUrlString);
+			logger.error("Malformed Citation URL: {}", citationUrlString);
 			citationUrl = null;
 		}
 		
@@ -273,9 +307,9 @@ public class ZobodatHarvester extends Harvester {
 			URL pdfUrl;
 			try {
 				pdfUrl = new URL(pdfUrlString);
-				logger.debug("Found PDF URL: " + pdfUrlString);
+				logger.debug("Found PDF URL: {}", pdfUrlString);
 			} catch (MalformedURLException e) {
-				logger.error("Malformed PDF URL: " + pdfUrlString);
+				logger.error("Malformed PDF URL: {}", pdfUrlString);
 				pdfUrl = null;
 			}
 			
@@ -0,0 +1,219 @@
+package de.biofid.services.crawler;
+
+import java.io.BufferedWriter;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.json.JSONObject;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+
+/***
+ * Measures the heap a harvester retains per item for its work list, for synthetic catalogues of growing size.
+ * 
+ * These structures grow with the size of a source and have caused out of memory errors on full crawls:
+ * 
+ * - "bhl-items": the work queue of the BHL Harvester, read from an item ID file.
+ * - "zobodat-metadata": the metadata of all articles collected by the Zobodat Harvester before the download.
+ * 
+ * The retained heap is the heap used after garbage collection with the harvester alive minus the heap used
+ * before it was built. If an item of a structure takes more bytes than its threshold, the benchmark exits
+ * with status 1, so a build running it fails.
+ * 
+ * Usage: HeapFootprintBenchmark [--sizes 10000,100000,1000000] [--max-bytes-per-item bhl-items=N,...]
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class HeapFootprintBenchmark {
+	
+	public static final String STRUCTURE_BHL_ITEMS = "bhl-items";
+	public static final String STRUCTURE_ZOBODAT_METADATA = "zobodat-metadata";
+	
+	private static final String DEFAULT_CATALOGUE_SIZES = "10000,100000,1000000";
+	private static final int FIRST_ITEM_ID = 10000000;
+	private static final int NUMBER_OF_GARBAGE_COLLECTIONS = 5;
+	private static final String OPTION_MAXIMUM_BYTES_PER_ITEM = "--max-bytes-per-item";
+	private static final String OPTION_SIZES = "--sizes";
+	private static final String RESULT_LINE_FORMAT = "%-20s %10s %16s %14s %14s";
+	private static final String ZOBODAT_PDF_URL_PREFIX = "https://www.zobodat.at/pdf/article_";
+	
+	/***
+	 * The bytes an item may take at most, about 20% above the footprint measured when the threshold was set
+	 * (BHL: 31 bytes, Zobodat: 790 bytes on a 64 bit JVM with compressed references).
+	 */
+	private static final Map<String, Long> DEFAULT_MAXIMUM_BYTES_PER_ITEM = new LinkedHashMap<>();
+	static {
+		DEFAULT_MAXIMUM_BYTES_PER_ITEM.put(STRUCTURE_BHL_ITEMS, 38L);
+		DEFAULT_MAXIMUM_BYTES_PER_ITEM.put(STRUCTURE_ZOBODAT_METADATA, 950L);
+	}
+	
+	// Keeps the measured structure reachable until the heap was measured
+	private static volatile Object retainedStructure = null;
+	
+	private List<Integer> catalogueSizes = new ArrayList<>();
+	private Map<String, Long> maximumBytesPerItem = new LinkedHashMap<>(DEFAULT_MAXIMUM_BYTES_PER_ITEM);
+	private Path workingDirectory;
+	
+	public HeapFootprintBenchmark(String[] args) {
+		String sizes = DEFAULT_CATALOGUE_SIZES;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals(OPTION_SIZES)) {
+				sizes = args[i + 1];
+			} else if (args[i].equals(OPTION_MAXIMUM_BYTES_PER_ITEM)) {
+				for (String threshold : args[i + 1].split(",")) {
+					String[] structureAndBytes = threshold.split("=");
+					if (!maximumBytesPerItem.containsKey(structureAndBytes[0])) {
+						throw new IllegalArgumentException("Unknown structure " + structureAndBytes[0] + "!");
+					}
+					maximumBytesPerItem.put(structureAndBytes[0], Long.parseLong(structureAndBytes[1]));
+				}
+			} else {
+				throw new IllegalArgumentException("Unknown option " + args[i] + "!");
+			}
+		}
+		
+		for (String size : sizes.split(",")) {
+			catalogueSizes.add(Integer.parseInt(size.trim()));
+		}
+	}
+	
+	public static void main(String[] args) throws Exception {
+		Configurator.setLevel(LiteratureHarvester.LOGGER_NAME, Level.WARN);
+		
+		List<String> exceededThresholds = new ArrayList<>();
+		HeapFootprintBenchmark benchmark = new HeapFootprintBenchmark(args);
+		for (String line : benchmark.run(exceededThresholds)) {
+			System.out.println(line);
+		}
+		
+		if (!exceededThresholds.isEmpty()) {
+			for (String exceededThreshold : exceededThresholds) {
+				System.err.println(exceededThreshold);
+			}
+			System.exit(1);
+		}
+	}
+	
+	/***
+	 * Measures all structures for all catalogue sizes.
+	 * @param exceededThresholds Receives a message for every measurement above the threshold of its structure.
+	 * @return The lines of the result table.
+	 */
+	public List<String> run(List<String> exceededThresholds) throws Exception {
+		workingDirectory = Files.createTempDirectory("heap-footprint");
+		Harvester.setOutputDirectory(workingDirectory.toString());
+		
+		List<String> lines = new ArrayList<>();
+		lines.add(String.format(Locale.ROOT, RESULT_LINE_FORMAT, "Structure", "Items", "Retained bytes",
+				"Bytes/item", "Threshold"));
+		
+		try {
+			for (int numberOfItems : catalogueSizes) {
+				for (String structure : maximumBytesPerItem.keySet()) {
+					long retainedBytes = measureRetainedBytes(structure, numberOfItems);
+					long bytesPerItem = retainedBytes / numberOfItems;
+					long threshold = maximumBytesPerItem.get(structure);
+					lines.add(String.format(Locale.ROOT, RESULT_LINE_FORMAT, structure, numberOfItems, retainedBytes,
+							bytesPerItem, threshold));
+					
+					if (bytesPerItem > threshold) {
+						exceededThresholds.add(String.format(Locale.ROOT,
+								"The footprint of %s with %d items is %d bytes per item, above the threshold of %d!",
+								structure, numberOfItems, bytesPerItem, threshold));
+					}
+				}
+			}
+		} finally {
+			FileUtils.deleteDirectory(workingDirectory.toFile());
+		}
+		
+		return lines;
+	}
+	
+	private static Configuration createConfiguration(String harvesterName, Class<? extends Harvester> harvesterClass,
+			JSONObject jsonConfiguration) {
+		Configuration configuration = new Configuration(harvesterName, harvesterClass.getName(), jsonConfiguration);
+		configuration.setProgressReportInterval(ProgressTracker.REPORTING_DISABLED);
+		return configuration;
+	}
+	
+	private static long getUsedHeapAfterGarbageCollection() throws InterruptedException {
+		for (int i = 0; i < NUMBER_OF_GARBAGE_COLLECTIONS; ++i) {
+			System.gc();
+			TimeUnit.MILLISECONDS.sleep(50);
+		}
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+	
+	private Object buildBhlItemList(int numberOfItems) throws Exception {
+		Path itemFilePath = workingDirectory.resolve("items-" + numberOfItems + ".txt");
+		if (!itemFilePath.toFile().exists()) {
+			try (BufferedWriter writer = Files.newBufferedWriter(itemFilePath, StandardCharsets.UTF_8)) {
+				for (int i = 0; i < numberOfItems; ++i) {
+					writer.write(Integer.toString(FIRST_ITEM_ID + i));
+					writer.newLine();
+				}
+			}
+		}
+		
+		JSONObject jsonConfiguration = new JSONObject().put("items", itemFilePath.toString());
+		BhlHarvester bhlHarvester = new BhlHarvester(createConfiguration(BhlHarvester.BHL_STRING, BhlHarvester.class,
+				jsonConfiguration));
+		
+		bhlHarvester.loadWorkQueues();
+		return bhlHarvester;
+	}
+	
+	private Object buildStructure(String structure, int numberOfItems) throws Exception {
+		switch (structure) {
+		case STRUCTURE_BHL_ITEMS:
+			return buildBhlItemList(numberOfItems);
+		case STRUCTURE_ZOBODAT_METADATA:
+			return buildZobodatMetadataList(numberOfItems);
+		default:
+			throw new IllegalArgumentException("Unknown structure " + structure + "!");
+		}
+	}
+	
+	private Object buildZobodatMetadataList(int numberOfItems) throws Exception {
+		ZobodatHarvester zobodatHarvester = new ZobodatHarvester(createConfiguration(ZobodatHarvester.ZOBODAT_STRING,
+				ZobodatHarvester.class, new JSONObject()));
+		
+		// The citation is parsed anew for every article, so no strings are shared between the articles
+		Element citationContainer = Jsoup.parse(MockSiteServer.createZobodatArticlePage(FIRST_ITEM_ID))
+				.selectFirst("#publikation_articles .text");
+		for (int i = 0; i < numberOfItems; ++i) {
+			long articleId = FIRST_ITEM_ID + i;
+			zobodatHarvester.addItemMetadata(articleId, new URL(ZOBODAT_PDF_URL_PREFIX + articleId + ".pdf"),
+					citationContainer);
+		}
+		return zobodatHarvester;
+	}
+	
+	private long measureRetainedBytes(String structure, int numberOfItems) throws Exception {
+		// Builds the structure once, so classes and caches needed by it are not counted
+		retainedStructure = buildStructure(structure, 1);
+		retainedStructure = null;
+		
+		long usedHeapBefore = getUsedHeapAfterGarbageCollection();
+		retainedStructure = buildStructure(structure, numberOfItems);
+		long usedHeapAfter = getUsedHeapAfterGarbageCollection();
+		
+		retainedStructure = null;
+		return usedHeapAfter - usedHeapBefore;
+	}
+}
@@ -0,0 +1,236 @@
+package de.biofid.services.crawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/***
+ * Runs a complete harvest against the {@link MockSiteServer} and prints the throughput of every harvester.
+ * 
+ * The harvest is started like a productive one, from a configuration file, but all requests stay on this
+ * machine. So the numbers only depend on the crawler and the emulated conditions of the sites, which makes
+ * runs comparable, e.g. before and after a change.
+ * 
+ * Usage: LoadHarness [--items N] [--sites bhl,zobodat,bibdigital] [--latency-ms N] [--bandwidth-kb-s N]
+ * [--error-rate X] [--throttle-rate X] [--file-size-kb N] [--request-delay-ms N]
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class LoadHarness {
+	
+	private static final String OPTION_BANDWIDTH = "--bandwidth-kb-s";
+	private static final String OPTION_ERROR_RATE = "--error-rate";
+	private static final String OPTION_FILE_SIZE = "--file-size-kb";
+	private static final String OPTION_ITEMS = "--items";
+	private static final String OPTION_LATENCY = "--latency-ms";
+	private static final String OPTION_REQUEST_DELAY = "--request-delay-ms";
+	private static final String OPTION_SITES = "--sites";
+	private static final String OPTION_THROTTLE_RATE = "--throttle-rate";
+	
+	private static final String MOCK_API_KEY = "mock";
+	private static final String RESULT_LINE_FORMAT = "%-20s %8s %8s %10s %10s %10s";
+	private static final String SITE_BHL = "bhl";
+	private static final String SITE_BIBDIGITAL = "bibdigital";
+	private static final String SITE_ZOBODAT = "zobodat";
+	
+	private static final int BYTES_PER_KILOBYTE = 1024;
+	private static final double BYTES_PER_MEGABYTE = 1024. * 1024.;
+	
+	private Map<String, String> options = new LinkedHashMap<>();
+	
+	public LoadHarness(String[] args) {
+		options.put(OPTION_ITEMS, "100");
+		options.put(OPTION_SITES, String.join(",", SITE_BHL, SITE_ZOBODAT, SITE_BIBDIGITAL));
+		options.put(OPTION_LATENCY, "0");
+		options.put(OPTION_BANDWIDTH, "0");
+		options.put(OPTION_ERROR_RATE, "0");
+		options.put(OPTION_THROTTLE_RATE, "0");
+		options.put(OPTION_FILE_SIZE, "64");
+		options.put(OPTION_REQUEST_DELAY, "0");
+		
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (!options.containsKey(args[i])) {
+				throw new IllegalArgumentException("Unknown option " + args[i] + "!");
+			}
+			options.put(args[i], args[i + 1]);
+		}
+	}
+	
+	public static void main(String[] args) throws IOException {
+		Configurator.setLevel(LiteratureHarvester.LOGGER_NAME, Level.WARN);
+		
+		LoadHarness loadHarness = new LoadHarness(args);
+		for (String line : loadHarness.run()) {
+			System.out.println(line);
+		}
+	}
+	
+	/***
+	 * Runs the harvest in a temporary directory, which is deleted afterwards.
+	 * @return The lines of the result table.
+	 */
+	public List<String> run() throws IOException {
+		Path outputDirectory = Files.createTempDirectory("load-harness");
+		
+		try (MockSiteServer mockSiteServer = new MockSiteServer()) {
+			mockSiteServer.setLatency(getLongOption(OPTION_LATENCY));
+			mockSiteServer.setBandwidth(getLongOption(OPTION_BANDWIDTH) * BYTES_PER_KILOBYTE);
+			mockSiteServer.setErrorRate(Double.parseDouble(options.get(OPTION_ERROR_RATE)));
+			mockSiteServer.setThrottleRate(Double.parseDouble(options.get(OPTION_THROTTLE_RATE)));
+			mockSiteServer.setTextFileSize((int) getLongOption(OPTION_FILE_SIZE) * BYTES_PER_KILOBYTE);
+			mockSiteServer.start();
+			
+			List<String> abortedSites = new ArrayList<>();
+			for (String site : options.get(OPTION_SITES).toLowerCase().split(",")) {
+				// Every site is harvested on its own, so a harvester giving up on an injected fault does not
+				// keep the other harvesters from running
+				Path configurationFilePath = outputDirectory.resolve("harvesting-" + site + ".yml");
+				// JSON is valid YAML
+				Files.write(configurationFilePath,
+						createConfiguration(outputDirectory, site).toString(2).getBytes(StandardCharsets.UTF_8));
+				
+				try {
+					new LiteratureHarvester(configurationFilePath.toString()).start();
+				} catch (RuntimeException ex) {
+					abortedSites.add(site + " (" + ex.getMessage() + ")");
+				}
+			}
+			
+			List<String> lines = summarizeRunReports(outputDirectory);
+			for (String abortedSite : abortedSites) {
+				lines.add("Aborted: " + abortedSite);
+			}
+			lines.add(String.format(Locale.ROOT, "Mock server: %d requests, %d failed, %d throttled, %.1f MB sent",
+					mockSiteServer.getNumberOfRequests(), mockSiteServer.getNumberOfFailedResponses(),
+					mockSiteServer.getNumberOfThrottledResponses(), mockSiteServer.getSentBytes() / BYTES_PER_MEGABYTE));
+			return lines;
+		} finally {
+			FileUtils.deleteDirectory(outputDirectory.toFile());
+		}
+	}
+	
+	private static JSONObject createHarvesterConfiguration(Class<? extends Harvester> harvesterClass, JSONArray items) {
+		return new JSONObject().put("class", harvesterClass.getName()).put("items", items);
+	}
+	
+	private static String formatResultLine(String name, long items, long failedItems, double seconds,
+			long receivedBytes) {
+		return String.format(Locale.ROOT, RESULT_LINE_FORMAT, name, items, failedItems,
+				String.format(Locale.ROOT, "%.2f", seconds),
+				String.format(Locale.ROOT, "%.1f", seconds > 0 ? items / seconds : 0),
+				String.format(Locale.ROOT, "%.2f", seconds > 0 ? receivedBytes / BYTES_PER_MEGABYTE / seconds : 0));
+	}
+	
+	private static JSONObject readLatestRunReport(File reportDirectory) throws IOException {
+		File[] reportFiles = reportDirectory.listFiles((directory, name) -> name.endsWith(".json"));
+		if (reportFiles == null || reportFiles.length == 0) {
+			return null;
+		}
+		
+		// The names start with the time of the run
+		Arrays.sort(reportFiles);
+		return new JSONObject(new String(Files.readAllBytes(reportFiles[reportFiles.length - 1].toPath()),
+				StandardCharsets.UTF_8));
+	}
+	
+	private JSONObject createConfiguration(Path outputDirectory, String site) throws IOException {
+		int numberOfItems = (int) getLongOption(OPTION_ITEMS);
+		
+		JSONObject generalSettings = new JSONObject();
+		generalSettings.put("output-path", outputDirectory.toString());
+		generalSettings.put("request-delay", getLongOption(OPTION_REQUEST_DELAY));
+		generalSettings.put("progress-interval-s", ProgressTracker.REPORTING_DISABLED);
+		
+		JSONObject harvester = new JSONObject();
+		switch (site) {
+		case SITE_BHL:
+			JSONArray itemIds = new JSONArray();
+			for (int itemId = 1; itemId <= numberOfItems; ++itemId) {
+				itemIds.put(itemId);
+			}
+			
+			// The API key is read from a file
+			Path apiKeyFilePath = outputDirectory.resolve("bhl-api-key.txt");
+			Files.write(apiKeyFilePath, MOCK_API_KEY.getBytes(StandardCharsets.UTF_8));
+			harvester.put(BhlHarvester.BHL_STRING, createHarvesterConfiguration(BhlHarvester.class, itemIds)
+					.put("api-key", apiKeyFilePath.toString()));
+			break;
+		case SITE_BIBDIGITAL:
+			JSONArray bibDigitalItemIds = new JSONArray();
+			for (int itemId = 1; itemId <= numberOfItems; ++itemId) {
+				bibDigitalItemIds.put(Integer.toString(itemId));
+			}
+			harvester.put("Bib-Digital", createHarvesterConfiguration(BibDigitalHarvester.class, bibDigitalItemIds));
+			break;
+		case SITE_ZOBODAT:
+			JSONArray volumeUrls = new JSONArray();
+			int numberOfVolumes = (numberOfItems + MockSiteServer.ARTICLES_PER_ZOBODAT_VOLUME - 1) /
+					MockSiteServer.ARTICLES_PER_ZOBODAT_VOLUME;
+			for (int volumeId = 1; volumeId <= numberOfVolumes; ++volumeId) {
+				volumeUrls.put(MockSiteServer.Site.ZOBODAT.getUrl() + "/publikation_volumes.php?id=" + volumeId);
+			}
+			harvester.put(ZobodatHarvester.ZOBODAT_STRING,
+					createHarvesterConfiguration(ZobodatHarvester.class, volumeUrls));
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown site " + site + "! Please choose: "
+					+ String.join(", ", SITE_BHL, SITE_ZOBODAT, SITE_BIBDIGITAL));
+		}
+		
+		return new JSONObject().put("General", generalSettings).put("Harvesters", new JSONArray().put(harvester));
+	}
+	
+	private long getLongOption(String option) {
+		return Long.parseLong(options.get(option));
+	}
+	
+	private List<String> summarizeRunReports(Path outputDirectory) throws IOException {
+		List<String> lines = new ArrayList<>();
+		lines.add(String.format(Locale.ROOT, RESULT_LINE_FORMAT, "Harvester", "Items", "Failed", "Seconds",
+				"Items/s", "MB/s"));
+		
+		long totalItems = 0;
+		long totalFailedItems = 0;
+		long totalReceivedBytes = 0;
+		double totalSeconds = 0;
+		
+		File[] harvesterDirectories = outputDirectory.toFile().listFiles(File::isDirectory);
+		Arrays.sort(harvesterDirectories);
+		for (File harvesterDirectory : harvesterDirectories) {
+			JSONObject runReport = readLatestRunReport(new File(harvesterDirectory, RunReport.REPORT_FOLDER_NAME));
+			if (runReport == null) {
+				continue;
+			}
+			
+			long items = runReport.getJSONObject("items").getLong("processed");
+			long failedItems = runReport.getJSONObject("items").getLong("failed");
+			double seconds = runReport.getDouble("wallTimeSeconds");
+			long receivedBytes = runReport.getJSONObject("requests").getLong("receivedBytes");
+			lines.add(formatResultLine(runReport.getString("harvester"), items, failedItems, seconds, receivedBytes));
+			
+			totalItems += items;
+			totalFailedItems += failedItems;
+			totalSeconds += seconds;
+			totalReceivedBytes += receivedBytes;
+		}
+		
+		lines.add(formatResultLine("Total", totalItems, totalFailedItems, totalSeconds, totalReceivedBytes));
+		return lines;
+	}
+}
@@ -0,0 +1,367 @@
+package de.biofid.services.crawler;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/***
+ * A local stand-in for the BHL API, archive.org downloads, Zobodat and BibDigital, serving a synthetic
+ * catalogue, so harvests can run offline and reproducibly.
+ * 
+ * Every site is served on its own port of the loopback interface. {@link #start()} redirects the requests
+ * of all harvesters to it (see {@link HttpFetcher#redirectSite(URL, URL)}), {@link #close()} removes the
+ * redirects again. Every item ID exists: BHL and BibDigital items are requested by their ID, Zobodat volume
+ * N lists {@link #ARTICLES_PER_ZOBODAT_VOLUME} articles with the IDs N * 1000 + 1 and following.
+ * 
+ * Latency, bandwidth and the share of failed (500) and throttled (429) responses can be changed at any time.
+ * 
+ * @author Adrian Pachzelt (University Library Johann Christian Senckenberg, Frankfurt)
+ * @author https://www.biofid.de
+ * @version 1.0
+ */
+public class MockSiteServer implements Closeable {
+	
+	public static final int ARTICLES_PER_ZOBODAT_VOLUME = 10;
+	public static final int DEFAULT_TEXT_FILE_SIZE_IN_BYTES = 64 * 1024;
+	
+	private static final String CONTENT_TYPE_HEADER = "Content-Type";
+	private static final Pattern REGEX_PATTERN_ID_IN_PATH = Pattern.compile("/([0-9]+)");
+	private static final int STATUS_NOT_FOUND = 404;
+	private static final int STATUS_OK = 200;
+	private static final int STATUS_SERVER_ERROR = 500;
+	private static final int STATUS_TOO_MANY_REQUESTS = 429;
+	
+	private volatile long bytesPerSecond = BandwidthLimiter.UNLIMITED;
+	private volatile double errorRate = 0;
+	private ExecutorService executor = Executors.newCachedThreadPool();
+	private LongAdder failedResponses = new LongAdder();
+	private volatile long latencyInMilliseconds = 0;
+	private Random random = new Random(0);
+	private LongAdder requests = new LongAdder();
+	private LongAdder sentBytes = new LongAdder();
+	private List<HttpServer> servers = new ArrayList<>();
+	private volatile byte[] textFileContent = createTextFileContent(DEFAULT_TEXT_FILE_SIZE_IN_BYTES);
+	private volatile double throttleRate = 0;
+	private LongAdder throttledResponses = new LongAdder();
+	private Set<String> userAgents = ConcurrentHashMap.newKeySet();
+	
+	@Override
+	public void close() {
+		HttpFetcher.clearSiteRedirects();
+		for (HttpServer server : servers) {
+			server.stop(0);
+		}
+		servers.clear();
+		executor.shutdownNow();
+	}
+	
+	public long getNumberOfFailedResponses() {
+		return failedResponses.sum();
+	}
+	
+	public long getNumberOfRequests() {
+		return requests.sum();
+	}
+	
+	public long getNumberOfThrottledResponses() {
+		return throttledResponses.sum();
+	}
+	
+	public long getSentBytes() {
+		return sentBytes.sum();
+	}
+	
+	/***
+	 * The distinct user agents of all received requests.
+	 */
+	public Set<String> getUserAgents() {
+		return userAgents;
+	}
+	
+	/***
+	 * @param bytesPerSecond The maximum rate to send every single response with. 0, if it is not limited.
+	 */
+	public void setBandwidth(long bytesPerSecond) {
+		this.bytesPerSecond = bytesPerSecond;
+	}
+	
+	/***
+	 * @param errorRate The share of requests to answer with status 500, between 0 and 1.
+	 */
+	public void setErrorRate(double errorRate) {
+		this.errorRate = errorRate;
+	}
+	
+	public void setLatency(long latencyInMilliseconds) {
+		this.latencyInMilliseconds = latencyInMilliseconds;
+	}
+	
+	public void setTextFileSize(int textFileSizeInBytes) {
+		this.textFileContent = createTextFileContent(textFileSizeInBytes);
+	}
+	
+	/***
+	 * @param throttleRate The share of requests to answer with status 429, between 0 and 1.
+	 */
+	public void setThrottleRate(double throttleRate) {
+		this.throttleRate = throttleRate;
+	}
+	
+	/***
+	 * Starts serving all sites and redirects the requests of the harvesters to them.
+	 */
+	public void start() throws IOException {
+		for (Site site : Site.values()) {
+			HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+			server.createContext("/", exchange -> handle(site, exchange));
+			server.setExecutor(executor);
+			server.start();
+			servers.add(server);
+			
+			HttpFetcher.redirectSite(site.getUrl(), new URL("http", server.getAddress().getHostString(),
+					server.getAddress().getPort(), ""));
+		}
+	}
+	
+	/***
+	 * Returns the page of the Zobodat article with the given ID, holding its citation.
+	 */
+	static String createZobodatArticlePage(long articleId) {
+		return "<html><body><div id=\"publikation_articles\"><div class=\"text\">"
+				+ "<a href=\"/personen.php?id=1\">Heller Karl Maria</a> (1884): Neue Käfer " + articleId + ". – "
+				+ "<a href=\"/publikation_series.php?id=1\">Abhandlungen und Berichte des Museums zu Dresden</a> – "
+				+ "<a href=\"/publikation_volumes.php?id=" + articleId / 1000 + "\">4</a>: 1 - 20.</div></div>"
+				+ "</body></html>";
+	}
+	
+	private static String createBhlItemMetadata(long itemId) {
+		String bhlUrl = Site.BHL.getUrl().toString();
+		String sourceIdentifier = "mockitem" + itemId;
+		
+		JSONObject item = new JSONObject();
+		item.put("ItemID", itemId);
+		item.put("TitleID", itemId / 10);
+		item.put("Source", "Internet Archive");
+		item.put("SourceIdentifier", sourceIdentifier);
+		item.put("Volume", "Bd. " + itemId);
+		item.put("Year", "1884");
+		item.put("Language", "German");
+		item.put("ItemUrl", bhlUrl + "/item/" + itemId);
+		item.put("ItemPDFUrl", bhlUrl + "/itempdf/" + itemId);
+		item.put("ItemTextUrl", bhlUrl + "/itemtext/" + itemId);
+		
+		JSONArray pages = new JSONArray();
+		for (int pageNumber = 1; pageNumber <= 20; ++pageNumber) {
+			long pageId = itemId * 1000 + pageNumber;
+			pages.put(new JSONObject()
+					.put("PageID", pageId)
+					.put("PageUrl", bhlUrl + "/page/" + pageId)
+					.put("PageNumbers", new JSONArray().put(new JSONObject().put("Number", pageNumber))));
+		}
+		item.put("Pages", pages);
+		
+		return new JSONObject().put("Status", "ok").put("ErrorMessage", "")
+				.put("Result", new JSONArray().put(item)).toString();
+	}
+	
+	private static String createBibDigitalItemPage(long itemId) {
+		return "<html><head><title>Item " + itemId + "</title></head><body>"
+				+ "<div id=\"single\"><h1>Icones et descriptiones plantarum, vol. " + itemId + "</h1>"
+				+ "<table><tr><td class=\"key\">Author</td><td class=\"value\">Cavanilles, Antonio José</td></tr>"
+				+ "<tr><td class=\"key\">Date</td><td class=\"value\">1791</td></tr></table>"
+				+ "<div class=\"attachedfiles\"><ul>"
+				+ "<li><a href=\"/media/files/" + itemId + "/document.pdf\">Full PDF</a></li>"
+				+ "</ul></div></div></body></html>";
+	}
+	
+	private static byte[] createTextFileContent(int sizeInBytes) {
+		byte[] content = new byte[sizeInBytes];
+		Arrays.fill(content, (byte) 'x');
+		return content;
+	}
+	
+	private static String createZobodatVolumePage(long volumeId) {
+		StringBuilder page = new StringBuilder("<html><body><ul class=\"search-results-list\">");
+		for (int i = 1; i <= ARTICLES_PER_ZOBODAT_VOLUME; ++i) {
+			long articleId = volumeId * 1000 + i;
+			String articlePath = "/publikation_articles.php?id=" + articleId;
+			page.append("<li class=\"result\"><div class=\"content\">")
+				.append("<div><a class=\"red\" href=\"").append(articlePath).append("\">Article</a></div>")
+				.append("<div><a href=\"").append(articlePath).append("\">Citation</a></div></div>")
+				.append("<a class=\"publication-link\" href=\"/pdf/article_").append(articleId).append(".pdf\">PDF</a>")
+				.append("</li>");
+		}
+		return page.append("</ul></body></html>").toString();
+	}
+	
+	private static long getId(String path, Map<String, String> query) {
+		if (query.containsKey("id")) {
+			return Long.parseLong(query.get("id"));
+		}
+		
+		Matcher idMatcher = REGEX_PATTERN_ID_IN_PATH.matcher(path);
+		return idMatcher.find() ? Long.parseLong(idMatcher.group(1)) : -1;
+	}
+	
+	private static Map<String, String> parseQuery(String query) {
+		Map<String, String> parameters = new HashMap<>();
+		if (query == null) {
+			return parameters;
+		}
+		
+		for (String parameter : query.split("&")) {
+			int separatorIndex = parameter.indexOf('=');
+			if (separatorIndex > 0) {
+				parameters.put(parameter.substring(0, separatorIndex), parameter.substring(separatorIndex + 1));
+			}
+		}
+		return parameters;
+	}
+	
+	private void handle(Site site, HttpExchange exchange) throws IOException {
+		try {
+			requests.increment();
+			String userAgent = exchange.getRequestHeaders().getFirst("User-Agent");
+			if (userAgent != null) {
+				userAgents.add(userAgent);
+			}
+			if (latencyInMilliseconds > 0) {
+				TimeUnit.MILLISECONDS.sleep(latencyInMilliseconds);
+			}
+			
+			double dice;
+			synchronized (random) {
+				dice = random.nextDouble();
+			}
+			
+			if (dice < throttleRate) {
+				throttledResponses.increment();
+				exchange.getResponseHeaders().add("Retry-After", "1");
+				send(exchange, STATUS_TOO_MANY_REQUESTS, "text/plain", "Too Many Requests");
+			} else if (dice < throttleRate + errorRate) {
+				failedResponses.increment();
+				send(exchange, STATUS_SERVER_ERROR, "text/plain", "Internal Server Error");
+			} else {
+				respond(site, exchange);
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		} finally {
+			exchange.close();
+		}
+	}
+	
+	private void respond(Site site, HttpExchange exchange) throws IOException {
+		String path = exchange.getRequestURI().getPath();
+		Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+		long id = getId(path, query);
+		
+		switch (site) {
+		case ARCHIVE:
+			if (path.startsWith("/download/")) {
+				send(exchange, STATUS_OK, "application/gzip", textFileContent);
+				return;
+			}
+			break;
+		case BHL:
+			if (path.equals("/api3") && "GetItemMetadata".equals(query.get("op")) && id > 0) {
+				send(exchange, STATUS_OK, "application/json; charset=utf-8", createBhlItemMetadata(id));
+				return;
+			} else if (path.startsWith("/itempdf/") || path.startsWith("/itemtext/")) {
+				send(exchange, STATUS_OK, "application/octet-stream", textFileContent);
+				return;
+			}
+			break;
+		case BIBDIGITAL:
+			if (path.startsWith("/en/records/item/") && id > 0) {
+				send(exchange, STATUS_OK, "text/html; charset=utf-8", createBibDigitalItemPage(id));
+				return;
+			} else if (path.startsWith("/media/files/")) {
+				send(exchange, STATUS_OK, "application/pdf", textFileContent);
+				return;
+			}
+			break;
+		case ZOBODAT:
+			if (path.equals("/publikation_volumes.php") && id > 0) {
+				send(exchange, STATUS_OK, "text/html; charset=utf-8", createZobodatVolumePage(id));
+				return;
+			} else if (path.equals("/publikation_articles.php") && id > 0) {
+				send(exchange, STATUS_OK, "text/html; charset=utf-8", createZobodatArticlePage(id));
+				return;
+			} else if (path.startsWith("/pdf/")) {
+				send(exchange, STATUS_OK, "application/pdf", textFileContent);
+				return;
+			}
+			break;
+		}
+		
+		send(exchange, STATUS_NOT_FOUND, "text/plain", "Not Found");
+	}
+	
+	private void send(HttpExchange exchange, int statusCode, String contentType, byte[] body) throws IOException {
+		exchange.getResponseHeaders().add(CONTENT_TYPE_HEADER, contentType);
+		exchange.sendResponseHeaders(statusCode, body.length);
+		
+		// Every response gets its own limiter, like every connection of a server limited per client
+		InputStream bodyStream = new BandwidthLimiter(bytesPerSecond).limit(new ByteArrayInputStream(body));
+		try (OutputStream responseStream = exchange.getResponseBody()) {
+			sentBytes.add(IOUtils.copyLarge(bodyStream, responseStream));
+		}
+	}
+	
+	private void send(HttpExchange exchange, int statusCode, String contentType, String body) throws IOException {
+		send(exchange, statusCode, contentType, body.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/***
+	 * The emulated sites with the URLs the harvesters request.
+	 */
+	public enum Site {
+		ARCHIVE("https://archive.org"),
+		BHL("https://www.biodiversitylibrary.org"),
+		BIBDIGITAL("https://bibdigital.rjb.csic.es"),
+		ZOBODAT("https://www.zobodat.at");
+		
+		private final String url;
+		
+		Site(String url) {
+			this.url = url;
+		}
+		
+		public URL getUrl() {
+			try {
+				return new URL(url);
+			} catch (MalformedURLException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.biofid.services.crawler.Item.DownloadFailedException;
+
+public class TestArchiveShardSink {
+	
+	private static final int NUMBER_OF_ITEMS = 20;
+	private static final long SMALL_SHARD_SIZE_IN_BYTES = 8 * 1024;
+	private static final String TEST_DIRECTORY = "/tmp/test";
+	private static final Path testDirectoryPath = Paths.get(TEST_DIRECTORY);
+	private boolean didTestDirectoryExistsBeforeTest = false;
+	
+	@Test
+	public void testTarShardsAreRolledAndIndexed() throws DownloadFailedException, IOException {
+		Path shardDirectory = writeItems(ArchiveShardSink.Format.TAR);
+		
+		Path firstShardPath = shardDirectory.resolve("items-00000.tar");
+		assertTrue(firstShardPath.toFile().exists());
+		assertTrue(shardDirectory.resolve("items-00001.tar").toFile().exists());
+		
+		List<String> indexLines = Files.readAllLines(shardDirectory.resolve("items-00000.idx"));
+		String[] firstRecord = indexLines.get(0).split("\t");
+		assertEquals("1", firstRecord[0]);
+		assertEquals("text/txt/1.txt", firstRecord[1]);
+		assertEquals(0, Long.parseLong(firstRecord[2]));
+		
+		// The tar header holds the entry name and the content follows after the 512 byte header
+		byte[] shard = Files.readAllBytes(firstShardPath);
+		assertEquals("text/txt/1.txt", new String(shard, 0, "text/txt/1.txt".length(), StandardCharsets.UTF_8));
+		assertEquals("Text of item 1", new String(shard, 512, "Text of item 1".length(), StandardCharsets.UTF_8));
+		
+		// The text files are kept, so a later run skips them
+		assertTrue(testDirectoryPath.resolve("text/txt/1.txt").toFile().exists());
+	}
+	
+	@Test
+	public void testWarcShardHoldsRecordOfEveryType() throws DownloadFailedException, IOException {
+		Path shardDirectory = writeItems(ArchiveShardSink.Format.WARC);
+		
+		String shard = new String(Files.readAllBytes(shardDirectory.resolve("items-00000.warc")),
+				StandardCharsets.UTF_8);
+		assertTrue(shard.startsWith("WARC/1.1\r\nWARC-Type: warcinfo\r\n"));
+		assertTrue(shard.contains("WARC-Type: resource\r\n"));
+		assertTrue(shard.contains("WARC-Type: metadata\r\n"));
+		assertTrue(shard.contains("Text of item 1"));
+		
+		List<String> indexLines = Files.readAllLines(shardDirectory.resolve("items-00000.idx"));
+		String[] firstRecord = indexLines.get(0).split("\t");
+		int offset = Integer.parseInt(firstRecord[2]);
+		assertTrue(shard.startsWith("WARC/1.1\r\nWARC-Type: resource\r\n", offset));
+	}
+	
+	@Test
+	public void testWarcResponsesAreWrittenWithTheirItem() throws IOException {
+		Path shardDirectory = testDirectoryPath.resolve(ArchiveShardSink.ARCHIVE_FOLDER_NAME);
+		
+		try (ArchiveShardSink sink = new ArchiveShardSink(shardDirectory, ArchiveShardSink.Format.WARC,
+				SMALL_SHARD_SIZE_IN_BYTES, Item.FileType.XML, testDirectoryPath)) {
+			HarvestEvents.setItemId(HarvestEvents.UNKNOWN_ITEM_ID);
+			sink.onResponse(createResponse("http://example.org/listing"));
+			HarvestEvents.setItemId(1);
+			sink.onResponse(createResponse("http://example.org/failed-item"));
+			HarvestEvents.setItemId(2);
+			sink.onResponse(createResponse("http://example.org/item"));
+			
+			Item item = new Item();
+			item.setItemId(2);
+			item.setDataSource("Institute of Silly Walks");
+			sink.write(item);
+		} finally {
+			HarvestEvents.clear();
+		}
+		
+		List<String> indexLines = Files.readAllLines(shardDirectory.resolve("items-00000.idx"));
+		assertEquals(3, indexLines.size());
+		assertTrue(indexLines.get(0).startsWith(HarvestEvents.UNKNOWN_ITEM_ID + "\thttp://example.org/listing\t"));
+		assertTrue(indexLines.get(1).startsWith("2\thttp://example.org/item\t"));
+		for (String indexLine : indexLines) {
+			assertFalse(indexLine.contains("failed-item"));
+		}
+	}
+	
+	@Test
+	public void testZipShardsHoldFilesAndMetadata() throws DownloadFailedException, IOException {
+		Path shardDirectory = writeItems(ArchiveShardSink.Format.ZIP);
+		
+		int numberOfEntries = 0;
+		for (String fileName : shardDirectory.toFile().list()) {
+			if (!fileName.endsWith(".zip")) {
+				continue;
+			}
+			
+			try (ZipFile zipFile = new ZipFile(shardDirectory.resolve(fileName).toFile())) {
+				Enumeration<? extends ZipEntry> entries = zipFile.entries();
+				while (entries.hasMoreElements()) {
+					entries.nextElement();
+					++numberOfEntries;
+				}
+			}
+		}
+		
+		// A text file and a metadata file per item
+		assertEquals(2 * NUMBER_OF_ITEMS, numberOfEntries);
+	}
+	
+	private HttpResponse createResponse(String url) throws MalformedURLException {
+		return new HttpResponse(new URL(url), 200, "HTTP/1.1 200 OK", Collections.emptyMap(),
+				"Response".getBytes(StandardCharsets.UTF_8), 1);
+	}
+	
+	private Path writeItems(ArchiveShardSink.Format format) throws DownloadFailedException, IOException {
+		Path shardDirectory = testDirectoryPath.resolve(ArchiveShardSink.ARCHIVE_FOLDER_NAME);
+		Path sourceDirectory = testDirectoryPath.resolve("source");
+		Files.createDirectories(sourceDirectory);
+		
+		try (ArchiveShardSink sink = new ArchiveShardSink(shardDirectory, format, SMALL_SHARD_SIZE_IN_BYTES,
+				Item.FileType.XML, testDirectoryPath)) {
+			for (int itemId = 1; itemId <= NUMBER_OF_ITEMS; ++itemId) {
+				Path sourceFilePath = sourceDirectory.resolve(itemId + ".txt");
+				Files.write(sourceFilePath, ("Text of item " + itemId + "\n" +
+						new String(new char[1000]).replace('\0', '.')).getBytes(StandardCharsets.UTF_8));
+				
+				Item item = new Item();
+				item.setItemId(itemId);
+				item.setDataSource("Institute of Silly Walks");
+				item.addTextFileUrl(sourceFilePath.toUri().toString(), Item.FileType.TXT);
+				item.writeTextFiles(TEST_DIRECTORY, true);
+				sink.write(item);
+			}
+		}
+		
+		return shardDirectory;
+	}
+	
+	@Before
+	public void setup() {
+		didTestDirectoryExistsBeforeTest = testDirectoryPath.toFile().exists();
+	}
+	
+	@After
+	public void cleanUp() throws IOException {
+		File testDirectory = testDirectoryPath.toFile();
+		if (!didTestDirectoryExistsBeforeTest && testDirectory.exists()) {
+			FileUtils.deleteDirectory(testDirectory);
+		}
+	}
+}
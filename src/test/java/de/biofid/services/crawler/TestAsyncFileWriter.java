@@ -0,0 +1,61 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestAsyncFileWriter {
+	
+	private static final String TEST_DIRECTORY = "/tmp/test";
+	private static final Path testDirectoryPath = Paths.get(TEST_DIRECTORY);
+	private boolean didTestDirectoryExistsBeforeTest = false;
+	
+	@Test
+	public void testAllFilesAreWrittenOnClose() throws IOException {
+		int numberOfFiles = 100;
+		AsyncFileWriter writer = new AsyncFileWriter(4, 10, new DirectoryCache(), new WriteStatistics());
+		for (int i = 0; i < numberOfFiles; ++i) {
+			writer.write(testDirectoryPath.resolve(Integer.toString(i % 7)).resolve(i + ".xml"), 
+					Integer.toString(i).getBytes(StandardCharsets.UTF_8));
+		}
+		writer.close();
+		
+		assertEquals(numberOfFiles, writer.getNumberOfWrittenFiles());
+		assertEquals(0, writer.getNumberOfFailedWrites());
+		assertEquals("42", new String(Files.readAllBytes(testDirectoryPath.resolve("0").resolve("42.xml")), 
+				StandardCharsets.UTF_8));
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testWriteAfterCloseFails() throws IOException {
+		AsyncFileWriter writer = new AsyncFileWriter(4, AsyncFileWriter.FSYNC_DISABLED, new DirectoryCache(), 
+				new WriteStatistics());
+		writer.close();
+		writer.write(testDirectoryPath.resolve("1.xml"), new byte[] {1});
+	}
+	
+	@Before
+	public void setup() {
+		didTestDirectoryExistsBeforeTest = testDirectoryPath.toFile().exists();
+		assertTrue(testDirectoryPath.toFile().mkdirs() || didTestDirectoryExistsBeforeTest);
+	}
+	
+	@After
+	public void cleanUp() throws IOException {
+		File testDirectory = testDirectoryPath.toFile();
+		if (!didTestDirectoryExistsBeforeTest && testDirectory.exists()) {
+			FileUtils.deleteDirectory(testDirectory);
+		}
+	}
+}
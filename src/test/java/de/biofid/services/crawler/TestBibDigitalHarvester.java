@@ -1,5 +1,6 @@
 package de.biofid.services.crawler;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -7,9 +8,13 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.io.FileUtils;
 import org.json.JSONObject;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -44,6 +49,22 @@ public class TestBibDigitalHarvester {
 		assertTrue(outputMetadataFile.exists());
 	}
 	
+	@Test
+	public void testExtractItemIdsFromListingPage() throws UnsetHarvesterBaseDirectoryException {
+		BibDigitalHarvester harvester = new BibDigitalHarvester(defaultConfiguration);
+		Document listingPage = Jsoup.parse("<ul>"
+				+ "<li><a href=\"/en/records/item/15729-redirection\">Flora</a></li>"
+				+ "<li><a href=\"/en/records/item/15729-redirection\">Flora (PDF)</a></li>"
+				+ "<li><a href=\"/en/records/item/2204\">Icones</a></li>"
+				+ "<li><a href=\"/en/records/search/?page=2\">Next</a></li>"
+				+ "</ul>");
+		
+		List<Long> itemIds = new ArrayList<>(harvester.extractItemIdsFromListingPage(listingPage));
+		assertEquals(2, itemIds.size());
+		assertEquals(15729L, (long) itemIds.get(0));
+		assertEquals(2204L, (long) itemIds.get(1));
+	}
+	
 	@Before
 	public void setup() {
 		Harvester.setOutputDirectory(TEST_OUTPUT_DIRECTORY_STRING);
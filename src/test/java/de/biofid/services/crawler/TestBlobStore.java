@@ -0,0 +1,60 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestBlobStore {
+	
+	private static final String TEST_DIRECTORY = "/tmp/test";
+	private static final Path testDirectoryPath = Paths.get(TEST_DIRECTORY);
+	private boolean didTestDirectoryExistsBeforeTest = false;
+
+	@Test
+	public void testIdenticalContentIsStoredOnce() throws IOException {
+		Path firstSourcePath = testDirectoryPath.resolve("bhl.pdf");
+		Path secondSourcePath = testDirectoryPath.resolve("bib-digital.pdf");
+		Files.write(firstSourcePath, "%PDF-1.4 scan".getBytes(StandardCharsets.UTF_8));
+		Files.write(secondSourcePath, "%PDF-1.4 scan".getBytes(StandardCharsets.UTF_8));
+		
+		Path itemDirectory = testDirectoryPath.resolve("text/pdf");
+		Files.createDirectories(itemDirectory);
+		
+		BlobStore blobStore = new BlobStore(testDirectoryPath.resolve(BlobStore.BLOB_STORE_FOLDER_NAME));
+		DownloadedFile firstFile = blobStore.download(firstSourcePath.toUri().toURL(), itemDirectory.resolve("1.pdf"));
+		DownloadedFile secondFile = blobStore.download(secondSourcePath.toUri().toURL(), itemDirectory.resolve("2.pdf"));
+		
+		assertEquals(firstFile.getSha256(), secondFile.getSha256());
+		
+		Path blobPath = blobStore.getBlobPath(firstFile.getSha256());
+		assertTrue(blobPath.toFile().exists());
+		assertEquals(1, blobPath.getParent().toFile().list().length);
+		assertTrue(Files.isSameFile(blobPath, firstFile.getFilePath()));
+		assertTrue(Files.isSameFile(blobPath, secondFile.getFilePath()));
+	}
+	
+	@Before
+	public void setup() {
+		didTestDirectoryExistsBeforeTest = testDirectoryPath.toFile().exists();
+		assertTrue(testDirectoryPath.toFile().mkdirs() || didTestDirectoryExistsBeforeTest);
+	}
+	
+	@After
+	public void cleanUp() throws IOException {
+		File testDirectory = testDirectoryPath.toFile();
+		if (!didTestDirectoryExistsBeforeTest && testDirectory.exists()) {
+			FileUtils.deleteDirectory(testDirectory);
+		}
+	}
+}
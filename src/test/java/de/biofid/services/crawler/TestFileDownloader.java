@@ -0,0 +1,103 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestFileDownloader {
+	
+	private static final String TEST_DIRECTORY = "/tmp/test";
+	private static final Path testDirectoryPath = Paths.get(TEST_DIRECTORY);
+	private boolean didTestDirectoryExistsBeforeTest = false;
+
+	@Test
+	public void testDownloadComputesChecksumAndPublishesFile() throws IOException {
+		Path sourceFilePath = testDirectoryPath.resolve("source.txt");
+		Files.write(sourceFilePath, "abc".getBytes(StandardCharsets.UTF_8));
+		Path sinkFilePath = testDirectoryPath.resolve("sink.txt");
+		
+		DownloadedFile downloadedFile = FileDownloader.download(sourceFilePath.toUri().toURL(), sinkFilePath);
+		
+		assertEquals(sinkFilePath, downloadedFile.getFilePath());
+		assertEquals(3, downloadedFile.getSizeInBytes());
+		assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", 
+				downloadedFile.getSha256());
+		assertEquals("abc", new String(Files.readAllBytes(sinkFilePath), StandardCharsets.UTF_8));
+	}
+	
+	@Test
+	public void testCompressedDownloadKeepsChecksumOfContent() throws IOException {
+		Path sourceFilePath = testDirectoryPath.resolve("source.txt");
+		Files.write(sourceFilePath, "abc".getBytes(StandardCharsets.UTF_8));
+		Path sinkFilePath = testDirectoryPath.resolve("sink.txt.gz");
+		
+		DownloadedFile downloadedFile = FileDownloader.download(sourceFilePath.toUri().toURL(), sinkFilePath, 
+				CompressionSetting.parse("gzip:9"));
+		
+		assertEquals(3, downloadedFile.getSizeInBytes());
+		assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", 
+				downloadedFile.getSha256());
+		try (InputStream inputStream = new GZIPInputStream(Files.newInputStream(sinkFilePath))) {
+			assertEquals("abc", IOUtils.toString(inputStream, StandardCharsets.UTF_8));
+		}
+	}
+	
+	@Test
+	public void testExistingCompressedFileHasChecksumOfContent() throws IOException {
+		Path sourceFilePath = testDirectoryPath.resolve("source.txt");
+		Files.write(sourceFilePath, "abc".getBytes(StandardCharsets.UTF_8));
+		Path sinkFilePath = testDirectoryPath.resolve("sink.txt.zst");
+		CompressionSetting compression = CompressionSetting.parse("zstd");
+		FileDownloader.download(sourceFilePath.toUri().toURL(), sinkFilePath, compression);
+		
+		DownloadedFile existingFile = FileDownloader.digestExistingFile(sinkFilePath, compression);
+		
+		assertEquals(sinkFilePath, existingFile.getFilePath());
+		assertEquals(3, existingFile.getSizeInBytes());
+		assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", existingFile.getSha256());
+	}
+	
+	@Test
+	public void testFailedDownloadLeavesNoFile() {
+		Path sourceFilePath = testDirectoryPath.resolve("does-not-exist.txt");
+		Path sinkFilePath = testDirectoryPath.resolve("sink.txt");
+		
+		try {
+			FileDownloader.download(sourceFilePath.toUri().toURL(), sinkFilePath);
+		} catch (IOException ex) {
+			// Expected
+		}
+		
+		assertFalse(sinkFilePath.toFile().exists());
+		assertEquals(0, testDirectoryPath.toFile().list((directory, name) -> name.startsWith("sink.txt")).length);
+	}
+	
+	@Before
+	public void setup() {
+		didTestDirectoryExistsBeforeTest = testDirectoryPath.toFile().exists();
+		assertTrue(testDirectoryPath.toFile().mkdirs() || didTestDirectoryExistsBeforeTest);
+	}
+	
+	@After
+	public void cleanUp() throws IOException {
+		File testDirectory = testDirectoryPath.toFile();
+		if (!didTestDirectoryExistsBeforeTest && testDirectory.exists()) {
+			FileUtils.deleteDirectory(testDirectory);
+		}
+	}
+}
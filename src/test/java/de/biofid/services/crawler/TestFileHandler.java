@@ -1,9 +1,17 @@
 package de.biofid.services.crawler;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 
 public class TestFileHandler {
@@ -18,4 +26,41 @@ public class TestFileHandler {
 		assertEquals("2105", listOfItems.get(11));
 		assertEquals("5540", listOfItems.get(listOfItems.size() - 1));
 	}
+	
+	@Test
+	public void testWriteIfChanged() throws IOException {
+		Path filePath = Files.createTempFile("metadata", ".xml");
+		try {
+			Files.delete(filePath);
+			byte[] content = "<Metadata/>".getBytes(StandardCharsets.UTF_8);
+			byte[] changedContent = "<Metadata>1</Metadata>".getBytes(StandardCharsets.UTF_8);
+			
+			assertTrue(FileHandler.writeIfChanged(filePath, content));
+			assertFalse(FileHandler.writeIfChanged(filePath, content));
+			assertTrue(FileHandler.writeIfChanged(filePath, changedContent));
+			assertArrayEquals(changedContent, Files.readAllBytes(filePath));
+		} finally {
+			Files.deleteIfExists(filePath);
+		}
+	}
+	
+	@Test
+	public void testStreamedWriteIfChanged() throws IOException {
+		Path directoryPath = Files.createTempDirectory("metadata");
+		Path filePath = directoryPath.resolve("1.xml");
+		try {
+			byte[] content = "<Metadata/>".getBytes(StandardCharsets.UTF_8);
+			byte[] changedContent = "<Metadata>1</Metadata>".getBytes(StandardCharsets.UTF_8);
+			
+			assertTrue(FileHandler.writeIfChanged(filePath, outputStream -> outputStream.write(content)));
+			assertFalse(FileHandler.writeIfChanged(filePath, outputStream -> outputStream.write(content)));
+			assertTrue(FileHandler.writeIfChanged(filePath, outputStream -> outputStream.write(changedContent)));
+			assertArrayEquals(changedContent, Files.readAllBytes(filePath));
+			
+			// No temporary file is left behind
+			assertEquals(1, directoryPath.toFile().list().length);
+		} finally {
+			FileUtils.deleteDirectory(directoryPath.toFile());
+		}
+	}
 }
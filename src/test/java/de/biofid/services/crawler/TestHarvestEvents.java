@@ -0,0 +1,85 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.biofid.services.crawler.Item.UnsupportedOutputFormatException;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class TestHarvestEvents {
+	
+	private static final String HARVESTER_NAME = "SillyWalkHarvester";
+	private static final long ITEM_ID = 1234;
+	private static final String TEST_DIRECTORY = "/tmp/test";
+	private static final Path testDirectoryPath = Paths.get(TEST_DIRECTORY);
+	private boolean didTestDirectoryExistsBeforeTest = false;
+	
+	@Test
+	public void testMetadataWritingIsRecorded() throws IOException, UnsupportedOutputFormatException {
+		Path recordingPath = testDirectoryPath.resolve("harvest.jfr");
+		
+		try (Recording recording = new Recording()) {
+			recording.enable(HarvestEvents.MetadataSerialization.class);
+			recording.enable(HarvestEvents.DiskWrite.class);
+			recording.start();
+			
+			HarvestEvents.setHarvester(HARVESTER_NAME);
+			HarvestEvents.setItemId(ITEM_ID);
+			try {
+				Item item = new Item();
+				item.setItemId(ITEM_ID);
+				item.addMetdata("Title", "The Ministry of Silly Walks");
+				item.writeMetadataFile(TEST_DIRECTORY, Item.FileType.XML);
+				// The file holds the metadata already
+				item.writeMetadataFile(TEST_DIRECTORY, Item.FileType.XML);
+			} finally {
+				HarvestEvents.clear();
+			}
+			
+			recording.stop();
+			recording.dump(recordingPath);
+		}
+		
+		List<RecordedEvent> events = RecordingFile.readAllEvents(recordingPath);
+		assertEquals(4, events.size());
+		for (RecordedEvent event : events) {
+			assertEquals(HARVESTER_NAME, event.getString("harvester"));
+			assertEquals(ITEM_ID, event.getLong("itemId"));
+			if (!event.hasField("isWritten")) {
+				assertTrue(event.getLong("bytes") > 0);
+			} else if (event.getBoolean("isWritten")) {
+				assertEquals(Files.size(Paths.get(event.getString("path"))), event.getLong("bytes"));
+			} else {
+				assertEquals(0, event.getLong("bytes"));
+			}
+		}
+	}
+	
+	@Before
+	public void setup() {
+		didTestDirectoryExistsBeforeTest = testDirectoryPath.toFile().exists();
+		assertTrue(testDirectoryPath.toFile().mkdirs() || didTestDirectoryExistsBeforeTest);
+	}
+	
+	@After
+	public void cleanUp() throws IOException {
+		File testDirectory = testDirectoryPath.toFile();
+		if (!didTestDirectoryExistsBeforeTest && testDirectory.exists()) {
+			FileUtils.deleteDirectory(testDirectory);
+		}
+	}
+}
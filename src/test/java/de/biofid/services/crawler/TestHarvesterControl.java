@@ -0,0 +1,181 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.RuntimeMBeanException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.biofid.services.crawler.Harvester.UnsetHarvesterBaseDirectoryException;
+
+public class TestHarvesterControl {
+	
+	private static final String HARVESTER_NAME = "control-test";
+	private static final String TEST_DIRECTORY = "/tmp/test";
+	private static final Path testDirectoryPath = Paths.get(TEST_DIRECTORY);
+	private boolean didTestDirectoryExistsBeforeTest = false;
+	
+	@Test
+	public void testBandwidthLimiterSlowsDownReads() throws IOException {
+		byte[] content = new byte[20000];
+		
+		BandwidthLimiter unlimitedLimiter = new BandwidthLimiter(BandwidthLimiter.UNLIMITED);
+		long startTime = System.nanoTime();
+		try (InputStream inputStream = unlimitedLimiter.limit(new ByteArrayInputStream(content))) {
+			assertEquals(content.length, IOUtils.toByteArray(inputStream).length);
+		}
+		assertTrue(System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(1));
+		
+		BandwidthLimiter limiter = new BandwidthLimiter(10000);
+		startTime = System.nanoTime();
+		try (InputStream inputStream = limiter.limit(new ByteArrayInputStream(content))) {
+			assertEquals(content.length, IOUtils.toByteArray(inputStream).length);
+		}
+		assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(1500));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeBandwidthLimit() {
+		new BandwidthLimiter(-1);
+	}
+	
+	@Test
+	public void testControlRetunesHarvester() throws JMException, UnsetHarvesterBaseDirectoryException {
+		CountingHarvester harvester = new CountingHarvester(createConfiguration(), 0);
+		HarvesterControl harvesterControl = new HarvesterControl(harvester);
+		harvesterControl.register(HARVESTER_NAME);
+		
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		ObjectName objectName = HarvesterControl.createObjectName(HARVESTER_NAME);
+		try {
+			mBeanServer.setAttribute(objectName, new Attribute("RequestDelayMilliseconds", 2500L));
+			mBeanServer.setAttribute(objectName, new Attribute("BandwidthLimitBytesPerSecond", 4096L));
+			
+			assertEquals(2500, harvester.getRequestDelayInMilliseconds());
+			assertEquals(4096, harvester.getBandwidthLimiter().getBytesPerSecond());
+			assertEquals(1, mBeanServer.getAttribute(objectName, "MaximumParallelRequests"));
+			assertEquals(0L, mBeanServer.getAttribute(objectName, "ProcessedItems"));
+			assertEquals(false, mBeanServer.getAttribute(objectName, "ConcurrencyAdjustable"));
+			
+			try {
+				mBeanServer.setAttribute(objectName, new Attribute("MaximumParallelRequests", 4));
+				fail("A sequential harvester must not accept parallel requests!");
+			} catch (RuntimeMBeanException ex) {
+				assertTrue(ex.getCause() instanceof IllegalArgumentException);
+				assertTrue(ex.getCause().getMessage().contains("one after another"));
+			}
+		} finally {
+			harvesterControl.unregister();
+		}
+		
+		assertFalse(mBeanServer.isRegistered(objectName));
+	}
+	
+	@Test
+	public void testParallelRequestsOfBibDigitalHarvester() throws UnsetHarvesterBaseDirectoryException {
+		BibDigitalHarvester harvester = new BibDigitalHarvester(createConfiguration());
+		assertTrue(harvester.isConcurrencyAdjustable());
+		harvester.setMaximumParallelRequests(8);
+		assertEquals(8, harvester.getMaximumParallelRequests());
+	}
+	
+	@Test
+	public void testPauseAndResumeViaJmx() throws Exception {
+		CountingHarvester harvester = new CountingHarvester(createConfiguration(), 3);
+		harvester.pauseHarvesting();
+		
+		Thread harvesterThread = new Thread(harvester::run);
+		harvesterThread.start();
+		
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		ObjectName objectName = HarvesterControl.createObjectName(HARVESTER_NAME);
+		long timeout = System.currentTimeMillis() + 5000;
+		while (!mBeanServer.isRegistered(objectName) && System.currentTimeMillis() < timeout) {
+			Thread.sleep(10);
+		}
+		
+		// The paused harvester must not request anything
+		Thread.sleep(200);
+		assertEquals(0, harvester.requestedItems.get());
+		assertEquals(true, mBeanServer.getAttribute(objectName, "Paused"));
+		
+		mBeanServer.invoke(objectName, "resume", null, null);
+		harvesterThread.join(5000);
+		
+		assertFalse(harvesterThread.isAlive());
+		assertEquals(4, harvester.requestedItems.get());
+		assertFalse(mBeanServer.isRegistered(objectName));
+	}
+	
+	private static Configuration createConfiguration() {
+		Configuration configuration = new Configuration(HARVESTER_NAME, CountingHarvester.class.getName(), 
+				new JSONObject());
+		configuration.setProgressReportInterval(ProgressTracker.REPORTING_DISABLED);
+		return configuration;
+	}
+	
+	@Before
+	public void setup() {
+		didTestDirectoryExistsBeforeTest = testDirectoryPath.toFile().exists();
+		Harvester.setOutputDirectory(TEST_DIRECTORY);
+	}
+	
+	@After
+	public void cleanUp() throws IOException {
+		File testDirectory = testDirectoryPath.toFile();
+		if (!didTestDirectoryExistsBeforeTest && testDirectory.exists()) {
+			FileUtils.deleteDirectory(testDirectory);
+		}
+	}
+	
+	private static class CountingHarvester extends Harvester {
+		
+		private final int numberOfItems;
+		private final AtomicInteger requestedItems = new AtomicInteger();
+		
+		CountingHarvester(Configuration configuration, int numberOfItems) 
+				throws UnsetHarvesterBaseDirectoryException {
+			super(configuration);
+			this.numberOfItems = numberOfItems;
+		}
+		
+		@Override
+		protected String getFolderName() {
+			return "control";
+		}
+		
+		@Override
+		protected boolean nextItem(Item item) {
+			int itemId = requestedItems.incrementAndGet();
+			if (itemId > numberOfItems) {
+				return false;
+			}
+			
+			item.setItemId(itemId);
+			item.addMetdata(ITEM_COMPLETE_METADATA, new JSONObject().put("id", itemId));
+			return true;
+		}
+	}
+}
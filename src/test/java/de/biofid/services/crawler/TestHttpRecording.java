@@ -0,0 +1,114 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.biofid.services.crawler.Harvester.UnsetHarvesterBaseDirectoryException;
+
+public class TestHttpRecording {
+	
+	private static final String METADATA_FILE = "metadata/xml/1.xml";
+	private static final String PDF_FILE = "text/pdf/1.pdf";
+	private static final String TEST_DIRECTORY = "/tmp/test";
+	private static final Path testDirectoryPath = Paths.get(TEST_DIRECTORY);
+	
+	private boolean didTestDirectoryExistsBeforeTest = false;
+	private Path recordingDirectory = testDirectoryPath.resolve("recording");
+	
+	@Test
+	public void testHarvestIsReplayedWithoutNetwork() throws IOException, UnsetHarvesterBaseDirectoryException {
+		Harvester.setOutputDirectory(testDirectoryPath.resolve("recorded").toString());
+		Harvester recordedHarvester = createBibDigitalHarvester("1", "2");
+		
+		try (MockSiteServer mockSiteServer = new MockSiteServer()) {
+			mockSiteServer.setLatency(100);
+			mockSiteServer.start();
+			
+			HttpFetcher.startRecording(new ResponseStore(recordingDirectory));
+			recordedHarvester.run();
+			HttpFetcher.stopRecordingAndReplaying();
+		}
+		assertEquals(2, recordedHarvester.getProgressTracker().getProcessedItems());
+		
+		// The mock server is gone, so every response has to come from the recording
+		Harvester.setOutputDirectory(testDirectoryPath.resolve("replayed").toString());
+		Harvester replayedHarvester = createBibDigitalHarvester("1", "2", "3");
+		HttpFetcher.startReplaying(new ResponseStore(recordingDirectory), 0);
+		replayedHarvester.run();
+		
+		assertEquals(2, replayedHarvester.getProgressTracker().getProcessedItems());
+		// Item 3 was never recorded
+		assertEquals(1, replayedHarvester.getProgressTracker().getFailedItems());
+		assertArrayEquals(Files.readAllBytes(recordedHarvester.getWorkingDirectory().resolve(METADATA_FILE)),
+				Files.readAllBytes(replayedHarvester.getWorkingDirectory().resolve(METADATA_FILE)));
+		assertArrayEquals(Files.readAllBytes(recordedHarvester.getWorkingDirectory().resolve(PDF_FILE)),
+				Files.readAllBytes(replayedHarvester.getWorkingDirectory().resolve(PDF_FILE)));
+	}
+	
+	@Test
+	public void testReplayTakesTheScaledRecordedTime() throws IOException, UnsetHarvesterBaseDirectoryException {
+		ResponseStore recording = new ResponseStore(recordingDirectory);
+		try (MockSiteServer mockSiteServer = new MockSiteServer()) {
+			mockSiteServer.setLatency(200);
+			mockSiteServer.start();
+			
+			HttpFetcher.startRecording(recording);
+			createBibDigitalHarvester("1").run();
+			HttpFetcher.stopRecordingAndReplaying();
+		}
+		
+		String itemUrl = "https://bibdigital.rjb.csic.es/en/records/item/1-redirection";
+		String pdfUrl = "https://bibdigital.rjb.csic.es/media/files/1/document.pdf";
+		assertTrue(recording.read(itemUrl).getDurationInMilliseconds() >= 200);
+		assertTrue(recording.read(pdfUrl).getDurationInMilliseconds() >= 200);
+		
+		HttpFetcher.startReplaying(recording, 0.5);
+		long startTime = System.currentTimeMillis();
+		new HttpFetcher().get(itemUrl);
+		FileDownloader.download(new URL(pdfUrl), testDirectoryPath.resolve("1.pdf"));
+		long replayTime = System.currentTimeMillis() - startTime;
+		
+		// Half of the two recorded requests
+		assertTrue(replayTime >= 200);
+		assertTrue(testDirectoryPath.resolve("1.pdf").toFile().exists());
+	}
+	
+	private static Harvester createBibDigitalHarvester(String... itemIds) throws UnsetHarvesterBaseDirectoryException {
+		JSONObject jsonConfiguration = new JSONObject().put("items", new JSONArray(itemIds));
+		Configuration configuration = new Configuration("Bib-Digital", BibDigitalHarvester.class.getName(),
+				jsonConfiguration);
+		configuration.setProgressReportInterval(ProgressTracker.REPORTING_DISABLED);
+		return new BibDigitalHarvester(configuration);
+	}
+	
+	@Before
+	public void setup() {
+		didTestDirectoryExistsBeforeTest = testDirectoryPath.toFile().exists();
+		Harvester.setOutputDirectory(TEST_DIRECTORY);
+	}
+	
+	@After
+	public void cleanUp() throws IOException {
+		HttpFetcher.stopRecordingAndReplaying();
+		
+		File testDirectory = testDirectoryPath.toFile();
+		if (!didTestDirectoryExistsBeforeTest && testDirectory.exists()) {
+			FileUtils.deleteDirectory(testDirectory);
+		}
+	}
+}
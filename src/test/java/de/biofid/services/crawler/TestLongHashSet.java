@@ -0,0 +1,42 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestLongHashSet {
+	
+	@Test
+	public void testAddedValuesAreContained() {
+		LongHashSet set = new LongHashSet();
+		assertTrue(set.isEmpty());
+		
+		assertTrue(set.add(22314));
+		assertTrue(set.add(-1));
+		assertTrue(set.add(0));
+		assertFalse(set.add(22314));
+		assertFalse(set.add(0));
+		
+		assertEquals(3, set.size());
+		assertTrue(set.contains(22314));
+		assertTrue(set.contains(-1));
+		assertTrue(set.contains(0));
+		assertFalse(set.contains(122748));
+	}
+	
+	@Test
+	public void testSetGrowsBeyondExpectedSize() {
+		LongHashSet set = new LongHashSet(2);
+		for (long value = 1; value <= 100000; ++value) {
+			assertTrue(set.add(value * 1024));
+		}
+		
+		assertEquals(100000, set.size());
+		for (long value = 1; value <= 100000; ++value) {
+			assertTrue(set.contains(value * 1024));
+			assertFalse(set.contains(value * 1024 + 1));
+		}
+	}
+}
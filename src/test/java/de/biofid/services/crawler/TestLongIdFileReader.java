@@ -0,0 +1,112 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestLongIdFileReader {
+	
+	private Path idFilePath = null;
+	
+	@Test
+	public void testBlankLinesAndWhitespaceAreSkipped() throws IOException {
+		writeIdFile("\n  60 \r\n\n\t64\r\n2105");
+		assertEquals(Arrays.asList(60L, 64L, 2105L), readIds(new LongIdFileReader(idFilePath)));
+	}
+	
+	@Test
+	public void testEmptyFileHasNoIds() throws IOException {
+		writeIdFile("\n\n");
+		LongIdFileReader reader = new LongIdFileReader(idFilePath);
+		assertFalse(reader.hasNext());
+	}
+	
+	@Test(expected = NumberFormatException.class)
+	public void testInvalidLineIsRejected() throws IOException {
+		writeIdFile("60\n64a\n");
+		readIds(new LongIdFileReader(idFilePath));
+	}
+	
+	@Test(expected = NumberFormatException.class)
+	public void testTwoIdsInOneLineAreRejected() throws IOException {
+		writeIdFile("60 64\n");
+		readIds(new LongIdFileReader(idFilePath));
+	}
+	
+	@Test
+	public void testIdsAcrossMappingWindowsAreRead() throws IOException {
+		StringBuilder content = new StringBuilder();
+		List<Long> expectedIds = new ArrayList<>();
+		for (long id = 9999990; id < 10000100; ++id) {
+			content.append(id).append('\n');
+			expectedIds.add(id);
+		}
+		writeIdFile(content.toString());
+		
+		// A window size of 5 bytes splits most IDs between two windows
+		assertEquals(expectedIds, readIds(new LongIdFileReader(idFilePath, 5)));
+	}
+	
+	@Test
+	public void testReadListOfTitles() throws IOException {
+		List<Long> titleIds = readIds(new LongIdFileReader(Paths.get("src/test/resources/listOfTitles.txt")));
+		assertEquals(21, titleIds.size());
+		assertEquals(60L, (long) titleIds.get(0));
+		assertEquals(2105L, (long) titleIds.get(11));
+		assertEquals(5540L, (long) titleIds.get(titleIds.size() - 1));
+	}
+	
+	@Test
+	public void testLargestIdIsRead() throws IOException {
+		writeIdFile(Long.MAX_VALUE + "\n");
+		assertEquals(Arrays.asList(Long.MAX_VALUE), readIds(new LongIdFileReader(idFilePath)));
+	}
+	
+	@Test(expected = NumberFormatException.class)
+	public void testTooLargeIdIsRejected() throws IOException {
+		writeIdFile("9223372036854775808\n");
+		readIds(new LongIdFileReader(idFilePath));
+	}
+	
+	private static List<Long> readIds(LongIdFileReader reader) {
+		List<Long> ids = new ArrayList<>();
+		try {
+			while (reader.hasNext()) {
+				ids.add(reader.nextLong());
+			}
+		} finally {
+			reader.close();
+		}
+		
+		assertFalse(reader.hasNext());
+		return ids;
+	}
+	
+	private void writeIdFile(String content) throws IOException {
+		Files.write(idFilePath, content.getBytes(StandardCharsets.UTF_8));
+		assertTrue(Files.size(idFilePath) > 0);
+	}
+	
+	@Before
+	public void setup() throws IOException {
+		idFilePath = Files.createTempFile("ids", ".txt");
+	}
+	
+	@After
+	public void cleanUp() throws IOException {
+		Files.deleteIfExists(idFilePath);
+	}
+}
@@ -0,0 +1,107 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import org.junit.Test;
+
+public class TestLongWorkQueue {
+	
+	@Test
+	public void testDuplicatesAreQueuedOnce() {
+		LongWorkQueue queue = new LongWorkQueue();
+		assertEquals(3, queue.addAll(LongStream.of(22314, 122748, 22314, 60).iterator()));
+		assertEquals(22314, queue.poll());
+		
+		// Also IDs taken from the queue already are not queued again
+		assertFalse(queue.add(22314));
+		assertTrue(queue.add(64));
+		assertArrayEquals(new long[] {122748, 60, 64}, queue.snapshot());
+	}
+	
+	@Test
+	public void testIdsAreTakenInOrder() {
+		LongWorkQueue queue = new LongWorkQueue();
+		for (long id = 1; id <= 100000; ++id) {
+			queue.add(id);
+			if (id % 3 == 0) {
+				assertEquals(id / 3, queue.poll());
+			}
+		}
+		
+		assertEquals(100000 - 33333, queue.size());
+		long expectedId = 33334;
+		while (!queue.isEmpty()) {
+			assertEquals(expectedId++, queue.poll());
+		}
+	}
+	
+	@Test
+	public void testOrderings() {
+		LongWorkQueue queue = createQueue(5, 1, 4, 2, 3);
+		queue.poll();
+		
+		queue.order(LongWorkQueue.Ordering.ASCENDING, new Random(0));
+		assertArrayEquals(new long[] {1, 2, 3, 4}, queue.snapshot());
+		queue.order(LongWorkQueue.Ordering.DESCENDING, new Random(0));
+		assertArrayEquals(new long[] {4, 3, 2, 1}, queue.snapshot());
+		queue.order(LongWorkQueue.Ordering.LISTED, new Random(0));
+		assertArrayEquals(new long[] {4, 3, 2, 1}, queue.snapshot());
+		
+		assertEquals(LongWorkQueue.Ordering.SHUFFLED, LongWorkQueue.Ordering.fromString("Shuffled"));
+	}
+	
+	@Test
+	public void testShufflingIsRepeatableWithSeed() {
+		long[] ids = LongStream.rangeClosed(1, 1000).toArray();
+		LongWorkQueue queue = createQueue(ids);
+		LongWorkQueue otherQueue = createQueue(ids);
+		
+		queue.order(LongWorkQueue.Ordering.SHUFFLED, new Random(42));
+		otherQueue.order(LongWorkQueue.Ordering.SHUFFLED, new Random(42));
+		
+		long[] shuffledIds = queue.snapshot();
+		assertArrayEquals(shuffledIds, otherQueue.snapshot());
+		assertNotEquals(Arrays.toString(ids), Arrays.toString(shuffledIds));
+		Arrays.sort(shuffledIds);
+		assertArrayEquals(ids, shuffledIds);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownOrderingIsRejected() {
+		LongWorkQueue.Ordering.fromString("alphabetical");
+	}
+	
+	@Test
+	public void testSnapshotCanBeReadAsIdFile() throws IOException {
+		LongWorkQueue queue = createQueue(22314, 122748, 60);
+		queue.poll();
+		
+		Path snapshotFilePath = Files.createTempFile("pending-items", ".txt");
+		try {
+			queue.writeSnapshot(snapshotFilePath);
+			
+			LongWorkQueue restoredQueue = new LongWorkQueue();
+			restoredQueue.addAll(new LongIdFileReader(snapshotFilePath));
+			assertArrayEquals(new long[] {122748, 60}, restoredQueue.snapshot());
+		} finally {
+			Files.deleteIfExists(snapshotFilePath);
+		}
+	}
+	
+	private static LongWorkQueue createQueue(long... ids) {
+		LongWorkQueue queue = new LongWorkQueue();
+		queue.addAll(LongStream.of(ids).iterator());
+		return queue;
+	}
+}
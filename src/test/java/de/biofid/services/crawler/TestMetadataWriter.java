@@ -0,0 +1,59 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URL;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.XML;
+import org.junit.Test;
+
+public class TestMetadataWriter {
+	
+	@Test
+	public void testXmlOutputEqualsOrgJson() throws IOException {
+		JSONObject metadata = createMetadataExample();
+		
+		StringWriter writer = new StringWriter();
+		MetadataWriter.writeXml(metadata, Item.METADATA_ROOT_NAME, writer);
+		
+		assertEquals(XML.toString(metadata, Item.METADATA_ROOT_NAME), writer.toString());
+	}
+	
+	@Test
+	public void testJsonOutputEqualsOrgJson() {
+		JSONObject metadata = createMetadataExample();
+		
+		StringWriter writer = new StringWriter();
+		MetadataWriter.writeJson(metadata, Item.JSON_N_SPACES_FOR_INDENTATION, writer);
+		
+		assertEquals(metadata.toString(Item.JSON_N_SPACES_FOR_INDENTATION), writer.toString());
+	}
+	
+	private JSONObject createMetadataExample() {
+		JSONObject metadata = new JSONObject();
+		metadata.put("Title", "Flora & Fauna <1884> \"Band\" 'I'");
+		metadata.put("Empty", "");
+		metadata.put("Nothing", JSONObject.NULL);
+		metadata.put("Year", 1884);
+		metadata.put("Control", "Tab\tBell\u0007Lone\ud800Surrogate🌿");
+		metadata.put("content", new JSONArray().put("first line").put("second line"));
+		metadata.put("Keywords", new String[] {"Drama", "Crisis"});
+		metadata.put("Nested", new JSONArray().put(new JSONArray().put("a").put(1)).put("b"));
+		
+		JSONObject page = new JSONObject();
+		page.put("PageID", 4711);
+		try {
+			page.put("PageUrl", new URL("https://www.biodiversitylibrary.org/page/4711"));
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+		page.put("PageNumbers", new JSONArray().put(new JSONObject().put("Number", "XI")));
+		metadata.put("Pages", new JSONArray().put(page).put(page));
+		
+		return metadata;
+	}
+}
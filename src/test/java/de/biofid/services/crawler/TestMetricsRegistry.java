@@ -0,0 +1,69 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class TestMetricsRegistry {
+	
+	@Test
+	public void testMetricsAreServed() throws IOException {
+		MetricsRegistry registry = new MetricsRegistry();
+		registry.counter("items_total", "Number of items.", "harvester").labels("BHL").add(42);
+		
+		try (MetricsServer metricsServer = new MetricsServer(0, registry)) {
+			URL metricsUrl = new URL("http://localhost:" + metricsServer.getPort() + MetricsServer.METRICS_PATH);
+			HttpURLConnection connection = (HttpURLConnection) metricsUrl.openConnection();
+			
+			assertEquals(200, connection.getResponseCode());
+			assertEquals(MetricsRegistry.TEXT_FORMAT_CONTENT_TYPE, connection.getContentType());
+			try (InputStream responseStream = connection.getInputStream()) {
+				String metrics = IOUtils.toString(responseStream, StandardCharsets.UTF_8);
+				assertTrue(metrics.contains("items_total{harvester=\"BHL\"} 42\n"));
+			}
+		}
+	}
+	
+	@Test
+	public void testTextExposition() throws IOException {
+		MetricsRegistry registry = new MetricsRegistry();
+		Counter counter = registry.counter("files_total", "Number of files.", "type");
+		counter.labels("pdf").increment();
+		counter.labels("pdf").increment();
+		counter.labels("t\"xt").add(5);
+		
+		Histogram histogram = registry.histogram("request_duration_seconds", "Request duration.", 
+				new double[] {0.1, 1}, "host");
+		histogram.labels("www.biofid.de").observe(0.05);
+		histogram.labels("www.biofid.de").observe(0.5);
+		histogram.labels("www.biofid.de").observe(3);
+		
+		registry.gauge("in_flight", "Requests in flight.").labels().increment();
+		
+		StringWriter writer = new StringWriter();
+		registry.write(writer);
+		String metrics = writer.toString();
+		
+		assertTrue(metrics.contains("# TYPE files_total counter\n"));
+		assertTrue(metrics.contains("files_total{type=\"pdf\"} 2\n"));
+		assertTrue(metrics.contains("files_total{type=\"t\\\"xt\"} 5\n"));
+		assertTrue(metrics.contains("in_flight 1\n"));
+		assertTrue(metrics.contains("request_duration_seconds_bucket{host=\"www.biofid.de\",le=\"0.1\"} 1\n"));
+		assertTrue(metrics.contains("request_duration_seconds_bucket{host=\"www.biofid.de\",le=\"1.0\"} 2\n"));
+		assertTrue(metrics.contains("request_duration_seconds_bucket{host=\"www.biofid.de\",le=\"+Inf\"} 3\n"));
+		assertTrue(metrics.contains("request_duration_seconds_sum{host=\"www.biofid.de\"} 3.55\n"));
+		assertTrue(metrics.contains("request_duration_seconds_count{host=\"www.biofid.de\"} 3\n"));
+		
+		// The metrics are sorted by name
+		assertTrue(metrics.indexOf("files_total") < metrics.indexOf("in_flight"));
+	}
+}
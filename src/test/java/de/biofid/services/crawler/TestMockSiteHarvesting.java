@@ -0,0 +1,358 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.biofid.services.crawler.Harvester.UnsetHarvesterBaseDirectoryException;
+
+public class TestMockSiteHarvesting {
+	
+	private static final String CONFIGURATION_ITEM_LIST = "items";
+	private static final String TEST_DIRECTORY = "/tmp/test";
+	private static final Path testDirectoryPath = Paths.get(TEST_DIRECTORY);
+	
+	private boolean didTestDirectoryExistsBeforeTest = false;
+	private MockSiteServer mockSiteServer = null;
+	
+	@Test
+	public void testBhlItemsAreHarvestedFromMockServer() throws UnsetHarvesterBaseDirectoryException {
+		mockSiteServer.setTextFileSize(10 * 1024);
+		Configuration configuration = createConfiguration(BhlHarvester.BHL_STRING, BhlHarvester.class,
+				new JSONArray().put(1).put(2).put(3));
+		configuration.setHarvesterApiKey("mock");
+		
+		Harvester harvester = new BhlHarvester(configuration);
+		harvester.run();
+		
+		assertEquals(3, harvester.getProgressTracker().getProcessedItems());
+		assertEquals(0, harvester.getProgressTracker().getFailedItems());
+		assertTrue(harvester.getWorkingDirectory().resolve("metadata/xml/1.xml").toFile().exists());
+		assertTrue(mockSiteServer.getSentBytes() >= 3 * 10 * 1024);
+	}
+	
+	@Test
+	public void testSkippedTextFilesKeepTheirChecksums() throws IOException, UnsetHarvesterBaseDirectoryException {
+		for (int run = 0; run < 2; ++run) {
+			Configuration configuration = createConfiguration(BhlHarvester.BHL_STRING, BhlHarvester.class,
+					new JSONArray().put(1));
+			configuration.setHarvesterApiKey("mock");
+			configuration.setOverwritting(false);
+			
+			BhlHarvester harvester = new BhlHarvester(configuration);
+			harvester.run();
+			
+			String metadata = new String(Files.readAllBytes(
+					harvester.getWorkingDirectory().resolve("metadata/xml/1.xml")), StandardCharsets.UTF_8);
+			assertTrue(metadata.contains(Item.METADATA_ITEM_TEXT_FILE_CHECKSUM_STRING));
+		}
+	}
+	
+	@Test
+	public void testBhlItemFileIsHarvestedWithoutDuplicates() throws IOException, UnsetHarvesterBaseDirectoryException {
+		Path itemFilePath = Files.createTempFile("items", ".txt");
+		try {
+			Files.write(itemFilePath, "1\n2\n\n1\n3\n2\n".getBytes(StandardCharsets.UTF_8));
+			JSONObject jsonConfiguration = new JSONObject();
+			jsonConfiguration.put(CONFIGURATION_ITEM_LIST, itemFilePath.toString());
+			Configuration configuration = new Configuration(BhlHarvester.BHL_STRING, BhlHarvester.class.getName(),
+					jsonConfiguration);
+			configuration.setProgressReportInterval(ProgressTracker.REPORTING_DISABLED);
+			configuration.setHarvesterApiKey("mock");
+			
+			BhlHarvester harvester = new BhlHarvester(configuration);
+			assertEquals(Arrays.asList(1L, 2L, 3L), harvester.getListOfItems());
+			harvester.run();
+			
+			assertEquals(3, harvester.getProgressTracker().getProcessedItems());
+			assertEquals(3, harvester.getProgressTracker().getDiscoveredItems());
+		} finally {
+			Files.deleteIfExists(itemFilePath);
+		}
+	}
+	
+	@Test
+	public void testBhlHarvestWritesCheckpoints() throws IOException, UnsetHarvesterBaseDirectoryException {
+		Configuration configuration = createConfiguration(BhlHarvester.BHL_STRING, BhlHarvester.class,
+				new JSONArray().put(2).put(3).put(1));
+		configuration.getHarvesterJsonConfiguration().put("item-order", "shuffled").put("checkpoint-interval", 1);
+		configuration.setHarvesterApiKey("mock");
+		
+		BhlHarvester harvester = new BhlHarvester(configuration);
+		harvester.run();
+		
+		assertEquals(3, harvester.getProgressTracker().getProcessedItems());
+		assertEquals(3, harvester.getProgressTracker().getTotalNumberOfItems());
+		// The last checkpoint is written after all items were harvested
+		Path pendingItemsFilePath = harvester.getWorkingDirectory().resolve(BhlHarvester.PENDING_ITEMS_FILE_NAME);
+		assertEquals(0, Files.size(pendingItemsFilePath));
+		assertEquals(0, Files.size(harvester.getWorkingDirectory().resolve(BhlHarvester.PENDING_TITLES_FILE_NAME)));
+	}
+	
+	@Test
+	public void testBhlShardsHarvestDisjointItems() throws IOException, UnsetHarvesterBaseDirectoryException {
+		JSONArray itemIds = new JSONArray();
+		for (int itemId = 1; itemId <= 10; ++itemId) {
+			itemIds.put(itemId);
+		}
+		
+		long numberOfHarvestedItems = 0;
+		for (int index = 1; index <= 2; ++index) {
+			Shard shard = new Shard(index, 2);
+			Configuration configuration = createConfiguration(BhlHarvester.BHL_STRING, BhlHarvester.class, itemIds);
+			configuration.setHarvesterApiKey("mock");
+			configuration.setShard(shard);
+			
+			BhlHarvester harvester = new BhlHarvester(configuration);
+			harvester.run();
+			numberOfHarvestedItems += harvester.getProgressTracker().getProcessedItems();
+			
+			for (int itemId = 1; itemId <= 10; ++itemId) {
+				assertEquals(shard.contains(itemId) || new Shard(1, 2).contains(itemId),
+						harvester.getWorkingDirectory().resolve("metadata/xml/" + itemId + ".xml").toFile().exists());
+			}
+			String[] reportFileNames = harvester.getWorkingDirectory().resolve(RunReport.REPORT_FOLDER_NAME).toFile()
+					.list((directory, name) -> name.endsWith(shard.getName() + ".json"));
+			assertEquals(1, reportFileNames.length);
+		}
+		
+		assertEquals(10, numberOfHarvestedItems);
+	}
+	
+	@Test
+	public void testBhlInstancesShareOneWorkQueue() throws Exception {
+		JSONArray itemIds = new JSONArray();
+		for (int itemId = 1; itemId <= 10; ++itemId) {
+			itemIds.put(itemId);
+		}
+		Path workQueueDirectory = Files.createTempDirectory("work-queue");
+		
+		try {
+			List<BhlHarvester> harvesters = new ArrayList<>();
+			List<Thread> harvesterThreads = new ArrayList<>();
+			for (int nodeNumber = 1; nodeNumber <= 2; ++nodeNumber) {
+				Configuration configuration = createConfiguration(BhlHarvester.BHL_STRING, BhlHarvester.class, itemIds);
+				configuration.getHarvesterJsonConfiguration().put("work-queue", workQueueDirectory.toString())
+						.put("node-id", "node-" + nodeNumber);
+				configuration.setHarvesterApiKey("mock");
+				
+				BhlHarvester harvester = new BhlHarvester(configuration);
+				harvesters.add(harvester);
+				harvesterThreads.add(new Thread(harvester::run));
+			}
+			
+			for (Thread harvesterThread : harvesterThreads) {
+				harvesterThread.start();
+			}
+			for (Thread harvesterThread : harvesterThreads) {
+				harvesterThread.join();
+			}
+			
+			long numberOfHarvestedItems = 0;
+			for (BhlHarvester harvester : harvesters) {
+				numberOfHarvestedItems += harvester.getProgressTracker().getProcessedItems();
+			}
+			assertEquals(10, numberOfHarvestedItems);
+			for (int itemId = 1; itemId <= 10; ++itemId) {
+				assertTrue(harvesters.get(0).getWorkingDirectory().resolve("metadata/xml/" + itemId + ".xml")
+						.toFile().exists());
+			}
+			
+			try (SharedWorkQueue itemQueue = new SharedWorkQueue(
+					workQueueDirectory.resolve(BhlHarvester.SHARED_ITEMS_FILE_NAME), "node-3", 1000)) {
+				assertTrue(itemQueue.isFinished());
+				assertEquals(10, itemQueue.getNumberOfCompletedItems());
+			}
+		} finally {
+			FileUtils.deleteDirectory(workQueueDirectory.toFile());
+		}
+	}
+	
+	@Test
+	public void testCatalogueCrawlEndsAtMissingListingPage() throws UnsetHarvesterBaseDirectoryException {
+		// The mock server does not list the catalogue, so every listing page is answered with 404
+		BibDigitalHarvester harvester = (BibDigitalHarvester) createBibDigitalHarvester(1);
+		harvester.setCatalogueCrawlEnabled(true);
+		harvester.run();
+		
+		assertEquals(1, harvester.getProgressTracker().getProcessedItems());
+		assertEquals(1, harvester.getProgressTracker().getTotalNumberOfItems());
+	}
+	
+	@Test
+	public void testCatalogueCrawlEndsAfterFailedListingPages() throws UnsetHarvesterBaseDirectoryException {
+		mockSiteServer.setErrorRate(1);
+		BibDigitalHarvester harvester = (BibDigitalHarvester) createBibDigitalHarvester(0);
+		harvester.setCatalogueCrawlEnabled(true);
+		harvester.run();
+		
+		assertEquals(0, harvester.getProgressTracker().getProcessedItems());
+		assertTrue(mockSiteServer.getNumberOfFailedResponses() >= 3);
+	}
+	
+	@Test
+	public void testFailedResponsesFailTheItems() throws UnsetHarvesterBaseDirectoryException {
+		mockSiteServer.setErrorRate(1);
+		Harvester harvester = createBibDigitalHarvester(2);
+		harvester.run();
+		
+		assertEquals(0, harvester.getProgressTracker().getProcessedItems());
+		assertEquals(2, harvester.getProgressTracker().getFailedItems());
+		assertTrue(mockSiteServer.getNumberOfFailedResponses() >= 2);
+	}
+	
+	@Test
+	public void testLatencyIsAddedToEveryResponse() throws UnsetHarvesterBaseDirectoryException {
+		mockSiteServer.setLatency(200);
+		Harvester harvester = createBibDigitalHarvester(2);
+		
+		long startTime = System.currentTimeMillis();
+		harvester.run();
+		
+		assertEquals(2, harvester.getProgressTracker().getProcessedItems());
+		// Every item is a request of the item page and a download of the PDF
+		assertTrue(System.currentTimeMillis() - startTime >= 4 * 200);
+	}
+	
+	@Test
+	public void testStoredResponsesAreReprocessedConcurrently() throws UnsetHarvesterBaseDirectoryException {
+		Configuration bibDigitalConfiguration = createConfiguration("Bib-Digital", BibDigitalHarvester.class,
+				new JSONArray().put("1").put("2").put("3").put("4").put("5"));
+		bibDigitalConfiguration.setResponseStoring(true);
+		Configuration zobodatConfiguration = createConfiguration(ZobodatHarvester.ZOBODAT_STRING,
+				ZobodatHarvester.class, new JSONArray().put("https://www.zobodat.at/publikation_volumes.php?id=7"));
+		zobodatConfiguration.setResponseStoring(true);
+		
+		new BibDigitalHarvester(bibDigitalConfiguration).run();
+		new ZobodatHarvester(zobodatConfiguration).run();
+		// Reprocessing must not request anything
+		mockSiteServer.close();
+		
+		ExecutorService itemExecutor = Executors.newFixedThreadPool(4);
+		try {
+			Harvester bibDigitalHarvester = new BibDigitalHarvester(bibDigitalConfiguration);
+			bibDigitalHarvester.reprocess(itemExecutor);
+			assertEquals(5, bibDigitalHarvester.getProgressTracker().getProcessedItems());
+			assertEquals(0, bibDigitalHarvester.getProgressTracker().getFailedItems());
+			
+			Harvester zobodatHarvester = new ZobodatHarvester(zobodatConfiguration);
+			zobodatHarvester.reprocess(itemExecutor);
+			assertEquals(MockSiteServer.ARTICLES_PER_ZOBODAT_VOLUME,
+					zobodatHarvester.getProgressTracker().getProcessedItems());
+		} finally {
+			itemExecutor.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void testThrottledResponsesFailTheItems() throws UnsetHarvesterBaseDirectoryException {
+		mockSiteServer.setThrottleRate(1);
+		Harvester harvester = createBibDigitalHarvester(2);
+		harvester.run();
+		
+		assertEquals(2, harvester.getProgressTracker().getFailedItems());
+		assertTrue(mockSiteServer.getNumberOfThrottledResponses() >= 2);
+	}
+	
+	@Test
+	public void testZobodatVolumeIsHarvestedFromMockServer() throws UnsetHarvesterBaseDirectoryException {
+		Configuration configuration = createConfiguration(ZobodatHarvester.ZOBODAT_STRING, ZobodatHarvester.class,
+				new JSONArray().put("https://www.zobodat.at/publikation_volumes.php?id=7"));
+		
+		Harvester harvester = new ZobodatHarvester(configuration);
+		harvester.run();
+		
+		assertEquals(MockSiteServer.ARTICLES_PER_ZOBODAT_VOLUME, harvester.getProgressTracker().getProcessedItems());
+		assertTrue(harvester.getWorkingDirectory().resolve("metadata/xml/7001.xml").toFile().exists());
+	}
+	
+	@Test
+	public void testRequestsAreSentWithTheUserAgent() throws UnsetHarvesterBaseDirectoryException {
+		createBibDigitalHarvester(1).run();
+		assertEquals(Collections.singleton(HttpFetcher.DEFAULT_USER_AGENT), mockSiteServer.getUserAgents());
+		
+		HttpFetcher.setUserAgent("LiteratureCrawler (https://www.biofid.de)");
+		try {
+			createBibDigitalHarvester(1).run();
+		} finally {
+			HttpFetcher.setUserAgent(HttpFetcher.DEFAULT_USER_AGENT);
+		}
+		assertTrue(mockSiteServer.getUserAgents().contains("LiteratureCrawler (https://www.biofid.de)"));
+	}
+	
+	@Test
+	public void testZobodatShardsFetchOnlyTheirCitations() throws UnsetHarvesterBaseDirectoryException {
+		long numberOfHarvestedItems = 0;
+		for (int index = 1; index <= 2; ++index) {
+			Configuration configuration = createConfiguration(ZobodatHarvester.ZOBODAT_STRING, ZobodatHarvester.class,
+					new JSONArray().put("https://www.zobodat.at/publikation_volumes.php?id=7"));
+			configuration.setShard(new Shard(index, 2));
+			
+			Harvester harvester = new ZobodatHarvester(configuration);
+			harvester.run();
+			numberOfHarvestedItems += harvester.getProgressTracker().getProcessedItems();
+		}
+		
+		assertEquals(MockSiteServer.ARTICLES_PER_ZOBODAT_VOLUME, numberOfHarvestedItems);
+		// Both shards crawl the volume page and the article links on it, but every citation page and PDF is
+		// fetched by one shard only
+		int numberOfArticles = MockSiteServer.ARTICLES_PER_ZOBODAT_VOLUME;
+		assertEquals(2 * (1 + numberOfArticles) + 2 * numberOfArticles, mockSiteServer.getNumberOfRequests());
+	}
+	
+	private static Configuration createConfiguration(String harvesterName, Class<? extends Harvester> harvesterClass,
+			JSONArray items) {
+		JSONObject jsonConfiguration = new JSONObject();
+		jsonConfiguration.put(CONFIGURATION_ITEM_LIST, items);
+		Configuration configuration = new Configuration(harvesterName, harvesterClass.getName(), jsonConfiguration);
+		configuration.setProgressReportInterval(ProgressTracker.REPORTING_DISABLED);
+		return configuration;
+	}
+	
+	private static Harvester createBibDigitalHarvester(int numberOfItems)
+			throws UnsetHarvesterBaseDirectoryException {
+		JSONArray items = new JSONArray();
+		for (int itemId = 1; itemId <= numberOfItems; ++itemId) {
+			items.put(Integer.toString(itemId));
+		}
+		return new BibDigitalHarvester(createConfiguration("Bib-Digital", BibDigitalHarvester.class, items));
+	}
+	
+	@Before
+	public void setup() throws IOException {
+		didTestDirectoryExistsBeforeTest = testDirectoryPath.toFile().exists();
+		Harvester.setOutputDirectory(TEST_DIRECTORY);
+		
+		mockSiteServer = new MockSiteServer();
+		mockSiteServer.start();
+	}
+	
+	@After
+	public void cleanUp() throws IOException {
+		mockSiteServer.close();
+		
+		File testDirectory = testDirectoryPath.toFile();
+		if (!didTestDirectoryExistsBeforeTest && testDirectory.exists()) {
+			FileUtils.deleteDirectory(testDirectory);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestOutputLayout {
+	
+	private static final String TEST_DIRECTORY = "/tmp/test";
+	private static final Path testDirectoryPath = Paths.get(TEST_DIRECTORY);
+	private boolean didTestDirectoryExistsBeforeTest = false;
+	
+	@Test
+	public void testIdPrefixLayout() {
+		Path typeDirectory = Paths.get("text", "pdf");
+		
+		assertEquals(Paths.get("text", "pdf", "12", "34", "1234567.pdf"), 
+				OutputLayout.ID_PREFIX.resolve(typeDirectory, 1234567, "1234567.pdf"));
+		assertEquals(Paths.get("text", "pdf", "00", "42", "42.pdf"), 
+				OutputLayout.ID_PREFIX.resolve(typeDirectory, 42, "42.pdf"));
+		assertEquals(Paths.get("text", "pdf", "42.pdf"), 
+				OutputLayout.FLAT.resolve(typeDirectory, 42, "42.pdf"));
+	}
+	
+	@Test
+	public void testItemIdFromFileName() {
+		assertEquals(1234567, OutputLayout.getItemIdFromFileName("1234567.txt"));
+		assertEquals(1234567, OutputLayout.getItemIdFromFileName("1234567-1.txt.gz"));
+	}
+	
+	@Test
+	public void testMigrateFlatTree() throws IOException {
+		Path typeDirectory = testDirectoryPath.resolve("bhl").resolve("text").resolve("txt");
+		Files.createDirectories(typeDirectory);
+		Files.write(typeDirectory.resolve("1234567.txt"), new byte[] {1});
+		Files.write(typeDirectory.resolve("1234567-1.txt"), new byte[] {2});
+		
+		LayoutMigrator migrator = new LayoutMigrator(OutputLayout.HASH_PREFIX);
+		migrator.migrateOutputDirectory(testDirectoryPath);
+		
+		assertEquals(2, migrator.getNumberOfMovedFiles());
+		assertFalse(typeDirectory.resolve("1234567.txt").toFile().exists());
+		assertTrue(OutputLayout.HASH_PREFIX.resolve(typeDirectory, 1234567, "1234567.txt").toFile().exists());
+		assertTrue(OutputLayout.HASH_PREFIX.resolve(typeDirectory, 1234567, "1234567-1.txt").toFile().exists());
+		
+		migrator = new LayoutMigrator(OutputLayout.FLAT);
+		migrator.migrateOutputDirectory(testDirectoryPath);
+		
+		assertEquals(2, migrator.getNumberOfMovedFiles());
+		assertEquals(2, typeDirectory.toFile().list().length);
+	}
+	
+	@Before
+	public void setup() {
+		didTestDirectoryExistsBeforeTest = testDirectoryPath.toFile().exists();
+		assertTrue(testDirectoryPath.toFile().mkdirs() || didTestDirectoryExistsBeforeTest);
+	}
+	
+	@After
+	public void cleanUp() throws IOException {
+		File testDirectory = testDirectoryPath.toFile();
+		if (!didTestDirectoryExistsBeforeTest && testDirectory.exists()) {
+			FileUtils.deleteDirectory(testDirectory);
+		}
+	}
+}
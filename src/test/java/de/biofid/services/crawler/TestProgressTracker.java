@@ -0,0 +1,97 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestProgressTracker {
+	
+	private static final String TEST_DIRECTORY = "/tmp/test";
+	private static final Path testDirectoryPath = Paths.get(TEST_DIRECTORY);
+	private boolean didTestDirectoryExistsBeforeTest = false;
+	
+	@Test
+	public void testDiscoveredItemsAreReportedWithoutTotal() {
+		ProgressTracker progressTracker = new ProgressTracker("ZobodatHarvester");
+		progressTracker.addDiscoveredItems(40);
+		progressTracker.addDiscoveredItems(2);
+		progressTracker.recordProcessedItem(0);
+		
+		JSONObject status = progressTracker.toJson(false);
+		assertEquals(42, status.getLong("discoveredItems"));
+		assertEquals(ProgressTracker.UNKNOWN_TOTAL, status.getLong("totalItems"));
+		assertEquals(ProgressTracker.UNKNOWN_TOTAL, status.getLong("etaSeconds"));
+		assertTrue(progressTracker.toString().startsWith("1 items (42 discovered)"));
+		assertFalse(progressTracker.toString().contains("ETA"));
+	}
+	
+	@Test
+	public void testItemsAndErrorsAreCounted() {
+		ProgressTracker progressTracker = new ProgressTracker("BhlHarvester");
+		progressTracker.setTotalNumberOfItems(10);
+		progressTracker.recordProcessedItem(1024);
+		progressTracker.recordProcessedItem(2048);
+		progressTracker.recordProcessedItem(0);
+		progressTracker.recordFailedItem();
+		
+		JSONObject status = progressTracker.toJson(false);
+		assertEquals("BhlHarvester", status.getString("harvester"));
+		assertEquals(3, status.getLong("processedItems"));
+		assertEquals(1, status.getLong("failedItems"));
+		assertEquals(10, status.getLong("totalItems"));
+		assertEquals(3072, status.getLong("downloadedBytes"));
+		assertEquals(0.25, status.getDouble("errorRate"), 0.0001);
+		assertTrue(status.getLong("etaSeconds") >= 0);
+		assertFalse(status.getBoolean("finished"));
+		
+		assertTrue(progressTracker.toString().startsWith("4/10 items (40.0%)"));
+		assertTrue(progressTracker.toString().contains("25.00% errors"));
+		assertTrue(progressTracker.toString().contains("ETA"));
+	}
+	
+	@Test
+	public void testStatusFileIsWritten() throws IOException {
+		Files.createDirectories(testDirectoryPath);
+		
+		ProgressTracker progressTracker = new ProgressTracker("BibDigitalHarvester");
+		progressTracker.setTotalNumberOfItems(1);
+		progressTracker.writeStatusFile(testDirectoryPath, false);
+		progressTracker.recordProcessedItem(100);
+		progressTracker.writeStatusFile(testDirectoryPath, true);
+		
+		Path statusFilePath = testDirectoryPath.resolve(ProgressTracker.STATUS_FILE_NAME);
+		JSONObject status = new JSONObject(new String(Files.readAllBytes(statusFilePath), StandardCharsets.UTF_8));
+		assertEquals(1, status.getLong("processedItems"));
+		assertEquals(0, status.getLong("etaSeconds"));
+		assertTrue(status.getBoolean("finished"));
+		
+		// No temporary files are left behind
+		assertEquals(1, testDirectoryPath.toFile().list().length);
+	}
+	
+	@Before
+	public void setup() {
+		didTestDirectoryExistsBeforeTest = testDirectoryPath.toFile().exists();
+	}
+	
+	@After
+	public void cleanUp() throws IOException {
+		File testDirectory = testDirectoryPath.toFile();
+		if (!didTestDirectoryExistsBeforeTest && testDirectory.exists()) {
+			FileUtils.deleteDirectory(testDirectory);
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestResponseStore {
+	
+	private static final String REQUEST_URL = "https://www.zobodat.at/publikation_series.php?id=6633";
+	private static final String TEST_DIRECTORY = "/tmp/test";
+	private static final Path testDirectoryPath = Paths.get(TEST_DIRECTORY);
+	private boolean didTestDirectoryExistsBeforeTest = false;
+	
+	@Test
+	public void testCredentialsAreNotStored() throws IOException {
+		ResponseStore responseStore = new ResponseStore(testDirectoryPath.resolve(ResponseStore.RESPONSE_FOLDER_NAME));
+		HttpResponse response = new HttpResponse(new URL(REQUEST_URL + "&apikey=secret"), 200, "HTTP/1.1 200 OK",
+				Collections.emptyMap(), "Walk".getBytes(StandardCharsets.UTF_8), 120);
+		responseStore.write(REQUEST_URL + "&apikey=secret", response);
+		
+		// The response is found with a changed key, too
+		HttpResponse storedResponse = responseStore.read(REQUEST_URL + "&apikey=changed");
+		assertEquals(REQUEST_URL, storedResponse.getUrl().toString());
+		assertEquals(responseStore.getResponseFilePath(REQUEST_URL),
+				responseStore.getResponseFilePath(REQUEST_URL + "&apikey=secret"));
+		
+		String storedContent = new String(
+				Files.readAllBytes(responseStore.getResponseFilePath(REQUEST_URL)), StandardCharsets.ISO_8859_1);
+		assertFalse(storedContent.contains("secret"));
+	}
+	
+	@Test
+	public void testCredentialsAreRemovedFromUrl() {
+		assertEquals("https://www.biodiversitylibrary.org/api3?op=GetCollections&format=json",
+				ResponseStore.removeCredentials(
+						"https://www.biodiversitylibrary.org/api3?op=GetCollections&apikey=secret&format=json"));
+		assertEquals("https://www.biodiversitylibrary.org/api3#top",
+				ResponseStore.removeCredentials("https://www.biodiversitylibrary.org/api3?apikey=secret#top"));
+		assertEquals(REQUEST_URL, ResponseStore.removeCredentials(REQUEST_URL));
+	}
+	
+	@Test
+	public void testReplayAnswersFromStoredResponses() throws IOException {
+		ResponseStore responseStore = new ResponseStore(testDirectoryPath.resolve(ResponseStore.RESPONSE_FOLDER_NAME));
+		responseStore.write(REQUEST_URL, createResponse(200, "HTTP/1.1 200 OK", "<html><p>Walk</p></html>"));
+		responseStore.write(REQUEST_URL + "0", createResponse(404, "HTTP/1.1 404 Not Found", "Gone"));
+		
+		HttpFetcher httpFetcher = new HttpFetcher();
+		httpFetcher.setReplaySource(responseStore);
+		
+		assertEquals("Walk", httpFetcher.getDocument(REQUEST_URL).select("p").text());
+		
+		try {
+			httpFetcher.get(REQUEST_URL + "0");
+			fail("A stored error response has to be thrown!");
+		} catch (HttpStatusException ex) {
+			assertEquals(404, ex.getStatusCode());
+		}
+		
+		try {
+			httpFetcher.get(REQUEST_URL + "1");
+			fail("A missing response must not be requested!");
+		} catch (FileNotFoundException ex) {
+			assertTrue(ex.getMessage().contains(REQUEST_URL + "1"));
+		}
+	}
+	
+	@Test
+	public void testStoredResponseIsReadUnchanged() throws IOException {
+		ResponseStore responseStore = new ResponseStore(testDirectoryPath.resolve(ResponseStore.RESPONSE_FOLDER_NAME));
+		assertNull(responseStore.read(REQUEST_URL));
+		
+		HttpResponse response = createResponse(200, "HTTP/1.1 200 OK", "Ä walk\r\n\r\nwith blank lines");
+		responseStore.write(REQUEST_URL, response);
+		
+		HttpResponse storedResponse = responseStore.read(REQUEST_URL);
+		assertEquals(response.getUrl(), storedResponse.getUrl());
+		assertEquals(200, storedResponse.getStatusCode());
+		assertEquals("HTTP/1.1 200 OK", storedResponse.getStatusLine());
+		assertEquals("text/html; charset=utf-8", storedResponse.getHeader("content-type"));
+		assertEquals(Arrays.asList("a=1", "b=2"), storedResponse.getHeaders().get("Set-Cookie"));
+		assertArrayEquals(response.getBody(), storedResponse.getBody());
+		assertEquals(120, storedResponse.getDurationInMilliseconds());
+		assertNull(storedResponse.getHeader(ResponseStore.DURATION_HEADER));
+	}
+	
+	@Test
+	public void testResponseBodyIsCopiedFromFile() throws IOException {
+		ResponseStore responseStore = new ResponseStore(testDirectoryPath.resolve(ResponseStore.RESPONSE_FOLDER_NAME));
+		Path bodyFilePath = testDirectoryPath.resolve("body.pdf");
+		byte[] body = new byte[256 * 1024];
+		Arrays.fill(body, (byte) 'x');
+		Files.createDirectories(testDirectoryPath);
+		Files.write(bodyFilePath, body);
+		
+		HttpResponse responseHead = createResponse(200, "HTTP/1.1 200 OK", "");
+		responseStore.write(REQUEST_URL, responseHead, bodyFilePath);
+		
+		HttpResponse storedResponse = responseStore.read(REQUEST_URL);
+		assertEquals("text/html; charset=utf-8", storedResponse.getHeader("content-type"));
+		assertArrayEquals(body, storedResponse.getBody());
+		assertEquals(120, storedResponse.getDurationInMilliseconds());
+	}
+	
+	private HttpResponse createResponse(int statusCode, String statusLine, String body) throws IOException {
+		Map<String, List<String>> headers = new LinkedHashMap<>();
+		headers.put("Content-Type", Collections.singletonList("text/html; charset=utf-8"));
+		headers.put("Set-Cookie", Arrays.asList("a=1", "b=2"));
+		return new HttpResponse(new URL(REQUEST_URL), statusCode, statusLine, headers, 
+				body.getBytes(StandardCharsets.UTF_8), 120);
+	}
+	
+	@Before
+	public void setup() {
+		didTestDirectoryExistsBeforeTest = testDirectoryPath.toFile().exists();
+	}
+	
+	@After
+	public void cleanUp() throws IOException {
+		File testDirectory = testDirectoryPath.toFile();
+		if (!didTestDirectoryExistsBeforeTest && testDirectory.exists()) {
+			FileUtils.deleteDirectory(testDirectory);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestRunReport {
+	
+	private static final String TEST_DIRECTORY = "/tmp/test";
+	private static final Path testDirectoryPath = Paths.get(TEST_DIRECTORY);
+	private boolean didTestDirectoryExistsBeforeTest = false;
+	
+	@Test
+	public void testLatencyPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(0.5));
+		
+		for (int latency = 1; latency <= 100; ++latency) {
+			histogram.record(latency);
+		}
+		histogram.record(20000);
+		
+		assertEquals(101, histogram.getCount());
+		assertEquals(51, histogram.getPercentile(0.5));
+		assertEquals(96, histogram.getPercentile(0.95));
+		
+		// Long latencies are estimated within 5%
+		long maximum = histogram.getPercentile(1);
+		assertTrue(maximum >= 20000 && maximum <= 21000);
+	}
+	
+	@Test
+	public void testReportHoldsRequestsAndFiles() throws IOException {
+		RunReport runReport = new RunReport("BhlHarvester", RunReport.MODE_HARVEST);
+		runReport.onResponse(createResponse("https://www.biodiversitylibrary.org/api3?op=GetItemMetadata", 200,
+				100, 40));
+		runReport.onResponse(createResponse("https://www.biodiversitylibrary.org/api3?op=GetItemMetadata", 404,
+				10, 20));
+		runReport.recordDownloadedFile(new DownloadedFile(testDirectoryPath.resolve("1.pdf"), "", 5000,
+				createResponse("https://archive.org/download/1.pdf", 200, 0, 900)));
+		runReport.recordSkippedTextFiles(2);
+		runReport.addStageTime(RunReport.STAGE_DOWNLOAD, 1500000000L);
+		runReport.addStageTime(RunReport.STAGE_DOWNLOAD, 500000000L);
+		
+		ProgressTracker progressTracker = new ProgressTracker("BhlHarvester");
+		progressTracker.recordProcessedItem(5000);
+		WriteStatistics writeStatistics = new WriteStatistics();
+		writeStatistics.recordWrittenFile();
+		
+		runReport.finish();
+		JSONObject report = runReport.toJson(progressTracker, writeStatistics);
+		
+		assertEquals("BhlHarvester", report.getString("harvester"));
+		assertEquals(1, report.getJSONObject("items").getLong("processed"));
+		assertEquals(2.0, report.getJSONObject("stageSeconds").getDouble(RunReport.STAGE_DOWNLOAD), 0.001);
+		
+		JSONObject requests = report.getJSONObject("requests");
+		assertEquals(3, requests.getLong("requests"));
+		assertEquals(1, requests.getLong("errors"));
+		assertEquals(5110, requests.getLong("receivedBytes"));
+		
+		JSONObject bhlRequests = report.getJSONObject("hosts").getJSONObject("www.biodiversitylibrary.org");
+		assertEquals(2, bhlRequests.getLong("requests"));
+		assertEquals(40, bhlRequests.getJSONObject("latencyMilliseconds").getLong("p99"));
+		
+		JSONObject files = report.getJSONObject("files");
+		assertEquals(1, files.getLong("downloaded"));
+		assertEquals(5000, files.getLong("downloadedBytes"));
+		assertEquals(2, files.getLong("skippedExisting"));
+		assertEquals(1, files.getLong("metadataWritten"));
+		
+		Path reportFilePath = runReport.write(testDirectoryPath, progressTracker, writeStatistics);
+		assertEquals(testDirectoryPath.resolve(RunReport.REPORT_FOLDER_NAME), reportFilePath.getParent());
+		assertTrue(reportFilePath.toFile().exists());
+	}
+	
+	@Test
+	public void testComparisonMarksSignificantChanges() throws IOException {
+		Files.createDirectories(testDirectoryPath);
+		Path beforeReportPath = testDirectoryPath.resolve("before.json");
+		Path afterReportPath = testDirectoryPath.resolve("after.json");
+		Files.write(beforeReportPath, ("{\"harvester\": \"BhlHarvester\", \"items\": {\"perSecond\": 2.0}, " +
+				"\"wallTimeSeconds\": 100, \"files\": {\"downloaded\": 10}}").getBytes(StandardCharsets.UTF_8));
+		Files.write(afterReportPath, ("{\"harvester\": \"BhlHarvester\", \"items\": {\"perSecond\": 1.5}, " +
+				"\"wallTimeSeconds\": 102, \"stageSeconds\": {\"delay\": 3}}").getBytes(StandardCharsets.UTF_8));
+		
+		RunReportComparison comparison = RunReportComparison.read(beforeReportPath, afterReportPath);
+		assertEquals(-0.25, comparison.getRelativeChange("items.perSecond"), 0.0001);
+		assertEquals(0.02, comparison.getRelativeChange("wallTimeSeconds"), 0.0001);
+		assertNull(comparison.getRelativeChange("files.downloaded"));
+		
+		List<String> lines = comparison.toLines();
+		assertEquals("Throughput: 2 -> 1.500 items/s (-25.0%)", lines.get(0));
+		// Header and the numbers of both reports
+		assertEquals(2 + 4, lines.size());
+		assertTrue(findLine(lines, "items.perSecond").startsWith("!"));
+		assertTrue(findLine(lines, "wallTimeSeconds").startsWith(" "));
+		assertTrue(findLine(lines, "stageSeconds.delay").contains(" - "));
+	}
+	
+	private static HttpResponse createResponse(String url, int statusCode, int bodySize, long durationInMilliseconds)
+			throws IOException {
+		return new HttpResponse(new URL(url), statusCode, "HTTP/1.1 " + statusCode, Collections.emptyMap(),
+				new byte[bodySize], durationInMilliseconds);
+	}
+	
+	private static String findLine(List<String> lines, String path) {
+		for (String line : lines) {
+			if (line.contains(" " + path + " ")) {
+				return line;
+			}
+		}
+		return null;
+	}
+	
+	@Before
+	public void setup() {
+		didTestDirectoryExistsBeforeTest = testDirectoryPath.toFile().exists();
+	}
+	
+	@After
+	public void cleanUp() throws IOException {
+		File testDirectory = testDirectoryPath.toFile();
+		if (!didTestDirectoryExistsBeforeTest && testDirectory.exists()) {
+			FileUtils.deleteDirectory(testDirectory);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSegmentedMetadataSink {
+	
+	private static final String TEST_DIRECTORY = "/tmp/test";
+	private static final Path testDirectoryPath = Paths.get(TEST_DIRECTORY);
+	private static final long SMALL_SEGMENT_SIZE_IN_BYTES = 1024;
+	private static final int NUMBER_OF_ITEMS = 50;
+	
+	private boolean didTestDirectoryExistsBeforeTest = false;
+
+	@Test
+	public void testJsonLinesSegments() throws IOException {
+		writeAndReadItems(SegmentedMetadataSink.Format.JSONL);
+	}
+	
+	@Test
+	public void testCborSegments() throws IOException {
+		writeAndReadItems(SegmentedMetadataSink.Format.CBOR);
+	}
+	
+	@Test
+	public void testSmileSegments() throws IOException {
+		writeAndReadItems(SegmentedMetadataSink.Format.SMILE);
+	}
+	
+	private void writeAndReadItems(SegmentedMetadataSink.Format format) throws IOException {
+		Path segmentDirectory = testDirectoryPath.resolve(format.getFileSuffix());
+		
+		try (SegmentedMetadataSink sink = new SegmentedMetadataSink(segmentDirectory, format, 
+				SMALL_SEGMENT_SIZE_IN_BYTES)) {
+			for (int itemId = 1; itemId <= NUMBER_OF_ITEMS; ++itemId) {
+				Item item = new Item();
+				item.setItemId(itemId);
+				item.setDataSource("Institute of Silly Walks");
+				item.addMetdata("Title", "Walk number " + itemId);
+				item.addTextFileUrl("https://www.biofid.de/item/" + itemId, Item.FileType.PDF);
+				sink.write(item);
+			}
+		}
+		
+		// Every segment has a data file and an index file
+		assertTrue(segmentDirectory.toFile().list().length > 2);
+		
+		SegmentedMetadataSink reader = new SegmentedMetadataSink(segmentDirectory, format, 
+				SMALL_SEGMENT_SIZE_IN_BYTES);
+		JSONObject metadata = reader.read(42);
+		assertEquals(42, metadata.getLong(Item.METADATA_ITEM_ID_STRING));
+		assertEquals("Walk number 42", metadata.getString("Title"));
+		assertNull(reader.read(NUMBER_OF_ITEMS + 1));
+	}
+	
+	@Before
+	public void setup() {
+		didTestDirectoryExistsBeforeTest = testDirectoryPath.toFile().exists();
+	}
+	
+	@After
+	public void cleanUp() throws IOException {
+		File testDirectory = testDirectoryPath.toFile();
+		if (!didTestDirectoryExistsBeforeTest && testDirectory.exists()) {
+			FileUtils.deleteDirectory(testDirectory);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import org.junit.Test;
+
+public class TestShard {
+	
+	@Test
+	public void testEveryItemBelongsToExactlyOneShard() {
+		int numberOfShards = 4;
+		int[] itemsPerShard = new int[numberOfShards];
+		
+		for (long itemId = 1; itemId <= 10000; ++itemId) {
+			int numberOfContainingShards = 0;
+			for (int index = 1; index <= numberOfShards; ++index) {
+				if (new Shard(index, numberOfShards).contains(itemId)) {
+					++numberOfContainingShards;
+					++itemsPerShard[index - 1];
+				}
+			}
+			assertEquals(1, numberOfContainingShards);
+		}
+		
+		// Consecutive IDs are spread evenly
+		for (int numberOfItems : itemsPerShard) {
+			assertTrue(numberOfItems > 2300 && numberOfItems < 2700);
+		}
+	}
+	
+	@Test
+	public void testFileNamesOfShards() {
+		Shard shard = Shard.parse(" 2/4 ");
+		assertEquals("shard-2-of-4", shard.getName());
+		assertEquals("status-shard-2-of-4.json", shard.appendToFileName("status.json"));
+		assertEquals("README-shard-2-of-4", shard.appendToFileName("README"));
+		assertEquals("status.json", Shard.ALL.appendToFileName("status.json"));
+		assertFalse(Shard.ALL.isPartial());
+	}
+	
+	@Test
+	public void testFilterKeepsItemsOfShard() {
+		Shard shard = new Shard(1, 3);
+		long[] expectedItemIds = LongStream.rangeClosed(1, 1000).filter(shard::contains).toArray();
+		
+		List<Long> filteredItemIds = new ArrayList<>();
+		shard.filter(LongStream.rangeClosed(1, 1000).iterator()).forEachRemaining((long itemId) -> 
+				filteredItemIds.add(itemId));
+		
+		assertArrayEquals(expectedItemIds, filteredItemIds.stream().mapToLong(Long::longValue).toArray());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testMalformedShardIsRejected() {
+		Shard.parse("2-4");
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingShardIsRejected() {
+		Shard.parse("5/4");
+	}
+	
+	@Test
+	public void testNumericKeysBelongToShardOfTheirNumber() {
+		for (int index = 1; index <= 3; ++index) {
+			Shard shard = new Shard(index, 3);
+			assertEquals(shard.contains(22314), shard.contains("22314"));
+			assertEquals(shard.contains(122748), shard.contains(" 122748"));
+		}
+		
+		String url = "https://www.zobodat.at/publikation_volumes.php?id=7";
+		int numberOfContainingShards = 0;
+		for (int index = 1; index <= 3; ++index) {
+			numberOfContainingShards += new Shard(index, 3).contains(url) ? 1 : 0;
+		}
+		assertEquals(1, numberOfContainingShards);
+	}
+	
+	@Test
+	public void testShardOptionIsRemovedFromArguments() {
+		List<String> arguments = new ArrayList<>(Arrays.asList("record", LiteratureHarvester.SHARD_OPTION, "3/8",
+				"/tmp/recording"));
+		Shard shard = LiteratureHarvester.removeShardOption(arguments);
+		
+		assertEquals(3, shard.getIndex());
+		assertEquals(8, shard.getCount());
+		assertEquals(Arrays.asList("record", "/tmp/recording"), arguments);
+		assertNull(LiteratureHarvester.removeShardOption(arguments));
+	}
+}
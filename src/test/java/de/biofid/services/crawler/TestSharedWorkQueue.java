@@ -0,0 +1,166 @@
+package de.biofid.services.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSharedWorkQueue {
+	
+	private static final long LEASE_DURATION_IN_MILLISECONDS = 60000;
+	private static final long START_TIME_IN_MILLISECONDS = 1000000;
+	
+	private Path logFilePath = null;
+	private Path queueDirectory = null;
+	
+	@Test
+	public void testItemsAreClaimedOnceByAllNodes() throws IOException {
+		try (SharedWorkQueue firstQueue = new SharedWorkQueue(logFilePath, "node-1", LEASE_DURATION_IN_MILLISECONDS);
+				SharedWorkQueue secondQueue = new SharedWorkQueue(logFilePath, "node-2",
+						LEASE_DURATION_IN_MILLISECONDS)) {
+			assertEquals(3, firstQueue.publish(LongStream.of(1, 2, 3, 2).iterator()));
+			assertEquals(1, secondQueue.publish(LongStream.of(3, 4).iterator()));
+			
+			assertEquals(OptionalLong.of(1), firstQueue.claim());
+			assertEquals(OptionalLong.of(2), secondQueue.claim());
+			assertEquals(OptionalLong.of(3), firstQueue.claim());
+			assertEquals(OptionalLong.of(4), secondQueue.claim());
+			assertFalse(firstQueue.claim().isPresent());
+			assertFalse(firstQueue.isFinished());
+			
+			for (long itemId = 1; itemId <= 4; ++itemId) {
+				(itemId % 2 == 1 ? firstQueue : secondQueue).complete(itemId);
+			}
+			assertTrue(secondQueue.isFinished());
+			assertEquals(4, secondQueue.getNumberOfCompletedItems());
+			
+			// Completed items are never published again
+			assertEquals(0, firstQueue.publish(LongStream.of(1, 2).iterator()));
+		}
+	}
+	
+	@Test
+	public void testReleasedItemIsClaimedByAnotherNode() throws IOException {
+		try (SharedWorkQueue firstQueue = new SharedWorkQueue(logFilePath, "node-1", LEASE_DURATION_IN_MILLISECONDS);
+				SharedWorkQueue secondQueue = new SharedWorkQueue(logFilePath, "node-2",
+						LEASE_DURATION_IN_MILLISECONDS)) {
+			firstQueue.publish(LongStream.of(1, 2).iterator());
+			assertEquals(OptionalLong.of(1), firstQueue.claim());
+			firstQueue.release(1);
+			
+			assertEquals(OptionalLong.of(1), secondQueue.claim());
+			assertFalse(firstQueue.renew(1));
+		}
+	}
+	
+	@Test
+	public void testClosingReleasesTheLeases() throws IOException {
+		try (SharedWorkQueue secondQueue = new SharedWorkQueue(logFilePath, "node-2",
+				LEASE_DURATION_IN_MILLISECONDS)) {
+			try (SharedWorkQueue firstQueue = new SharedWorkQueue(logFilePath, "node-1",
+					LEASE_DURATION_IN_MILLISECONDS)) {
+				firstQueue.publish(LongStream.of(1).iterator());
+				assertEquals(OptionalLong.of(1), firstQueue.claim());
+				assertFalse(secondQueue.claim().isPresent());
+			}
+			
+			assertEquals(OptionalLong.of(1), secondQueue.claim());
+		}
+	}
+	
+	@Test
+	public void testExpiredLeaseIsClaimedAgain() throws IOException {
+		AtomicLong clock = new AtomicLong(START_TIME_IN_MILLISECONDS);
+		
+		// The first node does not renew its lease, as if it crashed
+		try (SharedWorkQueue firstQueue = new SharedWorkQueue(logFilePath, "node-1", 100, 0, clock::get);
+				SharedWorkQueue secondQueue = new SharedWorkQueue(logFilePath, "node-2",
+						LEASE_DURATION_IN_MILLISECONDS, 0, clock::get)) {
+			firstQueue.publish(LongStream.of(1).iterator());
+			assertEquals(OptionalLong.of(1), firstQueue.claim());
+			clock.addAndGet(50);
+			assertFalse(secondQueue.claim().isPresent());
+			clock.addAndGet(100);
+			
+			assertEquals(OptionalLong.of(1), secondQueue.claim());
+			assertFalse(firstQueue.renew(1));
+			
+			secondQueue.complete(1);
+			assertTrue(firstQueue.isFinished());
+			assertEquals(1, firstQueue.getNumberOfCompletedItems());
+		}
+	}
+	
+	@Test
+	public void testHeldLeaseIsRenewed() throws IOException {
+		AtomicLong clock = new AtomicLong(START_TIME_IN_MILLISECONDS);
+		
+		try (SharedWorkQueue firstQueue = new SharedWorkQueue(logFilePath, "node-1", 300, 0, clock::get);
+				SharedWorkQueue secondQueue = new SharedWorkQueue(logFilePath, "node-2",
+						LEASE_DURATION_IN_MILLISECONDS, 0, clock::get)) {
+			firstQueue.publish(LongStream.of(1).iterator());
+			assertEquals(OptionalLong.of(1), firstQueue.claim());
+			
+			// Three times the lease duration, but renewed in time
+			for (int renewal = 0; renewal < 9; ++renewal) {
+				clock.addAndGet(100);
+				firstQueue.renewHeldLeases();
+			}
+			
+			assertFalse(secondQueue.claim().isPresent());
+			assertTrue(firstQueue.renew(1));
+		}
+	}
+	
+	@Test
+	public void testCutOffRecordIsDropped() throws IOException {
+		Files.write(logFilePath, "publish 1\npublish 2\npubl".getBytes(StandardCharsets.US_ASCII));
+		
+		try (SharedWorkQueue queue = new SharedWorkQueue(logFilePath, "node-1", LEASE_DURATION_IN_MILLISECONDS)) {
+			assertEquals(2, queue.getNumberOfPendingItems());
+			assertEquals(1, queue.publish(LongStream.of(3).iterator()));
+		}
+		
+		try (SharedWorkQueue queue = new SharedWorkQueue(logFilePath, "node-2", LEASE_DURATION_IN_MILLISECONDS)) {
+			assertEquals(3, queue.getNumberOfPendingItems());
+		}
+		assertEquals("publish 1\npublish 2\npublish 3\n",
+				new String(Files.readAllBytes(logFilePath), StandardCharsets.US_ASCII));
+	}
+	
+	@Test(expected = IOException.class)
+	public void testMalformedRecordIsRejected() throws IOException {
+		Files.write(logFilePath, "publish 1\nreserve 1 node-1\n".getBytes(StandardCharsets.US_ASCII),
+				StandardOpenOption.CREATE);
+		new SharedWorkQueue(logFilePath, "node-1", LEASE_DURATION_IN_MILLISECONDS).close();
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testNodeIdWithWhitespaceIsRejected() throws IOException {
+		new SharedWorkQueue(logFilePath, "node 1", LEASE_DURATION_IN_MILLISECONDS).close();
+	}
+	
+	@Before
+	public void setup() throws IOException {
+		queueDirectory = Files.createTempDirectory("work-queue");
+		logFilePath = queueDirectory.resolve("items.log");
+	}
+	
+	@After
+	public void cleanUp() throws IOException {
+		FileUtils.deleteDirectory(queueDirectory.toFile());
+	}
+}